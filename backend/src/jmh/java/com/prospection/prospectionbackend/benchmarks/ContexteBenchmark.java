@@ -0,0 +1,251 @@
+package com.prospection.prospectionbackend.benchmarks;
+
+import com.prospection.prospectionbackend.ProspectionBackendApplication;
+import com.prospection.prospectionbackend.entities.*;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.repositories.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Démarre l'application sans couche web pour les benchmarks d'accès aux données.
+ * Par défaut la base est un H2 en mémoire en mode PostgreSQL ; une vraie base
+ * se choisit avec -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/prospection_bench
+ * (et -Dbench.jdbc.user / -Dbench.jdbc.password).
+ */
+final class ContexteBenchmark {
+
+    private ContexteBenchmark() {
+    }
+
+    static ConfigurableApplicationContext demarrer() {
+        String url = System.getProperty("bench.jdbc.url");
+        Map<String, Object> proprietes = new HashMap<>();
+        proprietes.put("spring.jpa.show-sql", "false");
+        proprietes.put("spring.jpa.properties.hibernate.format_sql", "false");
+        proprietes.put("logging.level.root", "WARN");
+        proprietes.put("logging.level.com.prospection", "WARN");
+        proprietes.put("logging.level.org.springframework.security", "WARN");
+
+        if (url == null) {
+            proprietes.put("spring.datasource.url", "jdbc:h2:mem:bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+            proprietes.put("spring.datasource.username", "sa");
+            proprietes.put("spring.datasource.password", "");
+            proprietes.put("spring.datasource.driver-class-name", "org.h2.Driver");
+            proprietes.put("spring.jpa.database-platform", "org.hibernate.dialect.H2Dialect");
+            proprietes.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+            proprietes.put("spring.sql.init.mode", "never");
+        } else {
+            proprietes.put("spring.datasource.url", url);
+            proprietes.put("spring.datasource.username", System.getProperty("bench.jdbc.user", "postgres"));
+            proprietes.put("spring.datasource.password", System.getProperty("bench.jdbc.password", "root"));
+        }
+        proprietes.put("spring.datasource.hikari.maximum-pool-size", System.getProperty("bench.pool", "60"));
+
+        // Propriétés système : prioritaires sur application.yml
+        proprietes.forEach((cle, valeur) -> System.setProperty(cle, valeur.toString()));
+        return new SpringApplicationBuilder(ProspectionBackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run();
+    }
+
+    /**
+     * Crée une région, une supervision, une branche et {@code nombreAgents} agents
+     */
+    static List<Utilisateur> creerAgents(ConfigurableApplicationContext contexte, int nombreAgents) {
+        RegionRepository regionRepository = contexte.getBean(RegionRepository.class);
+        SupervisionRepository supervisionRepository = contexte.getBean(SupervisionRepository.class);
+        BrancheRepository brancheRepository = contexte.getBean(BrancheRepository.class);
+        UtilisateurRepository utilisateurRepository = contexte.getBean(UtilisateurRepository.class);
+
+        String suffixe = Long.toString(System.nanoTime(), 36);
+        LocalDateTime maintenant = LocalDateTime.now();
+
+        Region region = new Region();
+        region.setNom("Région bench");
+        region.setCode("R-" + suffixe);
+        region.setDateCreation(maintenant);
+        region = regionRepository.save(region);
+
+        Supervision supervision = new Supervision();
+        supervision.setNom("Supervision bench");
+        supervision.setCode("S-" + suffixe);
+        supervision.setDateCreation(maintenant);
+        supervision.setRegion(region);
+        supervision = supervisionRepository.save(supervision);
+
+        Branche branche = new Branche();
+        branche.setNom("Branche bench");
+        branche.setCode("B-" + suffixe);
+        branche.setDateCreation(maintenant);
+        branche.setSupervision(supervision);
+        branche = brancheRepository.save(branche);
+
+        List<Utilisateur> agents = new ArrayList<>();
+        for (int i = 0; i < nombreAgents; i++) {
+            Utilisateur agent = new Utilisateur();
+            agent.setNom("Agent" + i);
+            agent.setPrenom("Bench");
+            agent.setTelephone("0600000000");
+            agent.setEmail("a" + i + "." + suffixe + "@bench.ma");
+            agent.setMotDePasse("non-utilise");
+            agent.setRole(Role.AGENT);
+            agent.setActif(true);
+            agent.setDateCreation(maintenant);
+            agent.setRegion(region);
+            agent.setSupervision(supervision);
+            agent.setBranche(branche);
+            agents.add(utilisateurRepository.save(agent));
+        }
+        return agents;
+    }
+
+    /**
+     * Crée un formulaire réaliste de 40 questions actives et renvoie une soumission valide
+     */
+    static Map<Long, String> creerFormulaire(ConfigurableApplicationContext contexte) {
+        QuestionRepository questionRepository = contexte.getBean(QuestionRepository.class);
+        Map<Long, String> soumission = new LinkedHashMap<>();
+        int ordre = questionRepository.findMaxOrdre();
+
+        for (int i = 0; i < 40; i++) {
+            QuestionType type;
+            String[] options = {};
+            String valeur;
+            if (i < 10) {
+                type = QuestionType.TEXT;
+                valeur = "Réponse libre " + i;
+            } else if (i < 18) {
+                type = QuestionType.NUMBER;
+                valeur = String.valueOf(1000 + i);
+            } else if (i < 24) {
+                type = QuestionType.PHONE;
+                valeur = "06" + (12345600 + i);
+            } else if (i < 34) {
+                type = QuestionType.CHOICE;
+                options = new String[]{"Commerçant", "Salarié", "Artisan", "Agriculteur", "Étudiant"};
+                valeur = options[i % options.length];
+            } else {
+                type = QuestionType.MULTIPLE_CHOICE;
+                options = new String[]{"Crédit", "Épargne", "Assurance", "Transfert"};
+                valeur = "Crédit,Assurance";
+            }
+
+            Question question = new Question();
+            question.setQuestion("Question bench " + i);
+            question.setType(type);
+            question.setOrdre(++ordre);
+            question.setActif(true);
+            question.setObligatoire(i % 4 == 0);
+            question.setCreateurId(0L);
+            for (int o = 0; o < options.length; o++) {
+                question.addOption(new QuestionOption(options[o], o + 1));
+            }
+            question = questionRepository.save(question);
+            soumission.put(question.getId(), valeur);
+        }
+        return soumission;
+    }
+
+    /**
+     * Crée {@code regions} × 4 supervisions × 5 branches, avec {@code agentsParBranche} agents chacune
+     */
+    static List<Utilisateur> creerHierarchie(ConfigurableApplicationContext contexte, int regions, int agentsParBranche) {
+        RegionRepository regionRepository = contexte.getBean(RegionRepository.class);
+        SupervisionRepository supervisionRepository = contexte.getBean(SupervisionRepository.class);
+        BrancheRepository brancheRepository = contexte.getBean(BrancheRepository.class);
+        UtilisateurRepository utilisateurRepository = contexte.getBean(UtilisateurRepository.class);
+
+        String suffixe = Long.toString(System.nanoTime(), 36);
+        LocalDateTime maintenant = LocalDateTime.now();
+        List<Utilisateur> agents = new ArrayList<>();
+
+        for (int r = 0; r < regions; r++) {
+            Region region = new Region();
+            region.setNom("Région " + r);
+            region.setCode("R" + r + "-" + suffixe);
+            region.setDateCreation(maintenant);
+            region = regionRepository.save(region);
+
+            for (int s = 0; s < 4; s++) {
+                Supervision supervision = new Supervision();
+                supervision.setNom("Supervision " + r + "." + s);
+                supervision.setCode("S" + r + "." + s + "-" + suffixe);
+                supervision.setDateCreation(maintenant);
+                supervision.setRegion(region);
+                supervision = supervisionRepository.save(supervision);
+
+                for (int b = 0; b < 5; b++) {
+                    Branche branche = new Branche();
+                    branche.setNom("Branche " + r + "." + s + "." + b);
+                    branche.setCode("B" + r + "." + s + "." + b + "-" + suffixe);
+                    branche.setDateCreation(maintenant);
+                    branche.setSupervision(supervision);
+                    branche = brancheRepository.save(branche);
+
+                    for (int a = 0; a < agentsParBranche; a++) {
+                        Utilisateur agent = new Utilisateur();
+                        agent.setNom("Agent" + a);
+                        agent.setPrenom("Bench");
+                        agent.setTelephone("0600000000");
+                        agent.setEmail("a" + agents.size() + "." + suffixe + "@bench.ma");
+                        agent.setMotDePasse("non-utilise");
+                        agent.setRole(Role.AGENT);
+                        agent.setActif(true);
+                        agent.setDateCreation(maintenant);
+                        agent.setRegion(region);
+                        agent.setSupervision(supervision);
+                        agent.setBranche(branche);
+                        agents.add(utilisateurRepository.save(agent));
+                    }
+                }
+            }
+        }
+        return agents;
+    }
+
+    /**
+     * Insère {@code lignes} prospections réparties sur les agents, les statuts, les types
+     * et les deux dernières années, par lots JDBC (sans passer par Hibernate)
+     */
+    static void genererProspections(ConfigurableApplicationContext contexte, List<Utilisateur> agents, int lignes) {
+        JdbcTemplate jdbc = contexte.getBean(JdbcTemplate.class);
+        StatutProspection[] statuts = StatutProspection.values();
+        TypeProspection[] types = TypeProspection.values();
+        Random aleatoire = new Random(42);
+        LocalDateTime origine = LocalDateTime.now();
+        int tailleLot = 10_000;
+
+        String sql = "INSERT INTO prospections (date_creation, type_prospection, statut, createur_id, " +
+                "agent_assigne_id, branche_id, supervision_id, region_id, commentaire) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        for (int debut = 0; debut < lignes; debut += tailleLot) {
+            int fin = Math.min(lignes, debut + tailleLot);
+            List<Object[]> lot = new ArrayList<>(fin - debut);
+            for (int i = debut; i < fin; i++) {
+                Utilisateur agent = agents.get(aleatoire.nextInt(agents.size()));
+                lot.add(new Object[]{
+                        Timestamp.valueOf(origine.minusSeconds(aleatoire.nextInt(2 * 365 * 24 * 3600))),
+                        types[aleatoire.nextInt(types.length)].name(),
+                        statuts[aleatoire.nextInt(statuts.length)].name(),
+                        agent.getId(),
+                        aleatoire.nextInt(4) == 0 ? null : agent.getId(),
+                        agent.getBranche().getId(),
+                        agent.getSupervision().getId(),
+                        agent.getRegion().getId(),
+                        "Prospection générée " + i
+                });
+            }
+            jdbc.batchUpdate(sql, lot);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.prospection.prospectionbackend.benchmarks;
+
+import com.prospection.prospectionbackend.dto.RequeteFacettes;
+import com.prospection.prospectionbackend.dto.RequeteFacettes.Critere;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.services.FacettesService;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * « Activité = Commerçant ET Produits contient Crédit ET statut = EN_COURS », avec le total
+ * et les comptes par produit : auto-jointures sur reponses contre l'index des facettes.
+ *
+ * Chaque prospection a quatre réponses à choix (trois choix uniques, un choix multiple) :
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="Facettes -jvmArgs -Dbench.lignes=1000000
+ *     -jvmArgs -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/prospection_bench"
+ * La construction de l'index (premier appel) est hors mesure et affichée au démarrage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FacettesBenchmark {
+
+    private static final String[] ACTIVITES = {"Commerçant", "Salarié", "Artisan", "Agriculteur", "Étudiant"};
+    private static final String[] PRODUITS = {"Crédit", "Épargne", "Assurance", "Transfert"};
+
+    private static final String SQL_PAGE = "SELECT p.id FROM prospections p " +
+            "JOIN reponses a ON a.prospection_id = p.id AND a.question_id = ? AND a.valeur = 'Commerçant' " +
+            "JOIN reponses m ON m.prospection_id = p.id AND m.question_id = ? " +
+            "AND (',' || REPLACE(m.valeur, ', ', ',') || ',') LIKE '%,Crédit,%' " +
+            "WHERE p.statut = 'EN_COURS' ORDER BY p.id DESC LIMIT 21";
+
+    private static final String SQL_COMPTES = "SELECT o.valeur, COUNT(*) FROM prospections p " +
+            "JOIN reponses a ON a.prospection_id = p.id AND a.question_id = ? AND a.valeur = 'Commerçant' " +
+            "JOIN reponses m ON m.prospection_id = p.id AND m.question_id = ? " +
+            "AND (',' || REPLACE(m.valeur, ', ', ',') || ',') LIKE '%,Crédit,%' " +
+            "JOIN (VALUES ('Crédit'), ('Épargne'), ('Assurance'), ('Transfert')) o(valeur) " +
+            "ON (',' || REPLACE(m.valeur, ', ', ',') || ',') LIKE '%,' || o.valeur || ',%' " +
+            "WHERE p.statut = 'EN_COURS' GROUP BY o.valeur";
+
+    private ConfigurableApplicationContext contexte;
+    private JdbcTemplate jdbc;
+    private FacettesService facettesService;
+    private Utilisateur siege;
+    private RequeteFacettes requete;
+    private long activite;
+    private long produits;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        contexte = ContexteBenchmark.demarrer();
+        jdbc = contexte.getBean(JdbcTemplate.class);
+        facettesService = contexte.getBean(FacettesService.class);
+        SchemaFormulaireService schemaFormulaireService = contexte.getBean(SchemaFormulaireService.class);
+
+        int lignes = Integer.getInteger("bench.lignes", 200_000);
+        Long existantes = jdbc.queryForObject("SELECT COUNT(*) FROM prospections", Long.class);
+        if (existantes == null || existantes < lignes) {
+            List<Utilisateur> agents = ContexteBenchmark.creerHierarchie(contexte, 5, 5);
+            ContexteBenchmark.genererProspections(contexte, agents, (int) (lignes - (existantes != null ? existantes : 0)));
+        }
+        if (jdbc.queryForObject("SELECT COUNT(*) FROM questions WHERE question LIKE 'Question bench %'", Long.class) == 0) {
+            ContexteBenchmark.creerFormulaire(contexte);
+            schemaFormulaireService.invalider();
+        }
+
+        List<Long> choix = new ArrayList<>();
+        for (QuestionCompilee question : schemaFormulaireService.getSchema().getQuestionsActives()) {
+            if (question.getQuestion().startsWith("Question bench ")) {
+                if (question.getType() == QuestionType.CHOICE) {
+                    choix.add(question.getId());
+                } else if (question.getType() == QuestionType.MULTIPLE_CHOICE) {
+                    produits = question.getId();
+                }
+            }
+        }
+        activite = choix.get(0);
+        genererReponses(List.of(choix.get(0), choix.get(1), choix.get(2)), produits);
+        if (System.getProperty("bench.jdbc.url", "").startsWith("jdbc:postgresql")) {
+            jdbc.execute("ANALYZE reponses");
+        }
+
+        siege = new Utilisateur();
+        siege.setId(-1L);
+        siege.setRole(Role.SIEGE);
+
+        Critere commercant = new Critere();
+        commercant.setQuestionId(activite);
+        commercant.setValeurs(List.of("Commerçant"));
+        Critere credit = new Critere();
+        credit.setQuestionId(produits);
+        credit.setValeurs(List.of("Crédit"));
+        Critere enCours = new Critere();
+        enCours.setStatuts(List.of(StatutProspection.EN_COURS));
+        Critere et = new Critere();
+        et.setEt(List.of(commercant, credit, enCours));
+        requete = new RequeteFacettes();
+        requete.setCritere(et);
+        requete.setFacettes(List.of(produits));
+
+        long debut = System.nanoTime();
+        FacettesService.ResultatFacettes resultat = facettesService.rechercher(siege, requete);
+        System.out.println("Index des facettes construit en " + (System.nanoTime() - debut) / 1_000_000 + " ms, "
+                + resultat.getTotal() + " prospections trouvées");
+    }
+
+    @TearDown(Level.Trial)
+    public void arreter() {
+        contexte.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> autoJointures() {
+        List<Long> ids = jdbc.queryForList(SQL_PAGE, Long.class, activite, produits);
+        List<Map<String, Object>> comptes = jdbc.queryForList(SQL_COMPTES, activite, produits);
+        return Map.of("ids", ids, "comptes", comptes);
+    }
+
+    @Benchmark
+    public FacettesService.ResultatFacettes facettes() {
+        return facettesService.rechercher(siege, requete);
+    }
+
+    /**
+     * Réponses des prospections qui n'en ont pas encore, par lots JDBC
+     */
+    private void genererReponses(List<Long> questionsChoix, long questionMultiple) {
+        Random aleatoire = new Random(7);
+        String sql = "INSERT INTO reponses (id, question_id, prospection_id, valeur, date_creation) " +
+                "VALUES (nextval('reponses_seq'), ?, ?, ?, ?)";
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        long apresId = 0;
+        while (true) {
+            List<Long> ids = jdbc.queryForList("SELECT p.id FROM prospections p WHERE p.id > ? AND NOT EXISTS " +
+                    "(SELECT 1 FROM reponses r WHERE r.prospection_id = p.id) ORDER BY p.id LIMIT 10000", Long.class, apresId);
+            if (ids.isEmpty()) {
+                return;
+            }
+            List<Object[]> lot = new ArrayList<>(ids.size() * 4);
+            for (Long id : ids) {
+                for (Long question : questionsChoix) {
+                    lot.add(new Object[]{question, id, ACTIVITES[aleatoire.nextInt(ACTIVITES.length)], maintenant});
+                }
+                String produit = PRODUITS[aleatoire.nextInt(PRODUITS.length)];
+                String autre = PRODUITS[aleatoire.nextInt(PRODUITS.length)];
+                lot.add(new Object[]{questionMultiple, id, produit.equals(autre) ? produit : produit + "," + autre, maintenant});
+            }
+            jdbc.batchUpdate(sql, lot);
+            apresId = ids.get(ids.size() - 1);
+        }
+    }
+}
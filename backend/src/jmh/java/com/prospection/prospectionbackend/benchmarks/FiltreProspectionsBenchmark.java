@@ -0,0 +1,204 @@
+package com.prospection.prospectionbackend.benchmarks;
+
+import com.prospection.prospectionbackend.dto.FiltreProspections;
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche filtrée : ancienne requête « (:param IS NULL OR col = :param) » paginée avec
+ * comptage, contre la requête Criteria qui n'émet que les prédicats fournis.
+ *
+ * Jeu de 5 millions de lignes sur Postgres (généré au premier lancement, réutilisé ensuite) :
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="FiltreProspections -jvmArgs -Dbench.lignes=5000000
+ *     -jvmArgs -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/prospection_bench"
+ * Sur Postgres, les plans génériques des deux requêtes sont affichés avant la mesure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FiltreProspectionsBenchmark {
+
+    private static final String REQUETE_AVANT = "SELECT p FROM Prospection p WHERE " +
+            "(:agentId IS NULL OR p.createur.id = :agentId OR p.agentAssigne.id = :agentId) AND " +
+            "(:statut IS NULL OR p.statut = :statut) AND " +
+            "(:type IS NULL OR p.typeProspection = :type) AND " +
+            "(:brancheId IS NULL OR p.branche.id = :brancheId) AND " +
+            "(:supervisionId IS NULL OR p.supervision.id = :supervisionId) AND " +
+            "(:regionId IS NULL OR p.region.id = :regionId) AND " +
+            "(:dateDebut IS NULL OR p.dateCreation >= :dateDebut) AND " +
+            "(:dateFin IS NULL OR p.dateCreation <= :dateFin) " +
+            "ORDER BY p.dateCreation DESC";
+
+    private static final String COMPTAGE_AVANT = "SELECT COUNT(p) FROM Prospection p WHERE " +
+            REQUETE_AVANT.substring(REQUETE_AVANT.indexOf("WHERE ") + 6, REQUETE_AVANT.indexOf(" ORDER BY"));
+
+    private static final String SQL_AVANT = "SELECT id FROM prospections p WHERE " +
+            "($1::bigint IS NULL OR p.createur_id = $1 OR p.agent_assigne_id = $1) AND " +
+            "($2::varchar IS NULL OR p.statut = $2) AND " +
+            "($3::varchar IS NULL OR p.type_prospection = $3) AND " +
+            "($4::bigint IS NULL OR p.branche_id = $4) AND " +
+            "($5::bigint IS NULL OR p.supervision_id = $5) AND " +
+            "($6::bigint IS NULL OR p.region_id = $6) AND " +
+            "($7::timestamp IS NULL OR p.date_creation >= $7) AND " +
+            "($8::timestamp IS NULL OR p.date_creation <= $8) " +
+            "ORDER BY p.date_creation DESC LIMIT 20";
+
+    // Même requête que l'ancienne : aucun prédicat de périmètre, seulement ceux du filtre
+    private static final Perimetre SIEGE = new Perimetre(Perimetre.Niveau.TOUT, null);
+
+    @Param({"branche", "agent", "regionPeriode"})
+    public String scenario;
+
+    private ConfigurableApplicationContext contexte;
+    private ProspectionRepository prospectionRepository;
+    private EntityManager entityManager;
+    private FiltreProspections filtre;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        contexte = ContexteBenchmark.demarrer();
+        prospectionRepository = contexte.getBean(ProspectionRepository.class);
+        entityManager = contexte.getBean(EntityManager.class);
+        JdbcTemplate jdbc = contexte.getBean(JdbcTemplate.class);
+
+        int lignes = Integer.getInteger("bench.lignes", 200_000);
+        Long existantes = jdbc.queryForObject("SELECT COUNT(*) FROM prospections", Long.class);
+        if (existantes == null || existantes < lignes) {
+            List<Utilisateur> agents = ContexteBenchmark.creerHierarchie(contexte, 5, 5);
+            ContexteBenchmark.genererProspections(contexte, agents, (int) (lignes - (existantes != null ? existantes : 0)));
+        }
+
+        Map<String, Object> exemple = jdbc.queryForMap(
+                "SELECT createur_id, branche_id, region_id FROM prospections WHERE branche_id IS NOT NULL ORDER BY id LIMIT 1");
+
+        filtre = new FiltreProspections();
+        switch (scenario) {
+            case "branche":
+                filtre.setBrancheId(((Number) exemple.get("branche_id")).longValue());
+                filtre.setStatut(StatutProspection.EN_COURS);
+                break;
+            case "agent":
+                filtre.setAgentId(((Number) exemple.get("createur_id")).longValue());
+                break;
+            default:
+                filtre.setRegionId(((Number) exemple.get("region_id")).longValue());
+                filtre.setType(TypeProspection.PLANNING_AGENT);
+                filtre.setDateDebut(LocalDateTime.now().minusDays(30));
+                break;
+        }
+
+        if (System.getProperty("bench.jdbc.url", "").startsWith("jdbc:postgresql")) {
+            jdbc.execute("ANALYZE prospections");
+            afficherPlans(jdbc);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void arreter() {
+        contexte.close();
+    }
+
+    @Benchmark
+    public List<Prospection> avant() {
+        TypedQuery<Prospection> requete = entityManager.createQuery(REQUETE_AVANT, Prospection.class)
+                .setFirstResult(0)
+                .setMaxResults(20);
+        TypedQuery<Long> comptage = entityManager.createQuery(COMPTAGE_AVANT, Long.class);
+        lier(requete);
+        lier(comptage);
+        comptage.getSingleResult();
+        return requete.getResultList();
+    }
+
+    @Benchmark
+    public List<ProspectionResume> apres() {
+        return prospectionRepository.rechercher(SIEGE, filtre, null, null, 21);
+    }
+
+    private void lier(TypedQuery<?> requete) {
+        requete.setParameter("agentId", filtre.getAgentId())
+                .setParameter("statut", filtre.getStatut())
+                .setParameter("type", filtre.getType())
+                .setParameter("brancheId", filtre.getBrancheId())
+                .setParameter("supervisionId", filtre.getSupervisionId())
+                .setParameter("regionId", filtre.getRegionId())
+                .setParameter("dateDebut", filtre.getDateDebut())
+                .setParameter("dateFin", filtre.getDateFin());
+    }
+
+    /**
+     * Plan générique (celui qu'une requête préparée finit par réutiliser) de l'ancienne forme,
+     * et plan de la requête ne contenant que les prédicats du scénario
+     */
+    private void afficherPlans(JdbcTemplate jdbc) {
+        String sqlApres = "SELECT id FROM prospections p WHERE " + predicatsApres() +
+                " ORDER BY p.date_creation DESC, p.id DESC LIMIT 21";
+
+        jdbc.execute((org.springframework.jdbc.core.ConnectionCallback<Void>) connexion -> {
+            try (var instruction = connexion.createStatement()) {
+                instruction.execute("SET plan_cache_mode = force_generic_plan");
+                instruction.execute("DEALLOCATE ALL");
+                instruction.execute("PREPARE avant(bigint, varchar, varchar, bigint, bigint, bigint, timestamp, timestamp) AS "
+                        + SQL_AVANT);
+                System.out.println("=== Plan générique, ancienne requête (" + scenario + ") ===");
+                afficher(instruction.executeQuery("EXPLAIN EXECUTE avant(" + argumentsAvant() + ")"));
+                System.out.println("=== Plan, requête dynamique (" + scenario + ") ===");
+                afficher(instruction.executeQuery("EXPLAIN " + sqlApres));
+                instruction.execute("DEALLOCATE avant");
+                instruction.execute("RESET plan_cache_mode");
+            }
+            return null;
+        });
+    }
+
+    private String predicatsApres() {
+        switch (scenario) {
+            case "branche":
+                return "p.branche_id = " + filtre.getBrancheId() + " AND p.statut = '" + filtre.getStatut() + "'";
+            case "agent":
+                return "(p.createur_id = " + filtre.getAgentId() + " OR p.agent_assigne_id = " + filtre.getAgentId() + ")";
+            default:
+                return "p.region_id = " + filtre.getRegionId() + " AND p.type_prospection = '" + filtre.getType()
+                        + "' AND p.date_creation >= '" + filtre.getDateDebut() + "'";
+        }
+    }
+
+    private String argumentsAvant() {
+        return litteral(filtre.getAgentId()) + ", " + litteral(filtre.getStatut()) + ", " + litteral(filtre.getType())
+                + ", " + litteral(filtre.getBrancheId()) + ", " + litteral(filtre.getSupervisionId())
+                + ", " + litteral(filtre.getRegionId()) + ", " + litteral(filtre.getDateDebut()) + ", NULL";
+    }
+
+    private static String litteral(Object valeur) {
+        if (valeur == null) {
+            return "NULL";
+        }
+        return valeur instanceof Number ? valeur.toString() : "'" + valeur + "'";
+    }
+
+    private static void afficher(java.sql.ResultSet plan) throws java.sql.SQLException {
+        try (plan) {
+            while (plan.next()) {
+                System.out.println(plan.getString(1));
+            }
+        }
+    }
+}
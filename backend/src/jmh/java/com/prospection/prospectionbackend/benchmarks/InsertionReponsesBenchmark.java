@@ -0,0 +1,76 @@
+package com.prospection.prospectionbackend.benchmarks;
+
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.services.ProspectionService;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Débit d'insertion des réponses via ProspectionService.creerProspection,
+ * une soumission de 40 réponses par opération. Le score est exprimé en
+ * réponses insérées par seconde.
+ *
+ * Lancer une fois par niveau de concurrence (1, 10 et 50 agents) :
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="InsertionReponses -t 10"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(40)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class InsertionReponsesBenchmark {
+
+    private static final int AGENTS = 50;
+
+    @State(Scope.Benchmark)
+    public static class Application {
+        ConfigurableApplicationContext contexte;
+        ProspectionService prospectionService;
+        List<Utilisateur> agents;
+        Map<Long, String> soumission;
+        final AtomicInteger prochainAgent = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void demarrer() {
+            contexte = ContexteBenchmark.demarrer();
+            agents = ContexteBenchmark.creerAgents(contexte, AGENTS);
+            soumission = ContexteBenchmark.creerFormulaire(contexte);
+            contexte.getBean(SchemaFormulaireService.class).invalider();
+            prospectionService = contexte.getBean(ProspectionService.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void arreter() {
+            contexte.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Agent {
+        Utilisateur utilisateur;
+
+        @Setup(Level.Trial)
+        public void choisir(Application application) {
+            int index = application.prochainAgent.getAndIncrement() % AGENTS;
+            utilisateur = application.agents.get(index);
+        }
+    }
+
+    @Benchmark
+    public Long creerProspection(Application application, Agent agent) {
+        return application.prospectionService.creerProspection(
+                TypeProspection.PLANNING_AGENT,
+                application.soumission,
+                "Benchmark",
+                agent.utilisateur
+        ).getId();
+    }
+}
@@ -0,0 +1,96 @@
+package com.prospection.prospectionbackend.benchmarks;
+
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.services.ProspectionService;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réponses en lignes de reponses contre un document par prospection : débit de création
+ * (40 réponses par soumission), latence de lecture du détail, et place occupée sur disque
+ * (Postgres seulement, affichée à la fin de chaque mode).
+ *
+ * Une base neuve par mode pour comparer les tailles :
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="StockageReponses -p mode=lignes -jvmArgs -Dbench.lignes=100000
+ *     -jvmArgs -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/bench_lignes"
+ * puis -p mode=document sur bench_document.
+ */
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StockageReponsesBenchmark {
+
+    @Param({"lignes", "document"})
+    public String mode;
+
+    private ConfigurableApplicationContext contexte;
+    private ProspectionService prospectionService;
+    private List<Utilisateur> agents;
+    private Map<Long, String> soumission;
+    private Utilisateur siege;
+    private final List<Long> ids = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        System.setProperty("prospection.stockage-reponses", mode);
+        contexte = ContexteBenchmark.demarrer();
+        agents = ContexteBenchmark.creerAgents(contexte, 50);
+        soumission = ContexteBenchmark.creerFormulaire(contexte);
+        contexte.getBean(SchemaFormulaireService.class).invalider();
+        prospectionService = contexte.getBean(ProspectionService.class);
+
+        int lignes = Integer.getInteger("bench.lignes", 10_000);
+        for (int i = 0; i < lignes; i++) {
+            ids.add(creer(agents.get(i % agents.size())));
+        }
+
+        siege = new Utilisateur();
+        siege.setId(-1L);
+        siege.setRole(Role.SIEGE);
+    }
+
+    @TearDown(Level.Trial)
+    public void arreter() {
+        if (System.getProperty("bench.jdbc.url", "").startsWith("jdbc:postgresql")) {
+            JdbcTemplate jdbc = contexte.getBean(JdbcTemplate.class);
+            jdbc.execute("VACUUM ANALYZE prospections");
+            jdbc.execute("VACUUM ANALYZE reponses");
+            long prospections = jdbc.queryForObject("SELECT pg_total_relation_size('prospections')", Long.class);
+            long reponses = jdbc.queryForObject("SELECT pg_total_relation_size('reponses')", Long.class);
+            long nombre = jdbc.queryForObject("SELECT COUNT(*) FROM prospections", Long.class);
+            System.out.printf("%nMode %s : prospections %d Mo, reponses %d Mo, %d octets par prospection (%d prospections)%n",
+                    mode, prospections >> 20, reponses >> 20, (prospections + reponses) / Math.max(1, nombre), nombre);
+        }
+        contexte.close();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Long creerProspection() {
+        return creer(agents.get(ThreadLocalRandom.current().nextInt(agents.size())));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ProspectionService.ProspectionWithReponses lireDetail() {
+        Long id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        return prospectionService.getProspectionAvecReponses(id, siege);
+    }
+
+    private Long creer(Utilisateur agent) {
+        return prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, soumission, "Benchmark", agent).getId();
+    }
+}
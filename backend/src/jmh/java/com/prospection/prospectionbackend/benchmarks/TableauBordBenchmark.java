@@ -0,0 +1,117 @@
+package com.prospection.prospectionbackend.benchmarks;
+
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.entities.Branche;
+import com.prospection.prospectionbackend.entities.Region;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.services.TableauBordService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tableau de bord sur 30 jours : agrégation des prospections de la structure (par jour, statut
+ * et type) contre la lecture des cellules du cube cumuls_prospections.
+ *
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="TableauBord -jvmArgs -Dbench.lignes=1000000
+ *     -jvmArgs -Dbench.jdbc.url=jdbc:postgresql://localhost:5432/prospection_bench"
+ * Le cube est recompté au démarrage, hors mesure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TableauBordBenchmark {
+
+    private static final String SQL_AGREGATION = "SELECT CAST(p.date_creation AS DATE), p.statut, p.type_prospection, COUNT(*) " +
+            "FROM prospections p WHERE %s p.date_creation >= ? GROUP BY CAST(p.date_creation AS DATE), p.statut, p.type_prospection";
+
+    @Param({"siege", "region", "branche"})
+    public String niveau;
+
+    private ConfigurableApplicationContext contexte;
+    private JdbcTemplate jdbc;
+    private TableauBordService tableauBordService;
+    private Utilisateur responsable;
+    private String sql;
+    private Object[] parametres;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        contexte = ContexteBenchmark.demarrer();
+        jdbc = contexte.getBean(JdbcTemplate.class);
+        tableauBordService = contexte.getBean(TableauBordService.class);
+
+        int lignes = Integer.getInteger("bench.lignes", 200_000);
+        Long existantes = jdbc.queryForObject("SELECT COUNT(*) FROM prospections", Long.class);
+        if (existantes == null || existantes < lignes) {
+            List<Utilisateur> agents = ContexteBenchmark.creerHierarchie(contexte, 5, 5);
+            ContexteBenchmark.genererProspections(contexte, agents, (int) (lignes - (existantes != null ? existantes : 0)));
+        }
+
+        Utilisateur siege = new Utilisateur();
+        siege.setId(-1L);
+        siege.setRole(Role.SIEGE);
+        long debut = System.nanoTime();
+        int cellules = tableauBordService.reconstruire(siege);
+        System.out.println("Cube reconstruit en " + (System.nanoTime() - debut) / 1_000_000 + " ms, " + cellules + " cellules");
+
+        Map<String, Object> exemple = jdbc.queryForMap(
+                "SELECT branche_id, region_id FROM prospections WHERE branche_id IS NOT NULL ORDER BY id LIMIT 1");
+        Date depuis = Date.valueOf(LocalDate.now().minusDays(29));
+        responsable = new Utilisateur();
+        responsable.setId(-1L);
+        switch (niveau) {
+            case "region":
+                Region region = new Region();
+                region.setId(((Number) exemple.get("region_id")).longValue());
+                responsable.setRole(Role.CHEF_ANIMATION_REGIONAL);
+                responsable.setRegion(region);
+                sql = String.format(SQL_AGREGATION, "p.region_id = ? AND");
+                parametres = new Object[]{region.getId(), depuis};
+                break;
+            case "branche":
+                Branche branche = new Branche();
+                branche.setId(((Number) exemple.get("branche_id")).longValue());
+                responsable.setRole(Role.CHEF_BRANCHE);
+                responsable.setBranche(branche);
+                sql = String.format(SQL_AGREGATION, "p.branche_id = ? AND");
+                parametres = new Object[]{branche.getId(), depuis};
+                break;
+            default:
+                responsable.setRole(Role.SIEGE);
+                sql = String.format(SQL_AGREGATION, "");
+                parametres = new Object[]{depuis};
+                break;
+        }
+        if (System.getProperty("bench.jdbc.url", "").startsWith("jdbc:postgresql")) {
+            jdbc.execute("ANALYZE prospections");
+            jdbc.execute("ANALYZE cumuls_prospections");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void arreter() {
+        contexte.close();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> agregation() {
+        return jdbc.queryForList(sql, parametres);
+    }
+
+    @Benchmark
+    public Map<String, Object> cube() {
+        return tableauBordService.getTableauBord(responsable, Perimetre.Niveau.valueOf(
+                "siege".equals(niveau) ? "TOUT" : niveau.toUpperCase()), null, null);
+    }
+}
@@ -0,0 +1,124 @@
+package com.prospection.prospectionbackend.benchmarks;
+
+import com.prospection.prospectionbackend.entities.Question;
+import com.prospection.prospectionbackend.entities.QuestionOption;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.validation.ValidateurReponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation d'une soumission réaliste de 40 questions :
+ * ancienne logique (String.matches, parcours des options, split) contre
+ * validateurs compilés.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationReponsesBenchmark {
+
+    private List<Question> questions;
+    private Map<Long, String> soumission;
+    private Map<Long, ValidateurReponse> validateurs;
+
+    @Setup
+    public void preparer() {
+        questions = new ArrayList<>();
+        soumission = new LinkedHashMap<>();
+        long id = 1;
+
+        for (int i = 0; i < 10; i++, id++) {
+            questions.add(question(id, QuestionType.TEXT));
+            soumission.put(id, "Réponse libre numéro " + i);
+        }
+        for (int i = 0; i < 8; i++, id++) {
+            questions.add(question(id, QuestionType.NUMBER));
+            soumission.put(id, String.valueOf(1200 + i * 37));
+        }
+        for (int i = 0; i < 6; i++, id++) {
+            questions.add(question(id, QuestionType.PHONE));
+            soumission.put(id, "06" + (12345670 + i));
+        }
+        for (int i = 0; i < 10; i++, id++) {
+            Question question = question(id, QuestionType.CHOICE, "Commerçant", "Salarié", "Artisan",
+                    "Agriculteur", "Étudiant", "Sans emploi", "Retraité");
+            questions.add(question);
+            soumission.put(id, question.getOptions().get(i % 7).getValeur());
+        }
+        for (int i = 0; i < 6; i++, id++) {
+            questions.add(question(id, QuestionType.MULTIPLE_CHOICE, "Crédit", "Épargne", "Assurance",
+                    "Transfert", "Micro-crédit", "Compte courant"));
+            soumission.put(id, "Crédit, Assurance,Micro-crédit");
+        }
+
+        validateurs = new HashMap<>();
+        for (Question question : questions) {
+            validateurs.put(question.getId(), ValidateurReponse.pour(question));
+        }
+    }
+
+    @Benchmark
+    public boolean avant() {
+        boolean valide = true;
+        for (Question question : questions) {
+            valide &= validerReponseSelonTypeAvant(question, soumission.get(question.getId()));
+        }
+        return valide;
+    }
+
+    @Benchmark
+    public boolean apres() {
+        boolean valide = true;
+        for (Question question : questions) {
+            valide &= validateurs.get(question.getId()).valider(soumission.get(question.getId()));
+        }
+        return valide;
+    }
+
+    /**
+     * Copie de l'ancienne ProspectionService.validerReponseSelonType
+     */
+    private static boolean validerReponseSelonTypeAvant(Question question, String valeur) {
+        switch (question.getType()) {
+            case PHONE:
+                return valeur.matches("^(06|07)\\d{8}$");
+            case NUMBER:
+                try {
+                    Integer.parseInt(valeur);
+                    return true;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            case CHOICE:
+                return question.getOptions().stream()
+                        .anyMatch(option -> option.getValeur().equals(valeur));
+            case MULTIPLE_CHOICE:
+                String[] selections = valeur.split(",");
+                for (String selection : selections) {
+                    boolean found = question.getOptions().stream()
+                            .anyMatch(option -> option.getValeur().equals(selection.trim()));
+                    if (!found) return false;
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private static Question question(long id, QuestionType type, String... options) {
+        Question question = new Question();
+        question.setId(id);
+        question.setQuestion("Question " + id);
+        question.setType(type);
+        question.setObligatoire(true);
+        for (int i = 0; i < options.length; i++) {
+            question.addOption(new QuestionOption(options[i], i + 1));
+        }
+        return question;
+    }
+}
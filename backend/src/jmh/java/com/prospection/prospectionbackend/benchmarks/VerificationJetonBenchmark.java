@@ -0,0 +1,83 @@
+package com.prospection.prospectionbackend.benchmarks;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.prospection.prospectionbackend.entities.Branche;
+import com.prospection.prospectionbackend.entities.Region;
+import com.prospection.prospectionbackend.entities.Supervision;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.utils.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jetons vérifiés par seconde, tel que le filtre JWT les traite :
+ * ancien chemin (Algorithm et JWTVerifier reconstruits, jeton vérifié deux fois)
+ * contre vérifieur partagé et vérification unique.
+ *
+ * Débit par cœur : mvn -Pbenchmarks test-compile exec:exec -Djmh.args="VerificationJeton -t 1"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VerificationJetonBenchmark {
+
+    private static final String SECRET = "mySecretKey123456789012345678901234567890";
+
+    private JwtUtil jwtUtil;
+    private String jeton;
+
+    @Setup
+    public void preparer() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "jwtRefreshExpiration", 3_600_000L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "initialiser");
+
+        Region region = new Region();
+        region.setId(1L);
+        Supervision supervision = new Supervision();
+        supervision.setId(2L);
+        Branche branche = new Branche();
+        branche.setId(3L);
+
+        Utilisateur agent = new Utilisateur();
+        agent.setId(42L);
+        agent.setEmail("agent@bench.ma");
+        agent.setNom("Alami");
+        agent.setPrenom("Sara");
+        agent.setRole(Role.AGENT);
+        agent.setRegion(region);
+        agent.setSupervision(supervision);
+        agent.setBranche(branche);
+        jeton = jwtUtil.generateToken(agent);
+    }
+
+    @Benchmark
+    public DecodedJWT avant() {
+        verifierCommeAvant(jeton);
+        return verifierCommeAvant(jeton);
+    }
+
+    @Benchmark
+    public DecodedJWT apres() {
+        return jwtUtil.validateToken(jeton);
+    }
+
+    private static DecodedJWT verifierCommeAvant(String jeton) {
+        Algorithm algorithm = Algorithm.HMAC256(SECRET);
+        JWTVerifier verifier = JWT.require(algorithm)
+                .withIssuer("prospection-app")
+                .build();
+        return verifier.verify(jeton);
+    }
+}
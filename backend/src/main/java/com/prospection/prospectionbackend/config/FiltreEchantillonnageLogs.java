@@ -0,0 +1,48 @@
+package com.prospection.prospectionbackend.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ne laisse passer qu'un évènement sur {@code taux} pour une catégorie de loggers,
+ * jusqu'au niveau {@code niveauMax} inclus. Les niveaux supérieurs ne sont jamais échantillonnés.
+ * Déclaré dans logback-spring.xml, une instance par catégorie.
+ */
+public class FiltreEchantillonnageLogs extends TurboFilter {
+
+    private String categorie = "";
+    private int taux = 1;
+    private Level niveauMax = Level.INFO;
+
+    private final AtomicLong compteur = new AtomicLong();
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (taux <= 1 || level == null || level.toInt() > niveauMax.toInt()
+                || !logger.getName().startsWith(categorie)) {
+            return FilterReply.NEUTRAL;
+        }
+        // Les appels isDebugEnabled() (format null) et les niveaux désactivés ne consomment pas le compteur
+        if (format == null || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        return compteur.getAndIncrement() % taux == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setCategorie(String categorie) {
+        this.categorie = categorie;
+    }
+
+    public void setTaux(int taux) {
+        this.taux = taux;
+    }
+
+    public void setNiveauMax(String niveauMax) {
+        this.niveauMax = Level.toLevel(niveauMax, Level.INFO);
+    }
+}
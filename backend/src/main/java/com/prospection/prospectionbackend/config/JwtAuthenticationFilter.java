@@ -1,15 +1,19 @@
 package com.prospection.prospectionbackend.config;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.prospection.prospectionbackend.dto.UtilisateurAuthentifie;
 import com.prospection.prospectionbackend.entities.Utilisateur;
 import com.prospection.prospectionbackend.repositories.UtilisateurRepository;
-import com.prospection.prospectionbackend.services.AuthService;
 import com.prospection.prospectionbackend.services.TokenBlacklistService;
+import com.prospection.prospectionbackend.services.VersionSecuriteService;
 import com.prospection.prospectionbackend.utils.JwtUtil;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -20,6 +24,7 @@ import java.io.IOException;
 import java.util.Optional;
 
 
+@Slf4j
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
@@ -32,6 +37,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     @Autowired
     private TokenBlacklistService tokenBlacklistService;
+
+    @Autowired
+    private VersionSecuriteService versionSecuriteService;
+
+    @Value("${jwt.stateless-principal:true}")
+    private boolean principalSansBase;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -40,90 +52,76 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
 
         if (shouldNotFilter(request)) {
-            System.out.println("Endpoint public - pas de vérification JWT");
             filterChain.doFilter(request, response);
             return;
         }
 
         String authorizationHeader = request.getHeader("Authorization");
-        System.out.println("Authorization header: " + (authorizationHeader != null ? "Présent" : "Absent"));
 
         String username = null;
         String jwtToken = null;
+        DecodedJWT jwt = null;
 
         // Extraction du token JWT
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwtToken = authorizationHeader.substring(7);
-            if (tokenBlacklistService.isTokenBlacklisted(jwtToken)) {
-                System.out.println("Token blacklisté - accès refusé");
+
+            try {
+                // Unique vérification du jeton pour toute la requête
+                jwt = jwtUtil.validateToken(jwtToken);
+            } catch (Exception e) {
+                log.debug("Token JWT invalide: {}", e.getMessage());
+            }
+
+            if (jwt != null && tokenBlacklistService.isTokenBlacklisted(jwt)) {
+                log.debug("Token blacklisté - accès refusé");
                 filterChain.doFilter(request, response);
                 return;
             }
-            System.out.println("Token extrait: " + jwtToken.substring(0, Math.min(20, jwtToken.length())) + "...");
 
-            try {
-                username = jwtUtil.getUsernameFromToken(jwtToken);
-                System.out.println(" Username extrait du token: " + username);
-            } catch (Exception e) {
-                System.out.println("Token JWT invalide: " + e.getMessage());
+            if (jwt != null) {
+                username = jwt.getSubject();
             }
         } else {
-            System.out.println("Pas de token Bearer dans le header");
+            log.trace("Pas de token Bearer dans le header");
         }
 
 
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             try {
-
-                Optional<Utilisateur> utilisateurOpt = utilisateurRepository.findByEmailWithRelations(username);
-
-
-
-                if (utilisateurOpt.isPresent()) {
-                    Utilisateur utilisateur = utilisateurOpt.get();
-
-                    // Validation du token
-                    jwtUtil.validateToken(jwtToken);
-                    System.out.println("Token validé pour: " + username);
-
-
-                    try {
-                        if (utilisateur.getRegion() != null) {
-                            utilisateur.getRegion().getNom();
-                        }
-                        if (utilisateur.getSupervision() != null) {
-                            utilisateur.getSupervision().getNom();
-                        }
-                        if (utilisateur.getBranche() != null) {
-                            utilisateur.getBranche().getNom();
-                        }
-                    } catch (Exception e) {
-                        System.out.println("Avertissement: Impossible de charger les relations de l'utilisateur: " + e.getMessage());
-
+                UtilisateurAuthentifie depuisJeton = jwtUtil.getPrincipalFromToken(jwt);
+                if (depuisJeton != null && !versionSecuriteService.estAJour(depuisJeton.getId(), depuisJeton.getVersionSecurite())) {
+                    if (!estRafraichissement(request)) {
+                        log.debug("Jeton antérieur à la version de sécurité de l'utilisateur {}", depuisJeton.getId());
+                        response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Jeton périmé : veuillez vous reconnecter");
+                        return;
                     }
+                    // Le rafraîchissement relit l'utilisateur actif et émet un jeton à la version courante
+                    depuisJeton = null;
+                }
 
+                UtilisateurAuthentifie principal = construirePrincipal(depuisJeton, username);
 
+                if (principal != null) {
                     UsernamePasswordAuthenticationToken authToken =
                             new UsernamePasswordAuthenticationToken(
-                                    utilisateur,
+                                    principal,
                                     null,
-                                    utilisateur.getAuthorities()
+                                    principal.getAuthorities()
                             );
 
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
 
                     SecurityContextHolder.getContext().setAuthentication(authToken);
-                    System.out.println("Authentification définie avec utilisateur: " + utilisateur.getEmail());
-                    System.out.println("Principal type: " + authToken.getPrincipal().getClass().getName());
+                    log.trace("Authentification définie pour l'utilisateur {}", principal.getId());
 
                 } else {
-                    System.out.println("Utilisateur non trouvé: " + username);
+                    log.debug("Utilisateur non trouvé: {}", username);
                 }
 
             } catch (Exception e) {
-                System.out.println("Erreur lors de l'authentification JWT: " + e.getMessage());
-                e.printStackTrace();
+                log.warn("Erreur lors de l'authentification JWT", e);
 
             }
         }
@@ -132,6 +130,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     }
 
 
+    /**
+     * Principal construit depuis les claims d'un jeton à jour, sans accès à la base ; sinon
+     * (ancien format sans version, mode désactivé, rafraîchissement) l'utilisateur est relu en base.
+     */
+    private UtilisateurAuthentifie construirePrincipal(UtilisateurAuthentifie depuisJeton, String username) {
+        if (principalSansBase && depuisJeton != null) {
+            return depuisJeton;
+        }
+
+        Optional<Utilisateur> utilisateurOpt = utilisateurRepository.findByEmailWithRelations(username);
+        return utilisateurOpt.map(UtilisateurAuthentifie::depuisUtilisateur).orElse(null);
+    }
+
+    private boolean estRafraichissement(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return path.equals("/api/auth/refresh") || path.equals("/auth/refresh");
+    }
+
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         String path = request.getRequestURI();
@@ -150,10 +167,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 path.equals("/error") ||
                 "OPTIONS".equals(method);
 
-        if (shouldNotFilter) {
-            System.out.println("Exclusion du filtre JWT pour: " + path);
-        }
-
         return shouldNotFilter;
     }
 }
\ No newline at end of file
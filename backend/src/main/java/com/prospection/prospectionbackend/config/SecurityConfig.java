@@ -104,6 +104,7 @@ public class SecurityConfig {
 
 
                         .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/loggers/**").hasRole("SIEGE")
                         .requestMatchers("/error").permitAll()
 
 
@@ -36,8 +36,6 @@ public class AuthController {
             // Extraction des données
             String token = (String) authResult.get("accessToken");
             String refreshToken = (String) authResult.get("refreshToken");
-            System.out.println("AuthResult keys: " + authResult.keySet());
-            System.out.println("Token récupéré: " + token);
             Map<String, Object> utilisateur = (Map<String, Object>) authResult.get("utilisateur");
             Long expiresIn = (Long) authResult.get("expiresIn");
 
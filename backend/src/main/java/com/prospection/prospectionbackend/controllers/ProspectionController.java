@@ -1,25 +1,46 @@
 package com.prospection.prospectionbackend.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.prospection.prospectionbackend.dto.FiltreProspections;
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+import com.prospection.prospectionbackend.dto.RequeteFacettes;
+import com.prospection.prospectionbackend.dto.UtilisateurAuthentifie;
 import com.prospection.prospectionbackend.entities.Prospection;
 import com.prospection.prospectionbackend.entities.Question;
-import com.prospection.prospectionbackend.entities.Reponse;
 import com.prospection.prospectionbackend.entities.Utilisateur;
 import com.prospection.prospectionbackend.enums.TypeProspection;
 import com.prospection.prospectionbackend.repositories.UtilisateurRepository;
+import com.prospection.prospectionbackend.services.CompletudeService;
+import com.prospection.prospectionbackend.services.ExportProspectionsService;
+import com.prospection.prospectionbackend.services.FacettesService;
 import com.prospection.prospectionbackend.services.ProspectionService;
-import jakarta.transaction.Transactional;
+import com.prospection.prospectionbackend.services.TableauBordService;
 import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
+@Slf4j
 @RestController
-@Transactional
 @RequestMapping("/prospections")
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:5174", "http://localhost:3000"})
 public class ProspectionController {
@@ -27,9 +48,26 @@ public class ProspectionController {
     @Autowired
     private ProspectionService prospectionService;
 
+    @Autowired
+    private FacettesService facettesService;
+
+    @Autowired
+    private TableauBordService tableauBordService;
+
+    @Autowired
+    private CompletudeService completudeService;
+
+    @Autowired
+    private ExportProspectionsService exportProspectionsService;
+
     @Autowired
     private UtilisateurRepository utilisateurRepository;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final int TAILLE_LOT_FLUX = 500;
+
     @GetMapping("/formulaire")
     public ResponseEntity<Map<String, Object>> getFormulaireVide() {
         try {
@@ -54,16 +92,8 @@ public class ProspectionController {
     @PostMapping
     public ResponseEntity<Map<String, Object>> creerProspection(@Valid @RequestBody CreerProspectionRequest request) {
         try {
-            System.out.println("=== DÉBUT DEBUG CRÉATION PROSPECTION ===");
-            System.out.println("Type prospection: " + request.getTypeProspection());
-            System.out.println("Reponses reçues: " + request.getReponses());
-            System.out.println("Taille des réponses: " + (request.getReponses() != null ? request.getReponses().size() : "null"));
-
-            if (request.getReponses() != null) {
-                for (Map.Entry<Long, String> entry : request.getReponses().entrySet()) {
-                    System.out.println("Question ID: " + entry.getKey() + " (Type: " + entry.getKey().getClass().getSimpleName() + "), Valeur: " + entry.getValue());
-                }
-            }
+            log.debug("Création prospection: type={}, {} réponses", request.getTypeProspection(),
+                    request.getReponses() != null ? request.getReponses().size() : 0);
             Utilisateur utilisateur = getUtilisateurAuthentifie();
 
 
@@ -97,89 +127,406 @@ public class ProspectionController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Prospection créée avec succès");
-            response.put("prospection", mapProspectionToResponse(prospection));
+            response.put("prospection", ProspectionResume.depuis(prospection));
             response.put("id", prospection.getId());
 
             return ResponseEntity.ok(response);
 
         } catch (IllegalArgumentException e) {
-            System.out.println("ERREUR dans creerProspection: " + e.getMessage());
-            e.printStackTrace();
+            log.debug("Prospection refusée: {}", e.getMessage());
             return ResponseEntity.badRequest()
                     .body(Map.of("success", false, "message", e.getMessage()));
         } catch (Exception e) {
-            System.out.println("ERREUR dans creerProspection: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Erreur dans creerProspection", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("success", false, "message", "Erreur lors de la création: " + e.getMessage()));
         }
     }
 
 
+    /**
+     * Une page des prospections de l'agent, les plus récentes d'abord.
+     * {@code total} est le nombre de prospections de la page (et non plus de l'agent) :
+     * le décompte complet est servi par {@code /prospections/statistiques}.
+     * {@code nextCursor} est à renvoyer en {@code cursor} pour la page suivante, null en fin de liste.
+     */
     @GetMapping("/mes-prospections")
-    public ResponseEntity<Map<String, Object>> getMesProspections() {
-        System.out.println("=== DÉBUT getMesProspections ===");
+    public ResponseEntity<Map<String, Object>> getMesProspections(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+
+            ProspectionService.PageProspections page = prospectionService.getProspectionsAgent(utilisateur, cursor, size);
+            List<ProspectionResume> prospections = page.getProspections();
+            log.debug("{} prospections pour l'agent {}", prospections.size(), utilisateur.getId());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("prospections", prospections);
+            response.put("total", prospections.size());
+            response.put("nextCursor", page.getNextCursor());
 
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur dans getMesProspections", e);
+
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
+
+
+    /**
+     * Recherche multicritère paginée par curseur ; les critères absents ne filtrent pas
+     * et le périmètre du rôle est toujours appliqué
+     */
+    @GetMapping("/recherche")
+    public ResponseEntity<Map<String, Object>> rechercherProspections(
+            @ModelAttribute FiltreProspections filtre,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
         try {
-            System.out.println("Étape 1: Vérification de l'authentification...");
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+            ProspectionService.PageProspections page =
+                    prospectionService.rechercherProspections(utilisateur, filtre, cursor, size);
 
-            // Debug authentification
-            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            System.out.println("Authentication object: " + auth);
-            System.out.println("Is authenticated: " + (auth != null ? auth.isAuthenticated() : "auth is null"));
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("prospections", page.getProspections());
+            response.put("total", page.getProspections().size());
+            response.put("nextCursor", page.getNextCursor());
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur dans rechercherProspections", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
 
-            if (auth != null) {
-                System.out.println("Principal type: " + auth.getPrincipal().getClass().getName());
-                System.out.println("Principal value: " + auth.getPrincipal());
-            }
 
-            System.out.println("Étape 2: Récupération utilisateur...");
+    /**
+     * Recherche plein texte dans les commentaires et les réponses, triée par pertinence
+     * et restreinte au périmètre du rôle
+     */
+    @GetMapping("/recherche-texte")
+    public ResponseEntity<Map<String, Object>> rechercherTexte(
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
             Utilisateur utilisateur = getUtilisateurAuthentifie();
-            System.out.println("Utilisateur récupéré: " + utilisateur.getEmail() + " (ID: " + utilisateur.getId() + ")");
-            System.out.println("Rôle utilisateur: " + utilisateur.getRole());
-
-            System.out.println("Étape 3: Appel service getProspectionsAgent...");
-            List<Prospection> prospections = prospectionService.getProspectionsAgent(utilisateur);
-            System.out.println("Nombre de prospections récupérées: " + prospections.size());
-
-            System.out.println("Étape 4: Mapping des prospections...");
-            List<Map<String, Object>> prospectionsMapped = new ArrayList<>();
-
-            for (int i = 0; i < prospections.size(); i++) {
-                try {
-                    Prospection p = prospections.get(i);
-                    System.out.println("Mapping prospection " + (i+1) + "/" + prospections.size() + " - ID: " + p.getId());
-                    Map<String, Object> mapped = mapProspectionToResponse(p);
-                    prospectionsMapped.add(mapped);
-                } catch (Exception e) {
-                    System.out.println("ERREUR lors du mapping de la prospection " + (i+1) + ": " + e.getMessage());
-                    e.printStackTrace();
-                    throw e; // Re-lancer l'exception pour arrêter le processus
-                }
-            }
+            ProspectionService.PageProspections page =
+                    prospectionService.rechercherTexte(utilisateur, q, cursor, size);
 
-            System.out.println("Étape 5: Création de la réponse...");
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("prospections", prospectionsMapped);
-            response.put("total", prospections.size());
+            response.put("prospections", page.getProspections());
+            response.put("total", page.getProspections().size());
+            response.put("nextCursor", page.getNextCursor());
 
-            System.out.println("=== getMesProspections TERMINÉ AVEC SUCCÈS ===");
             return ResponseEntity.ok(response);
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
         } catch (Exception e) {
-            System.out.println("=== ERREUR DANS getMesProspections ===");
-            System.out.println("Type d'erreur: " + e.getClass().getName());
-            System.out.println("Message: " + e.getMessage());
-            System.out.println("Stack trace:");
-            e.printStackTrace();
+            log.error("Erreur dans rechercherTexte", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
+
 
+    /**
+     * Requête à facettes : combinaison ET / OU de réponses aux questions à choix et de statuts,
+     * restreinte au périmètre du rôle, avec les comptes par option des questions demandées
+     */
+    @PostMapping("/facettes")
+    public ResponseEntity<Map<String, Object>> rechercherFacettes(@RequestBody RequeteFacettes requete) {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+            FacettesService.ResultatFacettes resultat = facettesService.rechercher(utilisateur, requete);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("total", resultat.getTotal());
+            response.put("prospections", resultat.getProspections());
+            response.put("nextCursor", resultat.getNextCursor());
+            response.put("facettes", resultat.getFacettes());
+            response.put("statuts", resultat.getStatuts());
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur dans rechercherFacettes", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
         }
     }
 
 
+    /**
+     * Prospections de la branche du chef de branche ; filtrables par agent, statut, type et période
+     */
+    @GetMapping("/branche")
+    public ResponseEntity<Map<String, Object>> getProspectionsBranche(
+            @ModelAttribute FiltreProspections filtre,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return listerStructure(Perimetre.Niveau.BRANCHE, filtre, cursor, size);
+    }
+
+    /**
+     * Prospections de la supervision du superviseur ; filtrables en plus par branche
+     */
+    @GetMapping("/supervision")
+    public ResponseEntity<Map<String, Object>> getProspectionsSupervision(
+            @ModelAttribute FiltreProspections filtre,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return listerStructure(Perimetre.Niveau.SUPERVISION, filtre, cursor, size);
+    }
+
+    /**
+     * Prospections de la région du chef d'animation régional ; filtrables en plus par supervision et branche
+     */
+    @GetMapping("/region")
+    public ResponseEntity<Map<String, Object>> getProspectionsRegion(
+            @ModelAttribute FiltreProspections filtre,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return listerStructure(Perimetre.Niveau.REGION, filtre, cursor, size);
+    }
+
+    private ResponseEntity<Map<String, Object>> listerStructure(Perimetre.Niveau niveau, FiltreProspections filtre,
+                                                                String cursor, int size) {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+            ProspectionService.PageProspections page =
+                    prospectionService.getProspectionsStructure(utilisateur, niveau, filtre, cursor, size);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("prospections", page.getProspections());
+            response.put("total", page.getProspections().size());
+            response.put("nextCursor", page.getNextCursor());
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur dans la liste des prospections ({})", niveau, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
+
+
+    /**
+     * Tableau de bord du siège : comptes par jour, statut et type, ventilés par région.
+     * Dates au format ISO (yyyy-MM-dd) ; par défaut les 30 derniers jours.
+     */
+    @GetMapping("/tableau-bord/siege")
+    public ResponseEntity<Map<String, Object>> getTableauBordSiege(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au) {
+        return tableauBord(Perimetre.Niveau.TOUT, du, au);
+    }
+
+    /**
+     * Tableau de bord de la région du chef d'animation régional, ventilé par supervision
+     */
+    @GetMapping("/tableau-bord/region")
+    public ResponseEntity<Map<String, Object>> getTableauBordRegion(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au) {
+        return tableauBord(Perimetre.Niveau.REGION, du, au);
+    }
+
+    /**
+     * Tableau de bord de la supervision du superviseur, ventilé par branche
+     */
+    @GetMapping("/tableau-bord/supervision")
+    public ResponseEntity<Map<String, Object>> getTableauBordSupervision(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au) {
+        return tableauBord(Perimetre.Niveau.SUPERVISION, du, au);
+    }
+
+    /**
+     * Tableau de bord de la branche du chef de branche
+     */
+    @GetMapping("/tableau-bord/branche")
+    public ResponseEntity<Map<String, Object>> getTableauBordBranche(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au) {
+        return tableauBord(Perimetre.Niveau.BRANCHE, du, au);
+    }
+
+    private ResponseEntity<Map<String, Object>> tableauBord(Perimetre.Niveau niveau, LocalDate du, LocalDate au) {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("tableauBord", tableauBordService.getTableauBord(utilisateur, niveau, du, au));
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur dans le tableau de bord ({})", niveau, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Recompte le cube des tableaux de bord depuis les prospections (siège)
+     */
+    @PostMapping("/tableau-bord/reconstruire")
+    public ResponseEntity<Map<String, Object>> reconstruireTableauBord() {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+            int cellules = tableauBordService.reconstruire(utilisateur);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Tableaux de bord recalculés");
+            response.put("cellules", cellules);
+
+            return ResponseEntity.ok(response);
+
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur dans reconstruireTableauBord", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
+
+
+    /**
+     * Reconstruit les questions répondues et la complétude depuis les réponses (siège)
+     */
+    @PostMapping("/completude/reconstruire")
+    public ResponseEntity<Map<String, Object>> reconstruireCompletude() {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+            int modifiees = completudeService.reconstruire(utilisateur);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Complétude recalculée");
+            response.put("prospectionsModifiees", modifiees);
+
+            return ResponseEntity.ok(response);
+
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erreur dans reconstruireCompletude", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
+
+
+    /**
+     * Toutes les prospections visibles selon le rôle, écrites en tableau JSON au fil de la lecture :
+     * la mémoire reste constante quelle que soit la taille du résultat.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamerProspections() {
+        Utilisateur utilisateur = getUtilisateurAuthentifie();
+
+        StreamingResponseBody corps = sortie -> {
+            try (JsonGenerator generateur = objectMapper.getFactory().createGenerator(sortie)) {
+                generateur.writeStartArray();
+                generateur.flush();
+
+                long[] ecrites = {0};
+                prospectionService.parcourirProspections(utilisateur, prospection -> {
+                    try {
+                        generateur.writeObject(prospection);
+                        // Premier élément envoyé tout de suite, puis par lots
+                        if (++ecrites[0] % TAILLE_LOT_FLUX == 1) {
+                            generateur.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                generateur.writeEndArray();
+                log.debug("{} prospections envoyées en flux à l'utilisateur {}", ecrites[0], utilisateur.getId());
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(corps);
+    }
+
+
+    /**
+     * Export CSV des prospections visibles selon le rôle, une colonne par question active,
+     * compressé en gzip au fil de l'écriture (Content-Encoding : le navigateur enregistre le CSV).
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exporterProspections() {
+        Utilisateur utilisateur = getUtilisateurAuthentifie();
+
+        StreamingResponseBody corps = sortie -> {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(sortie, 64 * 1024)) {
+                exportProspectionsService.exporterCsv(utilisateur, gzip);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("prospections-" + LocalDate.now() + ".csv").build().toString())
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(corps);
+    }
+
+
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, Object>> getProspection(@PathVariable Long id) {
         try {
@@ -189,10 +536,8 @@ public class ProspectionController {
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("prospection", mapProspectionToResponse(prospectionData.getProspection()));
-            response.put("reponses", prospectionData.getReponses().stream()
-                    .map(this::mapReponseToResponse)
-                    .toList());
+            response.put("prospection", prospectionData.getProspection());
+            response.put("reponses", prospectionData.getReponses());
             response.put("reponsesMap", prospectionData.getReponsesMap());
 
             return ResponseEntity.ok(response);
@@ -209,31 +554,19 @@ public class ProspectionController {
 
     @GetMapping("/statistiques")
     public ResponseEntity<Map<String, Object>> getStatistiques() {
-        System.out.println("=== DÉBUT getStatistiques ===");
-
         try {
-            System.out.println("Étape 1: Récupération utilisateur...");
             Utilisateur utilisateur = getUtilisateurAuthentifie();
-            System.out.println("Utilisateur: " + utilisateur.getEmail() + " (ID: " + utilisateur.getId() + ")");
-
-            System.out.println("Étape 2: Appel service getStatistiquesAgent...");
             Map<String, Object> statistiques = prospectionService.getStatistiquesAgent(utilisateur.getId());
-            System.out.println("Statistiques récupérées: " + statistiques);
+            log.debug("Statistiques de l'agent {}: {}", utilisateur.getId(), statistiques);
 
-            System.out.println("Étape 3: Création réponse...");
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("statistiques", statistiques);
 
-            System.out.println("=== getStatistiques TERMINÉ AVEC SUCCÈS ===");
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
-            System.out.println("=== ERREUR DANS getStatistiques ===");
-            System.out.println("Type d'erreur: " + e.getClass().getName());
-            System.out.println("Message: " + e.getMessage());
-            System.out.println("Stack trace:");
-            e.printStackTrace();
+            log.error("Erreur dans getStatistiques", e);
 
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
@@ -264,37 +597,31 @@ public class ProspectionController {
     private Utilisateur getUtilisateurAuthentifie() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
-        System.out.println("=== DEBUG AUTHENTIFICATION ===");
-        System.out.println("Authentication: " + authentication);
-
-        if (authentication != null) {
-            System.out.println("Authentication class: " + authentication.getClass().getName());
-            System.out.println("Principal: " + authentication.getPrincipal());
-            System.out.println("Principal class: " + authentication.getPrincipal().getClass().getName());
-        }
-
         if (authentication == null || !authentication.isAuthenticated()) {
-            System.out.println("Pas d'authentification valide");
+            log.debug("Pas d'authentification valide");
             throw new RuntimeException("Aucune authentification trouvée dans le contexte");
 
         }
 
         Object principal = authentication.getPrincipal();
 
+        // CAS 0: Principal construit par le filtre JWT
+        if (principal instanceof UtilisateurAuthentifie) {
+            return ((UtilisateurAuthentifie) principal).versUtilisateur();
+        }
+
         // CAS 1: Principal est déjà un objet Utilisateur
         if (principal instanceof Utilisateur) {
-            System.out.println("✅ Principal est un Utilisateur: " + ((Utilisateur) principal).getEmail());
             return (Utilisateur) principal;
         }
 
         // CAS 2: Principal est une String (email) - fallback
         if (principal instanceof String) {
             String email = (String) principal;
-            System.out.println("⚠️ Principal est une String: " + email);
+            log.debug("Principal est une String: {}", email);
 
             Optional<Utilisateur> utilisateurOpt = utilisateurRepository.findByEmailAndActifTrue(email);
             if (utilisateurOpt.isPresent()) {
-                System.out.println("✅ Utilisateur trouvé par email: " + email);
                 return utilisateurOpt.get();
             } else {
                 throw new RuntimeException("Utilisateur non trouvé pour l'email: " + email);
@@ -304,11 +631,10 @@ public class ProspectionController {
         // CAS 3: Principal est UserDetails
         if (principal instanceof org.springframework.security.core.userdetails.UserDetails) {
             String email = ((org.springframework.security.core.userdetails.UserDetails) principal).getUsername();
-            System.out.println("⚠️ Principal est UserDetails: " + email);
+            log.debug("Principal est UserDetails: {}", email);
 
             Optional<Utilisateur> utilisateurOpt = utilisateurRepository.findByEmailAndActifTrue(email);
             if (utilisateurOpt.isPresent()) {
-                System.out.println("✅ Utilisateur trouvé par UserDetails: " + email);
                 return utilisateurOpt.get();
             } else {
                 throw new RuntimeException("Utilisateur non trouvé pour l'email: " + email);
@@ -320,52 +646,6 @@ public class ProspectionController {
     }
 
 
-    private Map<String, Object> mapProspectionToResponse(Prospection prospection) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("id", prospection.getId());
-        map.put("dateCreation", prospection.getDateCreation());
-        map.put("typeProspection", prospection.getTypeProspection().name());
-        map.put("typeProspectionDisplay", prospection.getTypeProspection().getDisplayName());
-        map.put("statut", prospection.getStatut().name());
-        map.put("statutDisplay", prospection.getStatut().getDisplayName());
-        map.put("statutCssClass", prospection.getStatut().getCssClass());
-
-
-        map.put("nomProspect", null);
-        map.put("prenomProspect", null);
-        map.put("telephoneProspect", null);
-        map.put("emailProspect", null);
-        map.put("commentaire", prospection.getCommentaire());
-
-        // Informations créateur
-        if (prospection.getCreateur() != null) {
-            Map<String, Object> createur = new HashMap<>();
-            createur.put("id", prospection.getCreateur().getId());
-            createur.put("nom", prospection.getCreateur().getNom());
-            createur.put("prenom", prospection.getCreateur().getPrenom());
-            map.put("createur", createur);
-        }
-
-        // Agent assigné
-        if (prospection.getAgentAssigne() != null) {
-            Map<String, Object> agent = new HashMap<>();
-            agent.put("id", prospection.getAgentAssigne().getId());
-            agent.put("nom", prospection.getAgentAssigne().getNom());
-            agent.put("prenom", prospection.getAgentAssigne().getPrenom());
-            map.put("agentAssigne", agent);
-        }
-
-        // Hiérarchie
-        if (prospection.getBranche() != null) {
-            Map<String, Object> brancheMap = new HashMap<>();
-            brancheMap.put("id", prospection.getBranche().getId());
-            brancheMap.put("nom", prospection.getBranche().getNom());
-            map.put("branche", brancheMap);
-        }
-
-        return map;
-    }
-
     private Map<String, Object> mapQuestionToResponse(Question question) {
         Map<String, Object> map = new HashMap<>();
         map.put("id", question.getId());
@@ -393,17 +673,6 @@ public class ProspectionController {
         return map;
     }
 
-    private Map<String, Object> mapReponseToResponse(Reponse reponse) {
-        Map<String, Object> map = new HashMap<>();
-        map.put("id", reponse.getId());
-        map.put("questionId", reponse.getQuestion().getId());
-        map.put("questionTexte", reponse.getQuestion().getQuestion());
-        map.put("valeur", reponse.getValeur());
-        map.put("valeurFormatee", reponse.getValeurFormatee());
-        map.put("dateCreation", reponse.getDateCreation());
-        return map;
-    }
-
     private List<Map<String, Object>> getTypesProspectionDisponibles() {
         List<Map<String, Object>> types = new ArrayList<>();
 
@@ -1,14 +1,18 @@
 package com.prospection.prospectionbackend.controllers;
 
+import com.prospection.prospectionbackend.dto.UtilisateurAuthentifie;
 import com.prospection.prospectionbackend.entities.Question;
 import com.prospection.prospectionbackend.entities.QuestionOption;
 import com.prospection.prospectionbackend.entities.Utilisateur;
 import com.prospection.prospectionbackend.enums.QuestionType;
 import com.prospection.prospectionbackend.services.QuestionService;
+import com.prospection.prospectionbackend.services.RepartitionOptionsService;
+import com.prospection.prospectionbackend.services.StatistiquesNumeriquesService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +30,12 @@ public class QuestionController {
     @Autowired
     private QuestionService questionService;
 
+    @Autowired
+    private RepartitionOptionsService repartitionOptionsService;
+
+    @Autowired
+    private StatistiquesNumeriquesService statistiquesNumeriquesService;
+
 
     @PostMapping
     public ResponseEntity<Map<String, Object>> creerQuestion(@Valid @RequestBody CreerQuestionRequest request) {
@@ -188,6 +198,26 @@ public class QuestionController {
     }
 
 
+    @PutMapping("/{id}/obligatoire")
+    public ResponseEntity<Map<String, Object>> modifierObligatoire(@PathVariable Long id, @RequestParam boolean obligatoire) {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+
+            questionService.modifierObligatoire(id, obligatoire, utilisateur);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", obligatoire ? "Question rendue obligatoire" : "Question rendue facultative");
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getStatistiques() {
         try {
@@ -213,6 +243,108 @@ public class QuestionController {
     }
 
 
+    @GetMapping("/stats/options")
+    public ResponseEntity<Map<String, Object>> getRepartitionOptions() {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+
+            if (!utilisateur.getRole().name().equals("SIEGE")) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("success", false, "message", "Accès réservé au siège"));
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("questions", questionService.getRepartitionOptions());
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+
+    /**
+     * Recompte la répartition des réponses par option depuis les réponses enregistrées
+     */
+    @PostMapping("/stats/options/recompter")
+    public ResponseEntity<Map<String, Object>> recompterRepartitionOptions() {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+            int corriges = repartitionOptionsService.recompter(utilisateur);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Répartition recomptée");
+            response.put("optionsCorrigees", corriges);
+
+            return ResponseEntity.ok(response);
+
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+
+    /**
+     * Nombre, somme, moyenne, min, max et quantiles d'une question numérique sur la structure de l'utilisateur
+     */
+    @GetMapping("/stats/numeriques/{questionId}")
+    public ResponseEntity<Map<String, Object>> getStatistiquesNumeriques(@PathVariable Long questionId) {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("statistiques", statistiquesNumeriquesService.getStatistiques(utilisateur, questionId));
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+
+    /**
+     * Recalcule les statistiques numériques depuis les réponses enregistrées
+     */
+    @PostMapping("/stats/numeriques/recompter")
+    public ResponseEntity<Map<String, Object>> recompterStatistiquesNumeriques() {
+        try {
+            Utilisateur utilisateur = getUtilisateurAuthentifie();
+            int lignes = statistiquesNumeriquesService.recompter(utilisateur);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Statistiques numériques recalculées");
+            response.put("lignes", lignes);
+
+            return ResponseEntity.ok(response);
+
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+
     @GetMapping("/{id}")
     public ResponseEntity<Map<String, Object>> getQuestionById(@PathVariable Long id) {
         try {
@@ -288,10 +420,10 @@ public class QuestionController {
 
     private Utilisateur getUtilisateurAuthentifie() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !(authentication.getPrincipal() instanceof Utilisateur)) {
+        if (authentication == null || !(authentication.getPrincipal() instanceof UtilisateurAuthentifie)) {
             throw new RuntimeException("Utilisateur non authentifié");
         }
-        return (Utilisateur) authentication.getPrincipal();
+        return ((UtilisateurAuthentifie) authentication.getPrincipal()).versUtilisateur();
     }
 
     private Map<String, Object> mapQuestionToResponse(Question question) {
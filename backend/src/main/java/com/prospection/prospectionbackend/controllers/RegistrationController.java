@@ -1,6 +1,7 @@
 package com.prospection.prospectionbackend.controllers;
 
 import com.prospection.prospectionbackend.dto.AuthResponse;
+import com.prospection.prospectionbackend.dto.UtilisateurAuthentifie;
 import com.prospection.prospectionbackend.entities.Utilisateur;
 import com.prospection.prospectionbackend.enums.Role;
 import com.prospection.prospectionbackend.services.UserRegistrationService;
@@ -8,8 +9,14 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/auth")
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
@@ -56,6 +63,65 @@ public class RegistrationController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
         }
     }
+
+    /**
+     * Désactivation d'un compte par le siège ; ses jetons en cours sont refusés dès la requête suivante
+     */
+    @PutMapping("/utilisateurs/{id}/desactiver")
+    public ResponseEntity<Map<String, Object>> desactiverUtilisateur(@PathVariable Long id) {
+        try {
+            userRegistrationService.desactiverUtilisateur(id, getUtilisateurAuthentifie());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Utilisateur désactivé");
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Changement de rôle par le siège ; les jetons émis avec l'ancien rôle sont refusés
+     */
+    @PutMapping("/utilisateurs/{id}/role")
+    public ResponseEntity<Map<String, Object>> changerRole(@PathVariable Long id, @RequestParam Role role) {
+        try {
+            Utilisateur utilisateur = userRegistrationService.changerRole(id, role, getUtilisateurAuthentifie());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Rôle modifié : " + utilisateur.getRole().getDisplayName());
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", "Erreur: " + e.getMessage()));
+        }
+    }
+
+    private Utilisateur getUtilisateurAuthentifie() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UtilisateurAuthentifie)) {
+            throw new RuntimeException("Utilisateur non authentifié");
+        }
+        return ((UtilisateurAuthentifie) authentication.getPrincipal()).versUtilisateur();
+    }
+
     // DTO pour la requête d'enregistrement
     public static class RegistrationRequest {
         private String nom;
@@ -2,12 +2,14 @@ package com.prospection.prospectionbackend.controllers;
 
 import com.prospection.prospectionbackend.entities.Region;
 import com.prospection.prospectionbackend.repositories.*;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.*;
 import java.util.stream.Collectors;
 
+@Slf4j
 @RestController
 @RequestMapping("/structure")
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
@@ -19,14 +21,8 @@ public class StructureController {
 
     @GetMapping("/regions")
     public ResponseEntity<List<Map<String, Object>>> getAllRegions() {
-        System.out.println("=== APPEL GET /regions ===");
-
         List<Region> allRegions = regionRepository.findAll();
-        System.out.println("Nombre de régions trouvées: " + allRegions.size());
-
-        for (Region region : allRegions) {
-            System.out.println("Région: ID=" + region.getId() + ", Nom=" + region.getNom() + ", Code=" + region.getCode());
-        }
+        log.debug("Nombre de régions trouvées: {}", allRegions.size());
 
         List<Map<String, Object>> regions = allRegions.stream()
                 .map(r -> {
@@ -34,12 +30,10 @@ public class StructureController {
                     map.put("id", r.getId());
                     map.put("nom", r.getNom());
                     map.put("code", r.getCode());
-                    System.out.println("Map créée: " + map);
                     return map;
                 })
                 .collect(Collectors.toList());
 
-        System.out.println("Réponse finale: " + regions);
         return ResponseEntity.ok(regions);
     }
 
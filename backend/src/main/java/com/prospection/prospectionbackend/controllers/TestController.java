@@ -1,6 +1,7 @@
 package com.prospection.prospectionbackend.controllers;
 
-import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.dto.UtilisateurAuthentifie;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -12,6 +13,7 @@ import java.util.Map;
 /**
  * Controller de test pour vérifier l'authentification JWT
  */
+@Slf4j
 @RestController
 @RequestMapping("/api/test")
 @CrossOrigin(origins = {"http://localhost:5173", "http://localhost:3000"})
@@ -26,8 +28,8 @@ public class TestController {
 
         Map<String, Object> response = new HashMap<>();
 
-        if (authentication != null && authentication.getPrincipal() instanceof Utilisateur) {
-            Utilisateur utilisateur = (Utilisateur) authentication.getPrincipal();
+        if (authentication != null && authentication.getPrincipal() instanceof UtilisateurAuthentifie) {
+            UtilisateurAuthentifie utilisateur = (UtilisateurAuthentifie) authentication.getPrincipal();
 
             response.put("success", true);
             response.put("message", "Accès autorisé !");
@@ -38,12 +40,12 @@ public class TestController {
                     "role", utilisateur.getRole().getDisplayName()
             ));
 
-            System.out.println("✅ Accès autorisé pour: " + utilisateur.getEmail());
+            log.debug("Accès autorisé pour l'utilisateur {}", utilisateur.getId());
         } else {
             response.put("success", false);
             response.put("message", "Authentification manquante");
 
-            System.out.println("❌ Pas d'authentification trouvée");
+            log.debug("Pas d'authentification trouvée");
         }
 
         return ResponseEntity.ok(response);
@@ -57,7 +59,7 @@ public class TestController {
         Map<String, String> response = new HashMap<>();
         response.put("message", "Endpoint public accessible à tous");
 
-        System.out.println("ℹ️ Accès endpoint public");
+        log.trace("Accès endpoint public");
 
         return ResponseEntity.ok(response);
     }
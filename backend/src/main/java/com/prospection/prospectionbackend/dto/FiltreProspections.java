@@ -0,0 +1,34 @@
+package com.prospection.prospectionbackend.dto;
+
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Critères optionnels de recherche des prospections ; seuls les critères renseignés
+ * deviennent des prédicats SQL.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class FiltreProspections {
+    private Long agentId;
+    private StatutProspection statut;
+    private TypeProspection type;
+    private Long brancheId;
+    private Long supervisionId;
+    private Long regionId;
+    // false : prospections auxquelles manque une réponse obligatoire (index partiel sous Postgres)
+    private Boolean complet;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime dateDebut;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime dateFin;
+}
@@ -0,0 +1,77 @@
+package com.prospection.prospectionbackend.dto;
+
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import org.springframework.security.access.AccessDeniedException;
+
+/**
+ * Prospections qu'un utilisateur a le droit de lire, déduites de son rôle.
+ * Le repository le traduit en prédicat SQL ajouté à chaque lecture : une ligne
+ * hors périmètre n'est jamais chargée.
+ */
+public record Perimetre(Niveau niveau, Long id) {
+
+    public enum Niveau {
+        // Prospections créées par l'agent ou qui lui sont assignées
+        AGENT,
+        BRANCHE,
+        SUPERVISION,
+        REGION,
+        // Siège : aucune restriction
+        TOUT
+    }
+
+    public static Perimetre de(Utilisateur utilisateur) {
+        switch (utilisateur.getRole()) {
+            case AGENT:
+                return new Perimetre(Niveau.AGENT, utilisateur.getId());
+            case CHEF_BRANCHE:
+                exigerStructure(utilisateur.getBranche());
+                return new Perimetre(Niveau.BRANCHE, utilisateur.getBranche().getId());
+            case SUPERVISEUR:
+                exigerStructure(utilisateur.getSupervision());
+                return new Perimetre(Niveau.SUPERVISION, utilisateur.getSupervision().getId());
+            case CHEF_ANIMATION_REGIONAL:
+                exigerStructure(utilisateur.getRegion());
+                return new Perimetre(Niveau.REGION, utilisateur.getRegion().getId());
+            case SIEGE:
+                return new Perimetre(Niveau.TOUT, null);
+            default:
+                throw new AccessDeniedException("Rôle non autorisé");
+        }
+    }
+
+    /**
+     * Refuse un critère explicite du niveau du périmètre qui désigne une autre structure
+     * (un agent qui demande les prospections d'un collègue, par exemple). Les critères
+     * plus fins, comme une branche pour un superviseur, restent libres : le prédicat
+     * du périmètre les borne de toute façon.
+     */
+    public void verifier(FiltreProspections filtre) {
+        Long demande;
+        switch (niveau) {
+            case AGENT:
+                demande = filtre.getAgentId();
+                break;
+            case BRANCHE:
+                demande = filtre.getBrancheId();
+                break;
+            case SUPERVISION:
+                demande = filtre.getSupervisionId();
+                break;
+            case REGION:
+                demande = filtre.getRegionId();
+                break;
+            default:
+                return;
+        }
+        if (demande != null && !demande.equals(id)) {
+            throw new AccessDeniedException("Critère hors de votre périmètre");
+        }
+    }
+
+    private static void exigerStructure(Object structure) {
+        if (structure == null) {
+            throw new AccessDeniedException("Aucune structure rattachée à l'utilisateur");
+        }
+    }
+}
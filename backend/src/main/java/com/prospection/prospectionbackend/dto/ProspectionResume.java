@@ -0,0 +1,119 @@
+package com.prospection.prospectionbackend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vue de lecture d'une prospection, construite directement par les requêtes
+ * (expression constructeur JPQL) sans charger d'entité.
+ */
+public record ProspectionResume(
+        Long id,
+        LocalDateTime dateCreation,
+        TypeProspection typeProspection,
+        StatutProspection statut,
+        String commentaire,
+        Personne createur,
+        Personne agentAssigne,
+        Structure branche,
+        @JsonIgnore Long supervisionId,
+        @JsonIgnore Long regionId
+) {
+
+    /**
+     * Constructeur à plat utilisé par les expressions « SELECT new » des repositories
+     */
+    public ProspectionResume(Long id, LocalDateTime dateCreation, TypeProspection typeProspection,
+                             StatutProspection statut, String commentaire,
+                             Long createurId, String createurNom, String createurPrenom,
+                             Long agentId, String agentNom, String agentPrenom,
+                             Long brancheId, String brancheNom, Long supervisionId, Long regionId) {
+        this(id, dateCreation, typeProspection, statut, commentaire,
+                Personne.de(createurId, createurNom, createurPrenom),
+                Personne.de(agentId, agentNom, agentPrenom),
+                brancheId != null ? new Structure(brancheId, brancheNom) : null,
+                supervisionId, regionId);
+    }
+
+    /**
+     * Vue d'une prospection déjà en mémoire (création), sans charger d'association :
+     * la branche de l'agent authentifié n'y porte que son id
+     */
+    public static ProspectionResume depuis(Prospection prospection) {
+        return new ProspectionResume(
+                prospection.getId(),
+                prospection.getDateCreation(),
+                prospection.getTypeProspection(),
+                prospection.getStatut(),
+                prospection.getCommentaire(),
+                prospection.getCreateur() != null
+                        ? new Personne(prospection.getCreateur().getId(), prospection.getCreateur().getNom(), prospection.getCreateur().getPrenom())
+                        : null,
+                prospection.getAgentAssigne() != null
+                        ? new Personne(prospection.getAgentAssigne().getId(), prospection.getAgentAssigne().getNom(), prospection.getAgentAssigne().getPrenom())
+                        : null,
+                prospection.getBranche() != null
+                        ? new Structure(prospection.getBranche().getId(), prospection.getBranche().getNom())
+                        : null,
+                prospection.getSupervision() != null ? prospection.getSupervision().getId() : null,
+                prospection.getRegion() != null ? prospection.getRegion().getId() : null
+        );
+    }
+
+    @JsonIgnore
+    public Long brancheId() {
+        return branche != null ? branche.id() : null;
+    }
+
+    @JsonProperty
+    public String typeProspectionDisplay() {
+        return typeProspection.getDisplayName();
+    }
+
+    @JsonProperty
+    public String statutDisplay() {
+        return statut.getDisplayName();
+    }
+
+    @JsonProperty
+    public String statutCssClass() {
+        return statut.getCssClass();
+    }
+
+    // Les coordonnées du prospect ne sont pas portées par la prospection elle-même
+    @JsonProperty
+    public String nomProspect() {
+        return null;
+    }
+
+    @JsonProperty
+    public String prenomProspect() {
+        return null;
+    }
+
+    @JsonProperty
+    public String telephoneProspect() {
+        return null;
+    }
+
+    @JsonProperty
+    public String emailProspect() {
+        return null;
+    }
+
+    public record Personne(Long id, String nom, String prenom) {
+        static Personne de(Long id, String nom, String prenom) {
+            return id != null ? new Personne(id, nom, prenom) : null;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Structure(Long id, String nom) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.prospection.prospectionbackend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.prospection.prospectionbackend.entities.Reponse;
+import com.prospection.prospectionbackend.enums.QuestionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Vue de lecture d'une réponse avec le libellé de sa question
+ */
+public record ReponseResume(
+        Long id,
+        Long questionId,
+        String questionTexte,
+        @JsonIgnore QuestionType typeQuestion,
+        String valeur,
+        LocalDateTime dateCreation
+) {
+
+    @JsonProperty
+    public String valeurFormatee() {
+        return Reponse.formater(typeQuestion, valeur);
+    }
+}
@@ -0,0 +1,45 @@
+package com.prospection.prospectionbackend.dto;
+
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requête sur l'index des facettes : un critère combinable en ET / OU,
+ * les questions dont on veut les comptes par option, et la page demandée.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class RequeteFacettes {
+
+    // Absent : toutes les prospections du périmètre
+    private Critere critere;
+
+    // Questions à choix dont les comptes par option accompagnent le résultat
+    private List<Long> facettes = new ArrayList<>();
+
+    // nextCursor de la page précédente
+    private String curseur;
+
+    private int taille = 20;
+
+    /**
+     * Un nœud renseigne exactement l'un des champs : {@code et}, {@code ou},
+     * {@code questionId} (avec {@code valeurs}, l'une d'elles suffit) ou {@code statuts}.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class Critere {
+        private List<Critere> et;
+        private List<Critere> ou;
+        private Long questionId;
+        private List<String> valeurs;
+        private List<StatutProspection> statuts;
+    }
+}
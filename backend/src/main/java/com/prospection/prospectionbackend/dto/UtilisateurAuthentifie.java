@@ -0,0 +1,108 @@
+package com.prospection.prospectionbackend.dto;
+
+import com.prospection.prospectionbackend.entities.Branche;
+import com.prospection.prospectionbackend.entities.Region;
+import com.prospection.prospectionbackend.entities.Supervision;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Principal immuable placé dans le contexte de sécurité.
+ * Construit directement depuis les claims d'un jeton vérifié, sans accès à la base.
+ */
+@Getter
+public final class UtilisateurAuthentifie implements UserDetails {
+    private final Long id;
+    private final String email;
+    private final String nom;
+    private final String prenom;
+    private final Role role;
+    private final Long regionId;
+    private final Long supervisionId;
+    private final Long brancheId;
+    private final int versionSecurite;
+    private final List<GrantedAuthority> authorities;
+
+    public UtilisateurAuthentifie(Long id, String email, String nom, String prenom, Role role,
+                                  Long regionId, Long supervisionId, Long brancheId, int versionSecurite) {
+        this.id = id;
+        this.email = email;
+        this.nom = nom;
+        this.prenom = prenom;
+        this.role = role;
+        this.regionId = regionId;
+        this.supervisionId = supervisionId;
+        this.brancheId = brancheId;
+        this.versionSecurite = versionSecurite;
+        this.authorities = Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    public static UtilisateurAuthentifie depuisUtilisateur(Utilisateur utilisateur) {
+        return new UtilisateurAuthentifie(
+                utilisateur.getId(),
+                utilisateur.getEmail(),
+                utilisateur.getNom(),
+                utilisateur.getPrenom(),
+                utilisateur.getRole(),
+                utilisateur.getRegion() != null ? utilisateur.getRegion().getId() : null,
+                utilisateur.getSupervision() != null ? utilisateur.getSupervision().getId() : null,
+                utilisateur.getBranche() != null ? utilisateur.getBranche().getId() : null,
+                utilisateur.getVersionSecurite() != null ? utilisateur.getVersionSecurite() : 0
+        );
+    }
+
+    /**
+     * Utilisateur détaché portant uniquement l'identité et les identifiants hiérarchiques,
+     * pour les services qui attendent une entité
+     */
+    public Utilisateur versUtilisateur() {
+        Utilisateur utilisateur = new Utilisateur();
+        utilisateur.setId(id);
+        utilisateur.setEmail(email);
+        utilisateur.setNom(nom);
+        utilisateur.setPrenom(prenom);
+        utilisateur.setRole(role);
+        utilisateur.setActif(true);
+        utilisateur.setVersionSecurite(versionSecurite);
+
+        if (regionId != null) {
+            Region region = new Region();
+            region.setId(regionId);
+            utilisateur.setRegion(region);
+        }
+        if (supervisionId != null) {
+            Supervision supervision = new Supervision();
+            supervision.setId(supervisionId);
+            utilisateur.setSupervision(supervision);
+        }
+        if (brancheId != null) {
+            Branche branche = new Branche();
+            branche.setId(brancheId);
+            utilisateur.setBranche(branche);
+        }
+        return utilisateur;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
@@ -0,0 +1,61 @@
+package com.prospection.prospectionbackend.entities;
+
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Cellule du cube : jour de création × structure × statut × type.
+ * Une prospection sans structure est rangée sous l'id 0 du niveau manquant.
+ */
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class CleCumul implements Serializable {
+
+    @Column(nullable = false)
+    private LocalDate jour;
+
+    @Column(nullable = false)
+    private Long regionId;
+
+    @Column(nullable = false)
+    private Long supervisionId;
+
+    @Column(nullable = false)
+    private Long brancheId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private StatutProspection statut;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TypeProspection typeProspection;
+
+    public static CleCumul de(Prospection prospection) {
+        return new CleCumul(
+                prospection.getDateCreation().toLocalDate(),
+                prospection.getRegion() != null ? prospection.getRegion().getId() : 0L,
+                prospection.getSupervision() != null ? prospection.getSupervision().getId() : 0L,
+                prospection.getBranche() != null ? prospection.getBranche().getId() : 0L,
+                prospection.getStatut(),
+                prospection.getTypeProspection());
+    }
+}
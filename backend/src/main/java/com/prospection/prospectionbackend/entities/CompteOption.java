@@ -0,0 +1,29 @@
+package com.prospection.prospectionbackend.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Nombre de réponses qui ont choisi une option, complété périodiquement par les
+ * créations validées (voir RepartitionOptionsService)
+ */
+@Entity
+@Table(name = "comptes_options")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompteOption {
+
+    @Id
+    private Long optionId;
+
+    @Column(nullable = false)
+    private Long questionId;
+
+    @Column(nullable = false)
+    private long nombre;
+}
@@ -0,0 +1,58 @@
+package com.prospection.prospectionbackend.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Nombre de prospections d'une cellule du cube des tableaux de bord. La clé primaire
+ * commence par branche_id (colonnes dans l'ordre alphabétique) : elle sert les lectures
+ * d'une branche, les index déclarés ici celles des niveaux supérieurs.
+ *
+ * Une cellule créée par l'application est toujours insérée (jamais fusionnée) : si une autre
+ * instance l'a créée au même moment, l'insertion échoue au lieu d'écraser son nombre.
+ */
+@Entity
+@Table(name = "cumuls_prospections", indexes = {
+        @Index(name = "idx_cumuls_region_jour", columnList = "region_id, jour"),
+        @Index(name = "idx_cumuls_supervision_jour", columnList = "supervision_id, jour"),
+        @Index(name = "idx_cumuls_jour", columnList = "jour")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class CumulProspections implements Persistable<CleCumul> {
+
+    @EmbeddedId
+    private CleCumul cle;
+
+    @Column(nullable = false)
+    private long nombre;
+
+    @Transient
+    private boolean nouvelle;
+
+    public CumulProspections(CleCumul cle, long nombre) {
+        this.cle = cle;
+        this.nombre = nombre;
+        this.nouvelle = true;
+    }
+
+    @Override
+    public CleCumul getId() {
+        return cle;
+    }
+
+    @Override
+    public boolean isNew() {
+        return nouvelle;
+    }
+
+    @PostLoad
+    @PostPersist
+    void marquerEnregistree() {
+        nouvelle = false;
+    }
+}
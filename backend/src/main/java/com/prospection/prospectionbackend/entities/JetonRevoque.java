@@ -0,0 +1,39 @@
+package com.prospection.prospectionbackend.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Jeton révoqué, partagé entre les instances. L'id croissant sert de curseur
+ * aux autres instances pour récupérer les nouvelles révocations.
+ */
+@Entity
+@Table(name = "jetons_revoques")
+@Getter
+@Setter
+@NoArgsConstructor
+public class JetonRevoque {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // jti du jeton, ou empreinte SHA-256 pour les jetons sans jti
+    @Column(nullable = false, length = 64, unique = true)
+    private String cle;
+
+    @Column(nullable = false)
+    private LocalDateTime dateExpiration;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime dateRevocation;
+
+    public JetonRevoque(String cle, LocalDateTime dateExpiration) {
+        this.cle = cle;
+        this.dateExpiration = dateExpiration;
+        this.dateRevocation = LocalDateTime.now();
+    }
+}
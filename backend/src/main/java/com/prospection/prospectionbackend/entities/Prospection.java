@@ -5,18 +5,31 @@ import com.prospection.prospectionbackend.enums.TypeProspection;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Entity
-@Table(name = "prospections")
+@Table(name = "prospections", indexes = {
+        // Listes par périmètre triées par date : (périmètre, date_creation, id) sert aussi la pagination par curseur
+        @Index(name = "idx_prospections_createur_date", columnList = "createur_id, date_creation, id"),
+        @Index(name = "idx_prospections_agent_date", columnList = "agent_assigne_id, date_creation, id"),
+        @Index(name = "idx_prospections_branche_date", columnList = "branche_id, date_creation, id"),
+        @Index(name = "idx_prospections_supervision_date", columnList = "supervision_id, date_creation, id"),
+        @Index(name = "idx_prospections_region_date", columnList = "region_id, date_creation, id"),
+        @Index(name = "idx_prospections_statut_date", columnList = "statut, date_creation"),
+        @Index(name = "idx_prospections_date", columnList = "date_creation, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@ToString(exclude = {"reponses", "relances"})
+@ToString(exclude = {"reponses", "reponsesDocument", "questionsRepondues", "relances"})
 public class Prospection {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -66,6 +79,22 @@ public class Prospection {
     @Column
     private LocalDateTime dateConversion;
 
+    // Mode de stockage "document" : réponses par id de question, en jsonb sous Postgres.
+    // Null en mode "lignes" (table reponses) et pour les prospections non migrées.
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "reponses_document")
+    private Map<Long, String> reponsesDocument;
+
+    // Questions ayant une réponse non vide (BitmapQuestions), quel que soit le mode de stockage
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "questions_repondues")
+    private byte[] questionsRepondues;
+
+    // Toutes les questions obligatoires ont une réponse. Null tant que non calculé
+    // (prospections antérieures à la colonne) ; index partiel sur false sous Postgres
+    @Column
+    private Boolean complet;
+
     @OneToMany(mappedBy = "prospection", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     private List<Reponse> reponses = new ArrayList<>();
 
@@ -87,7 +116,11 @@ public class Prospection {
         dateModification = LocalDateTime.now();
     }
 
-    public void extraireInfosProspect() {
+    /**
+     * Dérive les informations du prospect à partir des réponses en mémoire
+     * @param libelleQuestion libellé d'une question à partir de son id, sans charger l'entité
+     */
+    public void extraireInfosProspect(Function<Long, String> libelleQuestion) {
         if (reponses == null || reponses.isEmpty()) {
             return;
         }
@@ -97,7 +130,11 @@ public class Prospection {
                 continue;
             }
 
-            String questionText = reponse.getQuestion().getQuestion().toLowerCase();
+            String libelle = libelleQuestion.apply(reponse.getQuestion().getId());
+            if (libelle == null) {
+                continue;
+            }
+            String questionText = libelle.toLowerCase();
             String valeur = reponse.getValeur().trim();
 
             if (valeur.isEmpty()) {
@@ -1,8 +1,11 @@
 package com.prospection.prospectionbackend.entities;
 
+import com.prospection.prospectionbackend.enums.QuestionType;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 
@@ -11,7 +14,12 @@ import java.time.LocalDateTime;
         uniqueConstraints = @UniqueConstraint(
                 columnNames = {"question_id", "prospection_id"},
                 name = "uk_question_prospection"
-        ))
+        ),
+        // question_id est couvert par la contrainte unique (première colonne)
+        indexes = {
+                @Index(name = "idx_reponses_prospection", columnList = "prospection_id"),
+                @Index(name = "idx_reponses_date", columnList = "date_creation")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -19,8 +27,10 @@ import java.time.LocalDateTime;
 @ToString(exclude = {"question", "prospection"}) // Éviter les références circulaires
 public class Reponse {
 
+    // Séquence avec allocation groupée : permet le batch JDBC des INSERT (impossible en IDENTITY)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reponses_seq")
+    @SequenceGenerator(name = "reponses_seq", sequenceName = "reponses_seq", allocationSize = 50)
     private Long id;
 
     // Relation avec la question
@@ -39,6 +49,12 @@ public class Reponse {
     @Column(name = "valeur", columnDefinition = "TEXT")
     private String valeur;
 
+    // Questions à choix : ids des options choisies, dans l'ordre des options (bigint[] sous Postgres).
+    // Les comptes se font sur ces ids ; les libellés sont résolus à l'affichage.
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "options")
+    private Long[] options;
+
     // Métadonnées
     @Column(nullable = false, updatable = false)
     private LocalDateTime dateCreation;
@@ -74,82 +90,22 @@ public class Reponse {
     }
 
     /**
-     * Valide la réponse selon le type de question
-     * @return true si la réponse est valide
+     * Formate la valeur pour l'affichage selon le type de question
+     * @return La valeur formatée pour l'affichage
      */
-    public boolean estValide() {
-        if (question == null) {
-            return false;
-        }
-
-        // Vérification obligatoire
-        if (question.getObligatoire() && estVide()) {
-            return false;
-        }
-
-        // Si non obligatoire et vide, c'est valide
-        if (!question.getObligatoire() && estVide()) {
-            return true;
-        }
-
-        // Validation selon le type de question
-        switch (question.getType()) {
-            case TEXT:
-                return valeur != null && !valeur.trim().isEmpty();
-            case NUMBER:
-                try {
-                    if (valeur != null && !valeur.trim().isEmpty()) {
-                        Integer.parseInt(valeur.trim());
-                    }
-                    return true;
-                } catch (NumberFormatException e) {
-                    return false;
-                }
-
-            case PHONE:
-                if (valeur == null || valeur.trim().isEmpty()) {
-                    return !question.getObligatoire();
-                }
-                // Validation du format téléphone marocain
-                return valeur.trim().matches("^(06|07)\\d{8}$");
-
-
-
-            case CHOICE:
-                // Vérifier que la valeur correspond à une option valide
-                return question.getOptions().stream()
-                        .anyMatch(option -> option.getValeur().equals(valeur));
-
-            case MULTIPLE_CHOICE:
-                if (valeur == null || valeur.trim().isEmpty()) {
-                    return !question.getObligatoire();
-                }
-                // Vérifier que toutes les valeurs sélectionnées sont valides
-                String[] selections = valeur.split(",");
-                for (String selection : selections) {
-                    boolean optionValide = question.getOptions().stream()
-                            .anyMatch(option -> option.getValeur().equals(selection.trim()));
-                    if (!optionValide) {
-                        return false;
-                    }
-                }
-                return true;
-
-            default:
-                return true;
-        }
+    public String getValeurFormatee() {
+        return formater(question.getType(), valeur);
     }
 
     /**
-     * Formate la valeur pour l'affichage selon le type de question
-     * @return La valeur formatée pour l'affichage
+     * Formatage d'affichage partagé avec les projections de lecture
      */
-    public String getValeurFormatee() {
-        if (estVide()) {
+    public static String formater(QuestionType type, String valeur) {
+        if (valeur == null || valeur.trim().isEmpty()) {
             return "-";
         }
 
-        switch (question.getType()) {
+        switch (type) {
             case MULTIPLE_CHOICE:
                 // Afficher les choix multiples sur plusieurs lignes
                 if (valeur.contains(",")) {
@@ -0,0 +1,54 @@
+package com.prospection.prospectionbackend.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+/**
+ * Statistiques des réponses à une question numérique pour une branche (id 0 : prospections
+ * sans branche). Supervision et région sont recopiées pour lire un niveau sans jointure ;
+ * les niveaux supérieurs fusionnent les lignes de leurs branches.
+ */
+@Entity
+@Table(name = "statistiques_numeriques",
+        uniqueConstraints = @UniqueConstraint(name = "uk_statistiques_numeriques_question_branche",
+                columnNames = {"question_id", "branche_id"}),
+        indexes = {
+                @Index(name = "idx_statistiques_numeriques_supervision", columnList = "question_id, supervision_id"),
+                @Index(name = "idx_statistiques_numeriques_region", columnList = "question_id, region_id")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+public class StatistiqueNumerique {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long questionId;
+
+    @Column(nullable = false)
+    private Long brancheId;
+
+    @Column(nullable = false)
+    private Long supervisionId;
+
+    @Column(nullable = false)
+    private Long regionId;
+
+    @Column(nullable = false)
+    private long nombre;
+
+    @Column(nullable = false)
+    private double somme;
+
+    // CroquisQuantiles.versOctets : min, max et centroïdes (quelques Ko au plus)
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(nullable = false, length = 16384)
+    private byte[] croquis;
+}
@@ -17,7 +17,11 @@ import java.util.Collections;
 
 
 @Entity
-@Table(name= "utilisateurs")
+@Table(name= "utilisateurs", indexes = {
+        @Index(name = "idx_utilisateurs_region", columnList = "region_id"),
+        @Index(name = "idx_utilisateurs_supervision", columnList = "supervision_id"),
+        @Index(name = "idx_utilisateurs_branche", columnList = "branche_id")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -54,6 +58,10 @@ public class Utilisateur implements UserDetails {
     @Column(nullable = false)
     private Boolean actif = true ;
 
+    // Incrémentée à chaque désactivation ou changement de rôle : invalide les jetons émis avant
+    @Column(columnDefinition = "integer default 0 not null")
+    private Integer versionSecurite = 0;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime dateCreation;
 
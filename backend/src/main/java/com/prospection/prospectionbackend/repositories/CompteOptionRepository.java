@@ -0,0 +1,31 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.entities.CompteOption;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface CompteOptionRepository extends JpaRepository<CompteOption, Long> {
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CompteOption c SET c.nombre = c.nombre + :correction WHERE c.optionId = :optionId")
+    int corriger(@Param("optionId") Long optionId, @Param("correction") long correction);
+
+    /**
+     * Lignes à zéro des options qui n'en ont pas encore
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO comptes_options (option_id, question_id, nombre) " +
+            "SELECT o.id, o.question_id, 0 FROM question_options o " +
+            "WHERE NOT EXISTS (SELECT 1 FROM comptes_options c WHERE c.option_id = o.id)", nativeQuery = true)
+    int creerManquants();
+
+    @Transactional
+    void deleteByQuestionId(Long questionId);
+}
@@ -0,0 +1,72 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.entities.CleCumul;
+import com.prospection.prospectionbackend.entities.CumulProspections;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Cube des tableaux de bord. Les lectures renvoient (structure fille, jour, statut, type, nombre)
+ * et ne parcourent que les cellules de la période, quel que soit le nombre de prospections.
+ */
+@Repository
+public interface CumulProspectionsRepository extends JpaRepository<CumulProspections, CleCumul> {
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE CumulProspections c SET c.nombre = c.nombre + :delta WHERE c.cle.jour = :jour " +
+            "AND c.cle.regionId = :regionId AND c.cle.supervisionId = :supervisionId AND c.cle.brancheId = :brancheId " +
+            "AND c.cle.statut = :statut AND c.cle.typeProspection = :type")
+    int ajouter(@Param("jour") LocalDate jour,
+                @Param("regionId") Long regionId,
+                @Param("supervisionId") Long supervisionId,
+                @Param("brancheId") Long brancheId,
+                @Param("statut") StatutProspection statut,
+                @Param("type") TypeProspection type,
+                @Param("delta") long delta);
+
+    @Query("SELECT c.cle.regionId, c.cle.jour, c.cle.statut, c.cle.typeProspection, SUM(c.nombre) " +
+            "FROM CumulProspections c WHERE c.cle.jour BETWEEN :du AND :au " +
+            "GROUP BY c.cle.regionId, c.cle.jour, c.cle.statut, c.cle.typeProspection")
+    List<Object[]> cumulsParRegion(@Param("du") LocalDate du, @Param("au") LocalDate au);
+
+    @Query("SELECT c.cle.supervisionId, c.cle.jour, c.cle.statut, c.cle.typeProspection, SUM(c.nombre) " +
+            "FROM CumulProspections c WHERE c.cle.regionId = :regionId AND c.cle.jour BETWEEN :du AND :au " +
+            "GROUP BY c.cle.supervisionId, c.cle.jour, c.cle.statut, c.cle.typeProspection")
+    List<Object[]> cumulsRegion(@Param("regionId") Long regionId, @Param("du") LocalDate du, @Param("au") LocalDate au);
+
+    @Query("SELECT c.cle.brancheId, c.cle.jour, c.cle.statut, c.cle.typeProspection, SUM(c.nombre) " +
+            "FROM CumulProspections c WHERE c.cle.supervisionId = :supervisionId AND c.cle.jour BETWEEN :du AND :au " +
+            "GROUP BY c.cle.brancheId, c.cle.jour, c.cle.statut, c.cle.typeProspection")
+    List<Object[]> cumulsSupervision(@Param("supervisionId") Long supervisionId, @Param("du") LocalDate du, @Param("au") LocalDate au);
+
+    @Query("SELECT c.cle.brancheId, c.cle.jour, c.cle.statut, c.cle.typeProspection, c.nombre " +
+            "FROM CumulProspections c WHERE c.cle.brancheId = :brancheId AND c.cle.jour BETWEEN :du AND :au")
+    List<Object[]> cumulsBranche(@Param("brancheId") Long brancheId, @Param("du") LocalDate du, @Param("au") LocalDate au);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM cumuls_prospections", nativeQuery = true)
+    int vider();
+
+    /**
+     * Recompte tout le cube depuis les prospections, en une agrégation
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO cumuls_prospections (jour, region_id, supervision_id, branche_id, statut, type_prospection, nombre) " +
+            "SELECT CAST(p.date_creation AS DATE), COALESCE(p.region_id, 0), COALESCE(p.supervision_id, 0), " +
+            "COALESCE(p.branche_id, 0), p.statut, p.type_prospection, COUNT(*) FROM prospections p " +
+            "GROUP BY CAST(p.date_creation AS DATE), COALESCE(p.region_id, 0), COALESCE(p.supervision_id, 0), " +
+            "COALESCE(p.branche_id, 0), p.statut, p.type_prospection", nativeQuery = true)
+    int remplir();
+}
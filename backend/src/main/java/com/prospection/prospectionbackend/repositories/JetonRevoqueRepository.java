@@ -0,0 +1,45 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.entities.JetonRevoque;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface JetonRevoqueRepository extends JpaRepository<JetonRevoque, Long> {
+
+    /**
+     * Révocations encore valides postérieures au curseur, dans l'ordre des ids
+     */
+    @Query("SELECT j FROM JetonRevoque j WHERE j.id > :apresId AND j.dateExpiration > :maintenant ORDER BY j.id ASC")
+    List<JetonRevoque> findSuivantes(@Param("apresId") Long apresId,
+                                     @Param("maintenant") LocalDateTime maintenant,
+                                     Pageable pageable);
+
+    /**
+     * Enregistre une révocation. Sans effet si le jeton est déjà révoqué (autre requête, autre
+     * instance) : le conflit n'est pas une erreur et n'annule donc pas la transaction appelante.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO jetons_revoques (cle, date_expiration, date_revocation) " +
+            "VALUES (:cle, :dateExpiration, :dateRevocation) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int revoquer(@Param("cle") String cle,
+                 @Param("dateExpiration") LocalDateTime dateExpiration,
+                 @Param("dateRevocation") LocalDateTime dateRevocation);
+
+    @Query("SELECT j.dateExpiration FROM JetonRevoque j WHERE j.cle = :cle")
+    List<LocalDateTime> findExpirationByCle(@Param("cle") String cle);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM JetonRevoque j WHERE j.dateExpiration <= :maintenant")
+    int deleteExpires(@Param("maintenant") LocalDateTime maintenant);
+}
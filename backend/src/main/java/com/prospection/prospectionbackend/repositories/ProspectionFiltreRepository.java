@@ -0,0 +1,63 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.dto.FiltreProspections;
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Lectures de prospections restreintes au périmètre de l'utilisateur, implémentées avec
+ * l'API Criteria : le périmètre devient un prédicat de la requête.
+ */
+public interface ProspectionFiltreRepository {
+
+    /**
+     * @param apresDate  dateCreation de la dernière ligne de la page précédente, null pour la première page
+     * @param apresId    id de la dernière ligne de la page précédente
+     * @param limite     nombre maximum de lignes
+     * @return les prospections triées par (dateCreation, id) décroissants
+     */
+    List<ProspectionResume> rechercher(Perimetre perimetre, FiltreProspections filtre,
+                                       LocalDateTime apresDate, Long apresId, int limite);
+
+    /**
+     * @return vide si la prospection n'existe pas ou est hors du périmètre
+     */
+    Optional<ProspectionResume> trouverResume(Perimetre perimetre, Long id);
+
+    /**
+     * Résumés des prospections d'ids déjà filtrés (par l'index des facettes), dans l'ordre des ids
+     */
+    List<ProspectionResume> trouverResumes(List<Long> ids);
+
+    /**
+     * Lecture en flux (par lots de la taille du fetch size), à consommer et fermer dans une transaction
+     */
+    Stream<ProspectionResume> parcourir(Perimetre perimetre);
+
+    /**
+     * Prospections jointes à leurs lignes de réponses, en flux, dans l'ordre de parcourir :
+     * les lignes d'une même prospection se suivent. Une ligne par réponse (une seule, sans
+     * réponse, pour une prospection sans ligne) : id, date de création, type, statut,
+     * nom et prénom du créateur, nom et prénom de l'agent assigné, branche, commentaire,
+     * document des réponses (mode document), question, valeur, ids des options.
+     * À consommer et fermer dans une transaction.
+     */
+    Stream<Object[]> parcourirAvecReponses(Perimetre perimetre);
+
+    /**
+     * Recherche plein texte dans le commentaire des prospections et la valeur de leurs réponses
+     * (Postgres uniquement : index GIN de schema-postgresql.sql), limitée au périmètre avant tout
+     * calcul de rang. Au plus 1000 correspondances par source sont classées : une recherche
+     * trop large ne renvoie qu'une partie des résultats et se précise en ajoutant des mots.
+     *
+     * @param requete  expression tsquery déjà construite, configuration 'simple'
+     * @param debut    nombre de résultats à sauter
+     * @return les prospections triées par pertinence décroissante (somme des rangs), puis id décroissant
+     */
+    List<ProspectionResume> rechercherTexte(Perimetre perimetre, String requete, int debut, int limite);
+}
@@ -0,0 +1,281 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.dto.FiltreProspections;
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+import com.prospection.prospectionbackend.entities.Branche;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.entities.Reponse;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.*;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Contrairement au motif « (:param IS NULL OR col = :param) », chaque requête ne contient
+ * que les prédicats des critères fournis : Postgres planifie alors chaque combinaison
+ * avec les index qui lui correspondent.
+ */
+class ProspectionFiltreRepositoryImpl implements ProspectionFiltreRepository {
+
+    private static final int TAILLE_LOT_FLUX = 500;
+
+    // Correspondances classées au plus par source (commentaires, lignes, documents) : le rang
+    // n'est calculé que sur elles, quel que soit le nombre de lignes qui contiennent les termes
+    private static final int CANDIDATS_TEXTE_MAX = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ProspectionResume> rechercher(Perimetre perimetre, FiltreProspections filtre,
+                                              LocalDateTime apresDate, Long apresId, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProspectionResume> requete = cb.createQuery(ProspectionResume.class);
+        Root<Prospection> p = selectionnerResume(cb, requete);
+
+        List<Predicate> predicats = new ArrayList<>();
+        ajouterPerimetre(cb, p, perimetre, predicats);
+        if (filtre.getAgentId() != null) {
+            predicats.add(deLAgent(cb, p, filtre.getAgentId()));
+        }
+        if (filtre.getStatut() != null) {
+            predicats.add(cb.equal(p.get("statut"), filtre.getStatut()));
+        }
+        if (filtre.getType() != null) {
+            predicats.add(cb.equal(p.get("typeProspection"), filtre.getType()));
+        }
+        if (filtre.getBrancheId() != null) {
+            predicats.add(cb.equal(p.get("branche").get("id"), filtre.getBrancheId()));
+        }
+        if (filtre.getSupervisionId() != null) {
+            predicats.add(cb.equal(p.get("supervision").get("id"), filtre.getSupervisionId()));
+        }
+        if (filtre.getRegionId() != null) {
+            predicats.add(cb.equal(p.get("region").get("id"), filtre.getRegionId()));
+        }
+        if (filtre.getComplet() != null) {
+            // Littéral plutôt que paramètre : le plan générique peut alors utiliser l'index partiel
+            Path<Boolean> complet = p.get("complet");
+            predicats.add(filtre.getComplet() ? cb.isTrue(complet) : cb.isFalse(complet));
+        }
+        if (filtre.getDateDebut() != null) {
+            predicats.add(cb.greaterThanOrEqualTo(p.get("dateCreation"), filtre.getDateDebut()));
+        }
+        if (filtre.getDateFin() != null) {
+            predicats.add(cb.lessThanOrEqualTo(p.get("dateCreation"), filtre.getDateFin()));
+        }
+
+        // Curseur : (dateCreation, id) < (apresDate, apresId)
+        if (apresDate != null && apresId != null) {
+            Path<LocalDateTime> dateCreation = p.get("dateCreation");
+            predicats.add(cb.or(
+                    cb.lessThan(dateCreation, apresDate),
+                    cb.and(cb.equal(dateCreation, apresDate), cb.lessThan(p.get("id"), apresId))));
+        }
+
+        requete.where(predicats.toArray(new Predicate[0]));
+        // Même ordre que les index (…, date_creation, id) : lecture d'index sans tri
+        requete.orderBy(cb.desc(p.get("dateCreation")), cb.desc(p.get("id")));
+
+        return entityManager.createQuery(requete)
+                .setMaxResults(limite)
+                .getResultList();
+    }
+
+    @Override
+    public Optional<ProspectionResume> trouverResume(Perimetre perimetre, Long id) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProspectionResume> requete = cb.createQuery(ProspectionResume.class);
+        Root<Prospection> p = selectionnerResume(cb, requete);
+
+        List<Predicate> predicats = new ArrayList<>();
+        predicats.add(cb.equal(p.get("id"), id));
+        ajouterPerimetre(cb, p, perimetre, predicats);
+        requete.where(predicats.toArray(new Predicate[0]));
+
+        return entityManager.createQuery(requete).getResultStream().findFirst();
+    }
+
+    @Override
+    public Stream<ProspectionResume> parcourir(Perimetre perimetre) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProspectionResume> requete = cb.createQuery(ProspectionResume.class);
+        Root<Prospection> p = selectionnerResume(cb, requete);
+
+        List<Predicate> predicats = new ArrayList<>();
+        ajouterPerimetre(cb, p, perimetre, predicats);
+        requete.where(predicats.toArray(new Predicate[0]));
+        requete.orderBy(cb.desc(p.get("dateCreation")), cb.desc(p.get("id")));
+
+        return entityManager.createQuery(requete)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, TAILLE_LOT_FLUX)
+                .getResultStream();
+    }
+
+    @Override
+    public Stream<Object[]> parcourirAvecReponses(Perimetre perimetre) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> requete = cb.createQuery(Object[].class);
+        Root<Prospection> p = requete.from(Prospection.class);
+        Join<Prospection, Utilisateur> createur = p.join("createur");
+        Join<Prospection, Utilisateur> agent = p.join("agentAssigne", JoinType.LEFT);
+        Join<Prospection, Branche> branche = p.join("branche", JoinType.LEFT);
+        Join<Prospection, Reponse> reponse = p.join("reponses", JoinType.LEFT);
+
+        requete.multiselect(
+                p.get("id"), p.get("dateCreation"), p.get("typeProspection"), p.get("statut"),
+                createur.get("nom"), createur.get("prenom"), agent.get("nom"), agent.get("prenom"),
+                branche.get("nom"), p.get("commentaire"), p.get("reponsesDocument"),
+                reponse.get("question").get("id"), reponse.get("valeur"), reponse.get("options"));
+
+        List<Predicate> predicats = new ArrayList<>();
+        ajouterPerimetre(cb, p, perimetre, predicats);
+        requete.where(predicats.toArray(new Predicate[0]));
+        requete.orderBy(cb.desc(p.get("dateCreation")), cb.desc(p.get("id")));
+
+        // Valeurs seulement, aucune entité : le contexte de persistance ne grossit pas au fil du flux
+        return entityManager.createQuery(requete)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, TAILLE_LOT_FLUX)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public List<ProspectionResume> rechercherTexte(Perimetre perimetre, String requete, int debut, int limite) {
+        // Le périmètre filtre chaque source avant la correspondance (index du périmètre ou GIN,
+        // au choix du planificateur), puis chaque source est bornée avant le calcul des rangs
+        boolean siege = perimetre.niveau() == Perimetre.Niveau.TOUT;
+        String dansPerimetreC = siege ? "" : " AND " + perimetreSql(perimetre, "c");
+        String dansPerimetreD = siege ? "" : " AND " + perimetreSql(perimetre, "d");
+        String dansPerimetreR = siege ? ""
+                : " AND r.prospection_id IN (SELECT p.id FROM prospections p WHERE " + perimetreSql(perimetre, "p") + ")";
+        Query recherche = entityManager.createNativeQuery(
+                "SELECT t.prospection_id FROM (" +
+                "  SELECT c.id AS prospection_id, ts_rank(to_tsvector('simple', coalesce(c.commentaire, '')), to_tsquery('simple', :requete)) AS score" +
+                "  FROM (SELECT c.id, c.commentaire FROM prospections c" +
+                "        WHERE to_tsvector('simple', coalesce(c.commentaire, '')) @@ to_tsquery('simple', :requete)" + dansPerimetreC +
+                "        LIMIT :candidats) c" +
+                "  UNION ALL" +
+                "  SELECT r.prospection_id, ts_rank(to_tsvector('simple', coalesce(r.valeur, '')), to_tsquery('simple', :requete))" +
+                "  FROM (SELECT r.prospection_id, r.valeur FROM reponses r" +
+                "        WHERE to_tsvector('simple', coalesce(r.valeur, '')) @@ to_tsquery('simple', :requete)" + dansPerimetreR +
+                "        LIMIT :candidats) r" +
+                "  UNION ALL" +
+                "  SELECT d.id, ts_rank(jsonb_to_tsvector('simple', coalesce(d.reponses_document, '{}'), '[\"string\"]'), to_tsquery('simple', :requete))" +
+                "  FROM (SELECT d.id, d.reponses_document FROM prospections d" +
+                "        WHERE jsonb_to_tsvector('simple', coalesce(d.reponses_document, '{}'), '[\"string\"]') @@ to_tsquery('simple', :requete)" + dansPerimetreD +
+                "        LIMIT :candidats) d" +
+                ") t" +
+                " GROUP BY t.prospection_id" +
+                " ORDER BY SUM(t.score) DESC, t.prospection_id DESC" +
+                " LIMIT :limite OFFSET :debut")
+                .setParameter("requete", requete)
+                .setParameter("candidats", CANDIDATS_TEXTE_MAX)
+                .setParameter("limite", limite)
+                .setParameter("debut", debut);
+        if (!siege) {
+            recherche.setParameter("perimetre", perimetre.id());
+        }
+
+        List<Long> ids = ((List<?>) recherche.getResultList()).stream()
+                .map(id -> ((Number) id).longValue())
+                .toList();
+        return trouverResumes(ids);
+    }
+
+    @Override
+    public List<ProspectionResume> trouverResumes(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProspectionResume> requete = cb.createQuery(ProspectionResume.class);
+        Root<Prospection> p = selectionnerResume(cb, requete);
+        requete.where(p.get("id").in(ids));
+
+        // Remet les résumés dans l'ordre demandé
+        Map<Long, ProspectionResume> parId = new HashMap<>();
+        for (ProspectionResume resume : entityManager.createQuery(requete).getResultList()) {
+            parId.put(resume.id(), resume);
+        }
+        return ids.stream().map(parId::get).filter(Objects::nonNull).toList();
+    }
+
+    private Root<Prospection> selectionnerResume(CriteriaBuilder cb, CriteriaQuery<ProspectionResume> requete) {
+        Root<Prospection> p = requete.from(Prospection.class);
+        Join<Prospection, Utilisateur> createur = p.join("createur");
+        Join<Prospection, Utilisateur> agent = p.join("agentAssigne", JoinType.LEFT);
+        Join<Prospection, Branche> branche = p.join("branche", JoinType.LEFT);
+
+        requete.select(cb.construct(ProspectionResume.class,
+                p.get("id"), p.get("dateCreation"), p.get("typeProspection"), p.get("statut"), p.get("commentaire"),
+                createur.get("id"), createur.get("nom"), createur.get("prenom"),
+                agent.get("id"), agent.get("nom"), agent.get("prenom"),
+                branche.get("id"), branche.get("nom"),
+                p.get("supervision").get("id"), p.get("region").get("id")));
+        return p;
+    }
+
+    /**
+     * Prédicat du périmètre, sur les clés étrangères de prospections (indexées avec date_creation)
+     */
+    private void ajouterPerimetre(CriteriaBuilder cb, Root<Prospection> p, Perimetre perimetre, List<Predicate> predicats) {
+        switch (perimetre.niveau()) {
+            case AGENT:
+                predicats.add(deLAgent(cb, p, perimetre.id()));
+                break;
+            case BRANCHE:
+                predicats.add(cb.equal(p.get("branche").get("id"), perimetre.id()));
+                break;
+            case SUPERVISION:
+                predicats.add(cb.equal(p.get("supervision").get("id"), perimetre.id()));
+                break;
+            case REGION:
+                predicats.add(cb.equal(p.get("region").get("id"), perimetre.id()));
+                break;
+            case TOUT:
+                break;
+        }
+    }
+
+    /**
+     * Même périmètre que ajouterPerimetre, en SQL sur les résultats t, paramètre :perimetre.
+     * Le siège n'a pas de jointure : elle ferait lire toute la table prospections.
+     */
+    /**
+     * Condition du périmètre (hors siège) sur la table prospections d'alias donné
+     */
+    private static String perimetreSql(Perimetre perimetre, String alias) {
+        switch (perimetre.niveau()) {
+            case AGENT:
+                return "(" + alias + ".createur_id = :perimetre OR " + alias + ".agent_assigne_id = :perimetre)";
+            case BRANCHE:
+                return alias + ".branche_id = :perimetre";
+            case SUPERVISION:
+                return alias + ".supervision_id = :perimetre";
+            case REGION:
+                return alias + ".region_id = :perimetre";
+            default:
+                throw new IllegalArgumentException("Aucune condition de périmètre pour le siège");
+        }
+    }
+
+    private Predicate deLAgent(CriteriaBuilder cb, Root<Prospection> p, Long agentId) {
+        return cb.or(
+                cb.equal(p.get("createur").get("id"), agentId),
+                cb.equal(p.get("agentAssigne").get("id"), agentId));
+    }
+}
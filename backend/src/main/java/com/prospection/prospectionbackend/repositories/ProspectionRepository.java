@@ -3,19 +3,21 @@ package com.prospection.prospectionbackend.repositories;
 import com.prospection.prospectionbackend.entities.Prospection;
 import com.prospection.prospectionbackend.enums.StatutProspection;
 import com.prospection.prospectionbackend.enums.TypeProspection;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProspectionRepository extends JpaRepository<Prospection, Long> {
+public interface ProspectionRepository extends JpaRepository<Prospection, Long>, ProspectionFiltreRepository {
     List<Prospection> findByCreateurIdOrderByDateCreationDesc(Long createurId);
     List<Prospection> findByAgentAssigneIdOrderByDateCreationDesc(Long agentId);
     @Query("SELECT p FROM Prospection p WHERE p.createur.id = :agentId OR p.agentAssigne.id = :agentId ORDER BY p.dateCreation DESC")
@@ -27,40 +29,12 @@ public interface ProspectionRepository extends JpaRepository<Prospection, Long>
     List<Prospection> findByTypeProspectionOrderByDateCreationDesc(TypeProspection typeProspection);
     @Query("SELECT p FROM Prospection p WHERE (p.createur.id = :agentId OR p.agentAssigne.id = :agentId) AND p.typeProspection = :type ORDER BY p.dateCreation DESC")
     List<Prospection> findByAgentIdAndTypeProspectionOrderByDateCreationDesc(@Param("agentId") Long agentId, @Param("type") TypeProspection type);
-    @Query("SELECT p FROM Prospection p WHERE " +
-            "(:agentId IS NULL OR p.createur.id = :agentId OR p.agentAssigne.id = :agentId) AND " +
-            "(:statut IS NULL OR p.statut = :statut) AND " +
-            "(:type IS NULL OR p.typeProspection = :type) AND " +
-            "(:brancheId IS NULL OR p.branche.id = :brancheId) AND " +
-            "(:supervisionId IS NULL OR p.supervision.id = :supervisionId) AND " +
-            "(:regionId IS NULL OR p.region.id = :regionId) AND " +
-            "(:dateDebut IS NULL OR p.dateCreation >= :dateDebut) AND " +
-            "(:dateFin IS NULL OR p.dateCreation <= :dateFin) " +
-            "ORDER BY p.dateCreation DESC")
-    Page<Prospection> findWithFilters(
-            @Param("agentId") Long agentId,
-            @Param("statut") StatutProspection statut,
-            @Param("type") TypeProspection type,
-            @Param("brancheId") Long brancheId,
-            @Param("supervisionId") Long supervisionId,
-            @Param("regionId") Long regionId,
-            @Param("dateDebut") LocalDateTime dateDebut,
-            @Param("dateFin") LocalDateTime dateFin,
-            Pageable pageable
-    );
-    @Query("SELECT p FROM Prospection p WHERE " +
-            "LOWER(p.commentaire) LIKE LOWER(CONCAT('%', :searchTerm, '%')) " +
-            "ORDER BY p.dateCreation DESC")
-    List<Prospection> findBySearchTerm(@Param("searchTerm") String searchTerm);
 
 
     @Query("SELECT p.statut, COUNT(p) FROM Prospection p GROUP BY p.statut")
     List<Object[]> countByStatut();
 
 
-    @Query("SELECT p.statut, COUNT(p) FROM Prospection p WHERE p.createur.id = :agentId OR p.agentAssigne.id = :agentId GROUP BY p.statut")
-    List<Object[]> countByAgentIdAndStatut(@Param("agentId") Long agentId);
-
     @Query("SELECT p.typeProspection, COUNT(p) FROM Prospection p GROUP BY p.typeProspection")
     List<Object[]> countByTypeProspection();
 
@@ -86,30 +60,89 @@ public interface ProspectionRepository extends JpaRepository<Prospection, Long>
     List<Prospection> findProspectionsActives();
 
 
-    @Query("SELECT COUNT(p) FROM Prospection p WHERE p.createur.id = :agentId AND p.dateCreation >= :startOfDay AND p.dateCreation < :endOfDay")
-    long countByCreateurIdAndToday(@Param("agentId") Long agentId , @Param("startOfDay") LocalDateTime startOfDay, @Param("endOfDay") LocalDateTime endOfDay);
-
     Optional<Prospection> findTopByCreateurIdOrderByDateCreationDesc(Long createurId);
 
-    @Query("SELECT p FROM Prospection p " +
-            "LEFT JOIN FETCH p.branche b " +
-            "LEFT JOIN FETCH p.region r " +
-            "LEFT JOIN FETCH p.supervision s " +
-            "LEFT JOIN FETCH p.createur c " +
-            "LEFT JOIN FETCH p.agentAssigne a " +
-            "WHERE p.agentAssigne.id = :agentId " +
-            "ORDER BY p.dateCreation DESC")
-    List<Prospection> findByAgentIdWithHierarchie(@Param("agentId") Long agentId);
-
-    @Query("SELECT p FROM Prospection p " +
-            "LEFT JOIN FETCH p.branche b " +
-            "LEFT JOIN FETCH p.region r " +
-            "LEFT JOIN FETCH p.supervision s " +
-            "LEFT JOIN FETCH p.createur c " +
-            "LEFT JOIN FETCH p.agentAssigne a " +
-            "WHERE p.createur.id = :creatorId " +
-            "ORDER BY p.dateCreation DESC")
-    List<Prospection> findByCreatorIdWithHierarchie(@Param("creatorId") Long creatorId);
+    /**
+     * Compteurs des agents : prospections créées par agent et par statut
+     */
+    @Query("SELECT p.createur.id, p.statut, COUNT(p) FROM Prospection p WHERE p.createur.id IN :agentIds " +
+            "GROUP BY p.createur.id, p.statut")
+    List<Object[]> countByCreateurIdsAndStatut(@Param("agentIds") Collection<Long> agentIds);
+
+    /**
+     * Compteurs des agents : prospections assignées à un autre agent que leur créateur, par statut
+     */
+    @Query("SELECT p.agentAssigne.id, p.statut, COUNT(p) FROM Prospection p WHERE p.agentAssigne.id IN :agentIds " +
+            "AND p.agentAssigne.id <> p.createur.id GROUP BY p.agentAssigne.id, p.statut")
+    List<Object[]> countByAgentAssigneIdsAndStatut(@Param("agentIds") Collection<Long> agentIds);
+
+    @Query("SELECT p.createur.id, COUNT(p) FROM Prospection p WHERE p.createur.id IN :agentIds " +
+            "AND p.dateCreation >= :debut AND p.dateCreation < :fin GROUP BY p.createur.id")
+    List<Object[]> countByCreateurIdsBetween(@Param("agentIds") Collection<Long> agentIds,
+                                             @Param("debut") LocalDateTime debut, @Param("fin") LocalDateTime fin);
+
+    /**
+     * Lot suivant pour l'index des facettes : id, statut, createur, agent assigné, branche, supervision, région
+     */
+    @Query("SELECT p.id, p.statut, p.createur.id, p.agentAssigne.id, p.branche.id, p.supervision.id, p.region.id " +
+            "FROM Prospection p WHERE p.id > :apresId ORDER BY p.id")
+    List<Object[]> findFacettesSuivantes(@Param("apresId") Long apresId, Pageable pageable);
+
+    /**
+     * Document des réponses (null hors mode document) et date de création d'une prospection
+     */
+    @Query("SELECT p.reponsesDocument, p.dateCreation FROM Prospection p WHERE p.id = :id")
+    List<Object[]> findDocumentReponses(@Param("id") Long id);
+
+    /**
+     * Documents des réponses des prospections d'ids dans ]apresId, jusquaId] : id, document
+     */
+    @Query("SELECT p.id, p.reponsesDocument FROM Prospection p " +
+            "WHERE p.id > :apresId AND p.id <= :jusquaId AND p.reponsesDocument IS NOT NULL")
+    List<Object[]> findDocumentsReponses(@Param("apresId") Long apresId, @Param("jusquaId") Long jusquaId);
+
+    @Query("SELECT p.id FROM Prospection p WHERE p.id > :apresId ORDER BY p.id")
+    List<Long> findIdsSuivants(@Param("apresId") Long apresId, Pageable pageable);
+
+    /**
+     * Lot suivant pour le calcul de la complétude : id, questions répondues, complet
+     */
+    @Query("SELECT p.id, p.questionsRepondues, p.complet FROM Prospection p WHERE p.id > :apresId ORDER BY p.id")
+    List<Object[]> findCompletudeSuivante(@Param("apresId") Long apresId, Pageable pageable);
+
+    boolean existsByCompletIsNull();
+
+    @Modifying
+    @Query("UPDATE Prospection p SET p.complet = :complet WHERE p.id IN :ids")
+    int marquerComplet(@Param("ids") Collection<Long> ids, @Param("complet") boolean complet);
+
+    @Modifying
+    @Query("UPDATE Prospection p SET p.questionsRepondues = :questions, p.complet = :complet WHERE p.id IN :ids")
+    int marquerQuestionsRepondues(@Param("ids") Collection<Long> ids, @Param("questions") byte[] questions,
+                                  @Param("complet") boolean complet);
+
+    /**
+     * Migration vers le mode document (Postgres) : document construit depuis les lignes de reponses
+     * des prospections d'ids dans ]apresId, jusquaId] qui n'en ont pas encore
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE prospections p SET reponses_document = d.document " +
+            "FROM (SELECT r.prospection_id, jsonb_object_agg(CAST(r.question_id AS text), r.valeur) AS document " +
+            "      FROM reponses r WHERE r.prospection_id > :apresId AND r.prospection_id <= :jusquaId " +
+            "      AND r.valeur IS NOT NULL GROUP BY r.prospection_id) d " +
+            "WHERE p.id = d.prospection_id AND p.reponses_document IS NULL", nativeQuery = true)
+    int migrerVersDocument(@Param("apresId") Long apresId, @Param("jusquaId") Long jusquaId);
+
+    /**
+     * Retour au mode lignes : efface les documents dont les lignes ont été recréées
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE prospections p SET reponses_document = NULL " +
+            "WHERE p.id > :apresId AND p.id <= :jusquaId AND p.reponses_document IS NOT NULL " +
+            "AND EXISTS (SELECT 1 FROM reponses r WHERE r.prospection_id = p.id)", nativeQuery = true)
+    int effacerDocuments(@Param("apresId") Long apresId, @Param("jusquaId") Long jusquaId);
 
 
 }
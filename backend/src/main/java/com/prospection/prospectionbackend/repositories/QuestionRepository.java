@@ -23,6 +23,10 @@ public interface QuestionRepository extends JpaRepository<Question, Long> {
     List<Question> findAllOrderByOrdre();
 
 
+    @Query("SELECT DISTINCT q FROM Question q LEFT JOIN FETCH q.options ORDER BY q.ordre ASC")
+    List<Question> findAllWithOptionsOrderByOrdre();
+
+
     List<Question> findByTypeAndActifTrueOrderByOrdre(QuestionType type);
 
 
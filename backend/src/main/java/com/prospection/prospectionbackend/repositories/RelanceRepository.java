@@ -35,12 +35,6 @@ public interface RelanceRepository extends JpaRepository<Reponse, Long> {
     // RECHERCHES PAR VALEUR
     // ===============================
 
-    /**
-     * Trouve les réponses contenant une valeur spécifique
-     */
-    @Query("SELECT r FROM Reponse r WHERE LOWER(r.valeur) LIKE LOWER(CONCAT('%', :valeur, '%'))")
-    List<Reponse> findByValeurContainingIgnoreCase(@Param("valeur") String valeur);
-
     /**
      * Trouve les réponses avec une valeur exacte
      */
@@ -181,12 +175,6 @@ public interface RelanceRepository extends JpaRepository<Reponse, Long> {
     @Query("SELECT COUNT(r) > 0 FROM Reponse r WHERE r.question.id = :questionId AND r.prospection.id = :prospectionId AND r.valeur IS NOT NULL AND TRIM(r.valeur) != ''")
     boolean existsValidReponseForQuestionAndProspection(@Param("questionId") Long questionId, @Param("prospectionId") Long prospectionId);
 
-    /**
-     * Trouve les prospections avec des réponses manquantes pour questions obligatoires
-     */
-    @Query("SELECT DISTINCT p.id FROM Prospection p, Question q WHERE q.obligatoire = true AND NOT EXISTS (SELECT r FROM Reponse r WHERE r.prospection.id = p.id AND r.question.id = q.id AND r.valeur IS NOT NULL AND TRIM(r.valeur) != '')")
-    List<Long> findProspectionsWithMissingRequiredAnswers();
-
     // ===============================
     // RECHERCHES SPÉCIALISÉES
     // ===============================
@@ -1,11 +1,15 @@
 package com.prospection.prospectionbackend.repositories;
 
 import com.prospection.prospectionbackend.entities.Reponse;
+import com.prospection.prospectionbackend.enums.QuestionType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,10 +26,6 @@ public interface ReponseRepository extends JpaRepository<Reponse, Long> {
     Optional<Reponse> findByQuestionIdAndProspectionId(Long questionId, Long prospectionId);
 
 
-    @Query("SELECT r FROM Reponse r WHERE LOWER(r.valeur) LIKE LOWER(CONCAT('%', :valeur, '%'))")
-    List<Reponse> findByValeurContainingIgnoreCase(@Param("valeur") String valeur);
-
-
     List<Reponse> findByValeur(String valeur);
 
     @Query("SELECT r FROM Reponse r WHERE r.valeur IS NULL OR r.valeur = '' OR TRIM(r.valeur) = ''")
@@ -38,6 +38,13 @@ public interface ReponseRepository extends JpaRepository<Reponse, Long> {
     @Query("SELECT r FROM Reponse r JOIN FETCH r.question q WHERE r.prospection.id = :prospectionId ORDER BY q.ordre")
     List<Reponse> findByProspectionIdWithQuestion(@Param("prospectionId") Long prospectionId);
 
+    /**
+     * Réponses d'une prospection sans jointure : id, question, valeur, options, date de création.
+     * Libellés, types et ordre des questions viennent du schéma compilé du formulaire.
+     */
+    @Query("SELECT r.id, r.question.id, r.valeur, r.options, r.dateCreation FROM Reponse r WHERE r.prospection.id = :prospectionId")
+    List<Object[]> findLignesByProspectionId(@Param("prospectionId") Long prospectionId);
+
 
     @Query("SELECT r FROM Reponse r JOIN FETCH r.prospection p WHERE r.question.id = :questionId ORDER BY p.dateCreation DESC")
     List<Reponse> findByQuestionIdWithProspection(@Param("questionId") Long questionId);
@@ -75,18 +82,26 @@ public interface ReponseRepository extends JpaRepository<Reponse, Long> {
     long countByQuestionId(Long questionId);
 
 
-    @Query("SELECT r.valeur, COUNT(r) FROM Reponse r WHERE r.question.id = :questionId AND r.valeur IS NOT NULL GROUP BY r.valeur ORDER BY COUNT(r) DESC")
-    List<Object[]> getStatistiquesChoixUnique(@Param("questionId") Long questionId);
+    /**
+     * Réponses aux questions indexées des prospections d'ids dans ]apresId, jusquaId] : prospection, question, valeur, options
+     */
+    @Query("SELECT r.prospection.id, r.question.id, r.valeur, r.options FROM Reponse r " +
+            "WHERE r.prospection.id > :apresId AND r.prospection.id <= :jusquaId AND r.question.id IN :questionIds")
+    List<Object[]> findValeursPourFacettes(@Param("apresId") Long apresId, @Param("jusquaId") Long jusquaId,
+                                           @Param("questionIds") Collection<Long> questionIds);
 
-//    /**
-//     * Statistiques des valeurs pour questions numériques
-//     */
-//    @Query("SELECT MIN(CAST(r.valeur AS double)), MAX(CAST(r.valeur AS double)), AVG(CAST(r.valeur AS double)) FROM Reponse r WHERE r.question.id = :questionId AND r.valeur IS NOT NULL AND r.valeur REGEXP '^[0-9]+$'")
-//    List<Object[]> getStatistiquesNumeriques(@Param("questionId") Long questionId);
 
+    @Query("SELECT r.valeur, COUNT(r) FROM Reponse r WHERE r.question.id = :questionId AND r.valeur IS NOT NULL GROUP BY r.valeur ORDER BY COUNT(r) DESC")
+    List<Object[]> getStatistiquesChoixUnique(@Param("questionId") Long questionId);
 
-    @Query("SELECT q.question, r.valeur, COUNT(r) FROM Reponse r JOIN r.question q WHERE q.type IN ('CHOICE', 'MULTIPLE_CHOICE') GROUP BY q.question, r.valeur ORDER BY q.ordre, COUNT(r) DESC")
-    List<Object[]> getDonneesGraphiques();
+    /**
+     * Comptes par option des questions à choix (Postgres) : option, nombre de réponses.
+     * Une sélection multiple compte pour chacune de ses options.
+     */
+    @Query(value = "SELECT o.option_id, COUNT(*) FROM reponses r " +
+            "CROSS JOIN LATERAL unnest(r.options) AS o(option_id) " +
+            "GROUP BY o.option_id", nativeQuery = true)
+    List<Object[]> compterParOption();
 
 
     @Query("SELECT r.valeur, COUNT(r) FROM Reponse r WHERE r.question.id = :questionId AND r.valeur IS NOT NULL GROUP BY r.valeur ORDER BY COUNT(r) DESC")
@@ -101,10 +116,6 @@ public interface ReponseRepository extends JpaRepository<Reponse, Long> {
     boolean existsValidReponseForQuestionAndProspection(@Param("questionId") Long questionId, @Param("prospectionId") Long prospectionId);
 
 
-    @Query("SELECT DISTINCT p.id FROM Prospection p, Question q WHERE q.obligatoire = true AND NOT EXISTS (SELECT r FROM Reponse r WHERE r.prospection.id = p.id AND r.question.id = q.id AND r.valeur IS NOT NULL AND TRIM(r.valeur) != '')")
-    List<Long> findProspectionsWithMissingRequiredAnswers();
-
-
     @Query("SELECT r FROM Reponse r JOIN r.question q WHERE q.type = 'PHONE' AND r.valeur = :telephone")
     List<Reponse> findByTelephone(@Param("telephone") String telephone);
 
@@ -113,6 +124,46 @@ public interface ReponseRepository extends JpaRepository<Reponse, Long> {
     List<Reponse> findByEmail(@Param("email") String email);
 
 
+    /**
+     * Migration vers le mode document : supprime les lignes des prospections qui ont leur document
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM reponses r USING prospections p " +
+            "WHERE r.prospection_id > :apresId AND r.prospection_id <= :jusquaId " +
+            "AND p.id = r.prospection_id AND p.reponses_document IS NOT NULL", nativeQuery = true)
+    int supprimerLignesMigrees(@Param("apresId") Long apresId, @Param("jusquaId") Long jusquaId);
+
+    /**
+     * Retour au mode lignes (Postgres) : une ligne par entrée du document des prospections
+     * d'ids dans ]apresId, jusquaId] qui n'ont pas de lignes
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO reponses (id, question_id, prospection_id, valeur, date_creation) " +
+            "SELECT nextval('reponses_seq'), CAST(e.key AS bigint), p.id, e.value, p.date_creation " +
+            "FROM prospections p CROSS JOIN LATERAL jsonb_each_text(p.reponses_document) e " +
+            "WHERE p.id > :apresId AND p.id <= :jusquaId AND p.reponses_document IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM reponses r WHERE r.prospection_id = p.id)", nativeQuery = true)
+    int recreerLignes(@Param("apresId") Long apresId, @Param("jusquaId") Long jusquaId);
+
+
+    /**
+     * Réponses à choix qui n'ont pas encore d'ids d'options, pour les prospections d'ids dans
+     * ]apresId, jusquaId] : (id, question_id, valeur)
+     */
+    @Query("SELECT r.id, r.question.id, r.valeur FROM Reponse r WHERE r.prospection.id > :apresId " +
+            "AND r.prospection.id <= :jusquaId AND r.options IS NULL AND r.question.type IN :types")
+    List<Object[]> findChoixSansOptions(@Param("apresId") Long apresId,
+                                        @Param("jusquaId") Long jusquaId,
+                                        @Param("types") Collection<QuestionType> types);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Reponse r SET r.options = :options WHERE r.id = :id")
+    int renseignerOptions(@Param("id") Long id, @Param("options") Long[] options);
+
+
     void deleteByProspectionId(Long prospectionId);
 
 
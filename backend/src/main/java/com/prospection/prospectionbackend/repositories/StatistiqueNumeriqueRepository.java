@@ -0,0 +1,37 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.entities.StatistiqueNumerique;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StatistiqueNumeriqueRepository extends JpaRepository<StatistiqueNumerique, Long> {
+
+    /**
+     * Ligne verrouillée jusqu'au commit : deux instances qui y ajoutent leurs valeurs se succèdent
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StatistiqueNumerique s WHERE s.questionId = :questionId AND s.brancheId = :brancheId")
+    Optional<StatistiqueNumerique> findPourMiseAJour(@Param("questionId") Long questionId,
+                                                     @Param("brancheId") Long brancheId);
+
+    List<StatistiqueNumerique> findByQuestionId(Long questionId);
+
+    List<StatistiqueNumerique> findByQuestionIdAndRegionId(Long questionId, Long regionId);
+
+    List<StatistiqueNumerique> findByQuestionIdAndSupervisionId(Long questionId, Long supervisionId);
+
+    List<StatistiqueNumerique> findByQuestionIdAndBrancheId(Long questionId, Long brancheId);
+
+    @Modifying
+    @Query("DELETE FROM StatistiqueNumerique s")
+    int vider();
+}
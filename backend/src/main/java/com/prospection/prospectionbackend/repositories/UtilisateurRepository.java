@@ -23,7 +23,7 @@ public interface UtilisateurRepository extends JpaRepository<Utilisateur, Long>
     List<Utilisateur> findByRegionIdAndActifTrue(@Param("regionId") Long regionId);
     @Query("SELECT u FROM Utilisateur u WHERE u.supervision.id = :supervisionId AND u.actif= true")
     List<Utilisateur> findBySupervisionIdAndActifTrue(@Param("supervisionId") Long supervisionId);
-    @Query ("SELECT u FROM Utilisateur u WHERE u.branche.id =:brancheid AND u.actif=true")
+    @Query ("SELECT u FROM Utilisateur u WHERE u.branche.id = :brancheId AND u.actif=true")
     List<Utilisateur> findByBrancheIdAndActifTrue(@Param("brancheId") Long brancheId);
     @Query("SELECT u FROM Utilisateur u WHERE u.actif = true AND " +
             "(u.region.id = :regionId OR u.supervision.region.id = :regionId OR u.branche.supervision.region.id = :regionId)")
@@ -37,4 +37,7 @@ public interface UtilisateurRepository extends JpaRepository<Utilisateur, Long>
             "LEFT JOIN FETCH u.branche " +
             "WHERE u.email = :email AND u.actif = true")
     Optional<Utilisateur> findByEmailWithRelations(@Param("email") String email);
+
+    @Query("SELECT u.versionSecurite FROM Utilisateur u WHERE u.id = :id AND u.actif = true")
+    Optional<Integer> findVersionSecuriteActifById(@Param("id") Long id);
 }
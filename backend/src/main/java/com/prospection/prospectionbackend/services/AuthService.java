@@ -1,8 +1,10 @@
 package com.prospection.prospectionbackend.services;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.prospection.prospectionbackend.entities.Utilisateur;
 import com.prospection.prospectionbackend.repositories.UtilisateurRepository;
 import com.prospection.prospectionbackend.utils.JwtUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -16,6 +18,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 
+@Slf4j
 @Service
 @Transactional
 public class AuthService implements UserDetailsService {
@@ -42,33 +45,27 @@ public class AuthService implements UserDetailsService {
 
 
     public Map<String, Object> login(String email, String motDePasse) throws AuthenticationException {
-        System.out.println("=== LOGIN ATTEMPT ===");
-        System.out.println("Email: " + email);
-        System.out.println("Backend URL appelée: /api/auth/login");
+        log.debug("Tentative de connexion: {}", email);
 
         // Recherche de l'utilisateur actif
         Optional<Utilisateur> utilisateurOpt = utilisateurRepository.findByEmailAndActifTrue(email);
 
         if (utilisateurOpt.isEmpty()) {
-            System.out.println(" Utilisateur non trouvé pour: " + email);
+            log.info("Connexion refusée, utilisateur inconnu ou inactif: {}", email);
             throw new org.springframework.security.authentication.BadCredentialsException("Email ou mot de passe incorrect");
         }
 
         Utilisateur utilisateur = utilisateurOpt.get();
-        System.out.println("Utilisateur trouvé: " + utilisateur.getEmail());
-        System.out.println("Hash stocké: " + utilisateur.getMotDePasse());
-        System.out.println("Longueur hash: " + utilisateur.getMotDePasse().length());
 
         // Vérification du mot de passe
         boolean matches = passwordEncoder.matches(motDePasse, utilisateur.getMotDePasse());
-        System.out.println("Comparaison mot de passe: " + matches);
 
         if (!matches) {
-            System.out.println("Mot de passe incorrect");
+            log.info("Connexion refusée, mot de passe incorrect: {}", email);
             throw new org.springframework.security.authentication.BadCredentialsException("Email ou mot de passe incorrect");
         }
 
-        System.out.println("Authentification réussie");
+        log.debug("Authentification réussie: {}", email);
 
         // Mise à jour de la dernière connexion
         utilisateur.setDerniereConnexion(LocalDateTime.now());
@@ -77,7 +74,6 @@ public class AuthService implements UserDetailsService {
         // Génération du token JWT
         String token = jwtUtil.generateToken(utilisateur);
         String refreshToken = jwtUtil.generateRefreshToken(utilisateur);
-        System.out.println("Token généré: " + token.substring(0, 20) + "...");
 
         // Préparation de la réponse
         Map<String, Object> response = new HashMap<>();
@@ -92,15 +88,17 @@ public class AuthService implements UserDetailsService {
 
     public Map<String, Object> renewAccessToken(String refreshToken) {
         try {
+            DecodedJWT jwt = jwtUtil.validateToken(refreshToken);
+
             // Vérifier que c'est bien un refresh token
-            if (!jwtUtil.isRefreshToken(refreshToken)) {
+            if (!jwtUtil.isRefreshToken(jwt)) {
                 throw new RuntimeException("Token invalide");
             }
 
 
 
             // Récupérer l'utilisateur
-            String email = jwtUtil.getUsernameFromToken(refreshToken);
+            String email = jwt.getSubject();
             Optional<Utilisateur> utilisateurOpt = utilisateurRepository.findByEmailAndActifTrue(email);
 
             if (utilisateurOpt.isEmpty()) {
@@ -131,20 +129,17 @@ public class AuthService implements UserDetailsService {
                 return utilisateurRepository.findByEmailAndActifTrue(email);
             }
         } catch (Exception e) {
-            System.out.println("Token invalide: " + e.getMessage());
+            log.debug("Token invalide: {}", e.getMessage());
         }
         return Optional.empty();
     }
 
 
     public Map<String, Object> refreshToken(String oldToken) {
-        System.out.println("=== REFRESH TOKEN ===");
-
         Optional<Utilisateur> utilisateurOpt = validateTokenAndGetUser(oldToken);
 
         if (utilisateurOpt.isPresent()) {
             Utilisateur utilisateur = utilisateurOpt.get();
-            System.out.println("Token valide pour: " + utilisateur.getEmail());
 
             // Générer un nouveau token
             String newToken = jwtUtil.generateToken(utilisateur);
@@ -154,11 +149,10 @@ public class AuthService implements UserDetailsService {
             response.put("utilisateur", mapUtilisateurToResponse(utilisateur));
             response.put("expiresIn", System.currentTimeMillis() + 86400000); // 24h
 
-            System.out.println("Nouveau token généré");
             return response;
         }
 
-        System.out.println("Token invalide pour refresh");
+        log.debug("Token invalide pour refresh");
         throw new RuntimeException("Token invalide ou expiré");
     }
 
@@ -167,7 +161,7 @@ public class AuthService implements UserDetailsService {
 
     public void logout(String accessToken, String refreshToken) {
         tokenBlacklistService.blacklistTokens(accessToken, refreshToken);
-        System.out.println("Tokens ajoutés à la blacklist - Déconnexion effective");
+        log.debug("Tokens ajoutés à la blacklist - Déconnexion effective");
     }
 
     /**
@@ -0,0 +1,215 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
+import com.prospection.prospectionbackend.utils.BitmapQuestions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Complétude des prospections : chaque prospection porte l'ensemble des questions auxquelles
+ * elle répond (BitmapQuestions) et un indicateur "complet" quand il couvre toutes les questions
+ * obligatoires actives. Les prospections incomplètes se lisent par l'index partiel sur complet.
+ *
+ * L'ensemble est fixé à la création, avec les réponses. Quand les questions obligatoires
+ * changent, seul l'indicateur est recalculé depuis les ensembles, sans relire les réponses,
+ * par un passage périodique : plusieurs changements rapprochés n'en font qu'un.
+ * Les ensembles ne sont reconstruits depuis les réponses qu'au premier démarrage ou à la
+ * demande du siège (réponses écrites hors de l'application).
+ */
+@Slf4j
+@Service
+public class CompletudeService implements ApplicationRunner {
+
+    private static final int TAILLE_LOT = 5000;
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    @Autowired
+    private StockageReponses stockageReponses;
+
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Questions obligatoires modifiées depuis le dernier recalcul
+    private final AtomicBoolean recalculDemande = new AtomicBoolean();
+
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (prospectionRepository.existsByCompletIsNull()) {
+            recalculer(true);
+        }
+    }
+
+    /**
+     * Fixe les questions répondues et la complétude d'une prospection avant son enregistrement
+     */
+    public void marquer(SchemaFormulaire schema, Prospection prospection, Map<Long, String> valeurs) {
+        List<Long> repondues = new ArrayList<>(valeurs.size());
+        valeurs.forEach((questionId, valeur) -> {
+            if (valeur != null && !valeur.trim().isEmpty()) {
+                repondues.add(questionId);
+            }
+        });
+        byte[] questions = BitmapQuestions.de(repondues);
+        prospection.setQuestionsRepondues(questions);
+        prospection.setComplet(BitmapQuestions.contientToutes(questions, obligatoires(schema)));
+    }
+
+    /**
+     * Demande le recalcul de la complétude au commit d'un changement des questions obligatoires,
+     * une fois le schéma rechargé (SchemaFormulaireService.invalider, appelé avant)
+     */
+    public void recalculerApresCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recalculDemande.set(true);
+                }
+            });
+        } else {
+            recalculDemande.set(true);
+        }
+    }
+
+    /**
+     * Recalcule les indicateurs si un changement a été validé depuis le passage précédent.
+     * En cas d'échec (base indisponible), la demande est gardée pour le passage suivant.
+     */
+    @Scheduled(fixedDelayString = "${completude.recalcul-interval:5000}")
+    public void recalculerSiDemande() {
+        if (!recalculDemande.getAndSet(false)) {
+            return;
+        }
+        try {
+            recalculer(false);
+        } catch (DataAccessException e) {
+            recalculDemande.set(true);
+            log.warn("Recalcul de la complétude reporté : {}", e.getMessage());
+        }
+    }
+
+    public int reconstruire(Utilisateur utilisateur) {
+        if (utilisateur.getRole() != Role.SIEGE) {
+            throw new AccessDeniedException("Reconstruction réservée au siège");
+        }
+        return recalculer(true);
+    }
+
+    /**
+     * Parcourt les prospections par lots d'ids et n'écrit que ce qui change, une requête par
+     * valeur distincte dans le lot. Une création validée pendant le parcours avec l'ancien
+     * schéma garde l'indicateur calculé à sa création jusqu'au recalcul suivant.
+     * @param relireReponses reconstruit aussi les ensembles de questions depuis les réponses
+     * @return nombre de prospections modifiées
+     */
+    private synchronized int recalculer(boolean relireReponses) {
+        long debut = System.currentTimeMillis();
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        List<Long> obligatoires = obligatoires(schema);
+        List<Long> questions = new ArrayList<>();
+        for (QuestionCompilee question : schema.getQuestions()) {
+            questions.add(question.getId());
+        }
+
+        // Transaction propre à chaque lot, y compris après le commit d'une modification de question
+        TransactionTemplate transactionLot = new TransactionTemplate(transactionManager);
+        transactionLot.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        int modifiees = 0;
+        long apresId = 0;
+        while (true) {
+            List<Object[]> lot = prospectionRepository.findCompletudeSuivante(apresId, PageRequest.of(0, TAILLE_LOT));
+            if (lot.isEmpty()) {
+                break;
+            }
+            long dernier = ((Number) lot.get(lot.size() - 1)[0]).longValue();
+
+            Map<Long, List<Long>> relues = new HashMap<>();
+            if (relireReponses && !questions.isEmpty()) {
+                for (Object[] colonnes : stockageReponses.valeursPourFacettes(apresId, dernier, questions)) {
+                    String valeur = (String) colonnes[2];
+                    if (valeur != null && !valeur.trim().isEmpty()) {
+                        relues.computeIfAbsent((Long) colonnes[0], id -> new ArrayList<>()).add((Long) colonnes[1]);
+                    }
+                }
+            }
+
+            // Prospections à modifier, regroupées par (questions répondues, complet)
+            Map<ByteBuffer, List<Long>> completes = new HashMap<>();
+            Map<ByteBuffer, List<Long>> incompletes = new HashMap<>();
+            for (Object[] colonnes : lot) {
+                Long id = (Long) colonnes[0];
+                byte[] actuelles = (byte[]) colonnes[1];
+                if (actuelles == null && !relireReponses) {
+                    // Jamais calculée (écrite hors de l'application) : attend une reconstruction
+                    continue;
+                }
+                byte[] repondues = relireReponses
+                        ? BitmapQuestions.de(relues.getOrDefault(id, List.of()))
+                        : actuelles;
+                boolean complet = BitmapQuestions.contientToutes(repondues, obligatoires);
+                if (Arrays.equals(actuelles, repondues) && Boolean.valueOf(complet).equals(colonnes[2])) {
+                    continue;
+                }
+                (complet ? completes : incompletes).computeIfAbsent(ByteBuffer.wrap(repondues), b -> new ArrayList<>()).add(id);
+            }
+
+            modifiees += transactionLot.execute(statut -> {
+                int n = ecrire(completes, true, relireReponses);
+                return n + ecrire(incompletes, false, relireReponses);
+            });
+            apresId = dernier;
+        }
+        log.info("Complétude recalculée{} : {} prospections modifiées en {} ms",
+                relireReponses ? " depuis les réponses" : "", modifiees, System.currentTimeMillis() - debut);
+        return modifiees;
+    }
+
+    private int ecrire(Map<ByteBuffer, List<Long>> groupes, boolean complet, boolean questionsModifiees) {
+        if (!questionsModifiees) {
+            List<Long> ids = new ArrayList<>();
+            groupes.values().forEach(ids::addAll);
+            return ids.isEmpty() ? 0 : prospectionRepository.marquerComplet(ids, complet);
+        }
+        int modifiees = 0;
+        for (Map.Entry<ByteBuffer, List<Long>> groupe : groupes.entrySet()) {
+            modifiees += prospectionRepository.marquerQuestionsRepondues(groupe.getValue(), groupe.getKey().array(), complet);
+        }
+        return modifiees;
+    }
+
+    private static List<Long> obligatoires(SchemaFormulaire schema) {
+        List<Long> ids = new ArrayList<>();
+        for (QuestionCompilee question : schema.getQuestionsObligatoires()) {
+            ids.add(question.getId());
+        }
+        return ids;
+    }
+}
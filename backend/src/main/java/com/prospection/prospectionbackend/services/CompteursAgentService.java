@@ -0,0 +1,231 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compteurs des agents (prospections créées ou assignées par statut, créées aujourd'hui)
+ * tenus en mémoire pour l'écran d'accueil, qui les interroge en boucle.
+ *
+ * Un agent est chargé en base à sa première consultation, puis ses compteurs suivent les
+ * créations faites ici, au commit. Les écritures des autres instances ou hors application
+ * sont rattrapées par une réconciliation périodique, en trois requêtes groupées pour tous
+ * les agents suivis. Un agent qui ne consulte plus ses compteurs cesse d'être suivi.
+ */
+@Slf4j
+@Service
+public class CompteursAgentService {
+
+    private static final StatutProspection[] STATUTS = StatutProspection.values();
+
+    // Par lot de la clause IN de la réconciliation
+    private static final int TAILLE_LOT = 500;
+
+    // Au-delà, le premier chargement l'emporte ; un écart éventuel est corrigé à la réconciliation
+    private static final int ESSAIS_CHARGEMENT = 3;
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    @Value("${statistiques.inactivite-max:600000}")
+    private long inactiviteMax;
+
+    private final ConcurrentHashMap<Long, Compteurs> parAgent = new ConcurrentHashMap<>();
+
+
+    /**
+     * Comptes par statut (absents si nuls) et créations du jour de l'agent
+     */
+    public Instantane lire(Long agentId) {
+        Compteurs compteurs = parAgent.computeIfAbsent(agentId, id -> new Compteurs());
+        if (!compteurs.charge) {
+            // Suivi dès maintenant : une création qui valide pendant le chargement est comptée,
+            // et le chargement recommence puisque la base lue peut l'inclure ou non
+            synchronized (compteurs.chargement) {
+                for (int essai = 1; !compteurs.charge; essai++) {
+                    charger(Map.of(agentId, compteurs), essai >= ESSAIS_CHARGEMENT);
+                }
+            }
+        }
+        return compteurs.instantane(LocalDate.now());
+    }
+
+    /**
+     * Compte une prospection qui vient d'être enregistrée, au commit de la transaction en cours
+     */
+    public void enregistrerApresCommit(Prospection prospection) {
+        Long createurId = prospection.getCreateur().getId();
+        Long agentAssigneId = prospection.getAgentAssigne() != null ? prospection.getAgentAssigne().getId() : null;
+        StatutProspection statut = prospection.getStatut();
+        LocalDate jour = prospection.getDateCreation().toLocalDate();
+
+        Runnable compter = () -> {
+            Compteurs createur = parAgent.get(createurId);
+            if (createur != null) {
+                createur.ajouter(statut, jour);
+            }
+            if (agentAssigneId != null && !agentAssigneId.equals(createurId)) {
+                Compteurs assigne = parAgent.get(agentAssigneId);
+                if (assigne != null) {
+                    assigne.ajouter(statut, null);
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    compter.run();
+                }
+            });
+        } else {
+            compter.run();
+        }
+    }
+
+    /**
+     * Recharge les agents suivis et oublie ceux qui ne consultent plus leurs compteurs
+     */
+    @Scheduled(fixedDelayString = "${statistiques.reconciliation-interval:60000}")
+    public void reconcilier() {
+        long limite = System.currentTimeMillis() - inactiviteMax;
+        parAgent.entrySet().removeIf(entree -> entree.getValue().dernierAcces < limite);
+
+        List<Long> agents = new ArrayList<>(parAgent.keySet());
+        int corriges = 0;
+        for (int debut = 0; debut < agents.size(); debut += TAILLE_LOT) {
+            Map<Long, Compteurs> lot = new HashMap<>();
+            for (Long agentId : agents.subList(debut, Math.min(debut + TAILLE_LOT, agents.size()))) {
+                Compteurs compteurs = parAgent.get(agentId);
+                if (compteurs != null) {
+                    lot.put(agentId, compteurs);
+                }
+            }
+            corriges += charger(lot, false);
+        }
+        if (corriges > 0) {
+            log.debug("Réconciliation des compteurs : {} agents corrigés sur {}", corriges, agents.size());
+        }
+    }
+
+    /**
+     * Remplace les compteurs par les comptes en base. Sauf si {@code forcer}, un compteur incrémenté
+     * pendant la lecture n'est pas remplacé : la base lue peut précéder ou suivre cette création.
+     * @return nombre de compteurs qui différaient de la base
+     */
+    private int charger(Map<Long, Compteurs> lot, boolean forcer) {
+        if (lot.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Long> versions = new HashMap<>();
+        Map<Long, long[]> parStatut = new HashMap<>();
+        Map<Long, Long> aujourdhui = new HashMap<>();
+        for (Map.Entry<Long, Compteurs> entree : lot.entrySet()) {
+            versions.put(entree.getKey(), entree.getValue().version());
+            parStatut.put(entree.getKey(), new long[STATUTS.length]);
+        }
+
+        LocalDate jour = LocalDate.now();
+        for (Object[] ligne : prospectionRepository.countByCreateurIdsAndStatut(lot.keySet())) {
+            parStatut.get((Long) ligne[0])[((StatutProspection) ligne[1]).ordinal()] += (Long) ligne[2];
+        }
+        for (Object[] ligne : prospectionRepository.countByAgentAssigneIdsAndStatut(lot.keySet())) {
+            parStatut.get((Long) ligne[0])[((StatutProspection) ligne[1]).ordinal()] += (Long) ligne[2];
+        }
+        for (Object[] ligne : prospectionRepository.countByCreateurIdsBetween(
+                lot.keySet(), jour.atStartOfDay(), jour.plusDays(1).atStartOfDay())) {
+            aujourdhui.put((Long) ligne[0], (Long) ligne[1]);
+        }
+
+        int corriges = 0;
+        for (Map.Entry<Long, Compteurs> entree : lot.entrySet()) {
+            Long agentId = entree.getKey();
+            if (entree.getValue().remplacer(versions.get(agentId), parStatut.get(agentId),
+                    aujourdhui.getOrDefault(agentId, 0L), jour, forcer)) {
+                corriges++;
+            }
+        }
+        return corriges;
+    }
+
+
+    public record Instantane(Map<StatutProspection, Long> parStatut, long total, long aujourdhui) {
+    }
+
+    /**
+     * Compteurs d'un agent ; chaque opération est en O(1) sous le moniteur de l'agent
+     */
+    private static final class Compteurs {
+        private final long[] parStatut = new long[STATUTS.length];
+        private long aujourdhui;
+        private LocalDate jour = LocalDate.now();
+        private long version;
+        private volatile boolean charge;
+        private volatile long dernierAcces = System.currentTimeMillis();
+        // Sérialise les chargements sans bloquer les incréments
+        private final Object chargement = new Object();
+
+        synchronized void ajouter(StatutProspection statut, LocalDate jourCreation) {
+            parStatut[statut.ordinal()]++;
+            if (jourCreation != null) {
+                changerDeJour(LocalDate.now());
+                if (jourCreation.equals(jour)) {
+                    aujourdhui++;
+                }
+            }
+            version++;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized boolean remplacer(long versionLue, long[] comptes, long creesLeJour, LocalDate jourLu, boolean forcer) {
+            if (version != versionLue && !forcer) {
+                return false;
+            }
+            boolean different = charge
+                    && (!Arrays.equals(parStatut, comptes) || aujourdhui != creesLeJour || !jour.equals(jourLu));
+            charge = true;
+            System.arraycopy(comptes, 0, parStatut, 0, comptes.length);
+            aujourdhui = creesLeJour;
+            jour = jourLu;
+            return different;
+        }
+
+        synchronized Instantane instantane(LocalDate maintenant) {
+            dernierAcces = System.currentTimeMillis();
+            changerDeJour(maintenant);
+            Map<StatutProspection, Long> comptes = new EnumMap<>(StatutProspection.class);
+            long total = 0;
+            for (StatutProspection statut : STATUTS) {
+                long nombre = parStatut[statut.ordinal()];
+                if (nombre > 0) {
+                    comptes.put(statut, nombre);
+                    total += nombre;
+                }
+            }
+            return new Instantane(comptes, total, aujourdhui);
+        }
+
+        private void changerDeJour(LocalDate maintenant) {
+            if (!maintenant.equals(jour)) {
+                jour = maintenant;
+                aujourdhui = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Export CSV des prospections, une colonne par question active dans l'ordre du formulaire.
+ * Les lignes prospection × réponse arrivent d'un seul curseur trié par prospection : chaque
+ * prospection est pivotée puis écrite dès que la suivante commence. La mémoire ne dépend que
+ * du nombre de questions, pas du nombre de lignes exportées.
+ *
+ * Format pour Excel en français : UTF-8 avec BOM, séparateur ';', champs entre guillemets
+ * au besoin (RFC 4180).
+ */
+@Slf4j
+@Service
+public class ExportProspectionsService {
+
+    private static final char SEPARATEUR = ';';
+
+    // Nombres et numéros de téléphone signés (+212 6..., -5, -2,5) : seules valeurs en + ou - laissées telles quelles
+    private static final Pattern NOMBRE_SIGNE = Pattern.compile("[+-]?[0-9 ]+([.,][0-9]+)?");
+
+    private static final DateTimeFormatter FORMAT_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String[] ENTETES = {"Id", "Date de création", "Type", "Statut", "Créateur",
+            "Agent assigné", "Branche", "Commentaire"};
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+
+
+    /**
+     * Écrit le CSV des prospections visibles par l'utilisateur ; le flux n'est pas fermé
+     * @return nombre de prospections écrites
+     */
+    @Transactional(readOnly = true)
+    public long exporterCsv(Utilisateur utilisateur, OutputStream sortie) throws IOException {
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        List<QuestionCompilee> questions = schema.getQuestionsActives();
+        Map<Long, Integer> colonnes = new HashMap<>();
+        for (int i = 0; i < questions.size(); i++) {
+            colonnes.put(questions.get(i).getId(), ENTETES.length + i);
+        }
+
+        Writer csv = new BufferedWriter(new OutputStreamWriter(sortie, StandardCharsets.UTF_8), 64 * 1024);
+        // BOM : sans lui, Excel lit le fichier dans l'encodage du poste
+        csv.write('\uFEFF');
+        String[] ligne = new String[ENTETES.length + questions.size()];
+        System.arraycopy(ENTETES, 0, ligne, 0, ENTETES.length);
+        for (int i = 0; i < questions.size(); i++) {
+            ligne[ENTETES.length + i] = questions.get(i).getQuestion();
+        }
+        ecrireLigne(csv, ligne);
+
+        long ecrites = 0;
+        Long courante = null;
+        try (Stream<Object[]> lignes = prospectionRepository.parcourirAvecReponses(Perimetre.de(utilisateur))) {
+            Iterator<Object[]> iterateur = lignes.iterator();
+            while (iterateur.hasNext()) {
+                Object[] colonnesLues = iterateur.next();
+                Long id = (Long) colonnesLues[0];
+                if (!id.equals(courante)) {
+                    if (courante != null) {
+                        ecrireLigne(csv, ligne);
+                        ecrites++;
+                    }
+                    courante = id;
+                    commencer(ligne, colonnesLues, schema, colonnes);
+                }
+                if (colonnesLues[11] != null) {
+                    placer(ligne, schema, colonnes, (Long) colonnesLues[11], (String) colonnesLues[12], (Long[]) colonnesLues[13]);
+                }
+            }
+        }
+        if (courante != null) {
+            ecrireLigne(csv, ligne);
+            ecrites++;
+        }
+        csv.flush();
+        log.info("Export CSV de {} prospections pour l'utilisateur {}", ecrites, utilisateur.getId());
+        return ecrites;
+    }
+
+    /**
+     * Remet la ligne à zéro avec les colonnes de la prospection et, en mode document, ses réponses
+     */
+    @SuppressWarnings("unchecked")
+    private static void commencer(String[] ligne, Object[] colonnes, SchemaFormulaire schema, Map<Long, Integer> parQuestion) {
+        Arrays.fill(ligne, null);
+        ligne[0] = colonnes[0].toString();
+        ligne[1] = colonnes[1] != null ? FORMAT_DATE.format((LocalDateTime) colonnes[1]) : null;
+        ligne[2] = Objects.toString(colonnes[2], null);
+        ligne[3] = Objects.toString(colonnes[3], null);
+        ligne[4] = nomComplet((String) colonnes[5], (String) colonnes[4]);
+        ligne[5] = nomComplet((String) colonnes[7], (String) colonnes[6]);
+        ligne[6] = (String) colonnes[8];
+        ligne[7] = (String) colonnes[9];
+        Map<Long, String> document = (Map<Long, String>) colonnes[10];
+        if (document != null) {
+            document.forEach((questionId, valeur) -> placer(ligne, schema, parQuestion, questionId, valeur, null));
+        }
+    }
+
+    /**
+     * Réponse dans la colonne de sa question ; les options sont affichées avec leur libellé actuel
+     * (la valeur saisie si une option n'existe plus). Réponse à une question inactive : ignorée.
+     */
+    private static void placer(String[] ligne, SchemaFormulaire schema, Map<Long, Integer> parQuestion,
+                               Long questionId, String valeur, Long[] options) {
+        Integer colonne = parQuestion.get(questionId);
+        if (colonne == null) {
+            return;
+        }
+        String libelles = options != null ? schema.getQuestion(questionId).libelles(options) : null;
+        ligne[colonne] = libelles != null ? libelles : valeur;
+    }
+
+    private static String nomComplet(String prenom, String nom) {
+        if (prenom == null && nom == null) {
+            return null;
+        }
+        return prenom == null ? nom : nom == null ? prenom : prenom + " " + nom;
+    }
+
+    private static void ecrireLigne(Writer csv, String[] valeurs) throws IOException {
+        for (int i = 0; i < valeurs.length; i++) {
+            if (i > 0) {
+                csv.write(SEPARATEUR);
+            }
+            ecrireChamp(csv, valeurs[i]);
+        }
+        csv.write("\r\n");
+    }
+
+    private static void ecrireChamp(Writer csv, String valeur) throws IOException {
+        if (valeur == null || valeur.isEmpty()) {
+            return;
+        }
+        // Une valeur lue comme formule par le tableur est neutralisée (-1+HYPERLINK(...) compris)
+        char premier = valeur.charAt(0);
+        boolean formule = premier == '=' || premier == '@' || premier == '\t' || premier == '\r'
+                || ((premier == '+' || premier == '-') && !NOMBRE_SIGNE.matcher(valeur).matches());
+        if (formule) {
+            valeur = "'" + valeur;
+        }
+        boolean guillemets = valeur.indexOf(SEPARATEUR) >= 0 || valeur.indexOf('"') >= 0
+                || valeur.indexOf('\n') >= 0 || valeur.indexOf('\r') >= 0;
+        if (!guillemets) {
+            csv.write(valeur);
+            return;
+        }
+        csv.write('"');
+        csv.write(valeur.replace("\"", "\"\""));
+        csv.write('"');
+    }
+}
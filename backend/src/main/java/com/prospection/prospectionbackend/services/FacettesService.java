@@ -0,0 +1,447 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+import com.prospection.prospectionbackend.dto.RequeteFacettes;
+import com.prospection.prospectionbackend.dto.RequeteFacettes.Critere;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.OptionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
+import com.prospection.prospectionbackend.utils.BitmapCompresse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index en mémoire des prospections par réponse aux questions à choix, par statut et par
+ * structure : un bitmap compressé d'ids de prospection pour chaque (question, option).
+ * Un critère ET / OU devient une suite d'intersections et d'unions de bitmaps, sans
+ * auto-jointure sur reponses ; les comptes par option sont des cardinalités d'intersection.
+ *
+ * Construit au premier appel. Une prospection créée ici est indexée au commit de sa
+ * transaction ; celles des autres instances sont lues en suivant l'id de la table,
+ * comme les révocations de jetons.
+ */
+@Slf4j
+@Service
+public class FacettesService {
+
+    private static final int TAILLE_LOT = 5000;
+    private static final int TAILLE_PAGE_MAX = 100;
+    private static final int PROFONDEUR_MAX = 8;
+
+    // Relecture des derniers ids : une transaction plus ancienne peut valider après une plus récente
+    private static final long CHEVAUCHEMENT = 100;
+
+    private static final BitmapCompresse VIDE = new BitmapCompresse();
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    @Autowired
+    private StockageReponses stockageReponses;
+
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+
+    // Lectures concurrentes ; l'écriture d'un lot ou d'une prospection est exclusive
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+
+    private volatile Index index;
+
+
+    public ResultatFacettes rechercher(Utilisateur utilisateur, RequeteFacettes requete) {
+        Perimetre perimetre = Perimetre.de(utilisateur);
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        int taille = Math.max(1, Math.min(requete.getTaille(), TAILLE_PAGE_MAX));
+        long avant = Long.MAX_VALUE;
+        if (requete.getCurseur() != null && !requete.getCurseur().isBlank()) {
+            try {
+                avant = Long.parseLong(requete.getCurseur());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Curseur de pagination invalide");
+            }
+        }
+        List<Long> questionsFacettes = requete.getFacettes() != null ? requete.getFacettes() : List.of();
+        for (Long questionId : questionsFacettes) {
+            questionIndexee(schema, questionId);
+        }
+
+        Index courant = indexCourant();
+        long total;
+        List<Long> ids;
+        Map<Long, Map<String, Long>> facettes = new LinkedHashMap<>();
+        Map<StatutProspection, Long> statuts = new EnumMap<>(StatutProspection.class);
+
+        verrou.readLock().lock();
+        try {
+            BitmapCompresse resultat = requete.getCritere() == null
+                    ? courant.portee(perimetre)
+                    : BitmapCompresse.et(courant.portee(perimetre), evaluer(courant, schema, requete.getCritere(), 0));
+            total = resultat.cardinalite();
+            // Ids croissants avec la date de création : les plus récentes d'abord
+            ids = resultat.precedentes(avant, taille + 1);
+
+            for (Long questionId : questionsFacettes) {
+                facettes.put(questionId, compter(courant, schema.getQuestion(questionId), resultat));
+            }
+            courant.parStatut.forEach((statut, bitmap) -> {
+                long compte = resultat.cardinaliteEt(bitmap);
+                if (compte > 0) {
+                    statuts.put(statut, compte);
+                }
+            });
+        } finally {
+            verrou.readLock().unlock();
+        }
+
+        String suivant = null;
+        if (ids.size() > taille) {
+            ids = ids.subList(0, taille);
+            suivant = Long.toString(ids.get(taille - 1));
+        }
+        List<ProspectionResume> prospections = prospectionRepository.trouverResumes(ids);
+        return new ResultatFacettes(total, prospections, suivant, facettes, statuts);
+    }
+
+    /**
+     * Indexe une prospection qui vient d'être enregistrée, au commit de la transaction en cours.
+     * Les valeurs sont copiées maintenant : l'entité n'est plus lue après le commit.
+     * @param reponses valeurs nettoyées par id de question, telles qu'enregistrées
+     */
+    public void indexerApresCommit(Prospection prospection, Map<Long, String> reponses) {
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        LigneProspection ligne = new LigneProspection(
+                prospection.getId(),
+                prospection.getStatut(),
+                prospection.getCreateur().getId(),
+                prospection.getAgentAssigne() != null ? prospection.getAgentAssigne().getId() : null,
+                prospection.getBranche() != null ? prospection.getBranche().getId() : null,
+                prospection.getSupervision() != null ? prospection.getSupervision().getId() : null,
+                prospection.getRegion() != null ? prospection.getRegion().getId() : null);
+        List<ValeurReponse> valeurs = new ArrayList<>();
+        for (Map.Entry<Long, String> reponse : reponses.entrySet()) {
+            QuestionCompilee question = schema.getQuestion(reponse.getKey());
+            if (estIndexee(question)) {
+                valeurs.add(ValeurReponse.de(prospection.getId(), question, reponse.getValue(), null));
+            }
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    appliquer(List.of(ligne), valeurs);
+                }
+            });
+        } else {
+            appliquer(List.of(ligne), valeurs);
+        }
+    }
+
+    /**
+     * Ajoute à l'index les prospections enregistrées depuis le dernier passage,
+     * y compris celles des autres instances. Rien tant que l'index n'a pas servi.
+     */
+    @Scheduled(fixedDelayString = "${facettes.synchronisation-interval:10000}")
+    public synchronized void synchroniser() {
+        Index courant = index;
+        if (courant != null) {
+            charger(courant, Math.max(0, courant.dernierId - CHEVAUCHEMENT));
+        }
+    }
+
+    private synchronized Index indexCourant() {
+        if (index == null) {
+            long debut = System.currentTimeMillis();
+            Index nouveau = new Index();
+            charger(nouveau, 0);
+            index = nouveau;
+            log.info("Index des facettes construit : {} prospections en {} ms",
+                    nouveau.toutes.cardinalite(), System.currentTimeMillis() - debut);
+        }
+        return index;
+    }
+
+    private void charger(Index cible, long apresId) {
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        List<Long> questions = new ArrayList<>();
+        for (QuestionCompilee question : schema.getQuestions()) {
+            if (estIndexee(question)) {
+                questions.add(question.getId());
+            }
+        }
+
+        long id = apresId;
+        while (true) {
+            List<Object[]> lot = prospectionRepository.findFacettesSuivantes(id, PageRequest.of(0, TAILLE_LOT));
+            if (lot.isEmpty()) {
+                return;
+            }
+            long dernier = ((Number) lot.get(lot.size() - 1)[0]).longValue();
+
+            List<LigneProspection> lignes = new ArrayList<>(lot.size());
+            for (Object[] colonnes : lot) {
+                lignes.add(new LigneProspection(
+                        ((Number) colonnes[0]).longValue(), (StatutProspection) colonnes[1],
+                        (Long) colonnes[2], (Long) colonnes[3], (Long) colonnes[4], (Long) colonnes[5], (Long) colonnes[6]));
+            }
+            List<ValeurReponse> valeurs = new ArrayList<>();
+            if (!questions.isEmpty()) {
+                for (Object[] colonnes : stockageReponses.valeursPourFacettes(id, dernier, questions)) {
+                    valeurs.add(ValeurReponse.de((Long) colonnes[0], schema.getQuestion((Long) colonnes[1]),
+                            (String) colonnes[2], (Long[]) colonnes[3]));
+                }
+            }
+            appliquer(cible, lignes, valeurs);
+
+            id = dernier;
+            if (lot.size() < TAILLE_LOT) {
+                return;
+            }
+        }
+    }
+
+    private void appliquer(List<LigneProspection> lignes, List<ValeurReponse> valeurs) {
+        Index courant = index;
+        // Pas encore construit : la construction lira la prospection en base
+        if (courant != null) {
+            appliquer(courant, lignes, valeurs);
+        }
+    }
+
+    private void appliquer(Index cible, List<LigneProspection> lignes, List<ValeurReponse> valeurs) {
+        verrou.writeLock().lock();
+        try {
+            for (LigneProspection ligne : lignes) {
+                cible.ajouter(ligne);
+            }
+            for (ValeurReponse valeur : valeurs) {
+                cible.ajouter(valeur);
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    private BitmapCompresse evaluer(Index courant, SchemaFormulaire schema, Critere critere, int profondeur) {
+        if (critere == null) {
+            throw new IllegalArgumentException("Critère vide");
+        }
+        if (profondeur > PROFONDEUR_MAX) {
+            throw new IllegalArgumentException("Critère trop imbriqué (" + PROFONDEUR_MAX + " niveaux au plus)");
+        }
+        int renseignes = (critere.getEt() != null ? 1 : 0) + (critere.getOu() != null ? 1 : 0)
+                + (critere.getQuestionId() != null ? 1 : 0) + (critere.getStatuts() != null ? 1 : 0);
+        if (renseignes != 1) {
+            throw new IllegalArgumentException("Un critère porte exactement sur : et, ou, questionId ou statuts");
+        }
+
+        if (critere.getEt() != null) {
+            exigerNonVide(critere.getEt(), "et");
+            List<BitmapCompresse> termes = new ArrayList<>();
+            for (Critere terme : critere.getEt()) {
+                termes.add(evaluer(courant, schema, terme, profondeur + 1));
+            }
+            // Du plus sélectif au moins sélectif : les intersections rétrécissent au plus vite
+            termes.sort(Comparator.comparingLong(BitmapCompresse::cardinalite));
+            BitmapCompresse resultat = termes.get(0);
+            for (int i = 1; i < termes.size() && !resultat.estVide(); i++) {
+                resultat = BitmapCompresse.et(resultat, termes.get(i));
+            }
+            return resultat;
+        }
+        if (critere.getOu() != null) {
+            exigerNonVide(critere.getOu(), "ou");
+            BitmapCompresse resultat = VIDE;
+            for (Critere terme : critere.getOu()) {
+                resultat = BitmapCompresse.ou(resultat, evaluer(courant, schema, terme, profondeur + 1));
+            }
+            return resultat;
+        }
+        if (critere.getQuestionId() != null) {
+            questionIndexee(schema, critere.getQuestionId());
+            exigerNonVide(critere.getValeurs(), "valeurs");
+            Map<String, BitmapCompresse> parValeur = courant.parReponse.getOrDefault(critere.getQuestionId(), Map.of());
+            BitmapCompresse resultat = VIDE;
+            for (String valeur : critere.getValeurs()) {
+                BitmapCompresse bitmap = valeur != null ? parValeur.get(valeur.trim()) : null;
+                if (bitmap != null) {
+                    resultat = BitmapCompresse.ou(resultat, bitmap);
+                }
+            }
+            return resultat;
+        }
+        exigerNonVide(critere.getStatuts(), "statuts");
+        BitmapCompresse resultat = VIDE;
+        for (StatutProspection statut : critere.getStatuts()) {
+            BitmapCompresse bitmap = courant.parStatut.get(statut);
+            if (bitmap != null) {
+                resultat = BitmapCompresse.ou(resultat, bitmap);
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Comptes par option dans l'ordre du formulaire, options à zéro comprises ;
+     * les anciennes valeurs qui ne sont plus des options suivent si elles apparaissent
+     */
+    private Map<String, Long> compter(Index courant, QuestionCompilee question, BitmapCompresse resultat) {
+        Map<String, BitmapCompresse> parValeur = courant.parReponse.getOrDefault(question.getId(), Map.of());
+        Map<String, Long> comptes = new LinkedHashMap<>();
+        for (OptionCompilee option : question.getOptions()) {
+            BitmapCompresse bitmap = parValeur.get(option.getValeur());
+            comptes.put(option.getValeur(), bitmap != null ? resultat.cardinaliteEt(bitmap) : 0L);
+        }
+        parValeur.forEach((valeur, bitmap) -> {
+            if (!comptes.containsKey(valeur)) {
+                long compte = resultat.cardinaliteEt(bitmap);
+                if (compte > 0) {
+                    comptes.put(valeur, compte);
+                }
+            }
+        });
+        return comptes;
+    }
+
+    private static void questionIndexee(SchemaFormulaire schema, Long questionId) {
+        if (!estIndexee(schema.getQuestion(questionId))) {
+            throw new IllegalArgumentException("Question sans options, non filtrable: " + questionId);
+        }
+    }
+
+    private static boolean estIndexee(QuestionCompilee question) {
+        return question != null && question.getType().requiresOptions();
+    }
+
+    private static void exigerNonVide(List<?> liste, String champ) {
+        if (liste == null || liste.isEmpty()) {
+            throw new IllegalArgumentException("Le champ '" + champ + "' du critère est vide");
+        }
+    }
+
+    private record LigneProspection(long id, StatutProspection statut, Long createurId, Long agentId,
+                                    Long brancheId, Long supervisionId, Long regionId) {
+    }
+
+    /**
+     * Réponse indexée sous les libellés de ses options
+     */
+    private record ValeurReponse(Long prospectionId, Long questionId, List<String> libelles) {
+
+        /**
+         * Options désignées par les ids enregistrés, sinon décodées de la valeur comme à la validation :
+         * un libellé qui contient une virgule reste une seule option. Une valeur qui ne désigne plus
+         * d'options (option supprimée ou ancienne saisie) est indexée telle quelle.
+         * @param options ids enregistrés, null s'ils ne le sont pas
+         */
+        static ValeurReponse de(Long prospectionId, QuestionCompilee question, String valeur, Long[] options) {
+            Long[] ids = options != null ? options : question.optionsChoisies(valeur);
+            List<String> libelles = new ArrayList<>();
+            if (ids != null) {
+                for (Long id : ids) {
+                    OptionCompilee option = question.getOption(id);
+                    if (option == null) {
+                        libelles.clear();
+                        break;
+                    }
+                    libelles.add(option.getValeur());
+                }
+            }
+            if (libelles.isEmpty() && valeur != null && !valeur.trim().isEmpty()) {
+                libelles.add(valeur.trim());
+            }
+            return new ValeurReponse(prospectionId, question.getId(), libelles);
+        }
+    }
+
+
+    private static final class Index {
+        private final BitmapCompresse toutes = new BitmapCompresse();
+        private final Map<StatutProspection, BitmapCompresse> parStatut = new EnumMap<>(StatutProspection.class);
+        private final Map<Long, BitmapCompresse> parAgent = new HashMap<>();
+        private final Map<Long, BitmapCompresse> parBranche = new HashMap<>();
+        private final Map<Long, BitmapCompresse> parSupervision = new HashMap<>();
+        private final Map<Long, BitmapCompresse> parRegion = new HashMap<>();
+        private final Map<Long, Map<String, BitmapCompresse>> parReponse = new HashMap<>();
+        private long dernierId;
+
+        void ajouter(LigneProspection ligne) {
+            toutes.ajouter(ligne.id());
+            parStatut.computeIfAbsent(ligne.statut(), s -> new BitmapCompresse()).ajouter(ligne.id());
+            ajouter(parAgent, ligne.createurId(), ligne.id());
+            ajouter(parAgent, ligne.agentId(), ligne.id());
+            ajouter(parBranche, ligne.brancheId(), ligne.id());
+            ajouter(parSupervision, ligne.supervisionId(), ligne.id());
+            ajouter(parRegion, ligne.regionId(), ligne.id());
+            dernierId = Math.max(dernierId, ligne.id());
+        }
+
+        void ajouter(ValeurReponse valeur) {
+            if (valeur.libelles().isEmpty()) {
+                return;
+            }
+            Map<String, BitmapCompresse> parValeur = parReponse.computeIfAbsent(valeur.questionId(), q -> new HashMap<>());
+            for (String libelle : valeur.libelles()) {
+                parValeur.computeIfAbsent(libelle, v -> new BitmapCompresse()).ajouter(valeur.prospectionId());
+            }
+        }
+
+        BitmapCompresse portee(Perimetre perimetre) {
+            switch (perimetre.niveau()) {
+                case AGENT:
+                    return parAgent.getOrDefault(perimetre.id(), VIDE);
+                case BRANCHE:
+                    return parBranche.getOrDefault(perimetre.id(), VIDE);
+                case SUPERVISION:
+                    return parSupervision.getOrDefault(perimetre.id(), VIDE);
+                case REGION:
+                    return parRegion.getOrDefault(perimetre.id(), VIDE);
+                default:
+                    return toutes;
+            }
+        }
+
+        private static void ajouter(Map<Long, BitmapCompresse> bitmaps, Long cle, long id) {
+            if (cle != null) {
+                bitmaps.computeIfAbsent(cle, c -> new BitmapCompresse()).ajouter(id);
+            }
+        }
+    }
+
+
+    public static class ResultatFacettes {
+        private final long total;
+        private final List<ProspectionResume> prospections;
+        private final String nextCursor;
+        private final Map<Long, Map<String, Long>> facettes;
+        private final Map<StatutProspection, Long> statuts;
+
+        public ResultatFacettes(long total, List<ProspectionResume> prospections, String nextCursor,
+                                Map<Long, Map<String, Long>> facettes, Map<StatutProspection, Long> statuts) {
+            this.total = total;
+            this.prospections = prospections;
+            this.nextCursor = nextCursor;
+            this.facettes = facettes;
+            this.statuts = statuts;
+        }
+
+        public long getTotal() { return total; }
+        public List<ProspectionResume> getProspections() { return prospections; }
+        public String getNextCursor() { return nextCursor; }
+        public Map<Long, Map<String, Long>> getFacettes() { return facettes; }
+        public Map<StatutProspection, Long> getStatuts() { return statuts; }
+    }
+}
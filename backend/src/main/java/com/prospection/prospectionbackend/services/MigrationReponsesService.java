@@ -0,0 +1,152 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import com.prospection.prospectionbackend.repositories.ReponseRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Migration des réponses entre le mode lignes et le mode document (Postgres), par lots d'ids
+ * de prospection, chaque instruction dans sa propre transaction. Chaque étape ne touche que les
+ * prospections encore à migrer : une migration interrompue se relance sans effet de bord.
+ *
+ * Lancée au démarrage avec {@code --prospection.migration-reponses=vers-document} (ou
+ * {@code vers-lignes}). Vers le document, l'application peut déjà tourner en mode document :
+ * les prospections pas encore migrées sont lues dans reponses. {@code options} renseigne les
+ * ids des options des réponses à choix enregistrées avant qu'ils ne soient stockés, avec le
+ * décodeur de la validation : un libellé qui contient une virgule reste une seule option.
+ */
+@Slf4j
+@Service
+public class MigrationReponsesService implements ApplicationRunner {
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    @Autowired
+    private ReponseRepository reponseRepository;
+
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private static final Set<QuestionType> TYPES_A_CHOIX = EnumSet.of(QuestionType.CHOICE, QuestionType.MULTIPLE_CHOICE);
+
+    @Value("${prospection.migration-reponses:}")
+    private String migration;
+
+    @Value("${prospection.migration-reponses-lot:1000}")
+    private int tailleLot;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        switch (migration) {
+            case "" -> { }
+            case "vers-document" -> versDocument(tailleLot, true);
+            case "vers-lignes" -> versLignes(tailleLot);
+            case "options" -> renseignerOptions(tailleLot);
+            default -> throw new IllegalArgumentException("Migration des réponses inconnue: " + migration);
+        }
+    }
+
+    /**
+     * Construit le document des prospections qui n'en ont pas
+     * @param supprimerLignes supprime ensuite leurs lignes de reponses (gain de place)
+     * @return nombre de documents construits
+     */
+    public int versDocument(int tailleLot, boolean supprimerLignes) {
+        int documents = 0;
+        int lignes = 0;
+        long apresId = 0;
+        long debut = System.currentTimeMillis();
+        for (Long jusquaId = borneLot(apresId, tailleLot); jusquaId != null; jusquaId = borneLot(apresId, tailleLot)) {
+            documents += prospectionRepository.migrerVersDocument(apresId, jusquaId);
+            if (supprimerLignes) {
+                lignes += reponseRepository.supprimerLignesMigrees(apresId, jusquaId);
+            }
+            apresId = jusquaId;
+        }
+        log.info("Migration vers le mode document : {} documents construits, {} lignes supprimées en {} ms",
+                documents, lignes, System.currentTimeMillis() - debut);
+        return documents;
+    }
+
+    /**
+     * Recrée les lignes de reponses des prospections qui n'ont qu'un document, puis efface leur document
+     * @return nombre de lignes recréées
+     */
+    public int versLignes(int tailleLot) {
+        int lignes = 0;
+        long apresId = 0;
+        long debut = System.currentTimeMillis();
+        for (Long jusquaId = borneLot(apresId, tailleLot); jusquaId != null; jusquaId = borneLot(apresId, tailleLot)) {
+            lignes += reponseRepository.recreerLignes(apresId, jusquaId);
+            renseignerOptions(schemaFormulaireService.getSchema(), apresId, jusquaId);
+            prospectionRepository.effacerDocuments(apresId, jusquaId);
+            apresId = jusquaId;
+        }
+        log.info("Migration vers le mode lignes : {} lignes recréées en {} ms", lignes, System.currentTimeMillis() - debut);
+        return lignes;
+    }
+
+    /**
+     * Renseigne les ids des options des réponses à choix qui n'en ont pas, d'après leurs libellés
+     * @return nombre de réponses complétées
+     */
+    public int renseignerOptions(int tailleLot) {
+        int reponses = 0;
+        long apresId = 0;
+        long debut = System.currentTimeMillis();
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        for (Long jusquaId = borneLot(apresId, tailleLot); jusquaId != null; jusquaId = borneLot(apresId, tailleLot)) {
+            reponses += renseignerOptions(schema, apresId, jusquaId);
+            apresId = jusquaId;
+        }
+        log.info("Options des réponses à choix : {} réponses complétées en {} ms", reponses, System.currentTimeMillis() - debut);
+        return reponses;
+    }
+
+    /**
+     * Un lot dans une transaction. Une valeur que le décodeur ne reconnaît pas (option supprimée
+     * ou renommée depuis) reste sans ids et n'est pas comptée par option.
+     */
+    private int renseignerOptions(SchemaFormulaire schema, long apresId, long jusquaId) {
+        Integer completees = new TransactionTemplate(transactionManager).execute(statut -> {
+            int nombre = 0;
+            for (Object[] colonnes : reponseRepository.findChoixSansOptions(apresId, jusquaId, TYPES_A_CHOIX)) {
+                QuestionCompilee question = schema.getQuestion((Long) colonnes[1]);
+                Long[] options = question != null && colonnes[2] != null
+                        ? question.optionsChoisies(((String) colonnes[2]).trim()) : null;
+                if (options != null) {
+                    nombre += reponseRepository.renseignerOptions((Long) colonnes[0], options);
+                }
+            }
+            return nombre;
+        });
+        return completees != null ? completees : 0;
+    }
+
+    /**
+     * Dernier id du lot qui suit apresId, null une fois la table parcourue
+     */
+    private Long borneLot(long apresId, int tailleLot) {
+        List<Long> ids = prospectionRepository.findIdsSuivants(apresId, PageRequest.of(0, tailleLot));
+        return ids.isEmpty() ? null : ids.get(ids.size() - 1);
+    }
+}
@@ -1,33 +1,69 @@
 package com.prospection.prospectionbackend.services;
 
+import com.prospection.prospectionbackend.dto.FiltreProspections;
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+import com.prospection.prospectionbackend.dto.ReponseResume;
 import com.prospection.prospectionbackend.entities.*;
 import com.prospection.prospectionbackend.enums.Role;
 import com.prospection.prospectionbackend.enums.StatutProspection;
 import com.prospection.prospectionbackend.enums.TypeProspection;
 import com.prospection.prospectionbackend.repositories.ProspectionRepository;
 import com.prospection.prospectionbackend.repositories.QuestionRepository;
-import com.prospection.prospectionbackend.repositories.ReponseRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
 public class ProspectionService {
 
+    private static final int TAILLE_PAGE_MAX = 100;
+
+    // Au-delà, une requête OU ne classe plus utilement et coûte un parcours d'index par terme
+    private static final int TERMES_RECHERCHE_MAX = 8;
+    private static final Pattern SEPARATEURS_RECHERCHE = Pattern.compile("[^\\p{L}\\p{N}]+");
+
     @Autowired
     private ProspectionRepository prospectionRepository;
 
     @Autowired
-    private ReponseRepository reponseRepository;
+    private QuestionRepository questionRepository;
 
     @Autowired
-    private QuestionRepository questionRepository;
+    private SchemaFormulaireService schemaFormulaireService;
+
+    @Autowired
+    private FacettesService facettesService;
+
+    @Autowired
+    private StockageReponses stockageReponses;
+
+    @Autowired
+    private CompteursAgentService compteursAgentService;
+
+    @Autowired
+    private TableauBordService tableauBordService;
+
+    @Autowired
+    private RepartitionOptionsService repartitionOptionsService;
+
+    @Autowired
+    private StatistiquesNumeriquesService statistiquesNumeriquesService;
+
+    @Autowired
+    private CompletudeService completudeService;
 
 
     public Prospection creerProspection(
@@ -42,7 +78,8 @@ public class ProspectionService {
         }
 
 
-        validerDonneesProspection(typeProspection, reponses);
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        validerDonneesProspection(schema, typeProspection, reponses);
 
 
         Prospection prospection = new Prospection();
@@ -58,49 +95,55 @@ public class ProspectionService {
         assignerSelonType(prospection, typeProspection);
 
 
-        prospection = prospectionRepository.save(prospection);
-
-
-        List<Reponse> reponsesEntities = creerReponses(prospection, reponses);
-        reponseRepository.saveAll(reponsesEntities);
-
-
-        prospection.extraireInfosProspect();
-        prospectionRepository.save(prospection);
-
-        return prospection;
+        // Tout est construit en mémoire : écrit au flush, sans relecture
+        Map<Long, String> valeurs = nettoyerReponses(schema, reponses);
+        stockageReponses.attacher(prospection, valeurs);
+        completudeService.marquer(schema, prospection, valeurs);
+        prospection.extraireInfosProspect(questionId -> {
+            QuestionCompilee question = schema.getQuestion(questionId);
+            return question != null ? question.getQuestion() : null;
+        });
+
+        Prospection enregistree = prospectionRepository.save(prospection);
+        facettesService.indexerApresCommit(enregistree, valeurs);
+        compteursAgentService.enregistrerApresCommit(enregistree);
+        tableauBordService.enregistrerApresCommit(enregistree);
+        statistiquesNumeriquesService.enregistrerApresCommit(schema, enregistree, valeurs);
+        repartitionOptionsService.enregistrerApresCommit(schema, valeurs);
+        return enregistree;
     }
 
 
-    private List<Reponse> creerReponses(Prospection prospection, Map<Long, String> reponses) {
-        List<Reponse> reponsesEntities = new ArrayList<>();
+    private Map<Long, String> nettoyerReponses(SchemaFormulaire schema, Map<Long, String> reponses) {
+        Map<Long, String> valeurs = new LinkedHashMap<>();
 
         for (Map.Entry<Long, String> entry : reponses.entrySet()) {
             Long questionId = entry.getKey();
             String valeur = entry.getValue();
 
+            QuestionCompilee question = schema.getQuestion(questionId);
+            if (question == null) {
+                throw new IllegalArgumentException("Question non trouvée: " + questionId);
+            }
 
-            Question question = questionRepository.findById(questionId)
-                    .orElseThrow(() -> new IllegalArgumentException("Question non trouvée: " + questionId));
-
-            // Créer la réponse si elle n'est pas vide ou si la question est obligatoire
-            if (valeur != null && (!valeur.trim().isEmpty() || question.getObligatoire())) {
-                Reponse reponse = new Reponse(question, prospection, valeur.trim());
+            // Garder la réponse si elle n'est pas vide ou si la question est obligatoire
+            if (valeur != null && (!valeur.trim().isEmpty() || question.isObligatoire())) {
+                String valeurNettoyee = valeur.trim();
 
                 // Valider la réponse
-                if (!reponse.estValide()) {
+                if (!question.valider(valeurNettoyee)) {
                     throw new IllegalArgumentException("Réponse invalide pour la question: " + question.getQuestion());
                 }
 
-                reponsesEntities.add(reponse);
+                valeurs.put(questionId, valeurNettoyee);
             }
         }
 
-        return reponsesEntities;
+        return valeurs;
     }
 
 
-    private void validerDonneesProspection(TypeProspection typeProspection, Map<Long, String> reponses) {
+    private void validerDonneesProspection(SchemaFormulaire schema, TypeProspection typeProspection, Map<Long, String> reponses) {
         if (typeProspection == null) {
             throw new IllegalArgumentException("Le type de prospection est obligatoire");
         }
@@ -110,12 +153,7 @@ public class ProspectionService {
         }
 
         // Vérifier que toutes les questions obligatoires ont une réponse
-        List<Question> questionsObligatoires = questionRepository.findAllActiveOrderByOrdre()
-                .stream()
-                .filter(Question::getObligatoire)
-                .toList();
-
-        for (Question question : questionsObligatoires) {
+        for (QuestionCompilee question : schema.getQuestionsObligatoires()) {
             String valeur = reponses.get(question.getId());
             if (valeur == null || valeur.trim().isEmpty()) {
                 throw new IllegalArgumentException("La question '" + question.getQuestion() + "' est obligatoire");
@@ -128,10 +166,12 @@ public class ProspectionService {
             String valeur = entry.getValue();
 
             if (valeur != null && !valeur.trim().isEmpty()) {
-                Question question = questionRepository.findById(questionId)
-                        .orElseThrow(() -> new IllegalArgumentException("Question non trouvée: " + questionId));
+                QuestionCompilee question = schema.getQuestion(questionId);
+                if (question == null) {
+                    throw new IllegalArgumentException("Question non trouvée: " + questionId);
+                }
 
-                if (!validerReponseSelonType(question, valeur)) {
+                if (!question.valider(valeur.trim())) {
                     throw new IllegalArgumentException("Format invalide pour la question: " + question.getQuestion());
                 }
             }
@@ -139,36 +179,6 @@ public class ProspectionService {
     }
 
 
-    private boolean validerReponseSelonType(Question question, String valeur) {
-        switch (question.getType()) {
-            case PHONE:
-                return valeur.matches("^(06|07)\\d{8}$");
-
-            case NUMBER:
-                try {
-                    Integer.parseInt(valeur);
-                    return true;
-                } catch (NumberFormatException e) {
-                    return false;
-                }
-
-            case CHOICE:
-                return question.getOptions().stream()
-                        .anyMatch(option -> option.getValeur().equals(valeur));
-            case MULTIPLE_CHOICE:
-                String[] selections = valeur.split(",");
-                for (String selection : selections) {
-                    boolean found = question.getOptions().stream()
-                            .anyMatch(option -> option.getValeur().equals(selection.trim()));
-                    if (!found) return false;
-                }
-                return true;
-            default:
-                return true;
-        }
-    }
-
-
     private void assignerHierarchie(Prospection prospection, Utilisateur createur) {
         prospection.setBranche(createur.getBranche());
         prospection.setSupervision(createur.getSupervision());
@@ -203,38 +213,148 @@ public class ProspectionService {
         return utilisateur.getRole() == Role.AGENT;
     }
 
+    @Transactional(readOnly = true)
     public ProspectionWithReponses getProspectionAvecReponses(Long prospectionId, Utilisateur utilisateur) {
-        Prospection prospection = prospectionRepository.findById(prospectionId)
-                .orElseThrow(() -> new IllegalArgumentException("Prospection non trouvée"));
+        // Hors périmètre, la ligne n'est pas lue : l'existence seule distingue 403 et 404
+        ProspectionResume prospection = prospectionRepository.trouverResume(Perimetre.de(utilisateur), prospectionId)
+                .orElseThrow(() -> prospectionRepository.existsById(prospectionId)
+                        ? new AccessDeniedException("Vous n'avez pas le droit de voir cette prospection")
+                        : new IllegalArgumentException("Prospection non trouvée"));
 
-        // Vérifier les droits d'accès
-        if (!peutVoirProspection(prospection, utilisateur)) {
-            throw new AccessDeniedException("Vous n'avez pas le droit de voir cette prospection");
-        }
-
-        List<Reponse> reponses = reponseRepository.findByProspectionIdWithQuestion(prospectionId);
+        List<ReponseResume> reponses = stockageReponses.lire(prospectionId);
 
         return new ProspectionWithReponses(prospection, reponses);
     }
 
 
-    public List<Prospection> getProspectionsAgent(Utilisateur agent) {
+    /**
+     * Page de prospections de l'agent (créées ou assignées), triée par (dateCreation, id) décroissants.
+     * @param curseur nextCursor de la page précédente, null pour la première page
+     */
+    @Transactional(readOnly = true)
+    public PageProspections getProspectionsAgent(Utilisateur agent, String curseur, int taille) {
         if (agent.getRole() != Role.AGENT) {
             throw new AccessDeniedException("Seuls les agents peuvent consulter leurs prospections");
         }
+        return lister(Perimetre.de(agent), new FiltreProspections(), curseur, taille);
+    }
+
+
+    /**
+     * Prospections de la structure dirigée par l'utilisateur (branche, supervision ou région),
+     * avec les critères plus fins du filtre. Réservé au rôle qui dirige ce niveau.
+     */
+    @Transactional(readOnly = true)
+    public PageProspections getProspectionsStructure(Utilisateur responsable, Perimetre.Niveau niveau,
+                                                     FiltreProspections filtre, String curseur, int taille) {
+        Perimetre perimetre = Perimetre.de(responsable);
+        if (perimetre.niveau() != niveau) {
+            throw new AccessDeniedException("Liste réservée au responsable de ce niveau");
+        }
+        perimetre.verifier(filtre);
+        return lister(perimetre, filtre, curseur, taille);
+    }
+
+
+    /**
+     * Recherche multicritère paginée par curseur, restreinte au périmètre du rôle de l'utilisateur
+     */
+    @Transactional(readOnly = true)
+    public PageProspections rechercherProspections(Utilisateur utilisateur, FiltreProspections filtre,
+                                                   String curseur, int taille) {
+        Perimetre perimetre = Perimetre.de(utilisateur);
+        perimetre.verifier(filtre);
+        return lister(perimetre, filtre, curseur, taille);
+    }
+
+    /**
+     * Recherche plein texte dans les commentaires et les réponses, restreinte au périmètre du rôle.
+     * Triée par pertinence : pas de curseur stable, le curseur transmis est le rang du résultat suivant.
+     */
+    @Transactional(readOnly = true)
+    public PageProspections rechercherTexte(Utilisateur utilisateur, String texte, String curseur, int taille) {
+        String requete = requeteTexte(texte);
+        int tailleEffective = Math.max(1, Math.min(taille, TAILLE_PAGE_MAX));
+        int debut = 0;
+        if (curseur != null && !curseur.isBlank()) {
+            try {
+                debut = Integer.parseInt(curseur);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Curseur de pagination invalide");
+            }
+            if (debut < 0) {
+                throw new IllegalArgumentException("Curseur de pagination invalide");
+            }
+        }
+
+        List<ProspectionResume> prospections = prospectionRepository.rechercherTexte(
+                Perimetre.de(utilisateur), requete, debut, tailleEffective + 1);
+
+        String suivant = null;
+        if (prospections.size() > tailleEffective) {
+            prospections = prospections.subList(0, tailleEffective);
+            suivant = Integer.toString(debut + tailleEffective);
+        }
+        return new PageProspections(prospections, suivant);
+    }
 
+    /**
+     * Texte saisi -> tsquery : chaque mot d'au moins trois caractères devient un préfixe (« terme:* »),
+     * les mots sont combinés en OU et le rang favorise les prospections qui en contiennent le plus.
+     * Seuls lettres et chiffres sont conservés, la syntaxe tsquery ne peut donc pas être injectée.
+     */
+    static String requeteTexte(String texte) {
+        if (texte == null) {
+            throw new IllegalArgumentException("Texte de recherche obligatoire");
+        }
+        String requete = SEPARATEURS_RECHERCHE.splitAsStream(texte.toLowerCase(Locale.ROOT))
+                // Un préfixe de deux caractères correspond à une grande part des réponses
+                .filter(terme -> terme.length() >= 3)
+                .distinct()
+                .limit(TERMES_RECHERCHE_MAX)
+                .map(terme -> terme + ":*")
+                .collect(Collectors.joining(" | "));
+        if (requete.isEmpty()) {
+            throw new IllegalArgumentException("Le texte de recherche doit contenir au moins un mot de trois caractères");
+        }
+        return requete;
+    }
 
-        List<Prospection> prospectionsAssignees = prospectionRepository.findByAgentIdWithHierarchie(agent.getId());
-        List<Prospection> prospectionsCrees = prospectionRepository.findByCreatorIdWithHierarchie(agent.getId());
+    private PageProspections lister(Perimetre perimetre, FiltreProspections filtre, String curseur, int taille) {
+        int tailleEffective = Math.max(1, Math.min(taille, TAILLE_PAGE_MAX));
+        CurseurProspection position = curseur == null || curseur.isBlank() ? null : CurseurProspection.decoder(curseur);
 
+        // Une ligne de plus pour savoir s'il existe une page suivante
+        List<ProspectionResume> prospections = prospectionRepository.rechercher(
+                perimetre,
+                filtre,
+                position != null ? position.dateCreation() : null,
+                position != null ? position.id() : null,
+                tailleEffective + 1);
 
-        Set<Prospection> prospectionsUniques = new HashSet<>();
-        prospectionsUniques.addAll(prospectionsAssignees);
-        prospectionsUniques.addAll(prospectionsCrees);
+        return paginer(prospections, tailleEffective);
+    }
 
-        return new ArrayList<>(prospectionsUniques).stream()
-                .sorted((p1, p2) -> p2.getDateCreation().compareTo(p1.getDateCreation()))
-                .collect(Collectors.toList());
+    private PageProspections paginer(List<ProspectionResume> prospections, int taille) {
+        String suivant = null;
+        if (prospections.size() > taille) {
+            prospections = prospections.subList(0, taille);
+            ProspectionResume derniere = prospections.get(taille - 1);
+            suivant = new CurseurProspection(derniere.dateCreation(), derniere.id()).encoder();
+        }
+        return new PageProspections(prospections, suivant);
+    }
+
+
+    /**
+     * Parcourt en flux toutes les prospections visibles par l'utilisateur selon son rôle,
+     * sans les charger en mémoire. Le consommateur est appelé dans la transaction de lecture.
+     */
+    @Transactional(readOnly = true)
+    public void parcourirProspections(Utilisateur utilisateur, Consumer<ProspectionResume> consommateur) {
+        try (Stream<ProspectionResume> prospections = prospectionRepository.parcourir(Perimetre.de(utilisateur))) {
+            prospections.forEach(consommateur);
+        }
     }
 
 
@@ -244,54 +364,62 @@ public class ProspectionService {
     }
 
 
-    private boolean peutVoirProspection(Prospection prospection, Utilisateur utilisateur) {
-        switch (utilisateur.getRole()) {
-            case AGENT:
-                // L'agent ne peut voir que ses propres prospections
-                return prospection.getCreateur().getId().equals(utilisateur.getId()) ||
-                        (prospection.getAgentAssigne() != null &&
-                                prospection.getAgentAssigne().getId().equals(utilisateur.getId()));
+    public static class PageProspections {
+        private final List<ProspectionResume> prospections;
+        private final String nextCursor;
+
+        public PageProspections(List<ProspectionResume> prospections, String nextCursor) {
+            this.prospections = prospections;
+            this.nextCursor = nextCursor;
+        }
 
-            case CHEF_BRANCHE:
-                // Le chef de branche voit toutes les prospections de sa branche
-                return prospection.getBranche().getId().equals(utilisateur.getBranche().getId());
+        public List<ProspectionResume> getProspections() { return prospections; }
+        public String getNextCursor() { return nextCursor; }
+    }
 
-            case SUPERVISEUR:
-                // Le superviseur voit toutes les prospections de sa supervision
-                return prospection.getSupervision().getId().equals(utilisateur.getSupervision().getId());
 
-            case CHEF_ANIMATION_REGIONAL:
-                // Le chef régional voit toutes les prospections de sa région
-                return prospection.getRegion().getId().equals(utilisateur.getRegion().getId());
+    /**
+     * Position (dateCreation, id) de la dernière ligne lue, transmise au client sous forme opaque
+     */
+    record CurseurProspection(LocalDateTime dateCreation, Long id) {
 
-            case SIEGE:
-                // Le siège voit tout
-                return true;
+        String encoder() {
+            String brut = dateCreation + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(brut.getBytes(StandardCharsets.UTF_8));
+        }
 
-            default:
-                return false;
+        static CurseurProspection decoder(String curseur) {
+            try {
+                String brut = new String(Base64.getUrlDecoder().decode(curseur), StandardCharsets.UTF_8);
+                int separateur = brut.indexOf('|');
+                return new CurseurProspection(
+                        LocalDateTime.parse(brut.substring(0, separateur)),
+                        Long.parseLong(brut.substring(separateur + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Curseur de pagination invalide");
+            }
         }
     }
 
 
     public static class ProspectionWithReponses {
-        private final Prospection prospection;
-        private final List<Reponse> reponses;
+        private final ProspectionResume prospection;
+        private final List<ReponseResume> reponses;
         private final Map<Long, String> reponsesMap;
 
-        public ProspectionWithReponses(Prospection prospection, List<Reponse> reponses) {
+        public ProspectionWithReponses(ProspectionResume prospection, List<ReponseResume> reponses) {
             this.prospection = prospection;
             this.reponses = reponses;
             this.reponsesMap = new HashMap<>();
 
             // Créer une map pour accès facile aux réponses
-            for (Reponse reponse : reponses) {
-                reponsesMap.put(reponse.getQuestion().getId(), reponse.getValeur());
+            for (ReponseResume reponse : reponses) {
+                reponsesMap.put(reponse.questionId(), reponse.valeur());
             }
         }
 
-        public Prospection getProspection() { return prospection; }
-        public List<Reponse> getReponses() { return reponses; }
+        public ProspectionResume getProspection() { return prospection; }
+        public List<ReponseResume> getReponses() { return reponses; }
         public Map<Long, String> getReponsesMap() { return reponsesMap; }
 
         public String getReponse(Long questionId) {
@@ -314,28 +442,25 @@ public class ProspectionService {
 
 
     public long getNombreProspectionsAujourdhui(Long agentId) {
-        LocalDateTime startOfDay = LocalDateTime.now().toLocalDate().atStartOfDay();
-        LocalDateTime endOfDay = startOfDay.plusDays(1);
-        return prospectionRepository.countByCreateurIdAndToday(agentId, startOfDay, endOfDay);
+        return compteursAgentService.lire(agentId).aujourdhui();
     }
 
 
+    /**
+     * Statistiques de l'écran d'accueil de l'agent, lues dans ses compteurs en mémoire
+     */
+    @Transactional(readOnly = true)
     public Map<String, Object> getStatistiquesAgent(Long agentId) {
         Map<String, Object> stats = new HashMap<>();
+        CompteursAgentService.Instantane compteurs = compteursAgentService.lire(agentId);
 
-        List<Object[]> statutsCount = prospectionRepository.countByAgentIdAndStatut(agentId);
         Map<String, Long> repartitionStatuts = new HashMap<>();
-
-        for (Object[] row : statutsCount) {
-            StatutProspection statut = (StatutProspection) row[0];
-            Long count = (Long) row[1];
-            repartitionStatuts.put(statut.getDisplayName(), count);
-        }
+        compteurs.parStatut().forEach((statut, nombre) -> repartitionStatuts.put(statut.getDisplayName(), nombre));
 
         stats.put("repartitionStatuts", repartitionStatuts);
-        stats.put("totalProspections", repartitionStatuts.values().stream().mapToLong(Long::longValue).sum());
-        stats.put("prospectionsAujourdhui", getNombreProspectionsAujourdhui(agentId));
+        stats.put("totalProspections", compteurs.total());
+        stats.put("prospectionsAujourdhui", compteurs.aujourdhui());
 
         return stats;
     }
-}
\ No newline at end of file
+}
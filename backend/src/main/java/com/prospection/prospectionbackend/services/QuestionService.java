@@ -8,6 +8,9 @@ import com.prospection.prospectionbackend.enums.QuestionType;
 import com.prospection.prospectionbackend.enums.Role;
 import com.prospection.prospectionbackend.repositories.QuestionOptionRepository;
 import com.prospection.prospectionbackend.repositories.QuestionRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.OptionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -16,6 +19,7 @@ import org.springframework.security.access.AccessDeniedException;
 
 import java.util.*;
 
+@Slf4j
 @Service
 @Transactional
 public class QuestionService {
@@ -24,6 +28,12 @@ public class QuestionService {
     private QuestionRepository questionRepository;
     @Autowired
     private QuestionOptionRepository questionOptionRepository;
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+    @Autowired
+    private RepartitionOptionsService repartitionOptionsService;
+    @Autowired
+    private CompletudeService completudeService;
 
     public Question createQuestion(String questionText, String description, QuestionType type,
                                    Boolean obligatoire, List<String> Options, Utilisateur createur) {
@@ -59,13 +69,17 @@ public class QuestionService {
                     QuestionOption option = new QuestionOption();
                     option.setValeur(optionValue);
                     option.setOrdreOption(i + 1);
-                    option.setQuestion(savedQuestion);
+                    // Aussi dans la collection : le schéma est recompilé au commit depuis ce contexte de persistance
+                    savedQuestion.addOption(option);
                     questionOptionRepository.save(option);
                 }
             }
         }
-        System.out.println("✅ Question créée : ID=" + savedQuestion.getId() +
-                ", Type=" + type + ", Ordre=" + savedQuestion.getOrdre());
+        schemaFormulaireService.invalider();
+        if (savedQuestion.getObligatoire()) {
+            completudeService.recalculerApresCommit();
+        }
+        log.info("Question créée : ID={}, Type={}, Ordre={}", savedQuestion.getId(), type, savedQuestion.getOrdre());
         return savedQuestion;
     }
 
@@ -99,14 +113,19 @@ public class QuestionService {
 
         // Supprimer d'abord les options (cascade devrait le faire automatiquement)
         questionOptionRepository.deleteByQuestionId(questionId);
+        repartitionOptionsService.oublierQuestion(questionId);
 
         // Supprimer la question
         questionRepository.delete(question);
 
         // Recalculer les ordres
         reCalculerOrdresApresSuppression(question.getOrdre());
+        schemaFormulaireService.invalider();
+        if (question.getObligatoire() && question.getActif()) {
+            completudeService.recalculerApresCommit();
+        }
 
-        System.out.println("Question supprimée définitivement : ID=" + questionId);
+        log.info("Question supprimée définitivement : ID={}", questionId);
     }
 
     private void reCalculerOrdresApresSuppression(Integer ordreSupprime) {
@@ -125,7 +144,11 @@ public class QuestionService {
         question.setActif(false);
         questionRepository.save(question);
         reCalculerOrdresApresDesactivation(question.getOrdre());
-        System.out.println("Question désactivée");
+        schemaFormulaireService.invalider();
+        if (question.getObligatoire()) {
+            completudeService.recalculerApresCommit();
+        }
+        log.info("Question désactivée : ID={}", questionId);
     }
 
     public void activerQuestion(Long questionId, Utilisateur createur) {
@@ -140,7 +163,32 @@ public class QuestionService {
         question.setActif(true);
         question.setOrdre(getNextOrdre());
         questionRepository.save(question);
-        System.out.println("Question réactivée");
+        schemaFormulaireService.invalider();
+        if (question.getObligatoire()) {
+            completudeService.recalculerApresCommit();
+        }
+        log.info("Question réactivée : ID={}", questionId);
+    }
+
+    /**
+     * Rend une question obligatoire ou facultative ; la complétude des prospections
+     * est recalculée après le commit
+     */
+    public void modifierObligatoire(Long questionId, boolean obligatoire, Utilisateur createur) {
+        if (createur.getRole() != Role.SIEGE) {
+            throw new AccessDeniedException("Vous ne pouvez pas modifier une question");
+        }
+        Question question = questionRepository.findById(questionId).orElseThrow(() -> new IllegalArgumentException("Question non trouvée"));
+        if (Boolean.valueOf(obligatoire).equals(question.getObligatoire())) {
+            throw new IllegalArgumentException(obligatoire ? "La question est déjà obligatoire" : "La question est déjà facultative");
+        }
+        question.setObligatoire(obligatoire);
+        questionRepository.save(question);
+        schemaFormulaireService.invalider();
+        if (question.getActif()) {
+            completudeService.recalculerApresCommit();
+        }
+        log.info("Question {} : ID={}", obligatoire ? "rendue obligatoire" : "rendue facultative", questionId);
     }
 
     private void reCalculerOrdresApresDesactivation(Integer ordreDesactive) {
@@ -164,7 +212,8 @@ public class QuestionService {
             int nouvelOrdre= i+ 1;
             questionRepository.updateOrdre(questionId, nouvelOrdre);
         }
-        System.out.println("La rorganisation est terminée");
+        schemaFormulaireService.invalider();
+        log.info("La réorganisation est terminée");
     }
 
     public Map<String, Object> getStatistiques()
@@ -182,6 +231,39 @@ public class QuestionService {
         statistiques.put("repartitionTypes", typesStats);
         return statistiques;
     }
+
+    /**
+     * Répartition des réponses par option de chaque question à choix active, dans l'ordre du
+     * formulaire, lue dans les comptes par option tenus à la création des prospections.
+     * Les libellés sont ceux du formulaire actuel.
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getRepartitionOptions() {
+        Map<Long, Long> parOption = repartitionOptionsService.getComptes();
+
+        List<Map<String, Object>> questions = new ArrayList<>();
+        for (QuestionCompilee question : schemaFormulaireService.getSchema().getQuestionsActives()) {
+            if (!question.getType().requiresOptions()) {
+                continue;
+            }
+            List<Map<String, Object>> options = new ArrayList<>();
+            for (OptionCompilee option : question.getOptions()) {
+                Map<String, Object> compte = new LinkedHashMap<>();
+                compte.put("id", option.getId());
+                compte.put("valeur", option.getValeur());
+                compte.put("nombre", parOption.getOrDefault(option.getId(), 0L));
+                options.add(compte);
+            }
+            Map<String, Object> repartition = new LinkedHashMap<>();
+            repartition.put("questionId", question.getId());
+            repartition.put("question", question.getQuestion());
+            repartition.put("type", question.getType());
+            repartition.put("options", options);
+            questions.add(repartition);
+        }
+        return questions;
+    }
+
     public List<Question> getApercuFormulaire() {
         return getQuestionsActives();
     }
@@ -0,0 +1,221 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.entities.CompteOption;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.repositories.CompteOptionRepository;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Répartition des réponses par option, lue dans comptes_options au lieu d'un GROUP BY sur
+ * toutes les réponses à chaque graphique. Les options choisies par les créations validées sont
+ * cumulées en mémoire puis ajoutées par un passage périodique, comme le cube des tableaux de bord :
+ * aucune ligne de comptes_options n'est verrouillée pendant la transaction de création.
+ *
+ * Le recomptage relit toutes les réponses : au premier démarrage (table vide), ou à la
+ * demande du siège après une écriture faite hors application.
+ */
+@Slf4j
+@Service
+public class RepartitionOptionsService implements ApplicationRunner {
+
+    private static final int TAILLE_LOT = 5000;
+
+    @Autowired
+    private CompteOptionRepository compteOptionRepository;
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    @Autowired
+    private StockageReponses stockageReponses;
+
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+
+    // Réponses validées sur cette instance et pas encore ajoutées, par option
+    private final ConcurrentHashMap<Long, Long> enAttente = new ConcurrentHashMap<>();
+
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (compteOptionRepository.count() == 0) {
+            recompter();
+        }
+    }
+
+    /**
+     * Compte les options choisies par les réponses validées d'une nouvelle prospection,
+     * au commit de la transaction en cours
+     */
+    public void enregistrerApresCommit(SchemaFormulaire schema, Map<Long, String> valeurs) {
+        List<Long> optionIds = new ArrayList<>();
+        for (Map.Entry<Long, String> entree : valeurs.entrySet()) {
+            QuestionCompilee question = schema.getQuestion(entree.getKey());
+            Long[] ids = question != null ? question.optionsChoisies(entree.getValue()) : null;
+            if (ids != null) {
+                Collections.addAll(optionIds, ids);
+            }
+        }
+        if (optionIds.isEmpty()) {
+            return;
+        }
+        Runnable compter = () -> optionIds.forEach(id -> enAttente.merge(id, 1L, Long::sum));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    compter.run();
+                }
+            });
+        } else {
+            compter.run();
+        }
+    }
+
+    /**
+     * Ajoute les réponses en attente, une mise à jour par option. Une option nouvelle fait créer
+     * les lignes manquantes ; une option supprimée entre-temps est abandonnée. En cas d'échec
+     * (base indisponible), le reste attend le passage suivant.
+     */
+    @Scheduled(fixedDelayString = "${repartition-options.ecriture-interval:5000}")
+    public synchronized void ecrire() {
+        for (Long optionId : enAttente.keySet()) {
+            Long delta = enAttente.remove(optionId);
+            if (delta == null || delta == 0) {
+                continue;
+            }
+            try {
+                if (compteOptionRepository.corriger(optionId, delta) == 0) {
+                    creerLignes();
+                    compteOptionRepository.corriger(optionId, delta);
+                }
+            } catch (DataAccessException e) {
+                enAttente.merge(optionId, delta, Long::sum);
+                log.warn("Écriture de la répartition reportée (option {}) : {}", optionId, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Arrêt de l'instance : les réponses en attente sont écrites tant que la base est ouverte
+     */
+    @PreDestroy
+    public void ecrireAvantArret() {
+        ecrire();
+        if (!enAttente.isEmpty()) {
+            log.warn("{} options non écrites à l'arrêt : recompter la répartition", enAttente.size());
+        }
+    }
+
+    /**
+     * Nombre de réponses par option, y compris celles de cette instance pas encore écrites
+     */
+    public Map<Long, Long> getComptes() {
+        Map<Long, Long> comptes = lireComptes();
+        enAttente.forEach((optionId, delta) -> comptes.merge(optionId, delta, Long::sum));
+        return comptes;
+    }
+
+    public void oublierQuestion(Long questionId) {
+        compteOptionRepository.deleteByQuestionId(questionId);
+    }
+
+    private Map<Long, Long> lireComptes() {
+        Map<Long, Long> comptes = new HashMap<>();
+        for (CompteOption compte : compteOptionRepository.findAll()) {
+            comptes.put(compte.getOptionId(), compte.getNombre());
+        }
+        return comptes;
+    }
+
+    public int recompter(Utilisateur utilisateur) {
+        if (utilisateur.getRole() != Role.SIEGE) {
+            throw new AccessDeniedException("Recomptage réservé au siège");
+        }
+        return recompter();
+    }
+
+    /**
+     * Recompte depuis les réponses, lot par lot, après avoir écrit les réponses en attente. Les
+     * ajouts faits pendant la lecture sont conservés : chaque compte est corrigé de l'écart entre
+     * la relecture et sa valeur initiale.
+     * Une prospection créée pendant la lecture peut ainsi être comptée deux fois : à lancer
+     * hors des heures de saisie.
+     * @return nombre d'options corrigées
+     */
+    private int recompter() {
+        long debut = System.currentTimeMillis();
+        ecrire();
+        creerLignes();
+        Map<Long, Long> initiaux = lireComptes();
+
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        List<Long> questions = new ArrayList<>();
+        for (QuestionCompilee question : schema.getQuestions()) {
+            if (question.getType().requiresOptions()) {
+                questions.add(question.getId());
+            }
+        }
+
+        Map<Long, Long> relus = new HashMap<>();
+        long apresId = 0;
+        while (!questions.isEmpty()) {
+            List<Long> ids = prospectionRepository.findIdsSuivants(apresId, PageRequest.of(0, TAILLE_LOT));
+            if (ids.isEmpty()) {
+                break;
+            }
+            long dernier = ids.get(ids.size() - 1);
+            for (Object[] colonnes : stockageReponses.valeursPourFacettes(apresId, dernier, questions)) {
+                // Ids enregistrés, sinon libellés saisis (documents, lignes antérieures aux ids)
+                Long[] options = colonnes[3] != null ? (Long[]) colonnes[3]
+                        : schema.getQuestion((Long) colonnes[1]).optionsChoisies((String) colonnes[2]);
+                if (options != null) {
+                    for (Long option : options) {
+                        relus.merge(option, 1L, Long::sum);
+                    }
+                }
+            }
+            apresId = dernier;
+        }
+
+        int corriges = 0;
+        for (Map.Entry<Long, Long> initial : initiaux.entrySet()) {
+            long correction = relus.getOrDefault(initial.getKey(), 0L) - initial.getValue();
+            if (correction != 0) {
+                compteOptionRepository.corriger(initial.getKey(), correction);
+                corriges++;
+            }
+        }
+        log.info("Répartition des réponses recomptée : {} options corrigées en {} ms",
+                corriges, System.currentTimeMillis() - debut);
+        return corriges;
+    }
+
+    private void creerLignes() {
+        try {
+            compteOptionRepository.creerManquants();
+        } catch (DataIntegrityViolationException e) {
+            // Créées au même moment par une autre instance
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.entities.Question;
+import com.prospection.prospectionbackend.entities.QuestionOption;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.repositories.QuestionRepository;
+import com.prospection.prospectionbackend.validation.DecodeurOptions;
+import com.prospection.prospectionbackend.validation.ValidateurReponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Schéma compilé du formulaire de prospection.
+ * Construit une seule fois en mémoire puis remplacé atomiquement à chaque
+ * modification des questions, pour que la soumission d'une prospection
+ * ne fasse plus aucune requête sur les questions.
+ */
+@Service
+public class SchemaFormulaireService {
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicReference<SchemaFormulaire> schema = new AtomicReference<>();
+
+
+    public SchemaFormulaire getSchema() {
+        SchemaFormulaire courant = schema.get();
+        if (courant == null) {
+            courant = recharger();
+        }
+        return courant;
+    }
+
+    /**
+     * Demande la reconstruction du schéma. Si une transaction est en cours,
+     * la reconstruction a lieu après son commit pour lire l'état validé.
+     */
+    public void invalider() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recharger();
+                }
+            });
+        } else {
+            recharger();
+        }
+    }
+
+    /**
+     * Lit les questions dans une transaction et un contexte de persistance neufs : celui de la
+     * transaction qui vient de valider (ou de la requête) garde les questions chargées avant les
+     * mises à jour d'ordre en masse, avec leur ancien ordre.
+     */
+    private synchronized SchemaFormulaire recharger() {
+        TransactionTemplate lecture = new TransactionTemplate(transactionManager);
+        lecture.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        lecture.setReadOnly(true);
+        SchemaFormulaire nouveau = lecture.execute(statut -> compiler(questionRepository.findAllWithOptionsOrderByOrdre()));
+        schema.set(nouveau);
+        return nouveau;
+    }
+
+    private SchemaFormulaire compiler(List<Question> questions) {
+        List<QuestionCompilee> compilees = new ArrayList<>(questions.size());
+        for (Question question : questions) {
+            compilees.add(new QuestionCompilee(question));
+        }
+        return new SchemaFormulaire(compilees);
+    }
+
+
+    public static final class SchemaFormulaire {
+        private final Map<Long, QuestionCompilee> questionsParId;
+        private final List<QuestionCompilee> questionsActives;
+        private final List<QuestionCompilee> questionsObligatoires;
+
+        private SchemaFormulaire(List<QuestionCompilee> questions) {
+            Map<Long, QuestionCompilee> parId = new HashMap<>();
+            List<QuestionCompilee> actives = new ArrayList<>();
+            List<QuestionCompilee> obligatoires = new ArrayList<>();
+
+            for (QuestionCompilee question : questions) {
+                parId.put(question.getId(), question);
+                if (question.isActif()) {
+                    actives.add(question);
+                    if (question.isObligatoire()) {
+                        obligatoires.add(question);
+                    }
+                }
+            }
+
+            this.questionsParId = Collections.unmodifiableMap(parId);
+            this.questionsActives = Collections.unmodifiableList(actives);
+            this.questionsObligatoires = Collections.unmodifiableList(obligatoires);
+        }
+
+        public QuestionCompilee getQuestion(Long questionId) {
+            return questionsParId.get(questionId);
+        }
+
+        // Inactives comprises : leurs réponses existent toujours
+        public Collection<QuestionCompilee> getQuestions() { return questionsParId.values(); }
+        public List<QuestionCompilee> getQuestionsActives() { return questionsActives; }
+        public List<QuestionCompilee> getQuestionsObligatoires() { return questionsObligatoires; }
+    }
+
+
+    public static final class QuestionCompilee {
+        private final Long id;
+        private final String question;
+        private final String description;
+        private final QuestionType type;
+        private final Integer ordre;
+        private final boolean actif;
+        private final boolean obligatoire;
+        private final List<OptionCompilee> options;
+        private final ValidateurReponse validateur;
+        private final Map<Long, OptionCompilee> optionsParId;
+        // Questions à choix seulement
+        private final DecodeurOptions decodeur;
+
+        private QuestionCompilee(Question source) {
+            this.id = source.getId();
+            this.question = source.getQuestion();
+            this.description = source.getDescription();
+            this.type = source.getType();
+            this.ordre = source.getOrdre();
+            this.actif = Boolean.TRUE.equals(source.getActif());
+            this.obligatoire = Boolean.TRUE.equals(source.getObligatoire());
+
+            List<OptionCompilee> opts = new ArrayList<>();
+            for (QuestionOption option : source.getOptions()) {
+                opts.add(new OptionCompilee(option.getId(), option.getValeur(), option.getOrdreOption()));
+            }
+            this.options = Collections.unmodifiableList(opts);
+            Map<Long, OptionCompilee> parId = new HashMap<>();
+            for (OptionCompilee option : opts) {
+                parId.put(option.getId(), option);
+            }
+            this.optionsParId = parId;
+
+            List<String> valeurs = new ArrayList<>(opts.size());
+            for (OptionCompilee option : opts) {
+                valeurs.add(option.getValeur());
+            }
+            this.decodeur = type.requiresOptions() ? new DecodeurOptions(type, valeurs) : null;
+            this.validateur = decodeur != null ? decodeur : ValidateurReponse.pour(type, valeurs);
+        }
+
+        /**
+         * Valide une réponse déjà nettoyée (trim) selon le type de la question
+         * @return true si la réponse est acceptable
+         */
+        public boolean valider(String valeur) {
+            if (valeur == null || valeur.isEmpty()) {
+                return !obligatoire;
+            }
+            return validateur.valider(valeur);
+        }
+
+        /**
+         * Ids des options choisies, dans l'ordre des options
+         * @param valeur réponse validée et nettoyée
+         * @return null hors question à choix ou si la valeur ne désigne pas des options
+         */
+        public Long[] optionsChoisies(String valeur) {
+            int[] rangs = decodeur != null && valeur != null ? decodeur.rangs(valeur) : null;
+            if (rangs == null) {
+                return null;
+            }
+            Long[] ids = new Long[rangs.length];
+            for (int i = 0; i < rangs.length; i++) {
+                ids[i] = options.get(rangs[i]).getId();
+            }
+            return ids;
+        }
+
+        /**
+         * Libellés actuels des options, séparés par des virgules comme à la saisie
+         * @return null si l'une des options n'existe plus
+         */
+        public String libelles(Long[] ids) {
+            StringJoiner libelles = new StringJoiner(",");
+            for (Long id : ids) {
+                OptionCompilee option = optionsParId.get(id);
+                if (option == null) {
+                    return null;
+                }
+                libelles.add(option.getValeur());
+            }
+            return libelles.toString();
+        }
+
+        public Long getId() { return id; }
+        public String getQuestion() { return question; }
+        public String getDescription() { return description; }
+        public QuestionType getType() { return type; }
+        public Integer getOrdre() { return ordre; }
+        public boolean isActif() { return actif; }
+        public boolean isObligatoire() { return obligatoire; }
+        public List<OptionCompilee> getOptions() { return options; }
+        public OptionCompilee getOption(Long optionId) { return optionsParId.get(optionId); }
+    }
+
+
+    public static final class OptionCompilee {
+        private final Long id;
+        private final String valeur;
+        private final Integer ordre;
+
+        private OptionCompilee(Long id, String valeur, Integer ordre) {
+            this.id = id;
+            this.valeur = valeur;
+            this.ordre = ordre;
+        }
+
+        public Long getId() { return id; }
+        public String getValeur() { return valeur; }
+        public Integer getOrdre() { return ordre; }
+    }
+}
@@ -0,0 +1,322 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.entities.StatistiqueNumerique;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import com.prospection.prospectionbackend.repositories.StatistiqueNumeriqueRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
+import com.prospection.prospectionbackend.utils.CroquisQuantiles;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Statistiques des questions numériques (nombre, somme, min, max, quantiles) sans relire les
+ * réponses, dont la valeur est du texte. Chaque branche a sa ligne avec un croquis de quantiles ;
+ * une supervision, une région ou le siège fusionne les croquis de ses branches à la lecture.
+ *
+ * Les valeurs des créations validées sont accumulées en mémoire puis ajoutées aux lignes par un
+ * passage périodique, ligne verrouillée le temps de la fusion : plusieurs instances s'additionnent.
+ * Un recomptage relit toutes les réponses (premier démarrage, ou à la demande du siège).
+ */
+@Slf4j
+@Service
+public class StatistiquesNumeriquesService implements ApplicationRunner {
+
+    private static final int TAILLE_LOT = 5000;
+
+    private static final double[] QUANTILES = {0.10, 0.25, 0.50, 0.75, 0.90, 0.99};
+
+    @Autowired
+    private StatistiqueNumeriqueRepository statistiqueNumeriqueRepository;
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    @Autowired
+    private StockageReponses stockageReponses;
+
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Valeurs validées sur cette instance et pas encore ajoutées aux lignes
+    private final ConcurrentHashMap<Cle, Accumulateur> enAttente = new ConcurrentHashMap<>();
+
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (statistiqueNumeriqueRepository.count() == 0) {
+            recompter();
+        }
+    }
+
+    /**
+     * Retient les réponses numériques d'une prospection qui vient d'être enregistrée, au commit
+     */
+    public void enregistrerApresCommit(SchemaFormulaire schema, Prospection prospection, Map<Long, String> valeurs) {
+        Map<Long, Long> nombres = new HashMap<>();
+        for (Map.Entry<Long, String> entree : valeurs.entrySet()) {
+            QuestionCompilee question = schema.getQuestion(entree.getKey());
+            if (question != null && question.getType() == QuestionType.NUMBER && entree.getValue() != null) {
+                nombres.put(question.getId(), Long.parseLong(entree.getValue()));
+            }
+        }
+        if (nombres.isEmpty()) {
+            return;
+        }
+        Long brancheId = prospection.getBranche() != null ? prospection.getBranche().getId() : 0L;
+        Long supervisionId = prospection.getSupervision() != null ? prospection.getSupervision().getId() : 0L;
+        Long regionId = prospection.getRegion() != null ? prospection.getRegion().getId() : 0L;
+
+        Runnable retenir = () -> nombres.forEach((questionId, valeur) ->
+                enAttente.compute(new Cle(questionId, brancheId, supervisionId, regionId), (cle, accumulateur) -> {
+                    Accumulateur courant = accumulateur != null ? accumulateur : new Accumulateur();
+                    courant.ajouter(valeur);
+                    return courant;
+                }));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    retenir.run();
+                }
+            });
+        } else {
+            retenir.run();
+        }
+    }
+
+    /**
+     * Ajoute les valeurs en attente à leurs lignes, une transaction par ligne.
+     * Une ligne en échec reste en attente pour le passage suivant.
+     */
+    @Scheduled(fixedDelayString = "${statistiques-numeriques.ecriture-interval:10000}")
+    public synchronized void ecrire() {
+        for (Cle cle : enAttente.keySet()) {
+            Accumulateur accumulateur = enAttente.remove(cle);
+            if (accumulateur == null) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(statut -> ajouter(cle, accumulateur));
+            } catch (DataAccessException | TransactionException e) {
+                enAttente.merge(cle, accumulateur, Accumulateur::fusionner);
+                log.warn("Écriture des statistiques numériques reportée ({}) : {}", cle, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Arrêt de l'instance : les valeurs en attente sont écrites tant que la base est ouverte
+     */
+    @PreDestroy
+    public void ecrireAvantArret() {
+        ecrire();
+        if (!enAttente.isEmpty()) {
+            log.warn("{} lignes de statistiques numériques non écrites à l'arrêt : recompter", enAttente.size());
+        }
+    }
+
+    public int recompter(Utilisateur utilisateur) {
+        if (utilisateur.getRole() != Role.SIEGE) {
+            throw new AccessDeniedException("Recomptage réservé au siège");
+        }
+        return recompter();
+    }
+
+    /**
+     * Statistiques d'une question numérique sur la structure de l'utilisateur
+     */
+    public Map<String, Object> getStatistiques(Utilisateur utilisateur, Long questionId) {
+        QuestionCompilee question = schemaFormulaireService.getSchema().getQuestion(questionId);
+        if (question == null || question.getType() != QuestionType.NUMBER) {
+            throw new IllegalArgumentException("Question numérique introuvable");
+        }
+        Perimetre perimetre = Perimetre.de(utilisateur);
+        List<StatistiqueNumerique> lignes;
+        switch (perimetre.niveau()) {
+            case TOUT:
+                lignes = statistiqueNumeriqueRepository.findByQuestionId(questionId);
+                break;
+            case REGION:
+                lignes = statistiqueNumeriqueRepository.findByQuestionIdAndRegionId(questionId, perimetre.id());
+                break;
+            case SUPERVISION:
+                lignes = statistiqueNumeriqueRepository.findByQuestionIdAndSupervisionId(questionId, perimetre.id());
+                break;
+            case BRANCHE:
+                lignes = statistiqueNumeriqueRepository.findByQuestionIdAndBrancheId(questionId, perimetre.id());
+                break;
+            default:
+                throw new AccessDeniedException("Statistiques réservées aux responsables");
+        }
+
+        Accumulateur total = new Accumulateur();
+        for (StatistiqueNumerique ligne : lignes) {
+            total.fusionner(Accumulateur.depuis(ligne));
+        }
+
+        Map<String, Object> statistiques = new LinkedHashMap<>();
+        statistiques.put("questionId", questionId);
+        statistiques.put("question", question.getQuestion());
+        statistiques.put("niveau", perimetre.niveau());
+        statistiques.put("nombre", total.nombre);
+        statistiques.put("somme", total.somme);
+        boolean vide = total.nombre == 0;
+        statistiques.put("moyenne", vide ? null : total.somme / total.nombre);
+        statistiques.put("min", vide ? null : total.croquis.min());
+        statistiques.put("max", vide ? null : total.croquis.max());
+        Map<String, Double> quantiles = new LinkedHashMap<>();
+        for (double q : QUANTILES) {
+            quantiles.put("p" + Math.round(q * 100), vide ? null : total.croquis.quantile(q));
+        }
+        statistiques.put("quantiles", quantiles);
+        return statistiques;
+    }
+
+    /**
+     * Recalcule toutes les lignes depuis les réponses et les remplace. Les créations validées
+     * pendant la lecture peuvent être comptées deux fois ou pas du tout : à lancer hors des
+     * heures de saisie.
+     * @return nombre de lignes écrites
+     */
+    private synchronized int recompter() {
+        long debut = System.currentTimeMillis();
+        List<Long> questions = new ArrayList<>();
+        for (QuestionCompilee question : schemaFormulaireService.getSchema().getQuestions()) {
+            if (question.getType() == QuestionType.NUMBER) {
+                questions.add(question.getId());
+            }
+        }
+
+        Map<Cle, Accumulateur> relus = new HashMap<>();
+        long apresId = 0;
+        while (!questions.isEmpty()) {
+            List<Object[]> lot = prospectionRepository.findFacettesSuivantes(apresId, PageRequest.of(0, TAILLE_LOT));
+            if (lot.isEmpty()) {
+                break;
+            }
+            long dernier = ((Number) lot.get(lot.size() - 1)[0]).longValue();
+            // id, statut, createur, agent assigné, branche, supervision, région
+            Map<Long, Object[]> structures = new HashMap<>();
+            for (Object[] colonnes : lot) {
+                structures.put(((Number) colonnes[0]).longValue(), colonnes);
+            }
+            for (Object[] colonnes : stockageReponses.valeursPourFacettes(apresId, dernier, questions)) {
+                Object[] prospection = structures.get((Long) colonnes[0]);
+                Long valeur = entier((String) colonnes[2]);
+                if (prospection == null || valeur == null) {
+                    continue;
+                }
+                Cle cle = new Cle((Long) colonnes[1], idOuZero(prospection[4]), idOuZero(prospection[5]), idOuZero(prospection[6]));
+                relus.computeIfAbsent(cle, c -> new Accumulateur()).ajouter(valeur);
+            }
+            apresId = dernier;
+        }
+
+        transactionTemplate.executeWithoutResult(statut -> {
+            statistiqueNumeriqueRepository.vider();
+            // Déjà relues
+            enAttente.clear();
+            relus.forEach((cle, accumulateur) -> statistiqueNumeriqueRepository.save(accumulateur.versLigne(cle)));
+        });
+        log.info("Statistiques numériques recalculées : {} lignes en {} ms", relus.size(), System.currentTimeMillis() - debut);
+        return relus.size();
+    }
+
+    private void ajouter(Cle cle, Accumulateur accumulateur) {
+        Optional<StatistiqueNumerique> existante = statistiqueNumeriqueRepository.findPourMiseAJour(cle.questionId(), cle.brancheId());
+        if (existante.isEmpty()) {
+            statistiqueNumeriqueRepository.save(accumulateur.versLigne(cle));
+            return;
+        }
+        StatistiqueNumerique ligne = existante.get();
+        Accumulateur fusion = Accumulateur.depuis(ligne).fusionner(accumulateur);
+        ligne.setNombre(fusion.nombre);
+        ligne.setSomme(fusion.somme);
+        ligne.setCroquis(fusion.croquis.versOctets());
+        statistiqueNumeriqueRepository.save(ligne);
+    }
+
+    // Réponses enregistrées avant la validation des nombres : ignorées si illisibles
+    private static Long entier(String valeur) {
+        try {
+            return valeur != null ? Long.parseLong(valeur.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long idOuZero(Object id) {
+        return id != null ? (Long) id : 0L;
+    }
+
+
+    private record Cle(Long questionId, Long brancheId, Long supervisionId, Long regionId) {
+    }
+
+    /**
+     * Nombre, somme et croquis d'un ensemble de valeurs ; min et max sont tenus par le croquis
+     */
+    private static final class Accumulateur {
+        private long nombre;
+        private double somme;
+        private CroquisQuantiles croquis = new CroquisQuantiles();
+
+        void ajouter(long valeur) {
+            nombre++;
+            somme += valeur;
+            croquis.ajouter(valeur);
+        }
+
+        Accumulateur fusionner(Accumulateur autre) {
+            nombre += autre.nombre;
+            somme += autre.somme;
+            croquis.fusionner(autre.croquis);
+            return this;
+        }
+
+        static Accumulateur depuis(StatistiqueNumerique ligne) {
+            Accumulateur accumulateur = new Accumulateur();
+            accumulateur.nombre = ligne.getNombre();
+            accumulateur.somme = ligne.getSomme();
+            accumulateur.croquis = CroquisQuantiles.depuisOctets(ligne.getCroquis());
+            return accumulateur;
+        }
+
+        StatistiqueNumerique versLigne(Cle cle) {
+            StatistiqueNumerique ligne = new StatistiqueNumerique();
+            ligne.setQuestionId(cle.questionId());
+            ligne.setBrancheId(cle.brancheId());
+            ligne.setSupervisionId(cle.supervisionId());
+            ligne.setRegionId(cle.regionId());
+            ligne.setNombre(nombre);
+            ligne.setSomme(somme);
+            ligne.setCroquis(croquis.versOctets());
+            return ligne;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.ReponseResume;
+import com.prospection.prospectionbackend.entities.Prospection;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stockage des réponses d'une prospection, choisi par {@code prospection.stockage-reponses} :
+ * "lignes" (une ligne de reponses par question, par défaut) ou "document" (un document
+ * JSON par prospection, dans la ligne de prospections).
+ */
+public interface StockageReponses {
+
+    /**
+     * Rattache les réponses validées à la prospection avant son enregistrement :
+     * elles sont écrites au flush de la prospection, sans autre instruction.
+     * @param valeurs valeur nettoyée par id de question
+     */
+    void attacher(Prospection prospection, Map<Long, String> valeurs);
+
+    /**
+     * Réponses d'une prospection dans l'ordre des questions du formulaire
+     */
+    List<ReponseResume> lire(Long prospectionId);
+
+    /**
+     * Réponses aux questions données des prospections d'ids dans ]apresId, jusquaId] :
+     * prospection, question, valeur, ids des options (null si non renseignés)
+     */
+    List<Object[]> valeursPourFacettes(Long apresId, Long jusquaId, Collection<Long> questionIds);
+}
@@ -0,0 +1,77 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.ReponseResume;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import com.prospection.prospectionbackend.repositories.ReponseRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Les réponses d'une prospection en un seul document {"idQuestion": "valeur"} (jsonb sous Postgres)
+ * dans sa ligne de prospections : une seule écriture à la création, une lecture par clé primaire
+ * pour le détail, sans jointure sur reponses ni questions (libellés et ordre viennent du schéma).
+ *
+ * Les prospections sans document (créées en mode lignes et pas encore migrées) sont lues
+ * dans reponses : les deux formes peuvent coexister pendant la migration.
+ */
+@Service
+@ConditionalOnProperty(name = "prospection.stockage-reponses", havingValue = "document")
+public class StockageReponsesDocument implements StockageReponses {
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    @Autowired
+    private ReponseRepository reponseRepository;
+
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+
+    @Override
+    public void attacher(Prospection prospection, Map<Long, String> valeurs) {
+        prospection.setReponsesDocument(new LinkedHashMap<>(valeurs));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ReponseResume> lire(Long prospectionId) {
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        List<Object[]> lignes = prospectionRepository.findDocumentReponses(prospectionId);
+        if (lignes.isEmpty() || lignes.get(0)[0] == null) {
+            return StockageReponsesLignes.resumes(schema, reponseRepository.findLignesByProspectionId(prospectionId));
+        }
+        Map<Long, String> document = (Map<Long, String>) lignes.get(0)[0];
+        LocalDateTime dateCreation = (LocalDateTime) lignes.get(0)[1];
+
+        // Une réponse n'a plus d'identifiant propre ; les valeurs restent les libellés saisis
+        List<Object[]> reponses = new ArrayList<>(document.size());
+        for (Map.Entry<Long, String> reponse : document.entrySet()) {
+            reponses.add(new Object[]{null, reponse.getKey(), reponse.getValue(), null, dateCreation});
+        }
+        return StockageReponsesLignes.resumes(schema, reponses);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> valeursPourFacettes(Long apresId, Long jusquaId, Collection<Long> questionIds) {
+        // Prospections non migrées d'abord ; une valeur lue deux fois est sans effet sur l'index
+        List<Object[]> valeurs = new ArrayList<>(reponseRepository.findValeursPourFacettes(apresId, jusquaId, questionIds));
+        for (Object[] colonnes : prospectionRepository.findDocumentsReponses(apresId, jusquaId)) {
+            Long prospectionId = (Long) colonnes[0];
+            Map<Long, String> document = (Map<Long, String>) colonnes[1];
+            for (Long questionId : questionIds) {
+                String valeur = document.get(questionId);
+                if (valeur != null) {
+                    valeurs.add(new Object[]{prospectionId, questionId, valeur, null});
+                }
+            }
+        }
+        return valeurs;
+    }
+}
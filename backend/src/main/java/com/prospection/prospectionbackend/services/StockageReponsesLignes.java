@@ -0,0 +1,83 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.ReponseResume;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.entities.Question;
+import com.prospection.prospectionbackend.entities.Reponse;
+import com.prospection.prospectionbackend.repositories.QuestionRepository;
+import com.prospection.prospectionbackend.repositories.ReponseRepository;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.QuestionCompilee;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService.SchemaFormulaire;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Une ligne de reponses par question répondue ; pour les questions à choix,
+ * les ids des options choisies accompagnent la valeur saisie
+ */
+@Service
+@ConditionalOnProperty(name = "prospection.stockage-reponses", havingValue = "lignes", matchIfMissing = true)
+public class StockageReponsesLignes implements StockageReponses {
+
+    @Autowired
+    private ReponseRepository reponseRepository;
+
+    @Autowired
+    private QuestionRepository questionRepository;
+
+    @Autowired
+    private SchemaFormulaireService schemaFormulaireService;
+
+    @Override
+    public void attacher(Prospection prospection, Map<Long, String> valeurs) {
+        SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        for (Map.Entry<Long, String> entry : valeurs.entrySet()) {
+            // Référence sans chargement : seule la clé étrangère est écrite
+            Question reference = questionRepository.getReferenceById(entry.getKey());
+            Reponse reponse = new Reponse(reference, prospection, entry.getValue());
+            reponse.setOptions(schema.getQuestion(entry.getKey()).optionsChoisies(entry.getValue()));
+            prospection.getReponses().add(reponse);
+        }
+    }
+
+    @Override
+    public List<ReponseResume> lire(Long prospectionId) {
+        return resumes(schemaFormulaireService.getSchema(), reponseRepository.findLignesByProspectionId(prospectionId));
+    }
+
+    @Override
+    public List<Object[]> valeursPourFacettes(Long apresId, Long jusquaId, Collection<Long> questionIds) {
+        return reponseRepository.findValeursPourFacettes(apresId, jusquaId, questionIds);
+    }
+
+    /**
+     * Résumés dans l'ordre du formulaire, libellés des options résolus à l'affichage
+     * (la valeur saisie reste affichée si une option n'existe plus). Une question supprimée
+     * n'a plus de réponse affichée.
+     * @param lignes id, question, valeur, options, date de création
+     */
+    static List<ReponseResume> resumes(SchemaFormulaire schema, List<Object[]> lignes) {
+        List<Object[]> triees = new ArrayList<>(lignes.size());
+        for (Object[] colonnes : lignes) {
+            if (schema.getQuestion((Long) colonnes[1]) != null) {
+                triees.add(colonnes);
+            }
+        }
+        triees.sort(Comparator.comparing((Object[] colonnes) -> schema.getQuestion((Long) colonnes[1]).getOrdre(),
+                Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<ReponseResume> reponses = new ArrayList<>(triees.size());
+        for (Object[] colonnes : triees) {
+            QuestionCompilee question = schema.getQuestion((Long) colonnes[1]);
+            Long[] options = (Long[]) colonnes[3];
+            String libelles = options != null ? question.libelles(options) : null;
+            reponses.add(new ReponseResume((Long) colonnes[0], question.getId(), question.getQuestion(), question.getType(),
+                    libelles != null ? libelles : (String) colonnes[2], (LocalDateTime) colonnes[4]));
+        }
+        return reponses;
+    }
+}
@@ -0,0 +1,212 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.entities.CleCumul;
+import com.prospection.prospectionbackend.entities.CumulProspections;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.repositories.CumulProspectionsRepository;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tableaux de bord du siège, des régions, des supervisions et des branches, lus dans le cube
+ * cumuls_prospections (jour × région × supervision × branche × statut × type).
+ *
+ * Les créations validées sont cumulées en mémoire puis ajoutées au cube par un passage périodique :
+ * une mise à jour par cellule touchée et non par prospection, sans verrou sur le chemin de création.
+ * Le cube se recompte entièrement depuis les prospections (au premier démarrage, ou à la demande
+ * du siège après une écriture faite hors application).
+ */
+@Slf4j
+@Service
+public class TableauBordService implements ApplicationRunner {
+
+    private static final int JOURS_PAR_DEFAUT = 30;
+
+    // Une ligne par jour dans la réponse : au-delà, un tableau de bord n'est plus lisible
+    private static final int JOURS_MAX = 366;
+
+    @Autowired
+    private CumulProspectionsRepository cumulProspectionsRepository;
+
+    @Autowired
+    private ProspectionRepository prospectionRepository;
+
+    // Créations validées sur cette instance et pas encore ajoutées au cube
+    private final ConcurrentHashMap<CleCumul, Long> enAttente = new ConcurrentHashMap<>();
+
+
+    /**
+     * Premier démarrage sur une base existante : le cube est construit d'un coup
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (cumulProspectionsRepository.count() == 0 && prospectionRepository.count() > 0) {
+            int cellules = cumulProspectionsRepository.remplir();
+            log.info("Cube des tableaux de bord construit : {} cellules", cellules);
+        }
+    }
+
+    /**
+     * Compte une prospection qui vient d'être enregistrée, au commit de la transaction en cours
+     */
+    public void enregistrerApresCommit(Prospection prospection) {
+        CleCumul cle = CleCumul.de(prospection);
+        Runnable compter = () -> enAttente.merge(cle, 1L, Long::sum);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    compter.run();
+                }
+            });
+        } else {
+            compter.run();
+        }
+    }
+
+    /**
+     * Ajoute au cube les créations en attente. Une cellule en échec (créée au même moment par une
+     * autre instance, base indisponible) reste en attente pour le passage suivant.
+     */
+    @Scheduled(fixedDelayString = "${tableau-bord.ecriture-interval:5000}")
+    public synchronized void ecrire() {
+        for (CleCumul cle : enAttente.keySet()) {
+            Long delta = enAttente.remove(cle);
+            if (delta == null || delta == 0) {
+                continue;
+            }
+            try {
+                if (cumulProspectionsRepository.ajouter(cle.getJour(), cle.getRegionId(), cle.getSupervisionId(),
+                        cle.getBrancheId(), cle.getStatut(), cle.getTypeProspection(), delta) == 0) {
+                    // Insertion seule : en cas de course, l'échec remet le delta en attente et
+                    // le passage suivant l'ajoute à la cellule créée par l'autre instance
+                    cumulProspectionsRepository.save(new CumulProspections(cle, delta));
+                }
+            } catch (DataAccessException e) {
+                enAttente.merge(cle, delta, Long::sum);
+                log.warn("Écriture du cube reportée ({}) : {}", cle, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Arrêt de l'instance : les créations en attente sont écrites tant que la base est ouverte
+     */
+    @PreDestroy
+    public void ecrireAvantArret() {
+        ecrire();
+        if (!enAttente.isEmpty()) {
+            log.warn("{} cellules du cube non écrites à l'arrêt : reconstruire le cube", enAttente.size());
+        }
+    }
+
+    /**
+     * Recompte le cube depuis les prospections. Les créations validées pendant le recomptage
+     * peuvent être comptées deux fois ou pas du tout : à lancer hors des heures de saisie.
+     */
+    @Transactional
+    public synchronized int reconstruire(Utilisateur utilisateur) {
+        if (Perimetre.de(utilisateur).niveau() != Perimetre.Niveau.TOUT) {
+            throw new AccessDeniedException("Reconstruction réservée au siège");
+        }
+        cumulProspectionsRepository.vider();
+        // Déjà comptées par le recomptage qui suit
+        enAttente.clear();
+        int cellules = cumulProspectionsRepository.remplir();
+        log.info("Cube des tableaux de bord reconstruit par l'utilisateur {} : {} cellules", utilisateur.getId(), cellules);
+        return cellules;
+    }
+
+    /**
+     * Comptes de la structure du responsable sur la période (par défaut les 30 derniers jours) :
+     * total, par statut, par type, par jour et, sauf pour une branche, par structure du niveau inférieur.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getTableauBord(Utilisateur responsable, Perimetre.Niveau niveau, LocalDate du, LocalDate au) {
+        Perimetre perimetre = Perimetre.de(responsable);
+        if (perimetre.niveau() != niveau) {
+            throw new AccessDeniedException("Tableau de bord réservé au responsable de ce niveau");
+        }
+        LocalDate fin = au != null ? au : LocalDate.now();
+        LocalDate debut = du != null ? du : fin.minusDays(JOURS_PAR_DEFAUT - 1);
+        if (debut.isAfter(fin)) {
+            throw new IllegalArgumentException("La date de début est postérieure à la date de fin");
+        }
+        if (ChronoUnit.DAYS.between(debut, fin) >= JOURS_MAX) {
+            throw new IllegalArgumentException("Période limitée à " + JOURS_MAX + " jours");
+        }
+
+        List<Object[]> cellules;
+        switch (niveau) {
+            case TOUT:
+                cellules = cumulProspectionsRepository.cumulsParRegion(debut, fin);
+                break;
+            case REGION:
+                cellules = cumulProspectionsRepository.cumulsRegion(perimetre.id(), debut, fin);
+                break;
+            case SUPERVISION:
+                cellules = cumulProspectionsRepository.cumulsSupervision(perimetre.id(), debut, fin);
+                break;
+            case BRANCHE:
+                cellules = cumulProspectionsRepository.cumulsBranche(perimetre.id(), debut, fin);
+                break;
+            default:
+                throw new AccessDeniedException("Aucun tableau de bord pour ce rôle");
+        }
+
+        long total = 0;
+        Map<StatutProspection, Long> parStatut = new EnumMap<>(StatutProspection.class);
+        Map<TypeProspection, Long> parType = new EnumMap<>(TypeProspection.class);
+        Map<LocalDate, Long> parJour = new TreeMap<>();
+        Map<Long, Map<StatutProspection, Long>> parStructure = new TreeMap<>();
+        for (Object[] cellule : cellules) {
+            long nombre = ((Number) cellule[4]).longValue();
+            if (nombre == 0) {
+                continue;
+            }
+            StatutProspection statut = (StatutProspection) cellule[2];
+            total += nombre;
+            parStatut.merge(statut, nombre, Long::sum);
+            parType.merge((TypeProspection) cellule[3], nombre, Long::sum);
+            parJour.merge((LocalDate) cellule[1], nombre, Long::sum);
+            parStructure.computeIfAbsent((Long) cellule[0], id -> new EnumMap<>(StatutProspection.class))
+                    .merge(statut, nombre, Long::sum);
+        }
+
+        Map<String, Object> tableau = new LinkedHashMap<>();
+        tableau.put("niveau", niveau);
+        tableau.put("structureId", perimetre.id());
+        tableau.put("du", debut);
+        tableau.put("au", fin);
+        tableau.put("total", total);
+        tableau.put("parStatut", parStatut);
+        tableau.put("parType", parType);
+        tableau.put("parJour", parJour);
+        if (niveau != Perimetre.Niveau.BRANCHE) {
+            // Id 0 : prospections sans structure à ce niveau
+            tableau.put("parStructure", parStructure);
+        }
+        return tableau;
+    }
+}
@@ -1,27 +1,282 @@
 package com.prospection.prospectionbackend.services;
 
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.prospection.prospectionbackend.entities.JetonRevoque;
+import com.prospection.prospectionbackend.repositories.JetonRevoqueRepository;
+import com.prospection.prospectionbackend.utils.FiltreBloom;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import java.util.HashSet;
-import java.util.Set;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Jetons révoqués (déconnexion), indexés par leur jti ou, à défaut, par une empreinte SHA-256.
+ *
+ * Les révocations sont enregistrées dans la table jetons_revoques, partagée par toutes
+ * les instances. Chaque instance tient un filtre de Bloom de toutes les révocations
+ * encore valides : un jeton absent du filtre n'est pas révoqué, sans sortir de la JVM.
+ * Un jeton présent est confirmé une fois en base puis mémorisé jusqu'à son expiration.
+ * Les révocations faites ailleurs sont récupérées en suivant l'id de la table. Le filtre est
+ * chargé au démarrage et n'est reconstruit que lorsque les révocations expirées, qu'il ne sait
+ * pas retirer, ont trop dégradé son taux de faux positifs.
+ */
+@Slf4j
 @Service
 public class TokenBlacklistService {
-    private final Set<String> blacklistedTokens = new HashSet<>();
+
+    private static final int TAILLE_LOT = 1000;
+
+    // Relecture des derniers ids : une transaction plus ancienne peut valider après une plus récente
+    private static final long CHEVAUCHEMENT = 100;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final double TAUX_FAUX_POSITIFS = 0.01;
+
+    // Reconstruction du filtre au-delà de ce multiple du taux de faux positifs choisi
+    private static final double DEGRADATION_MAX = 2;
+
+    @Autowired
+    private JetonRevoqueRepository jetonRevoqueRepository;
+
+    @Value("${jwt.refresh-expiration}")
+    private Long jwtRefreshExpiration;
+
+    @Value("${jwt.revocation-bloom-capacity:100000}")
+    private int capaciteFiltre;
+
+    private final AtomicReference<FiltreBloom> filtre = new AtomicReference<>();
+
+    // Verdicts confirmés en base, gardés jusqu'à l'expiration du jeton
+    private final ConcurrentHashMap<String, Verdict> confirmes = new ConcurrentHashMap<>();
+
+    private volatile long dernierId;
+
+    private final LongAdder recherches = new LongAdder();
+    private final LongAdder trouves = new LongAdder();
+    private final LongAdder consultationsBase = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+
+    /**
+     * Filtre chargé avant la première requête : sans lui, chaque vérification lirait la base.
+     * Base indisponible au démarrage : le premier passage de synchroniser le chargera.
+     */
+    @PostConstruct
+    public void chargerAuDemarrage() {
+        try {
+            synchroniser();
+        } catch (DataAccessException e) {
+            log.warn("Filtre des jetons révoqués non chargé au démarrage : {}", e.getMessage());
+        }
+    }
 
     public boolean isTokenBlacklisted(String token) {
-        return blacklistedTokens.contains(token);
+        try {
+            return isTokenBlacklisted(JWT.decode(token));
+        } catch (JWTDecodeException e) {
+            recherches.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Le cas courant (jeton non révoqué) se résout dans le filtre de Bloom, sans verrou
+     */
+    public boolean isTokenBlacklisted(DecodedJWT jwt) {
+        recherches.increment();
+        String cle = cle(jwt);
+        FiltreBloom courant = filtre.get();
+        if (courant != null && !courant.peutContenir(cle)) {
+            return false;
+        }
+
+        long maintenant = System.currentTimeMillis();
+        Verdict verdict = confirmes.get(cle);
+        if (verdict != null && verdict.expiration() <= maintenant) {
+            if (confirmes.remove(cle, verdict)) {
+                evictions.increment();
+            }
+            verdict = null;
+        }
+        if (verdict == null) {
+            verdict = consulterBase(cle, expiration(jwt));
+        }
+
+        if (verdict.revoque()) {
+            trouves.increment();
+        }
+        return verdict.revoque();
     }
 
     public void blacklistToken(String token) {
-        blacklistedTokens.add(token);
+        if (token == null) {
+            return;
+        }
+        DecodedJWT jwt;
+        try {
+            jwt = JWT.decode(token);
+        } catch (JWTDecodeException e) {
+            // Jeton illisible : il sera de toute façon refusé par la vérification
+            return;
+        }
+
+        long expiration = expiration(jwt);
+        if (expiration <= System.currentTimeMillis()) {
+            return;
+        }
+
+        String cle = cle(jwt);
+        jetonRevoqueRepository.revoquer(cle, versDate(expiration), LocalDateTime.now());
+        confirmes.put(cle, new Verdict(true, expiration));
+        FiltreBloom courant = filtre.get();
+        if (courant != null) {
+            courant.ajouter(cle);
+        }
     }
 
     public void blacklistTokens(String accessToken, String refreshToken) {
-        if (accessToken != null) {
-            blacklistedTokens.add(accessToken);
+        blacklistToken(accessToken);
+        blacklistToken(refreshToken);
+    }
+
+    /**
+     * Ajoute au filtre les révocations enregistrées depuis le dernier passage,
+     * y compris celles des autres instances. Le premier passage charge toute la table.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation-poll-interval:5000}")
+    public synchronized void synchroniser() {
+        FiltreBloom courant = filtre.get();
+        if (courant == null) {
+            reconstruireFiltre();
+            return;
+        }
+        dernierId = charger(courant, Math.max(0, dernierId - CHEVAUCHEMENT));
+    }
+
+    /**
+     * Supprime les révocations expirées. Le filtre, qui ne sait pas retirer d'éléments, n'est
+     * reconstruit que si son taux de faux positifs estimé a dépassé le double du taux choisi.
+     */
+    @Scheduled(fixedDelayString = "${jwt.blacklist-purge-interval:60000}",
+            initialDelayString = "${jwt.blacklist-purge-interval:60000}")
+    public synchronized void purger() {
+        long maintenant = System.currentTimeMillis();
+        jetonRevoqueRepository.deleteExpires(versDate(maintenant));
+        confirmes.forEach((cle, verdict) -> {
+            if (verdict.expiration() <= maintenant && confirmes.remove(cle, verdict)) {
+                evictions.increment();
+            }
+        });
+        FiltreBloom courant = filtre.get();
+        if (courant == null || courant.tauxFauxPositifsEstime() > DEGRADATION_MAX * courant.getTauxFauxPositifs()) {
+            reconstruireFiltre();
+        }
+    }
+
+    public Map<String, Object> getStatistiques() {
+        Map<String, Object> statistiques = new HashMap<>();
+        statistiques.put("taille", confirmes.size());
+        statistiques.put("recherches", recherches.sum());
+        statistiques.put("trouves", trouves.sum());
+        statistiques.put("consultationsBase", consultationsBase.sum());
+        statistiques.put("evictions", evictions.sum());
+        statistiques.put("dernierId", dernierId);
+        FiltreBloom courant = filtre.get();
+        statistiques.put("tauxFauxPositifs", courant != null ? courant.tauxFauxPositifsEstime() : null);
+        return statistiques;
+    }
+
+    private void reconstruireFiltre() {
+        long revocations = jetonRevoqueRepository.count();
+        FiltreBloom nouveau = new FiltreBloom((int) Math.max(capaciteFiltre, Math.min(Integer.MAX_VALUE / 16, revocations * 2)), TAUX_FAUX_POSITIFS);
+        long id = charger(nouveau, 0);
+        filtre.set(nouveau);
+        // Révocations locales faites pendant la reconstruction
+        confirmes.forEach((cle, verdict) -> {
+            if (verdict.revoque()) {
+                nouveau.ajouter(cle);
+            }
+        });
+        dernierId = Math.max(dernierId, id);
+    }
+
+    private long charger(FiltreBloom cible, long apresId) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        long id = apresId;
+        while (true) {
+            List<JetonRevoque> lot = jetonRevoqueRepository.findSuivantes(id, maintenant, PageRequest.of(0, TAILLE_LOT));
+            for (JetonRevoque jeton : lot) {
+                cible.ajouter(jeton.getCle());
+                // Un verdict négatif mémorisé avant la révocation devient faux
+                long expiration = versMillis(jeton.getDateExpiration());
+                confirmes.computeIfPresent(jeton.getCle(), (cle, verdict) -> new Verdict(true, expiration));
+                id = Math.max(id, jeton.getId());
+            }
+            if (lot.size() < TAILLE_LOT) {
+                return id;
+            }
+        }
+    }
+
+    private Verdict consulterBase(String cle, long expirationJeton) {
+        consultationsBase.increment();
+        List<LocalDateTime> expirations = jetonRevoqueRepository.findExpirationByCle(cle);
+        Verdict verdict = expirations.isEmpty()
+                ? new Verdict(false, expirationJeton)
+                : new Verdict(true, versMillis(expirations.get(0)));
+        confirmes.put(cle, verdict);
+        return verdict;
+    }
+
+    private long expiration(DecodedJWT jwt) {
+        return jwt.getExpiresAt() != null
+                ? jwt.getExpiresAt().getTime()
+                : System.currentTimeMillis() + jwtRefreshExpiration;
+    }
+
+    private static LocalDateTime versDate(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE);
+    }
+
+    private static long versMillis(LocalDateTime date) {
+        return date.atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static String cle(DecodedJWT jwt) {
+        if (jwt.getId() != null) {
+            return jwt.getId();
         }
-        if (refreshToken != null) {
-            blacklistedTokens.add(refreshToken);
+        // Jetons émis avant l'ajout du jti
+        try {
+            byte[] empreinte = MessageDigest.getInstance("SHA-256")
+                    .digest(jwt.getToken().getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(empreinte);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
         }
     }
-}
\ No newline at end of file
+
+    private record Verdict(boolean revoque, long expiration) {
+    }
+}
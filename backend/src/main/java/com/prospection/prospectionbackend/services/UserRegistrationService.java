@@ -7,6 +7,7 @@ import com.prospection.prospectionbackend.repositories.RegionRepository;
 import com.prospection.prospectionbackend.repositories.SupervisionRepository;
 import com.prospection.prospectionbackend.repositories.UtilisateurRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -29,6 +30,8 @@ public class UserRegistrationService {
     private SupervisionRepository supervisionRepository;
     @Autowired
     private RegionRepository regionRepository;
+    @Autowired
+    private VersionSecuriteService versionSecuriteService;
 
 
     public Utilisateur createUser(String nom, String prenom, String email, String telephone,
@@ -77,4 +80,46 @@ public class UserRegistrationService {
 
         return utilisateurRepository.save(utilisateur);
     }
-}
\ No newline at end of file
+
+
+    /**
+     * Désactive le compte ; les jetons déjà émis deviennent périmés
+     */
+    public Utilisateur desactiverUtilisateur(Long utilisateurId, Utilisateur responsable) {
+        verifierSiege(responsable);
+        if (utilisateurId.equals(responsable.getId())) {
+            throw new IllegalArgumentException("Vous ne pouvez pas désactiver votre propre compte");
+        }
+        Utilisateur utilisateur = utilisateurRepository.findById(utilisateurId)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+
+        utilisateur.setActif(false);
+        return incrementerVersionSecurite(utilisateur);
+    }
+
+    /**
+     * Change le rôle ; les jetons déjà émis portent l'ancien rôle et deviennent périmés
+     */
+    public Utilisateur changerRole(Long utilisateurId, Role role, Utilisateur responsable) {
+        verifierSiege(responsable);
+        Utilisateur utilisateur = utilisateurRepository.findById(utilisateurId)
+                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé"));
+
+        utilisateur.setRole(role);
+        return incrementerVersionSecurite(utilisateur);
+    }
+
+    private void verifierSiege(Utilisateur responsable) {
+        if (responsable.getRole() != Role.SIEGE) {
+            throw new AccessDeniedException("Gestion des comptes réservée au siège");
+        }
+    }
+
+    private Utilisateur incrementerVersionSecurite(Utilisateur utilisateur) {
+        int version = utilisateur.getVersionSecurite() != null ? utilisateur.getVersionSecurite() : 0;
+        utilisateur.setVersionSecurite(version + 1);
+        Utilisateur sauvegarde = utilisateurRepository.save(utilisateur);
+        versionSecuriteService.invalider(sauvegarde.getId());
+        return sauvegarde;
+    }
+}
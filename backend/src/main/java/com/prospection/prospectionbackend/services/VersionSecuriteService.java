@@ -0,0 +1,64 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.repositories.UtilisateurRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Version de sécurité courante de chaque utilisateur, incrémentée à la désactivation
+ * ou au changement de rôle. Un jeton portant une version différente est périmé.
+ * Les versions sont gardées en mémoire quelques secondes pour que les autres
+ * instances voient les changements sans lire la base à chaque requête.
+ */
+@Service
+public class VersionSecuriteService {
+
+    @Autowired
+    private UtilisateurRepository utilisateurRepository;
+
+    @Value("${jwt.security-version-ttl:60000}")
+    private long dureeCache;
+
+    private final ConcurrentHashMap<Long, VersionConnue> versions = new ConcurrentHashMap<>();
+
+
+    public boolean estAJour(Long utilisateurId, Integer versionJeton) {
+        if (utilisateurId == null || versionJeton == null) {
+            return false;
+        }
+
+        long maintenant = System.currentTimeMillis();
+        VersionConnue connue = versions.get(utilisateurId);
+        if (connue == null || connue.expiration() < maintenant) {
+            // Absente si l'utilisateur est désactivé ou supprimé
+            Integer actuelle = utilisateurRepository.findVersionSecuriteActifById(utilisateurId).orElse(null);
+            connue = new VersionConnue(actuelle, maintenant + dureeCache);
+            versions.put(utilisateurId, connue);
+        }
+        return versionJeton.equals(connue.version());
+    }
+
+    /**
+     * Oublie la version connue après le commit de la transaction en cours
+     */
+    public void invalider(Long utilisateurId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.remove(utilisateurId);
+                }
+            });
+        } else {
+            versions.remove(utilisateurId);
+        }
+    }
+
+    private record VersionConnue(Integer version, long expiration) {
+    }
+}
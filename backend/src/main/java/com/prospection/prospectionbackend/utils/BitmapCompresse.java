@@ -0,0 +1,404 @@
+package com.prospection.prospectionbackend.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ensemble d'entiers non signés 32 bits compressé à la manière des Roaring bitmaps :
+ * les valeurs sont regroupées par leurs 16 bits de poids fort, chaque groupe étant
+ * un tableau trié (jusqu'à 4096 valeurs) ou une carte de 65536 bits (8 Ko).
+ * Les intersections et unions travaillent groupe par groupe, sans décompresser.
+ *
+ * Non thread-safe. Les opérations ensemblistes créent un nouvel ensemble et ne
+ * modifient jamais leurs opérandes.
+ */
+public final class BitmapCompresse {
+
+    // Au-delà, la carte de bits (8 Ko) devient plus compacte que le tableau de char
+    private static final int SEUIL_TABLEAU = 4096;
+    private static final int MOTS_CARTE = 1024;
+    private static final long VALEUR_MAX = 0xFFFFFFFFL;
+
+    private char[] cles;
+    private Conteneur[] conteneurs;
+    private int taille;
+
+    public BitmapCompresse() {
+        this(4);
+    }
+
+    private BitmapCompresse(int capacite) {
+        this.cles = new char[capacite];
+        this.conteneurs = new Conteneur[capacite];
+    }
+
+    /**
+     * @return true si la valeur n'était pas déjà présente
+     */
+    public boolean ajouter(long valeur) {
+        if (valeur < 0 || valeur > VALEUR_MAX) {
+            throw new IllegalArgumentException("Valeur hors de l'intervalle 32 bits non signé: " + valeur);
+        }
+        char cle = (char) (valeur >>> 16);
+        int index = Arrays.binarySearch(cles, 0, taille, cle);
+        if (index < 0) {
+            index = -index - 1;
+            if (taille == cles.length) {
+                cles = Arrays.copyOf(cles, taille * 2);
+                conteneurs = Arrays.copyOf(conteneurs, taille * 2);
+            }
+            System.arraycopy(cles, index, cles, index + 1, taille - index);
+            System.arraycopy(conteneurs, index, conteneurs, index + 1, taille - index);
+            cles[index] = cle;
+            conteneurs[index] = new Conteneur();
+            taille++;
+        }
+        return conteneurs[index].ajouter((char) valeur);
+    }
+
+    public boolean contient(long valeur) {
+        if (valeur < 0 || valeur > VALEUR_MAX) {
+            return false;
+        }
+        int index = Arrays.binarySearch(cles, 0, taille, (char) (valeur >>> 16));
+        return index >= 0 && conteneurs[index].contient((char) valeur);
+    }
+
+    public long cardinalite() {
+        long total = 0;
+        for (int i = 0; i < taille; i++) {
+            total += conteneurs[i].cardinalite;
+        }
+        return total;
+    }
+
+    public boolean estVide() {
+        return taille == 0;
+    }
+
+    /**
+     * Cardinalité de l'intersection, sans la construire (comptes de facettes)
+     */
+    public long cardinaliteEt(BitmapCompresse autre) {
+        long total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < taille && j < autre.taille) {
+            if (cles[i] < autre.cles[j]) {
+                i++;
+            } else if (cles[i] > autre.cles[j]) {
+                j++;
+            } else {
+                total += conteneurs[i].cardinaliteEt(autre.conteneurs[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    public static BitmapCompresse et(BitmapCompresse a, BitmapCompresse b) {
+        BitmapCompresse resultat = new BitmapCompresse(Math.max(1, Math.min(a.taille, b.taille)));
+        int i = 0;
+        int j = 0;
+        while (i < a.taille && j < b.taille) {
+            if (a.cles[i] < b.cles[j]) {
+                i++;
+            } else if (a.cles[i] > b.cles[j]) {
+                j++;
+            } else {
+                Conteneur intersection = a.conteneurs[i].et(b.conteneurs[j]);
+                if (intersection.cardinalite > 0) {
+                    resultat.ajouterConteneur(a.cles[i], intersection);
+                }
+                i++;
+                j++;
+            }
+        }
+        return resultat;
+    }
+
+    public static BitmapCompresse ou(BitmapCompresse a, BitmapCompresse b) {
+        BitmapCompresse resultat = new BitmapCompresse(Math.max(1, a.taille + b.taille));
+        int i = 0;
+        int j = 0;
+        while (i < a.taille || j < b.taille) {
+            if (j == b.taille || (i < a.taille && a.cles[i] < b.cles[j])) {
+                resultat.ajouterConteneur(a.cles[i], a.conteneurs[i].copie());
+                i++;
+            } else if (i == a.taille || a.cles[i] > b.cles[j]) {
+                resultat.ajouterConteneur(b.cles[j], b.conteneurs[j].copie());
+                j++;
+            } else {
+                resultat.ajouterConteneur(a.cles[i], a.conteneurs[i].ou(b.conteneurs[j]));
+                i++;
+                j++;
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Valeurs strictement inférieures à {@code avant}, de la plus grande à la plus petite
+     * @param limite nombre maximum de valeurs retournées
+     */
+    public List<Long> precedentes(long avant, int limite) {
+        List<Long> valeurs = new ArrayList<>(Math.min(limite, 1024));
+        if (avant <= 0 || limite <= 0) {
+            return valeurs;
+        }
+        long borne = Math.min(avant - 1, VALEUR_MAX);
+        char cleBorne = (char) (borne >>> 16);
+        for (int i = taille - 1; i >= 0 && valeurs.size() < limite; i--) {
+            if (cles[i] > cleBorne) {
+                continue;
+            }
+            int max = cles[i] == cleBorne ? (char) borne : 0xFFFF;
+            conteneurs[i].precedentes((long) cles[i] << 16, max, limite, valeurs);
+        }
+        return valeurs;
+    }
+
+    private void ajouterConteneur(char cle, Conteneur conteneur) {
+        if (taille == cles.length) {
+            cles = Arrays.copyOf(cles, taille * 2);
+            conteneurs = Arrays.copyOf(conteneurs, taille * 2);
+        }
+        cles[taille] = cle;
+        conteneurs[taille] = conteneur;
+        taille++;
+    }
+
+
+    /**
+     * Valeurs d'un groupe de 65536 : tableau trié tant qu'il est petit, carte de bits sinon
+     */
+    private static final class Conteneur {
+        // Exactement l'un des deux est non nul
+        private char[] tableau;
+        private long[] mots;
+        private int cardinalite;
+
+        Conteneur() {
+            this.tableau = new char[4];
+        }
+
+        private Conteneur(char[] tableau, long[] mots, int cardinalite) {
+            this.tableau = tableau;
+            this.mots = mots;
+            this.cardinalite = cardinalite;
+        }
+
+        boolean ajouter(char valeur) {
+            if (mots != null) {
+                long masque = 1L << valeur;
+                if ((mots[valeur >>> 6] & masque) != 0) {
+                    return false;
+                }
+                mots[valeur >>> 6] |= masque;
+                cardinalite++;
+                return true;
+            }
+            int position = Arrays.binarySearch(tableau, 0, cardinalite, valeur);
+            if (position >= 0) {
+                return false;
+            }
+            if (cardinalite == SEUIL_TABLEAU) {
+                versCarte();
+                return ajouter(valeur);
+            }
+            position = -position - 1;
+            if (cardinalite == tableau.length) {
+                tableau = Arrays.copyOf(tableau, Math.min(SEUIL_TABLEAU, cardinalite * 2));
+            }
+            System.arraycopy(tableau, position, tableau, position + 1, cardinalite - position);
+            tableau[position] = valeur;
+            cardinalite++;
+            return true;
+        }
+
+        boolean contient(char valeur) {
+            if (mots != null) {
+                return (mots[valeur >>> 6] & (1L << valeur)) != 0;
+            }
+            return Arrays.binarySearch(tableau, 0, cardinalite, valeur) >= 0;
+        }
+
+        Conteneur copie() {
+            return new Conteneur(
+                    tableau != null ? Arrays.copyOf(tableau, Math.max(1, cardinalite)) : null,
+                    mots != null ? mots.clone() : null,
+                    cardinalite);
+        }
+
+        int cardinaliteEt(Conteneur autre) {
+            if (mots != null && autre.mots != null) {
+                int total = 0;
+                for (int k = 0; k < MOTS_CARTE; k++) {
+                    total += Long.bitCount(mots[k] & autre.mots[k]);
+                }
+                return total;
+            }
+            if (mots != null || autre.mots != null) {
+                Conteneur carte = mots != null ? this : autre;
+                Conteneur liste = mots != null ? autre : this;
+                int total = 0;
+                for (int k = 0; k < liste.cardinalite; k++) {
+                    if (carte.contient(liste.tableau[k])) {
+                        total++;
+                    }
+                }
+                return total;
+            }
+            int total = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinalite && j < autre.cardinalite) {
+                if (tableau[i] < autre.tableau[j]) {
+                    i++;
+                } else if (tableau[i] > autre.tableau[j]) {
+                    j++;
+                } else {
+                    total++;
+                    i++;
+                    j++;
+                }
+            }
+            return total;
+        }
+
+        Conteneur et(Conteneur autre) {
+            if (mots != null && autre.mots != null) {
+                long[] resultat = new long[MOTS_CARTE];
+                int total = 0;
+                for (int k = 0; k < MOTS_CARTE; k++) {
+                    resultat[k] = mots[k] & autre.mots[k];
+                    total += Long.bitCount(resultat[k]);
+                }
+                Conteneur intersection = new Conteneur(null, resultat, total);
+                if (total <= SEUIL_TABLEAU) {
+                    intersection.versTableau();
+                }
+                return intersection;
+            }
+            if (mots != null || autre.mots != null) {
+                Conteneur carte = mots != null ? this : autre;
+                Conteneur liste = mots != null ? autre : this;
+                char[] resultat = new char[Math.max(1, liste.cardinalite)];
+                int total = 0;
+                for (int k = 0; k < liste.cardinalite; k++) {
+                    if (carte.contient(liste.tableau[k])) {
+                        resultat[total++] = liste.tableau[k];
+                    }
+                }
+                return new Conteneur(resultat, null, total);
+            }
+            char[] resultat = new char[Math.max(1, Math.min(cardinalite, autre.cardinalite))];
+            int total = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinalite && j < autre.cardinalite) {
+                if (tableau[i] < autre.tableau[j]) {
+                    i++;
+                } else if (tableau[i] > autre.tableau[j]) {
+                    j++;
+                } else {
+                    resultat[total++] = tableau[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new Conteneur(resultat, null, total);
+        }
+
+        Conteneur ou(Conteneur autre) {
+            if (mots == null && autre.mots == null && cardinalite + autre.cardinalite <= SEUIL_TABLEAU) {
+                char[] resultat = new char[Math.max(1, cardinalite + autre.cardinalite)];
+                int total = 0;
+                int i = 0;
+                int j = 0;
+                while (i < cardinalite || j < autre.cardinalite) {
+                    if (j == autre.cardinalite || (i < cardinalite && tableau[i] < autre.tableau[j])) {
+                        resultat[total++] = tableau[i++];
+                    } else if (i == cardinalite || tableau[i] > autre.tableau[j]) {
+                        resultat[total++] = autre.tableau[j++];
+                    } else {
+                        resultat[total++] = tableau[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return new Conteneur(resultat, null, total);
+            }
+            long[] resultat = new long[MOTS_CARTE];
+            for (Conteneur source : new Conteneur[]{this, autre}) {
+                if (source.mots != null) {
+                    for (int k = 0; k < MOTS_CARTE; k++) {
+                        resultat[k] |= source.mots[k];
+                    }
+                } else {
+                    for (int k = 0; k < source.cardinalite; k++) {
+                        char valeur = source.tableau[k];
+                        resultat[valeur >>> 6] |= 1L << valeur;
+                    }
+                }
+            }
+            int total = 0;
+            for (long mot : resultat) {
+                total += Long.bitCount(mot);
+            }
+            Conteneur union = new Conteneur(null, resultat, total);
+            if (total <= SEUIL_TABLEAU) {
+                union.versTableau();
+            }
+            return union;
+        }
+
+        void precedentes(long base, int max, int limite, List<Long> valeurs) {
+            if (mots != null) {
+                for (int k = max >>> 6; k >= 0 && valeurs.size() < limite; k--) {
+                    long mot = mots[k];
+                    if (k == max >>> 6 && (max & 63) != 63) {
+                        mot &= (1L << ((max & 63) + 1)) - 1;
+                    }
+                    while (mot != 0 && valeurs.size() < limite) {
+                        int bit = 63 - Long.numberOfLeadingZeros(mot);
+                        valeurs.add(base + ((long) k << 6) + bit);
+                        mot &= ~(1L << bit);
+                    }
+                }
+                return;
+            }
+            for (int k = cardinalite - 1; k >= 0 && valeurs.size() < limite; k--) {
+                if (tableau[k] <= max) {
+                    valeurs.add(base + tableau[k]);
+                }
+            }
+        }
+
+        private void versCarte() {
+            long[] carte = new long[MOTS_CARTE];
+            for (int k = 0; k < cardinalite; k++) {
+                carte[tableau[k] >>> 6] |= 1L << tableau[k];
+            }
+            mots = carte;
+            tableau = null;
+        }
+
+        private void versTableau() {
+            char[] liste = new char[Math.max(1, cardinalite)];
+            int total = 0;
+            for (int k = 0; k < MOTS_CARTE; k++) {
+                long mot = mots[k];
+                while (mot != 0) {
+                    int bit = Long.numberOfTrailingZeros(mot);
+                    liste[total++] = (char) ((k << 6) + bit);
+                    mot &= mot - 1;
+                }
+            }
+            tableau = liste;
+            mots = null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.prospection.prospectionbackend.utils;
+
+import java.util.Collection;
+
+/**
+ * Ensemble d'ids de questions sous forme d'octets persistables : le bit (id % 8) de
+ * l'octet (id / 8). Les ids de questions restent petits (quelques centaines au plus),
+ * l'ensemble tient donc en quelques dizaines d'octets par prospection.
+ */
+public final class BitmapQuestions {
+
+    private static final byte[] VIDE = new byte[0];
+
+    private BitmapQuestions() {
+    }
+
+    public static byte[] de(Collection<Long> questionIds) {
+        long max = -1;
+        for (Long id : questionIds) {
+            if (id < 0 || id > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Id de question hors limites : " + id);
+            }
+            max = Math.max(max, id);
+        }
+        if (max < 0) {
+            return VIDE;
+        }
+        byte[] bitmap = new byte[(int) (max >>> 3) + 1];
+        for (Long id : questionIds) {
+            bitmap[(int) (id >>> 3)] |= (byte) (1 << (id & 7));
+        }
+        return bitmap;
+    }
+
+    public static boolean contient(byte[] bitmap, long questionId) {
+        if (bitmap == null || questionId < 0) {
+            return false;
+        }
+        long octet = questionId >>> 3;
+        return octet < bitmap.length && (bitmap[(int) octet] & (1 << (questionId & 7))) != 0;
+    }
+
+    public static boolean contientToutes(byte[] bitmap, Collection<Long> questionIds) {
+        for (Long id : questionIds) {
+            if (!contient(bitmap, id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
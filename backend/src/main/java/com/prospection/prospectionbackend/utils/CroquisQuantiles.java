@@ -0,0 +1,242 @@
+package com.prospection.prospectionbackend.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Croquis de quantiles fusionnable (t-digest à fusion) : la distribution est résumée par des
+ * centroïdes (moyenne, poids) d'autant plus fins qu'ils sont proches des extrémités, avec la
+ * fonction d'échelle k(q) = δ/2π · asin(2q − 1). Au plus ~δ centroïdes quel que soit le nombre
+ * de valeurs ; l'erreur sur un quantile q est de l'ordre de q(1 − q)/δ en rang.
+ *
+ * Deux croquis se fusionnent sans perte supplémentaire notable : les croquis des branches
+ * donnent ceux des supervisions, des régions et du siège sans relire les valeurs.
+ *
+ * Non thread-safe.
+ */
+public final class CroquisQuantiles {
+
+    public static final int COMPRESSION_PAR_DEFAUT = 100;
+
+    private static final byte VERSION = 1;
+
+    private final int compression;
+
+    // Centroïdes triés par moyenne
+    private double[] moyennes;
+    private double[] poids;
+    private int centroides;
+
+    // Valeurs pas encore fusionnées dans les centroïdes
+    private final double[] tampon;
+    private int enTampon;
+
+    private double poidsTotal;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public CroquisQuantiles() {
+        this(COMPRESSION_PAR_DEFAUT);
+    }
+
+    public CroquisQuantiles(int compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("Compression trop faible : " + compression);
+        }
+        this.compression = compression;
+        // La fonction asin produit au plus ~δ/2 centroïdes ; marge pour la fusion
+        this.moyennes = new double[compression];
+        this.poids = new double[compression];
+        this.tampon = new double[5 * compression];
+    }
+
+    public void ajouter(double valeur) {
+        if (Double.isNaN(valeur) || Double.isInfinite(valeur)) {
+            throw new IllegalArgumentException("Valeur non finie : " + valeur);
+        }
+        if (enTampon == tampon.length) {
+            compacter(null, null, 0);
+        }
+        tampon[enTampon++] = valeur;
+        poidsTotal++;
+        min = Math.min(min, valeur);
+        max = Math.max(max, valeur);
+    }
+
+    /**
+     * Ajoute les valeurs résumées par un autre croquis, qui n'est pas modifié
+     */
+    public void fusionner(CroquisQuantiles autre) {
+        if (autre.poidsTotal == 0) {
+            return;
+        }
+        double[] autresMoyennes = new double[autre.centroides + autre.enTampon];
+        double[] autresPoids = new double[autresMoyennes.length];
+        System.arraycopy(autre.moyennes, 0, autresMoyennes, 0, autre.centroides);
+        System.arraycopy(autre.poids, 0, autresPoids, 0, autre.centroides);
+        for (int i = 0; i < autre.enTampon; i++) {
+            autresMoyennes[autre.centroides + i] = autre.tampon[i];
+            autresPoids[autre.centroides + i] = 1;
+        }
+        poidsTotal += autre.poidsTotal;
+        min = Math.min(min, autre.min);
+        max = Math.max(max, autre.max);
+        compacter(autresMoyennes, autresPoids, autresMoyennes.length);
+    }
+
+    public long nombre() {
+        return (long) poidsTotal;
+    }
+
+    public double min() {
+        return poidsTotal == 0 ? Double.NaN : min;
+    }
+
+    public double max() {
+        return poidsTotal == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Valeur estimée du quantile q (0 : minimum, 1 : maximum), interpolée entre centroïdes
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile hors de [0, 1] : " + q);
+        }
+        compacter(null, null, 0);
+        if (centroides == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+
+        double rang = q * poidsTotal;
+        // Entre le minimum et le centre du premier centroïde
+        if (rang < poids[0] / 2) {
+            return min + (moyennes[0] - min) * rang / (poids[0] / 2);
+        }
+        double cumul = 0;
+        for (int i = 0; i < centroides - 1; i++) {
+            double demiEcart = (poids[i] + poids[i + 1]) / 2;
+            if (cumul + poids[i] / 2 + demiEcart > rang) {
+                double z = rang - (cumul + poids[i] / 2);
+                return moyennes[i] + (moyennes[i + 1] - moyennes[i]) * z / demiEcart;
+            }
+            cumul += poids[i];
+        }
+        // Entre le centre du dernier centroïde et le maximum
+        int dernier = centroides - 1;
+        double z = rang - (cumul + poids[dernier] / 2);
+        return moyennes[dernier] + (max - moyennes[dernier]) * Math.min(1, z / (poids[dernier] / 2));
+    }
+
+    /**
+     * Forme compacte pour la persistance : version, compression, min, max, puis les centroïdes
+     */
+    public byte[] versOctets() {
+        compacter(null, null, 0);
+        ByteBuffer tampon = ByteBuffer.allocate(1 + 4 + 8 + 8 + 4 + centroides * 16);
+        tampon.put(VERSION).putInt(compression).putDouble(min).putDouble(max).putInt(centroides);
+        for (int i = 0; i < centroides; i++) {
+            tampon.putDouble(moyennes[i]).putDouble(poids[i]);
+        }
+        return tampon.array();
+    }
+
+    public static CroquisQuantiles depuisOctets(byte[] octets) {
+        ByteBuffer tampon = ByteBuffer.wrap(octets);
+        if (tampon.get() != VERSION) {
+            throw new IllegalArgumentException("Version de croquis inconnue");
+        }
+        CroquisQuantiles croquis = new CroquisQuantiles(tampon.getInt());
+        croquis.min = tampon.getDouble();
+        croquis.max = tampon.getDouble();
+        int centroides = tampon.getInt();
+        double[] moyennes = new double[centroides];
+        double[] poids = new double[centroides];
+        for (int i = 0; i < centroides; i++) {
+            moyennes[i] = tampon.getDouble();
+            poids[i] = tampon.getDouble();
+            croquis.poidsTotal += poids[i];
+        }
+        croquis.compacter(moyennes, poids, centroides);
+        return croquis;
+    }
+
+    /**
+     * Fusionne centroïdes, tampon et centroïdes supplémentaires en un passage sur les éléments triés :
+     * un élément rejoint le centroïde courant tant que celui-ci couvre moins d'une unité de k
+     */
+    private void compacter(double[] autresMoyennes, double[] autresPoids, int autres) {
+        if (enTampon == 0 && autres == 0) {
+            return;
+        }
+        int total = centroides + enTampon + autres;
+        double[] m = new double[total];
+        double[] w = new double[total];
+        System.arraycopy(moyennes, 0, m, 0, centroides);
+        System.arraycopy(poids, 0, w, 0, centroides);
+        for (int i = 0; i < enTampon; i++) {
+            m[centroides + i] = tampon[i];
+            w[centroides + i] = 1;
+        }
+        if (autres > 0) {
+            System.arraycopy(autresMoyennes, 0, m, centroides + enTampon, autres);
+            System.arraycopy(autresPoids, 0, w, centroides + enTampon, autres);
+        }
+        Integer[] ordre = new Integer[total];
+        for (int i = 0; i < total; i++) {
+            ordre[i] = i;
+        }
+        Arrays.sort(ordre, (a, b) -> Double.compare(m[a], m[b]));
+
+        double poidsFusionnes = 0;
+        for (int i = 0; i < total; i++) {
+            poidsFusionnes += w[i];
+        }
+
+        double[] nouvellesMoyennes = new double[Math.max(moyennes.length, total)];
+        double[] nouveauxPoids = new double[nouvellesMoyennes.length];
+        int n = 0;
+        double moyenne = m[ordre[0]];
+        double poidsCourant = w[ordre[0]];
+        double cumul = 0;
+        double limite = poidsFusionnes * inverseK(k(0) + 1);
+        for (int j = 1; j < total; j++) {
+            int i = ordre[j];
+            if (cumul + poidsCourant + w[i] <= limite) {
+                poidsCourant += w[i];
+                moyenne += (m[i] - moyenne) * w[i] / poidsCourant;
+            } else {
+                nouvellesMoyennes[n] = moyenne;
+                nouveauxPoids[n++] = poidsCourant;
+                cumul += poidsCourant;
+                limite = poidsFusionnes * inverseK(k(cumul / poidsFusionnes) + 1);
+                moyenne = m[i];
+                poidsCourant = w[i];
+            }
+        }
+        nouvellesMoyennes[n] = moyenne;
+        nouveauxPoids[n++] = poidsCourant;
+
+        moyennes = nouvellesMoyennes;
+        poids = nouveauxPoids;
+        centroides = n;
+        enTampon = 0;
+    }
+
+    private double k(double q) {
+        return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+    }
+
+    private double inverseK(double k) {
+        if (k >= compression / 4.0) {
+            return 1;
+        }
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+}
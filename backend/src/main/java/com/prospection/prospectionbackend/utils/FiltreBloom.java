@@ -0,0 +1,98 @@
+package com.prospection.prospectionbackend.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtre de Bloom thread-safe sur des chaînes : aucun faux négatif,
+ * faux positifs au taux choisi tant que la capacité n'est pas dépassée.
+ * Les lectures et les ajouts se font sans verrou.
+ */
+public final class FiltreBloom {
+
+    private final AtomicLongArray mots;
+    private final long nombreBits;
+    private final int nombreHachages;
+    private final double tauxFauxPositifs;
+
+    public FiltreBloom(int capacite, double tauxFauxPositifs) {
+        if (capacite <= 0 || tauxFauxPositifs <= 0 || tauxFauxPositifs >= 1) {
+            throw new IllegalArgumentException("Capacité ou taux de faux positifs invalide");
+        }
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-capacite * Math.log(tauxFauxPositifs) / (ln2 * ln2));
+        int taille = (int) ((bits + 63) >>> 6);
+        this.mots = new AtomicLongArray(taille);
+        this.nombreBits = (long) taille << 6;
+        this.nombreHachages = Math.max(1, (int) Math.round((double) nombreBits / capacite * ln2));
+        this.tauxFauxPositifs = tauxFauxPositifs;
+    }
+
+    /**
+     * Taux de faux positifs actuel, estimé d'après la proportion de bits à 1 : il dépasse le
+     * taux choisi quand le filtre a reçu plus d'éléments que sa capacité
+     */
+    public double tauxFauxPositifsEstime() {
+        long bitsUtilises = 0;
+        for (int i = 0; i < mots.length(); i++) {
+            bitsUtilises += Long.bitCount(mots.get(i));
+        }
+        return Math.pow((double) bitsUtilises / nombreBits, nombreHachages);
+    }
+
+    public double getTauxFauxPositifs() {
+        return tauxFauxPositifs;
+    }
+
+    public void ajouter(String valeur) {
+        long hachage = hacher(valeur);
+        int h1 = (int) hachage;
+        int h2 = (int) (hachage >>> 32);
+        for (int i = 1; i <= nombreHachages; i++) {
+            long bit = position(h1 + i * h2);
+            int index = (int) (bit >>> 6);
+            long masque = 1L << bit;
+            long mot = mots.get(index);
+            while ((mot & masque) == 0) {
+                long temoin = mots.compareAndExchange(index, mot, mot | masque);
+                if (temoin == mot) {
+                    break;
+                }
+                mot = temoin;
+            }
+        }
+    }
+
+    public boolean peutContenir(String valeur) {
+        long hachage = hacher(valeur);
+        int h1 = (int) hachage;
+        int h2 = (int) (hachage >>> 32);
+        for (int i = 1; i <= nombreHachages; i++) {
+            long bit = position(h1 + i * h2);
+            if ((mots.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long position(int hachageCombine) {
+        return (hachageCombine & 0x7fffffffL) % nombreBits;
+    }
+
+    // FNV-1a 64 bits suivi du mélange final de MurmurHash3
+    private static long hacher(String valeur) {
+        long h = 0xcbf29ce484222325L;
+        byte[] octets = valeur.getBytes(StandardCharsets.UTF_8);
+        for (byte octet : octets) {
+            h ^= octet;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e88a7L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -5,11 +5,15 @@ import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.prospection.prospectionbackend.dto.UtilisateurAuthentifie;
 import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 public class JwtUtil {
@@ -24,11 +28,22 @@ public class JwtUtil {
 
     private static final String ISSUER = "prospection-app";
 
-    public String generateToken(Utilisateur utilisateur) {
-        Algorithm algorithm = Algorithm.HMAC256(jwtSecret);
+    // Algorithm et JWTVerifier sont thread-safe : construits une seule fois
+    private Algorithm algorithm;
+    private JWTVerifier verifier;
+
+    @PostConstruct
+    void initialiser() {
+        algorithm = Algorithm.HMAC256(jwtSecret);
+        verifier = JWT.require(algorithm)
+                .withIssuer(ISSUER)
+                .build();
+    }
 
+    public String generateToken(Utilisateur utilisateur) {
         return JWT.create()
                 .withIssuer(ISSUER)
+                .withJWTId(UUID.randomUUID().toString())
                 .withSubject(utilisateur.getEmail())
                 .withClaim("userId", utilisateur.getId())
                 .withClaim("nom", utilisateur.getNom())
@@ -37,15 +52,15 @@ public class JwtUtil {
                 .withClaim("regionId", utilisateur.getRegion() != null ? utilisateur.getRegion().getId(): null)
                 .withClaim("supervisionId", utilisateur.getSupervision() != null ? utilisateur.getSupervision().getId() : null)
                 .withClaim("brancheId", utilisateur.getBranche() != null ? utilisateur.getBranche().getId() : null)
+                .withClaim("sv", utilisateur.getVersionSecurite() != null ? utilisateur.getVersionSecurite() : 0)
                 .withIssuedAt(new Date())
                 .withExpiresAt(new Date(System.currentTimeMillis() + jwtExpiration)) // Utilisation directe de Long
                 .sign(algorithm);
     }
     public String generateRefreshToken(Utilisateur utilisateur) {
-        Algorithm algorithm = Algorithm.HMAC256(jwtSecret);
-
         return JWT.create()
                 .withIssuer(ISSUER)
+                .withJWTId(UUID.randomUUID().toString())
                 .withSubject(utilisateur.getEmail())
                 .withClaim("userId", utilisateur.getId())
                 .withClaim("type", "refresh") // Marquer comme refresh token
@@ -55,49 +70,85 @@ public class JwtUtil {
     }
     public boolean isRefreshToken(String token) {
         try {
-            DecodedJWT jwt = validateToken(token);
-            return "refresh".equals(jwt.getClaim("type").asString());
+            return isRefreshToken(validateToken(token));
         } catch (JWTVerificationException e) {
             return false;
         }
     }
 
+    public boolean isRefreshToken(DecodedJWT jwt) {
+        return "refresh".equals(jwt.getClaim("type").asString());
+    }
+
+    /**
+     * Décode et vérifie le jeton (signature, émetteur, expiration).
+     * Les surcharges acceptant un DecodedJWT évitent de vérifier deux fois le même jeton.
+     */
     public DecodedJWT validateToken(String token) throws JWTVerificationException {
-        Algorithm algorithm = Algorithm.HMAC256(jwtSecret);
-        JWTVerifier verifier = JWT.require(algorithm)
-                .withIssuer(ISSUER)
-                .build();
         return verifier.verify(token);
     }
 
     public String getUsernameFromToken(String token) throws JWTVerificationException {
-        DecodedJWT jwt = validateToken(token);
-        return jwt.getSubject();
+        return validateToken(token).getSubject();
     }
 
     public Long getUserIdFromToken(String token) throws JWTVerificationException {
-        DecodedJWT jwt = validateToken(token);
+        return getUserIdFromToken(validateToken(token));
+    }
+
+    public Long getUserIdFromToken(DecodedJWT jwt) {
         return jwt.getClaim("userId").asLong(); // Changé de asString() à asLong()
     }
 
     public String getRoleFromToken(String token) {
         try {
-            DecodedJWT decodedJWT = validateToken(token);
-            return decodedJWT.getClaim("role").asString();
+            return getRoleFromToken(validateToken(token));
         } catch (JWTVerificationException e) {
             return null;
         }
     }
 
+    public String getRoleFromToken(DecodedJWT jwt) {
+        return jwt.getClaim("role").asString();
+    }
+
     public boolean isTokenExpired(String token) {
         try {
-            DecodedJWT decodedJWT = validateToken(token);
-            return decodedJWT.getExpiresAt().before(new Date());
+            return isTokenExpired(validateToken(token));
         } catch (JWTVerificationException e) {
             return true;
         }
     }
 
+    public boolean isTokenExpired(DecodedJWT jwt) {
+        return jwt.getExpiresAt().before(new Date());
+    }
+
+    /**
+     * Construit le principal depuis les claims d'un jeton d'accès déjà vérifié
+     * @return null si le jeton ne porte pas les claims nécessaires (refresh token, ancien format)
+     */
+    public UtilisateurAuthentifie getPrincipalFromToken(DecodedJWT jwt) {
+        String role = jwt.getClaim("role").asString();
+        Long userId = jwt.getClaim("userId").asLong();
+        Integer versionSecurite = jwt.getClaim("sv").asInt();
+        if (role == null || userId == null || versionSecurite == null) {
+            return null;
+        }
+
+        return new UtilisateurAuthentifie(
+                userId,
+                jwt.getSubject(),
+                jwt.getClaim("nom").asString(),
+                jwt.getClaim("prenom").asString(),
+                Role.valueOf(role),
+                jwt.getClaim("regionId").asLong(),
+                jwt.getClaim("supervisionId").asLong(),
+                jwt.getClaim("brancheId").asLong(),
+                versionSecurite
+        );
+    }
+
     public String extractTokenFromHeader(String authorizationHeader) {
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             return authorizationHeader.substring(7);
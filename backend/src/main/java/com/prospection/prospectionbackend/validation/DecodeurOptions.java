@@ -0,0 +1,61 @@
+package com.prospection.prospectionbackend.validation;
+
+import com.prospection.prospectionbackend.enums.QuestionType;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Réponse à une question à choix lue comme des rangs d'options : un libellé (CHOICE)
+ * ou des libellés séparés par des virgules (MULTIPLE_CHOICE). Compilé une fois par question ;
+ * la validation seule ne fait pas d'allocation.
+ */
+public final class DecodeurOptions implements ValidateurReponse {
+
+    private final TableOptions table;
+    private final boolean multiple;
+
+    public DecodeurOptions(QuestionType type, Collection<String> libelles) {
+        this.table = new TableOptions(libelles);
+        this.multiple = type == QuestionType.MULTIPLE_CHOICE;
+    }
+
+    @Override
+    public boolean valider(String valeur) {
+        return multiple
+                ? ValidateursReponse.selections(table, valeur, null) >= 0
+                : table.contient(valeur, 0, valeur.length());
+    }
+
+    /**
+     * @param valeur réponse déjà nettoyée (trim)
+     * @return rangs distincts des options choisies, croissants ; null si la valeur n'est pas valide
+     */
+    public int[] rangs(String valeur) {
+        if (!multiple) {
+            int rang = table.rang(valeur, 0, valeur.length());
+            return rang >= 0 ? new int[]{rang} : null;
+        }
+
+        int segments = 1;
+        for (int i = 0; i < valeur.length(); i++) {
+            if (valeur.charAt(i) == ',') {
+                segments++;
+            }
+        }
+        int[] rangs = new int[segments];
+        int nombre = ValidateursReponse.selections(table, valeur, rangs);
+        if (nombre < 0) {
+            return null;
+        }
+
+        Arrays.sort(rangs, 0, nombre);
+        int distincts = 0;
+        for (int i = 0; i < nombre; i++) {
+            if (distincts == 0 || rangs[distincts - 1] != rangs[i]) {
+                rangs[distincts++] = rangs[i];
+            }
+        }
+        return Arrays.copyOf(rangs, distincts);
+    }
+}
@@ -0,0 +1,82 @@
+package com.prospection.prospectionbackend.validation;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Table de hachage immuable des libellés d'options, interrogeable sur une
+ * portion de chaîne sans créer de sous-chaîne. Chaque libellé garde son rang
+ * dans la liste d'origine.
+ */
+final class TableOptions {
+
+    private final String[] valeurs;
+    private final int[] hachages;
+    private final int[] rangs;
+    private final int masque;
+
+    TableOptions(Collection<String> options) {
+        // Rang de la première occurrence de chaque libellé
+        Map<String, Integer> distinctes = new LinkedHashMap<>();
+        int rang = 0;
+        for (String option : options) {
+            if (option != null) {
+                distinctes.putIfAbsent(option, rang);
+            }
+            rang++;
+        }
+
+        int capacite = Integer.highestOneBit(Math.max(4, distinctes.size() * 2 - 1)) << 1;
+        this.valeurs = new String[capacite];
+        this.hachages = new int[capacite];
+        this.rangs = new int[capacite];
+        this.masque = capacite - 1;
+
+        for (Map.Entry<String, Integer> entree : distinctes.entrySet()) {
+            String option = entree.getKey();
+            int h = option.hashCode();
+            int index = melanger(h) & masque;
+            while (valeurs[index] != null) {
+                index = (index + 1) & masque;
+            }
+            valeurs[index] = option;
+            hachages[index] = h;
+            rangs[index] = entree.getValue();
+        }
+    }
+
+    /**
+     * @return true si {@code source[debut, fin)} est exactement l'une des options
+     */
+    boolean contient(String source, int debut, int fin) {
+        return rang(source, debut, fin) >= 0;
+    }
+
+    /**
+     * @return rang de l'option {@code source[debut, fin)} dans la liste d'origine, -1 si absente
+     */
+    int rang(String source, int debut, int fin) {
+        int h = 0;
+        for (int i = debut; i < fin; i++) {
+            h = 31 * h + source.charAt(i);
+        }
+
+        int longueur = fin - debut;
+        int index = melanger(h) & masque;
+        String candidat;
+        while ((candidat = valeurs[index]) != null) {
+            if (hachages[index] == h
+                    && candidat.length() == longueur
+                    && candidat.regionMatches(0, source, debut, longueur)) {
+                return rangs[index];
+            }
+            index = (index + 1) & masque;
+        }
+        return -1;
+    }
+
+    private static int melanger(int h) {
+        return h ^ (h >>> 16);
+    }
+}
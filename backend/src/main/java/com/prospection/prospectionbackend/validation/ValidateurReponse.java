@@ -0,0 +1,48 @@
+package com.prospection.prospectionbackend.validation;
+
+import com.prospection.prospectionbackend.entities.Question;
+import com.prospection.prospectionbackend.entities.QuestionOption;
+import com.prospection.prospectionbackend.enums.QuestionType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Validateur compilé pour une question : les options et les règles de format
+ * sont préparées une fois, la validation d'une valeur ne fait plus d'allocation.
+ */
+@FunctionalInterface
+public interface ValidateurReponse {
+
+    /**
+     * Valide une valeur non vide, déjà nettoyée (trim)
+     * @return true si la valeur respecte le type de la question
+     */
+    boolean valider(String valeur);
+
+
+    static ValidateurReponse pour(QuestionType type, Collection<String> options) {
+        switch (type) {
+            case PHONE:
+                return ValidateursReponse::estTelephone;
+            case NUMBER:
+                return ValidateursReponse::estEntier;
+            case CHOICE:
+            case MULTIPLE_CHOICE:
+                return new DecodeurOptions(type, options);
+            default:
+                return valeur -> true;
+        }
+    }
+
+    static ValidateurReponse pour(Question question) {
+        List<String> options = new ArrayList<>();
+        if (question.getType().requiresOptions()) {
+            for (QuestionOption option : question.getOptions()) {
+                options.add(option.getValeur());
+            }
+        }
+        return pour(question.getType(), options);
+    }
+}
@@ -0,0 +1,107 @@
+package com.prospection.prospectionbackend.validation;
+
+/**
+ * Règles de format utilisées par les validateurs compilés.
+ * Elles reproduisent exactement les anciennes règles (regex, Integer.parseInt, split)
+ * sans créer d'objet temporaire.
+ */
+final class ValidateursReponse {
+
+    private ValidateursReponse() {
+    }
+
+    /**
+     * Équivalent de {@code valeur.matches("^(06|07)\\d{8}$")}
+     */
+    static boolean estTelephone(String valeur) {
+        if (valeur.length() != 10 || valeur.charAt(0) != '0') {
+            return false;
+        }
+        char second = valeur.charAt(1);
+        if (second != '6' && second != '7') {
+            return false;
+        }
+        for (int i = 2; i < 10; i++) {
+            char c = valeur.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Équivalent de {@code Integer.parseInt(valeur)} sans exception,
+     * limité aux chiffres ASCII comme le motif exposé par QuestionType
+     */
+    static boolean estEntier(String valeur) {
+        int longueur = valeur.length();
+        if (longueur == 0) {
+            return false;
+        }
+        int i = 0;
+        boolean negatif = false;
+        char premier = valeur.charAt(0);
+        if (premier == '-' || premier == '+') {
+            if (longueur == 1) {
+                return false;
+            }
+            negatif = premier == '-';
+            i = 1;
+        }
+        long limite = negatif ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long resultat = 0;
+        for (; i < longueur; i++) {
+            char c = valeur.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            resultat = resultat * 10 + (c - '0');
+            if (resultat > limite) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Découpe la valeur sur les virgules (les virgules finales sont ignorées) et reconnaît
+     * chaque segment nettoyé comme une option. Un libellé pouvant lui-même contenir des
+     * virgules, le plus long libellé connu est retenu à chaque position.
+     * @param rangs reçoit le rang de chaque option reconnue, dans l'ordre ; null pour seulement valider
+     * @return nombre d'options reconnues, -1 si un segment n'est pas une option
+     */
+    static int selections(TableOptions options, String valeur, int[] rangs) {
+        int fin = valeur.length();
+        while (fin > 0 && valeur.charAt(fin - 1) == ',') {
+            fin--;
+        }
+
+        int nombre = 0;
+        int debut = 0;
+        while (debut < fin) {
+            int rang = -1;
+            int finSegment = fin;
+            for (; finSegment > debut; finSegment = valeur.lastIndexOf(',', finSegment - 1)) {
+                int a = debut;
+                int b = finSegment;
+                while (a < b && valeur.charAt(a) <= ' ') a++;
+                while (b > a && valeur.charAt(b - 1) <= ' ') b--;
+
+                rang = options.rang(valeur, a, b);
+                if (rang >= 0) {
+                    break;
+                }
+            }
+            if (rang < 0) {
+                return -1;
+            }
+            if (rangs != null) {
+                rangs[nombre] = rang;
+            }
+            nombre++;
+            debut = finSegment + 1;
+        }
+        return nombre;
+    }
+}
@@ -0,0 +1,33 @@
+-- Exécuté à chaque démarrage après "ddl-auto: update" : chaque instruction doit être idempotente.
+
+-- Réponses : identifiants issus d'une séquence à allocation groupée (50) pour le batch JDBC.
+-- La séquence est recalée au-dessus des identifiants générés par l'ancienne colonne IDENTITY.
+CREATE SEQUENCE IF NOT EXISTS reponses_seq START WITH 1 INCREMENT BY 50;
+SELECT setval('reponses_seq', GREATEST((SELECT last_value FROM reponses_seq), (SELECT COALESCE(MAX(id), 0) FROM reponses) + 50));
+ALTER TABLE reponses ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+-- Index partiels : les index composites sont déclarés sur les entités (@Index),
+-- ceux qui portent une condition n'existent qu'ici.
+-- Prospections actives, les seules consultées au quotidien une fois l'historique accumulé
+CREATE INDEX IF NOT EXISTS idx_prospections_actives_date ON prospections (date_creation)
+    WHERE statut IN ('NOUVEAU', 'ASSIGNE', 'EN_COURS');
+CREATE INDEX IF NOT EXISTS idx_prospections_a_relancer ON prospections (date_derniere_relance)
+    WHERE statut = 'EN_COURS';
+CREATE INDEX IF NOT EXISTS idx_prospections_non_assignees ON prospections (date_creation)
+    WHERE agent_assigne_id IS NULL;
+CREATE INDEX IF NOT EXISTS idx_prospections_converties ON prospections (date_conversion)
+    WHERE statut = 'CONVERTI';
+-- Prospections auxquelles manque une réponse obligatoire : même ordre que les listes (date, id)
+CREATE INDEX IF NOT EXISTS idx_prospections_incompletes ON prospections (date_creation, id)
+    WHERE complet = false;
+
+-- Recherche plein texte (commentaires et valeurs des réponses) : index GIN sur expression,
+-- tenus à jour par Postgres à chaque écriture. Configuration 'simple' : mise en minuscules
+-- sans racinisation ni mots vides, les valeurs étant surtout des noms propres et des saisies libres.
+CREATE INDEX IF NOT EXISTS idx_prospections_commentaire_fts ON prospections
+    USING gin (to_tsvector('simple', coalesce(commentaire, '')));
+CREATE INDEX IF NOT EXISTS idx_reponses_valeur_fts ON reponses
+    USING gin (to_tsvector('simple', coalesce(valeur, '')));
+-- Réponses en mode document : les valeurs du document (chaînes seulement, pas les clés)
+CREATE INDEX IF NOT EXISTS idx_prospections_reponses_document_fts ON prospections
+    USING gin (jsonb_to_tsvector('simple', coalesce(reponses_document, '{}'), '["string"]'));
@@ -0,0 +1,49 @@
+package com.prospection.prospectionbackend.repositories;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Tests qui ont besoin d'un vrai Postgres (index partiels, plein texte, plans d'exécution).
+ * Une seule instance embarquée par JVM, arrêtée à la sortie ; toutes les classes qui
+ * héritent d'ici partagent la base et le même contexte Spring en cache. Lancé en root,
+ * le serveur embarqué s'exécute sous l'utilisateur nobody.
+ */
+@SpringBootTest
+abstract class BasePostgresEmbarque {
+
+    private static EmbeddedPostgres postgres;
+
+    static synchronized EmbeddedPostgres postgres() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.builder().start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return postgres;
+    }
+
+    @DynamicPropertySource
+    static void basePostgres(DynamicPropertyRegistry registre) {
+        registre.add("spring.datasource.url", () -> postgres().getJdbcUrl("postgres", "postgres"));
+        registre.add("spring.datasource.username", () -> "postgres");
+        registre.add("spring.datasource.password", () -> "");
+        registre.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registre.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        // Pas de drop à la fermeture du contexte : la base peut déjà être arrêtée
+        registre.add("spring.jpa.hibernate.ddl-auto", () -> "create");
+        // Index déclarés sur les entités, puis schema-postgresql.sql
+        registre.add("spring.sql.init.mode", () -> "always");
+        registre.add("spring.sql.init.platform", () -> "postgresql");
+        registre.add("spring.jpa.defer-datasource-initialization", () -> "true");
+        registre.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                PlansRequetesTest.CaptureSql.class::getName);
+    }
+}
@@ -0,0 +1,201 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+import com.prospection.prospectionbackend.entities.Prospection;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.services.MigrationReponsesService;
+import com.prospection.prospectionbackend.services.QuestionService;
+import com.prospection.prospectionbackend.services.RepartitionOptionsService;
+import com.prospection.prospectionbackend.services.SchemaFormulaireService;
+import com.prospection.prospectionbackend.services.StockageReponses;
+import com.prospection.prospectionbackend.services.StockageReponsesDocument;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aller-retour entre le mode lignes et le mode document sur Postgres : mêmes réponses lues,
+ * dans l'ordre du formulaire, avant, pendant et après la migration ; ids d'options des
+ * réponses à choix enregistrées avant leur stockage. Le contexte partagé est
+ * en mode lignes ; le stockage document est instancié à part.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class MigrationReponsesTest extends BasePostgresEmbarque {
+
+    @Autowired private MigrationReponsesService migrationReponsesService;
+    @Autowired private StockageReponses lignes;
+    @Autowired private ProspectionRepository prospectionRepository;
+    @Autowired private ReponseRepository reponseRepository;
+    @Autowired private QuestionService questionService;
+    @Autowired private RepartitionOptionsService repartitionOptionsService;
+    @Autowired private UtilisateurRepository utilisateurRepository;
+    @Autowired private SchemaFormulaireService schemaFormulaireService;
+    @Autowired private ApplicationContext contexte;
+    @Autowired private JdbcTemplate jdbc;
+
+    private StockageReponsesDocument document;
+    private Long agent;
+    private Long activite;
+    private Long remarque;
+    private Long complete;
+    private Long partielle;
+    private Long sansReponse;
+
+    @BeforeAll
+    void alimenter() {
+        document = contexte.getAutowireCapableBeanFactory().createBean(StockageReponsesDocument.class);
+
+        agent = jdbc.queryForObject("INSERT INTO utilisateurs (nom, prenom, telephone, email, mot_de_passe, role, " +
+                "actif, version_securite, date_creation) VALUES ('Agent', 'Migration', '0600000000', " +
+                "'agent@migration.ma', 'non-utilise', 'AGENT', true, 0, now()) RETURNING id", Long.class);
+        // Ordre du formulaire inverse de l'ordre des ids
+        remarque = question("Remarque migration", "TEXT", 1001);
+        activite = question("Activité migration", "CHOICE", 1000);
+        schemaFormulaireService.invalider();
+
+        complete = prospection();
+        repondre(activite, complete, "Commerçant");
+        repondre(remarque, complete, "Client kilimandjarite, rappeler lundi");
+        partielle = prospection();
+        repondre(activite, partielle, "Artisan");
+        sansReponse = prospection();
+    }
+
+    @Test
+    void lesReponsesSurviventAuxDeuxMigrations() {
+        Map<Long, List<String>> attendues = lire(lignes);
+        assertEquals(List.of(activite + "|Activité migration|Commerçant",
+                remarque + "|Remarque migration|Client kilimandjarite, rappeler lundi"), attendues.get(complete));
+        assertEquals(List.of(), attendues.get(sansReponse));
+
+        assertTrue(migrationReponsesService.versDocument(1000, true) >= 2);
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM reponses WHERE prospection_id IN (?, ?)",
+                Integer.class, complete, partielle));
+        assertNull(jdbc.queryForObject("SELECT reponses_document FROM prospections WHERE id = ?", String.class, sansReponse));
+        assertEquals(attendues, lire(document));
+        assertEquals(List.of(complete), ids(prospectionRepository.rechercherTexte(
+                new Perimetre(Perimetre.Niveau.AGENT, agent), "kilimandjarite:*", 0, 10)));
+        assertEquals(2, document.valeursPourFacettes(complete - 1, partielle, List.of(activite)).size());
+        // Relancée, elle ne refait rien
+        assertEquals(0, migrationReponsesService.versDocument(1000, true));
+
+        assertTrue(migrationReponsesService.versLignes(1000) >= 3);
+        assertNull(jdbc.queryForObject("SELECT reponses_document FROM prospections WHERE id = ?", String.class, complete));
+        assertEquals(attendues, lire(lignes));
+        assertEquals(0, migrationReponsesService.versLignes(1000));
+    }
+
+    @Test
+    void leDocumentEstEcritAvecLaProspection() {
+        Prospection prospection = new Prospection();
+        prospection.setTypeProspection(TypeProspection.CAMPAGNE_PROSPECTION);
+        prospection.setCreateur(utilisateurRepository.getReferenceById(agent));
+        Map<Long, String> valeurs = new LinkedHashMap<>();
+        valeurs.put(remarque, "Écrit en une fois");
+        valeurs.put(activite, "Artisan");
+        document.attacher(prospection, valeurs);
+        Long id = prospectionRepository.save(prospection).getId();
+
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM reponses WHERE prospection_id = ?", Integer.class, id));
+        assertEquals("Artisan", jdbc.queryForObject("SELECT reponses_document ->> ? FROM prospections WHERE id = ?",
+                String.class, activite.toString(), id));
+        assertEquals(List.of(activite + "|Activité migration|Artisan", remarque + "|Remarque migration|Écrit en une fois"),
+                lire(document, id));
+    }
+
+    @Test
+    void lesChoixSaisisAvantLesIdsSontComptesParOption() {
+        Long produits = question("Produits migration", "MULTIPLE_CHOICE", 1002);
+        Long credit = option(produits, "Crédit", 1);
+        Long epargne = option(produits, "Épargne", 2);
+        Long assurance = option(produits, "Assurance", 3);
+        Long creditImmobilier = option(produits, "Crédit, immobilier", 4);
+        schemaFormulaireService.invalider();
+        Long premiere = prospection();
+        repondre(produits, premiere, "Épargne, Crédit");
+        Long seconde = prospection();
+        repondre(produits, seconde, "Crédit");
+        // Libellé avec virgule qui commence par un autre libellé : une seule option, la plus longue
+        Long troisieme = prospection();
+        repondre(produits, troisieme, "Crédit, immobilier");
+
+        assertTrue(migrationReponsesService.renseignerOptions(1000) >= 3);
+        assertEquals(credit + "," + epargne, jdbc.queryForObject(
+                "SELECT array_to_string(options, ',') FROM reponses WHERE prospection_id = ?", String.class, premiere));
+        assertEquals(creditImmobilier.toString(), jdbc.queryForObject(
+                "SELECT array_to_string(options, ',') FROM reponses WHERE prospection_id = ?", String.class, troisieme));
+
+        Map<Long, Long> comptes = new HashMap<>();
+        for (Object[] ligne : reponseRepository.compterParOption()) {
+            comptes.put(((Number) ligne[0]).longValue(), ((Number) ligne[1]).longValue());
+        }
+        assertEquals(2L, comptes.get(credit));
+        assertEquals(1L, comptes.get(epargne));
+        assertNull(comptes.get(assurance));
+        assertEquals(1L, comptes.get(creditImmobilier));
+
+        // Réponses écrites hors application : prises en compte au recomptage
+        Utilisateur siege = new Utilisateur();
+        siege.setRole(Role.SIEGE);
+        repartitionOptionsService.recompter(siege);
+        assertEquals(List.of(Map.of("id", credit, "valeur", "Crédit", "nombre", 2L),
+                        Map.of("id", epargne, "valeur", "Épargne", "nombre", 1L),
+                        Map.of("id", assurance, "valeur", "Assurance", "nombre", 0L),
+                        Map.of("id", creditImmobilier, "valeur", "Crédit, immobilier", "nombre", 1L)),
+                questionService.getRepartitionOptions().stream()
+                        .filter(q -> produits.equals(q.get("questionId")))
+                        .findFirst().orElseThrow().get("options"));
+    }
+
+    private Map<Long, List<String>> lire(StockageReponses stockage) {
+        Map<Long, List<String>> reponses = new LinkedHashMap<>();
+        for (Long id : List.of(complete, partielle, sansReponse)) {
+            reponses.put(id, lire(stockage, id));
+        }
+        return reponses;
+    }
+
+    private static List<String> lire(StockageReponses stockage, Long id) {
+        return stockage.lire(id).stream()
+                .map(r -> r.questionId() + "|" + r.questionTexte() + "|" + r.valeur())
+                .toList();
+    }
+
+    private Long question(String libelle, String type, int ordre) {
+        return jdbc.queryForObject("INSERT INTO questions (question, type, ordre, actif, obligatoire, date_creation, " +
+                "createur_id) VALUES (?, ?, ?, true, false, now(), 0) RETURNING id", Long.class, libelle, type, ordre);
+    }
+
+    private Long option(Long question, String valeur, int ordre) {
+        return jdbc.queryForObject("INSERT INTO question_options (valeur, ordre_option, question_id) " +
+                "VALUES (?, ?, ?) RETURNING id", Long.class, valeur, ordre, question);
+    }
+
+    private Long prospection() {
+        return jdbc.queryForObject("INSERT INTO prospections (date_creation, type_prospection, statut, createur_id, " +
+                "agent_assigne_id) VALUES (now(), 'CAMPAGNE_PROSPECTION', 'ASSIGNE', ?, ?) RETURNING id",
+                Long.class, agent, agent);
+    }
+
+    private void repondre(Long question, Long prospection, String valeur) {
+        jdbc.update("INSERT INTO reponses (id, question_id, prospection_id, valeur, date_creation) " +
+                "VALUES (nextval('reponses_seq'), ?, ?, ?, now())", question, prospection, valeur);
+    }
+
+    private static List<Long> ids(List<ProspectionResume> prospections) {
+        return prospections.stream().map(ProspectionResume::id).toList();
+    }
+}
@@ -0,0 +1,292 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.dto.FiltreProspections;
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plans d'exécution des requêtes des repositories sur un vrai Postgres alimenté
+ * de données volumineuses : échoue si une requête ciblée parcourt séquentiellement
+ * la table qu'elle filtre (prospections, reponses ou utilisateurs). Les tables jointes
+ * pour l'affichage peuvent l'être : le planificateur choisit alors une jointure par hachage.
+ *
+ * Le SQL est celui qu'Hibernate émet réellement, capturé à l'exécution, puis passé à
+ * EXPLAIN (GENERIC_PLAN) : c'est le plan qu'une requête préparée finit par réutiliser.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PlansRequetesTest extends BasePostgresEmbarque {
+
+    private static final Pattern PARCOURS_SEQUENTIEL = Pattern.compile("Seq Scan on (\\w+)");
+
+    @Autowired private ProspectionRepository prospectionRepository;
+    @Autowired private ReponseRepository reponseRepository;
+    @Autowired private UtilisateurRepository utilisateurRepository;
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private Long agentId;
+    private String agentEmail;
+    private Long brancheId;
+    private Long supervisionId;
+    private Long regionId;
+    private Long prospectionId;
+    private Long questionId;
+
+    /**
+     * 10 régions, 40 supervisions, 200 branches, 5 000 agents, 100 000 prospections
+     * dont 15 % actives, 500 000 réponses
+     */
+    @BeforeAll
+    void alimenter() {
+        jdbc.execute("INSERT INTO regions (nom, code, date_creation) " +
+                "SELECT 'Région ' || g, 'R' || g, now() FROM generate_series(1, 10) g");
+        jdbc.execute("INSERT INTO supervisions (nom, code, date_creation, region_id) " +
+                "SELECT 'Supervision ' || g, 'S' || g, now(), r.id FROM generate_series(1, 40) g " +
+                "JOIN regions r ON r.code = 'R' || (1 + g % 10)");
+        jdbc.execute("INSERT INTO branches (nom, code, date_creation, supervision_id) " +
+                "SELECT 'Branche ' || g, 'B' || g, now(), s.id FROM generate_series(1, 200) g " +
+                "JOIN supervisions s ON s.code = 'S' || (1 + g % 40)");
+        jdbc.execute("INSERT INTO utilisateurs (nom, prenom, telephone, email, mot_de_passe, role, actif, " +
+                "version_securite, date_creation, region_id, supervision_id, branche_id) " +
+                "SELECT 'Agent', 'Plan', '0600000000', 'agent' || g || '@plans.ma', 'non-utilise', 'AGENT', true, " +
+                "0, now(), s.region_id, s.id, b.id FROM generate_series(1, 5000) g " +
+                "JOIN branches b ON b.code = 'B' || (1 + g % 200) JOIN supervisions s ON s.id = b.supervision_id");
+        jdbc.execute("INSERT INTO questions (question, type, ordre, actif, obligatoire, date_creation, createur_id) " +
+                "SELECT 'Question ' || g, 'TEXT', g, true, g % 4 = 0, now(), 0 FROM generate_series(1, 20) g");
+        jdbc.execute("INSERT INTO prospections (date_creation, type_prospection, statut, createur_id, agent_assigne_id, " +
+                "branche_id, supervision_id, region_id, commentaire, date_derniere_relance, date_conversion) " +
+                "SELECT x.creation, (ARRAY['CAMPAGNE_PROSPECTION', 'PLANNING_AGENT', 'EVENEMENT_CULTUREL'])[1 + x.g % 3], " +
+                "x.statut, u.id, CASE WHEN x.statut = 'NOUVEAU' THEN NULL ELSE u.id END, " +
+                "u.branche_id, u.supervision_id, u.region_id, 'Prospection ' || x.g, " +
+                "CASE WHEN x.statut = 'EN_COURS' THEN x.creation + interval '7 days' END, " +
+                "CASE WHEN x.statut = 'CONVERTI' THEN x.creation + interval '20 days' END " +
+                "FROM (SELECT g, now() - random() * interval '730 days' AS creation, " +
+                "      CASE WHEN r < 0.03 THEN 'NOUVEAU' WHEN r < 0.07 THEN 'ASSIGNE' WHEN r < 0.15 THEN 'EN_COURS' " +
+                "           WHEN r < 0.50 THEN 'CONVERTI' ELSE 'ABANDONNE' END AS statut " +
+                "      FROM (SELECT g, random() AS r FROM generate_series(1, 100000) g) t) x " +
+                "JOIN utilisateurs u ON u.email = 'agent' || (1 + x.g % 5000) || '@plans.ma'");
+        jdbc.execute("INSERT INTO reponses (id, question_id, prospection_id, valeur, date_creation) " +
+                "SELECT nextval('reponses_seq'), q.id, p.id, 'Valeur ' || q.ordre, p.date_creation " +
+                "FROM prospections p JOIN questions q ON q.ordre <= 5");
+        // Complétude : 2 % des prospections incomplètes
+        jdbc.execute("UPDATE prospections SET complet = id % 50 <> 0");
+        jdbc.execute("ANALYZE");
+
+        Map<String, Object> agent = jdbc.queryForMap(
+                "SELECT id, email, branche_id, supervision_id, region_id FROM utilisateurs WHERE email = 'agent1@plans.ma'");
+        agentId = ((Number) agent.get("id")).longValue();
+        agentEmail = (String) agent.get("email");
+        brancheId = ((Number) agent.get("branche_id")).longValue();
+        supervisionId = ((Number) agent.get("supervision_id")).longValue();
+        regionId = ((Number) agent.get("region_id")).longValue();
+        prospectionId = jdbc.queryForObject("SELECT MIN(id) FROM prospections WHERE createur_id = ?", Long.class, agentId);
+        questionId = jdbc.queryForObject("SELECT MIN(id) FROM questions", Long.class);
+    }
+
+    /*
+     * Hors périmètre : les agrégats sur toute la table (countByStatut, countTotalReponses,
+     * compterParOption...), les listes non sélectives
+     * (par statut, par type, par question, par rôle) et la lecture complète du siège, qui lisent par nature
+     * une grande part de la table.
+     */
+    private Map<String, Runnable> requetesProspections() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        Perimetre agent = new Perimetre(Perimetre.Niveau.AGENT, agentId);
+        Perimetre branche = new Perimetre(Perimetre.Niveau.BRANCHE, brancheId);
+        Perimetre supervision = new Perimetre(Perimetre.Niveau.SUPERVISION, supervisionId);
+        Perimetre region = new Perimetre(Perimetre.Niveau.REGION, regionId);
+        Perimetre siege = new Perimetre(Perimetre.Niveau.TOUT, null);
+
+        Map<String, Runnable> cas = new LinkedHashMap<>();
+        cas.put("findByCreateurIdOrderByDateCreationDesc", () -> prospectionRepository.findByCreateurIdOrderByDateCreationDesc(agentId));
+        cas.put("findByAgentAssigneIdOrderByDateCreationDesc", () -> prospectionRepository.findByAgentAssigneIdOrderByDateCreationDesc(agentId));
+        cas.put("findByAgentIdOrderByDateCreationDesc", () -> prospectionRepository.findByAgentIdOrderByDateCreationDesc(agentId));
+        cas.put("findByAgentIdAndTypeProspectionOrderByDateCreationDesc",
+                () -> prospectionRepository.findByAgentIdAndTypeProspectionOrderByDateCreationDesc(agentId, TypeProspection.PLANNING_AGENT));
+        cas.put("findByBrancheIdOrderByDateCreationDesc", () -> prospectionRepository.findByBrancheIdOrderByDateCreationDesc(brancheId));
+        cas.put("findBySupervisionIdOrderByDateCreationDesc", () -> prospectionRepository.findBySupervisionIdOrderByDateCreationDesc(supervisionId));
+        cas.put("findByRegionIdOrderByDateCreationDesc", () -> prospectionRepository.findByRegionIdOrderByDateCreationDesc(regionId));
+        cas.put("countByCreateurIdsAndStatut", () -> prospectionRepository.countByCreateurIdsAndStatut(List.of(agentId)));
+        cas.put("countByAgentAssigneIdsAndStatut", () -> prospectionRepository.countByAgentAssigneIdsAndStatut(List.of(agentId)));
+        cas.put("countByBrancheIdAndStatut", () -> prospectionRepository.countByBrancheIdAndStatut(brancheId));
+        cas.put("findProspectionsARelancer", () -> prospectionRepository.findProspectionsARelancer(maintenant.minusDays(700)));
+        cas.put("findConvertiesBetween", () -> prospectionRepository.findConvertiesBetween(maintenant.minusDays(7), maintenant));
+        cas.put("findByAgentAssigneIsNullOrderByDateCreationDesc", () -> prospectionRepository.findByAgentAssigneIsNullOrderByDateCreationDesc());
+        cas.put("findProspectionsActives", () -> prospectionRepository.findProspectionsActives());
+        cas.put("countByCreateurIdsBetween",
+                () -> prospectionRepository.countByCreateurIdsBetween(List.of(agentId), maintenant.toLocalDate().atStartOfDay(), maintenant));
+        cas.put("findTopByCreateurIdOrderByDateCreationDesc", () -> prospectionRepository.findTopByCreateurIdOrderByDateCreationDesc(agentId));
+        cas.put("rechercher (périmètre agent)", () -> prospectionRepository.rechercher(agent, new FiltreProspections(), null, null, 21));
+        cas.put("rechercher (périmètre agent, curseur)",
+                () -> prospectionRepository.rechercher(agent, new FiltreProspections(), maintenant.minusDays(30), Long.MAX_VALUE, 21));
+        cas.put("rechercher (périmètre branche, statut)", () -> {
+            FiltreProspections filtre = new FiltreProspections();
+            filtre.setStatut(StatutProspection.EN_COURS);
+            prospectionRepository.rechercher(branche, filtre, null, null, 21);
+        });
+        cas.put("rechercher (périmètre supervision, agent)", () -> {
+            FiltreProspections filtre = new FiltreProspections();
+            filtre.setAgentId(agentId);
+            prospectionRepository.rechercher(supervision, filtre, null, null, 21);
+        });
+        cas.put("rechercher (périmètre région, période)", () -> {
+            FiltreProspections filtre = new FiltreProspections();
+            filtre.setDateDebut(maintenant.minusDays(30));
+            prospectionRepository.rechercher(region, filtre, null, null, 21);
+        });
+        cas.put("rechercher (siège, incomplètes)", () -> {
+            FiltreProspections filtre = new FiltreProspections();
+            filtre.setComplet(false);
+            prospectionRepository.rechercher(siege, filtre, null, null, 21);
+        });
+        cas.put("rechercher (siège, branche)", () -> {
+            FiltreProspections filtre = new FiltreProspections();
+            filtre.setBrancheId(brancheId);
+            prospectionRepository.rechercher(siege, filtre, null, null, 21);
+        });
+        cas.put("trouverResume (périmètre agent)", () -> prospectionRepository.trouverResume(agent, prospectionId));
+        cas.put("trouverResume (périmètre région)", () -> prospectionRepository.trouverResume(region, prospectionId));
+        cas.put("parcourir (périmètre agent)", () -> prospectionRepository.parcourir(agent).close());
+        cas.put("parcourir (périmètre branche)", () -> prospectionRepository.parcourir(branche).close());
+        cas.put("parcourir (périmètre supervision)", () -> prospectionRepository.parcourir(supervision).close());
+        cas.put("parcourir (périmètre région)", () -> prospectionRepository.parcourir(region).close());
+        cas.put("parcourirAvecReponses (périmètre branche)", () -> prospectionRepository.parcourirAvecReponses(branche).close());
+        cas.put("rechercherTexte (périmètre agent)", () -> prospectionRepository.rechercherTexte(agent, "4242:*", 0, 21));
+        cas.put("rechercherTexte (siège)", () -> prospectionRepository.rechercherTexte(siege, "4242:*", 0, 21));
+        cas.put("findFacettesSuivantes", () -> prospectionRepository.findFacettesSuivantes(prospectionId, PageRequest.of(0, 5000)));
+        return cas;
+    }
+
+    private Map<String, Runnable> requetesReponses() {
+        LocalDateTime maintenant = LocalDateTime.now();
+
+        Map<String, Runnable> cas = new LinkedHashMap<>();
+        cas.put("findByProspectionIdOrderByQuestionOrdre", () -> reponseRepository.findByProspectionIdOrderByQuestionOrdre(prospectionId));
+        cas.put("findByProspectionIdWithQuestion", () -> reponseRepository.findByProspectionIdWithQuestion(prospectionId));
+        cas.put("findLignesByProspectionId", () -> reponseRepository.findLignesByProspectionId(prospectionId));
+        cas.put("findByQuestionIdAndProspectionId", () -> reponseRepository.findByQuestionIdAndProspectionId(questionId, prospectionId));
+        cas.put("existsValidReponseForQuestionAndProspection",
+                () -> reponseRepository.existsValidReponseForQuestionAndProspection(questionId, prospectionId));
+        cas.put("findByDateCreationBetween", () -> reponseRepository.findByDateCreationBetween(maintenant.minusDays(1), maintenant));
+        cas.put("findValeursPourFacettes",
+                () -> reponseRepository.findValeursPourFacettes(prospectionId, prospectionId + 5000, List.of(questionId)));
+        cas.put("parcourirAvecReponses (périmètre branche)", () -> prospectionRepository.parcourirAvecReponses(
+                new Perimetre(Perimetre.Niveau.BRANCHE, brancheId)).close());
+        cas.put("rechercherTexte", () -> prospectionRepository.rechercherTexte(
+                new Perimetre(Perimetre.Niveau.AGENT, agentId), "4242:*", 0, 21));
+        return cas;
+    }
+
+    private Map<String, Runnable> requetesUtilisateurs() {
+        Map<String, Runnable> cas = new LinkedHashMap<>();
+        cas.put("findByEmail", () -> utilisateurRepository.findByEmail(agentEmail));
+        cas.put("findByEmailAndActifTrue", () -> utilisateurRepository.findByEmailAndActifTrue(agentEmail));
+        cas.put("findByEmailWithRelations", () -> utilisateurRepository.findByEmailWithRelations(agentEmail));
+        cas.put("findVersionSecuriteActifById", () -> utilisateurRepository.findVersionSecuriteActifById(agentId));
+        cas.put("findByRegionIdAndActifTrue", () -> utilisateurRepository.findByRegionIdAndActifTrue(regionId));
+        cas.put("findBySupervisionIdAndActifTrue", () -> utilisateurRepository.findBySupervisionIdAndActifTrue(supervisionId));
+        cas.put("findByBrancheIdAndActifTrue", () -> utilisateurRepository.findByBrancheIdAndActifTrue(brancheId));
+        return cas;
+    }
+
+    @Test
+    void aucuneRequeteCibleeNeParcourtUneGrandeTable() throws SQLException {
+        List<String> echecs = new ArrayList<>();
+        // Protocole simple : sinon le pilote prend les $n pour des paramètres à lier
+        try (Connection connexion = DriverManager.getConnection(
+                postgres().getJdbcUrl("postgres", "postgres") + "&preferQueryMode=simple");
+             Statement explain = connexion.createStatement()) {
+
+            verifier(explain, "prospections", requetesProspections(), echecs);
+            verifier(explain, "reponses", requetesReponses(), echecs);
+            verifier(explain, "utilisateurs", requetesUtilisateurs(), echecs);
+        }
+
+        assertTrue(echecs.isEmpty(), String.join("\n\n", echecs));
+    }
+
+    private void verifier(Statement explain, String table, Map<String, Runnable> requetes, List<String> echecs)
+            throws SQLException {
+        for (Map.Entry<String, Runnable> cas : requetes.entrySet()) {
+            CaptureSql.REQUETES.clear();
+            transactionTemplate.executeWithoutResult(statut -> cas.getValue().run());
+            assertFalse(CaptureSql.REQUETES.isEmpty(), cas.getKey() + " n'a émis aucune requête");
+
+            for (String sql : new LinkedHashSet<>(CaptureSql.REQUETES)) {
+                String plan = expliquer(explain, sql);
+                Matcher parcours = PARCOURS_SEQUENTIEL.matcher(plan);
+                while (parcours.find()) {
+                    if (parcours.group(1).equals(table)) {
+                        echecs.add(cas.getKey() + " : parcours séquentiel de " + table + "\n" + sql + "\n" + plan);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String expliquer(Statement explain, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (ResultSet lignes = explain.executeQuery("EXPLAIN (GENERIC_PLAN) " + numeroterParametres(sql))) {
+            while (lignes.next()) {
+                plan.append(lignes.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    // EXPLAIN ne connaît que les paramètres numérotés ($1, $2...)
+    private static String numeroterParametres(String sql) {
+        StringBuilder resultat = new StringBuilder(sql.length() + 16);
+        int numero = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?') {
+                resultat.append('$').append(++numero);
+            } else {
+                resultat.append(c);
+            }
+        }
+        return resultat.toString();
+    }
+
+    /**
+     * Relève le SQL émis par Hibernate pendant chaque cas
+     */
+    public static class CaptureSql implements StatementInspector {
+
+        static final List<String> REQUETES = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            REQUETES.add(sql);
+            return sql;
+        }
+    }
+}
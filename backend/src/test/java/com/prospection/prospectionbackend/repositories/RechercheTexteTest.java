@@ -0,0 +1,110 @@
+package com.prospection.prospectionbackend.repositories;
+
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Recherche plein texte sur Postgres : rang, pagination et périmètre. Les mots cherchés
+ * n'apparaissent dans aucune autre donnée de test de la base partagée.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class RechercheTexteTest extends BasePostgresEmbarque {
+
+    @Autowired private ProspectionRepository prospectionRepository;
+    @Autowired private JdbcTemplate jdbc;
+
+    private Long agentNord;
+    private Long brancheSud;
+    // Commentaire et réponse correspondent
+    private Long complete;
+    // Commentaire seul
+    private Long commentaire;
+    // Réponse seule, préfixe d'un mot plus long
+    private Long reponse;
+    // Même mot, autre branche
+    private Long autreBranche;
+
+    @BeforeAll
+    void alimenter() {
+        Long region = jdbc.queryForObject("INSERT INTO regions (nom, code, date_creation) " +
+                "VALUES ('Région texte', 'RTXT', now()) RETURNING id", Long.class);
+        Long supervision = jdbc.queryForObject("INSERT INTO supervisions (nom, code, date_creation, region_id) " +
+                "VALUES ('Supervision texte', 'STXT', now(), ?) RETURNING id", Long.class, region);
+        Long brancheNord = jdbc.queryForObject("INSERT INTO branches (nom, code, date_creation, supervision_id) " +
+                "VALUES ('Branche nord', 'BTXT1', now(), ?) RETURNING id", Long.class, supervision);
+        brancheSud = jdbc.queryForObject("INSERT INTO branches (nom, code, date_creation, supervision_id) " +
+                "VALUES ('Branche sud', 'BTXT2', now(), ?) RETURNING id", Long.class, supervision);
+        agentNord = agent("nord@texte.ma", brancheNord, supervision, region);
+        Long agentSud = agent("sud@texte.ma", brancheSud, supervision, region);
+        Long question = jdbc.queryForObject("INSERT INTO questions (question, type, ordre, actif, obligatoire, " +
+                "date_creation, createur_id) VALUES ('Remarques', 'TEXT', 99, true, false, now(), 0) RETURNING id", Long.class);
+
+        complete = prospection(agentNord, brancheNord, supervision, region, "Client Zanzibarite très intéressé");
+        repondre(question, complete, "zanzibarite, rappeler");
+        commentaire = prospection(agentNord, brancheNord, supervision, region, "Voisin du client zanzibarite");
+        reponse = prospection(agentNord, brancheNord, supervision, region, "Sans objet");
+        repondre(question, reponse, "Zanzibarites du quartier");
+        autreBranche = prospection(agentSud, brancheSud, supervision, region, "Zanzibarite");
+    }
+
+    @Test
+    void classeParPertinence() {
+        List<Long> ids = ids(prospectionRepository.rechercherTexte(
+                new Perimetre(Perimetre.Niveau.AGENT, agentNord), "zanzibarite:*", 0, 10));
+
+        assertEquals(complete, ids.get(0));
+        assertEquals(List.of(commentaire, reponse), ids.subList(1, 3).stream().sorted().toList());
+        assertEquals(3, ids.size());
+    }
+
+    @Test
+    void paginePourUnMemeClassement() {
+        Perimetre perimetre = new Perimetre(Perimetre.Niveau.AGENT, agentNord);
+        List<Long> toutes = ids(prospectionRepository.rechercherTexte(perimetre, "zanzibarite:*", 0, 10));
+
+        assertEquals(toutes.subList(0, 2), ids(prospectionRepository.rechercherTexte(perimetre, "zanzibarite:*", 0, 2)));
+        assertEquals(toutes.subList(2, 3), ids(prospectionRepository.rechercherTexte(perimetre, "zanzibarite:*", 2, 2)));
+    }
+
+    @Test
+    void resteDansLePerimetre() {
+        assertEquals(List.of(autreBranche), ids(prospectionRepository.rechercherTexte(
+                new Perimetre(Perimetre.Niveau.BRANCHE, brancheSud), "zanzibarite:*", 0, 10)));
+        assertEquals(4, prospectionRepository.rechercherTexte(
+                new Perimetre(Perimetre.Niveau.TOUT, null), "zanzibarite:*", 0, 10).size());
+        assertEquals(List.of(), prospectionRepository.rechercherTexte(
+                new Perimetre(Perimetre.Niveau.AGENT, agentNord), "introuvablexyz:*", 0, 10));
+    }
+
+    private Long agent(String email, Long branche, Long supervision, Long region) {
+        return jdbc.queryForObject("INSERT INTO utilisateurs (nom, prenom, telephone, email, mot_de_passe, role, actif, " +
+                "version_securite, date_creation, region_id, supervision_id, branche_id) " +
+                "VALUES ('Agent', 'Texte', '0600000000', ?, 'non-utilise', 'AGENT', true, 0, now(), ?, ?, ?) RETURNING id",
+                Long.class, email, region, supervision, branche);
+    }
+
+    private Long prospection(Long agent, Long branche, Long supervision, Long region, String commentaire) {
+        return jdbc.queryForObject("INSERT INTO prospections (date_creation, type_prospection, statut, createur_id, " +
+                "agent_assigne_id, branche_id, supervision_id, region_id, commentaire) " +
+                "VALUES (now(), 'CAMPAGNE_PROSPECTION', 'ASSIGNE', ?, ?, ?, ?, ?, ?) RETURNING id",
+                Long.class, agent, agent, branche, supervision, region, commentaire);
+    }
+
+    private void repondre(Long question, Long prospection, String valeur) {
+        jdbc.update("INSERT INTO reponses (id, question_id, prospection_id, valeur, date_creation) " +
+                "VALUES (nextval('reponses_seq'), ?, ?, ?, now())", question, prospection, valeur);
+    }
+
+    private static List<Long> ids(List<ProspectionResume> prospections) {
+        return prospections.stream().map(ProspectionResume::id).toList();
+    }
+}
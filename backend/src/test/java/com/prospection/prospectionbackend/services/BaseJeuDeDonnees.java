@@ -0,0 +1,109 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.entities.*;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.repositories.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+
+/**
+ * Données communes aux tests des services : structures, agents et questions enregistrés,
+ * responsables non enregistrés. Les codes et les emails sont uniques à chaque appel, car les
+ * classes d'un même contexte Spring partagent sa base ; chaque test ne prépare que ce qui lui est propre.
+ */
+@SpringBootTest
+abstract class BaseJeuDeDonnees {
+
+    @Autowired protected RegionRepository regionRepository;
+    @Autowired protected SupervisionRepository supervisionRepository;
+    @Autowired protected BrancheRepository brancheRepository;
+    @Autowired protected UtilisateurRepository utilisateurRepository;
+    @Autowired protected QuestionRepository questionRepository;
+
+    protected Region creerRegion(String nom) {
+        Region region = new Region();
+        region.setNom(nom);
+        region.setCode("R" + suffixe());
+        region.setDateCreation(LocalDateTime.now());
+        return regionRepository.save(region);
+    }
+
+    protected Supervision creerSupervision(String nom, Region region) {
+        Supervision supervision = new Supervision();
+        supervision.setNom(nom);
+        supervision.setCode("S" + suffixe());
+        supervision.setDateCreation(LocalDateTime.now());
+        supervision.setRegion(region);
+        return supervisionRepository.save(supervision);
+    }
+
+    protected Branche creerBranche(String nom, Supervision supervision) {
+        Branche branche = new Branche();
+        branche.setNom(nom);
+        branche.setCode("B" + suffixe());
+        branche.setDateCreation(LocalDateTime.now());
+        branche.setSupervision(supervision);
+        return brancheRepository.save(branche);
+    }
+
+    /**
+     * Agent d'une branche neuve, dans une supervision et une région neuves
+     */
+    protected Utilisateur creerAgent(String prenom, String nom) {
+        return creerAgent(prenom, nom, creerBranche("Ain Sebaa", creerSupervision("Casa Nord", creerRegion("Casablanca-Settat"))));
+    }
+
+    protected Utilisateur creerAgent(String prenom, String nom, Branche branche) {
+        Utilisateur agent = new Utilisateur();
+        agent.setNom(nom);
+        agent.setPrenom(prenom);
+        agent.setTelephone("0612345678");
+        agent.setEmail(suffixe() + "@agent.ma");
+        agent.setMotDePasse("motdepasse");
+        agent.setRole(Role.AGENT);
+        agent.setDateCreation(LocalDateTime.now());
+        agent.setRegion(branche.getSupervision().getRegion());
+        agent.setSupervision(branche.getSupervision());
+        agent.setBranche(branche);
+        return utilisateurRepository.save(agent);
+    }
+
+    /**
+     * Question active et facultative, placée après les autres ; le schéma n'est pas invalidé
+     */
+    protected Question creerQuestion(String libelle, QuestionType type, String... options) {
+        Question question = new Question();
+        question.setQuestion(libelle);
+        question.setType(type);
+        question.setOrdre(questionRepository.findMaxOrdre() + 1);
+        question.setActif(true);
+        question.setObligatoire(false);
+        question.setCreateurId(0L);
+        for (int i = 0; i < options.length; i++) {
+            question.addOption(new QuestionOption(options[i], i + 1));
+        }
+        return questionRepository.save(question);
+    }
+
+    /**
+     * Responsable non enregistré, rattaché aux structures de l'agent (aucune si agent est null)
+     */
+    protected static Utilisateur responsable(Role role, Utilisateur agent) {
+        Utilisateur responsable = new Utilisateur();
+        responsable.setId(-1L);
+        responsable.setRole(role);
+        if (agent != null) {
+            responsable.setRegion(agent.getRegion());
+            responsable.setSupervision(agent.getSupervision());
+            responsable.setBranche(agent.getBranche());
+        }
+        return responsable;
+    }
+
+    protected static String suffixe() {
+        return Long.toString(System.nanoTime(), 36);
+    }
+}
@@ -0,0 +1,104 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.FiltreProspections;
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.dto.ProspectionResume;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.repositories.ProspectionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletudeServiceTest extends BaseJeuDeDonnees {
+
+    @Autowired private CompletudeService completudeService;
+    @Autowired private QuestionService questionService;
+    @Autowired private ProspectionService prospectionService;
+    @Autowired private ProspectionRepository prospectionRepository;
+    @Autowired private JdbcTemplate jdbc;
+
+    private Utilisateur agent;
+    private Utilisateur siege;
+    private Long nom;
+    private Long telephone;
+
+    @BeforeEach
+    void preparer() {
+        agent = creerAgent("Samir", "Ouali");
+        siege = responsable(Role.SIEGE, null);
+
+        // Créées par le service : la complétude suit leurs changements d'obligation
+        String suffixe = suffixe();
+        nom = questionService.createQuestion("Nom " + suffixe, null, QuestionType.TEXT, false, null, siege).getId();
+        telephone = questionService.createQuestion("Téléphone " + suffixe, null, QuestionType.TEXT, false, null, siege).getId();
+    }
+
+    @AfterEach
+    void nettoyer() {
+        // Une question obligatoire laissée active ferait échouer les créations des autres tests du contexte
+        questionService.desactiverQuestion(nom, siege);
+        questionService.desactiverQuestion(telephone, siege);
+    }
+
+    @Test
+    void rendreUneQuestionObligatoireRecalculeLaCompletudeSansRelireLesReponses() {
+        Long partielle = creer(Map.of(nom, "Tazi"));
+        Long entiere = creer(Map.of(nom, "Tazi", telephone, "0611111111"));
+        assertFalse(incompletes().contains(partielle));
+
+        questionService.modifierObligatoire(telephone, true, siege);
+        assertFalse(incompletes().contains(partielle), "recalcul fait hors de la requête");
+        completudeService.recalculerSiDemande();
+        List<Long> incompletes = incompletes();
+        assertTrue(incompletes.contains(partielle));
+        assertFalse(incompletes.contains(entiere));
+
+        // Créée alors que la question est obligatoire : complète dès l'insertion
+        Long nouvelle = creer(Map.of(telephone, "0622222222"));
+        assertEquals(Boolean.TRUE, prospectionRepository.findById(nouvelle).orElseThrow().getComplet());
+
+        questionService.modifierObligatoire(telephone, false, siege);
+        completudeService.recalculerSiDemande();
+        assertFalse(incompletes().contains(partielle));
+        assertThrows(IllegalArgumentException.class, () -> questionService.modifierObligatoire(telephone, false, siege));
+    }
+
+    @Test
+    void laReconstructionRelitLesReponses() {
+        Long id = creer(Map.of(nom, "Tazi"));
+        questionService.modifierObligatoire(nom, true, siege);
+        jdbc.update("UPDATE prospections SET questions_repondues = NULL, complet = NULL WHERE id = ?", id);
+        // Jamais calculée : ignorée par le recalcul des seuls indicateurs
+        questionService.modifierObligatoire(nom, false, siege);
+        completudeService.recalculerSiDemande();
+        assertNull(prospectionRepository.findById(id).orElseThrow().getComplet());
+
+        questionService.modifierObligatoire(nom, true, siege);
+        assertThrows(AccessDeniedException.class, () -> completudeService.reconstruire(agent));
+        assertTrue(completudeService.reconstruire(siege) >= 1);
+        assertEquals(Boolean.TRUE, prospectionRepository.findById(id).orElseThrow().getComplet());
+        questionService.modifierObligatoire(nom, false, siege);
+    }
+
+    private Long creer(Map<Long, String> reponses) {
+        return prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, null, agent).getId();
+    }
+
+    private List<Long> incompletes() {
+        FiltreProspections filtre = new FiltreProspections();
+        filtre.setComplet(false);
+        return prospectionRepository.rechercher(new Perimetre(Perimetre.Niveau.TOUT, null), filtre, null, null, 1000)
+                .stream().map(ProspectionResume::id).toList();
+    }
+}
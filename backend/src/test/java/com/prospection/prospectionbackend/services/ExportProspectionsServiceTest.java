@@ -0,0 +1,95 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportProspectionsServiceTest extends BaseJeuDeDonnees {
+
+    @Autowired private ExportProspectionsService exportProspectionsService;
+    @Autowired private ProspectionService prospectionService;
+    @Autowired private QuestionService questionService;
+    @Autowired private SchemaFormulaireService schemaFormulaireService;
+    @Autowired private JdbcTemplate jdbc;
+
+    private Utilisateur agent;
+    private Utilisateur chefBranche;
+    private Long nom;
+    private Long secteur;
+    private String suffixe;
+
+    @BeforeEach
+    void preparer() {
+        agent = creerAgent("Nadia", "Berrada", creerBranche("Batha", creerSupervision("Fès Médina", creerRegion("Fès-Meknès"))));
+        chefBranche = responsable(Role.CHEF_BRANCHE, agent);
+
+        suffixe = suffixe();
+        Utilisateur siege = responsable(Role.SIEGE, null);
+        nom = questionService.createQuestion("Nom " + suffixe, null, QuestionType.TEXT, false, null, siege).getId();
+        secteur = questionService.createQuestion("Secteur " + suffixe, null, QuestionType.CHOICE, false,
+                List.of("Commerce", "Artisanat"), siege).getId();
+    }
+
+    @Test
+    void pivoteLesReponsesDansLOrdreDuFormulaire() throws IOException {
+        Long complete = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT,
+                Map.of(nom, "Alaoui; père & fils", secteur, "Commerce"), "Rappeler \"demain\"", agent).getId();
+        Long secteurSeul = prospectionService.creerProspection(TypeProspection.CAMPAGNE_PROSPECTION,
+                Map.of(secteur, "Artisanat"), null, agent).getId();
+        Long formule = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT,
+                Map.of(nom, "=HYPERLINK(\"x\")"), null, agent).getId();
+        // Option renommée après la saisie : l'export affiche le libellé actuel
+        jdbc.update("UPDATE question_options SET valeur = 'Commerce de détail' WHERE question_id = ? AND valeur = 'Commerce'", secteur);
+        schemaFormulaireService.invalider();
+
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        assertEquals(3, exportProspectionsService.exporterCsv(chefBranche, sortie));
+        String csv = sortie.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.startsWith("\uFEFFId;Date de création;Type;Statut;Créateur;Agent assigné;Branche;Commentaire;"));
+
+        List<String> lignes = csv.lines().toList();
+        assertEquals(4, lignes.size());
+        String entete = lignes.get(0);
+        assertTrue(entete.endsWith(";Nom " + suffixe + ";Secteur " + suffixe), entete);
+
+        // Plus récentes d'abord, comme les listes
+        assertTrue(lignes.get(1).startsWith(formule + ";"));
+        assertTrue(lignes.get(1).endsWith(";\"'=HYPERLINK(\"\"x\"\")\";"), lignes.get(1));
+        assertTrue(lignes.get(2).startsWith(secteurSeul + ";"));
+        // Les questions actives des autres tests du contexte s'intercalent avant celles-ci
+        assertTrue(lignes.get(2).contains(";CAMPAGNE_PROSPECTION;NOUVEAU;Nadia Berrada;;Batha;;"), lignes.get(2));
+        assertTrue(lignes.get(2).endsWith(";;Artisanat"), lignes.get(2));
+        assertTrue(lignes.get(3).startsWith(complete + ";"));
+        assertTrue(lignes.get(3).contains(";Nadia Berrada;Nadia Berrada;Batha;\"Rappeler \"\"demain\"\"\";"), lignes.get(3));
+        assertTrue(lignes.get(3).endsWith(";\"Alaoui; père & fils\";Commerce de détail"), lignes.get(3));
+    }
+
+    @Test
+    void neLaisseEnClairQueLesNombresSignes() throws IOException {
+        for (String valeur : List.of("+1+cmd|' /C calc'!A0", "-1+HYPERLINK(\"x\")", "+212 661 234 567", "-2,5")) {
+            prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, Map.of(nom, valeur), null, agent);
+        }
+
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        exportProspectionsService.exporterCsv(chefBranche, sortie);
+        List<String> lignes = sortie.toString(StandardCharsets.UTF_8).lines().toList();
+
+        assertTrue(lignes.get(1).endsWith(";-2,5;"), lignes.get(1));
+        assertTrue(lignes.get(2).endsWith(";+212 661 234 567;"), lignes.get(2));
+        assertTrue(lignes.get(3).endsWith(";\"'-1+HYPERLINK(\"\"x\"\")\";"), lignes.get(3));
+        assertTrue(lignes.get(4).endsWith(";'+1+cmd|' /C calc'!A0;"), lignes.get(4));
+    }
+}
@@ -0,0 +1,196 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.RequeteFacettes;
+import com.prospection.prospectionbackend.dto.RequeteFacettes.Critere;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.utils.BitmapCompresse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FacettesServiceTest extends BaseJeuDeDonnees {
+
+    @Autowired private FacettesService facettesService;
+    @Autowired private ProspectionService prospectionService;
+    @Autowired private SchemaFormulaireService schemaFormulaireService;
+
+    private Utilisateur agent;
+    private Long activite;
+    private Long produits;
+
+    @BeforeEach
+    void preparer() {
+        agent = creerAgent("Omar", "Tazi");
+        activite = creerQuestion("Activité", QuestionType.CHOICE, "Commerçant", "Artisan").getId();
+        produits = creerQuestion("Produits", QuestionType.MULTIPLE_CHOICE, "Crédit", "Épargne", "Assurance").getId();
+        schemaFormulaireService.invalider();
+    }
+
+    @Test
+    void combineLesReponsesEtLeStatutEtCompteLesOptions() {
+        Long commercantCredit = creer(TypeProspection.CAMPAGNE_PROSPECTION, "Commerçant", "Crédit,Épargne");
+        // Index construit ici : les suivantes sont ajoutées au commit
+        facettesService.rechercher(agent, new RequeteFacettes());
+        Long commercantAssigne = creer(TypeProspection.PLANNING_AGENT, "Commerçant", "Épargne, Crédit");
+        creer(TypeProspection.PLANNING_AGENT, "Artisan", "Crédit");
+        creer(TypeProspection.PLANNING_AGENT, "Commerçant", "Assurance");
+
+        RequeteFacettes requete = new RequeteFacettes();
+        requete.setCritere(et(reponse(activite, "Commerçant"), reponse(produits, "Crédit")));
+        requete.setFacettes(List.of(produits));
+        FacettesService.ResultatFacettes resultat = facettesService.rechercher(agent, requete);
+
+        assertEquals(2, resultat.getTotal());
+        assertEquals(List.of(commercantAssigne, commercantCredit), ids(resultat));
+        assertEquals(Map.of("Crédit", 2L, "Épargne", 2L, "Assurance", 0L), resultat.getFacettes().get(produits));
+        assertEquals(Map.of(StatutProspection.NOUVEAU, 1L, StatutProspection.ASSIGNE, 1L), resultat.getStatuts());
+
+        Critere assignees = new Critere();
+        assignees.setStatuts(List.of(StatutProspection.ASSIGNE));
+        requete.setCritere(et(reponse(activite, "Commerçant"), reponse(produits, "Crédit"), assignees));
+        assertEquals(List.of(commercantAssigne), ids(facettesService.rechercher(agent, requete)));
+
+        Critere ou = new Critere();
+        ou.setOu(List.of(reponse(activite, "Artisan"), reponse(produits, "Assurance")));
+        requete.setCritere(ou);
+        assertEquals(2, facettesService.rechercher(agent, requete).getTotal());
+    }
+
+    @Test
+    void paginePuisResteDansLePerimetre() {
+        List<Long> creees = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            creees.add(creer(TypeProspection.PLANNING_AGENT, "Artisan", "Crédit"));
+        }
+        Collections.reverse(creees);
+
+        RequeteFacettes requete = new RequeteFacettes();
+        requete.setCritere(reponse(activite, "Artisan"));
+        requete.setTaille(2);
+        List<Long> lues = new ArrayList<>();
+        do {
+            FacettesService.ResultatFacettes page = facettesService.rechercher(agent, requete);
+            lues.addAll(ids(page));
+            requete.setCurseur(page.getNextCursor());
+        } while (requete.getCurseur() != null);
+        assertEquals(creees, lues);
+
+        assertEquals(5, facettesService.rechercher(responsable(Role.CHEF_BRANCHE, agent), requete).getTotal());
+        // Un autre agent ne voit que ses propres prospections
+        assertEquals(0, facettesService.rechercher(responsable(Role.AGENT, null), requete).getTotal());
+    }
+
+    @Test
+    void unLibelleAvecVirguleResteUneSeuleOption() {
+        Long financements = creerQuestion("Financements", QuestionType.MULTIPLE_CHOICE,
+                "Crédit, immobilier", "Crédit", "Leasing").getId();
+        schemaFormulaireService.invalider();
+        facettesService.rechercher(agent, new RequeteFacettes());
+        Long immobilier = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT,
+                Map.of(financements, "Crédit, immobilier,Leasing"), null, agent).getId();
+        Long credit = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT,
+                Map.of(financements, "Crédit"), null, agent).getId();
+
+        // Indexées au commit, puis relues depuis les ids d'options enregistrés
+        for (int passage = 0; passage < 2; passage++) {
+            RequeteFacettes requete = new RequeteFacettes();
+            requete.setCritere(reponse(financements, "Crédit, immobilier"));
+            requete.setFacettes(List.of(financements));
+            FacettesService.ResultatFacettes resultat = facettesService.rechercher(agent, requete);
+            assertEquals(List.of(immobilier), ids(resultat));
+            assertEquals(Map.of("Crédit, immobilier", 1L, "Crédit", 0L, "Leasing", 1L), resultat.getFacettes().get(financements));
+
+            requete.setCritere(reponse(financements, "Crédit"));
+            assertEquals(List.of(credit), ids(facettesService.rechercher(agent, requete)));
+            facettesService.synchroniser();
+        }
+    }
+
+    @Test
+    void refuseLesCriteresMalFormes() {
+        RequeteFacettes requete = new RequeteFacettes();
+        Critere double_ = reponse(activite, "Artisan");
+        double_.setStatuts(List.of(StatutProspection.NOUVEAU));
+        requete.setCritere(double_);
+        assertThrows(IllegalArgumentException.class, () -> facettesService.rechercher(agent, requete));
+
+        Long texte = creerQuestion("Remarque", QuestionType.TEXT).getId();
+        schemaFormulaireService.invalider();
+        requete.setCritere(reponse(texte, "rien"));
+        assertThrows(IllegalArgumentException.class, () -> facettesService.rechercher(agent, requete));
+
+        requete.setCritere(null);
+        requete.setCurseur("abc");
+        assertThrows(IllegalArgumentException.class, () -> facettesService.rechercher(agent, requete));
+    }
+
+    @Test
+    void leBitmapSeComporteCommeUnEnsemble() {
+        Random aleatoire = new Random(42);
+        BitmapCompresse a = new BitmapCompresse();
+        BitmapCompresse b = new BitmapCompresse();
+        TreeSet<Long> ea = new TreeSet<>();
+        TreeSet<Long> eb = new TreeSet<>();
+        // Groupe dense (carte de bits), groupes clairsemés (tableaux), et la borne 32 bits
+        for (long v = 65536; v < 65536 + 20000; v += 1 + aleatoire.nextInt(2)) {
+            a.ajouter(v);
+            ea.add(v);
+        }
+        for (int i = 0; i < 20000; i++) {
+            long v = aleatoire.nextInt(400000);
+            a.ajouter(v);
+            ea.add(v);
+            long w = aleatoire.nextInt(400000);
+            b.ajouter(w);
+            eb.add(w);
+        }
+        a.ajouter(0xFFFFFFFFL);
+        ea.add(0xFFFFFFFFL);
+        assertFalse(a.ajouter(0xFFFFFFFFL));
+        assertThrows(IllegalArgumentException.class, () -> a.ajouter(-1));
+
+        TreeSet<Long> inter = new TreeSet<>(ea);
+        inter.retainAll(eb);
+        TreeSet<Long> union = new TreeSet<>(ea);
+        union.addAll(eb);
+
+        assertEquals(ea.size(), a.cardinalite());
+        assertEquals(inter.size(), a.cardinaliteEt(b));
+        assertEquals(new ArrayList<>(inter.descendingSet()), BitmapCompresse.et(a, b).precedentes(Long.MAX_VALUE, Integer.MAX_VALUE));
+        assertEquals(new ArrayList<>(union.descendingSet()), BitmapCompresse.ou(a, b).precedentes(Long.MAX_VALUE, Integer.MAX_VALUE));
+        assertEquals(new ArrayList<>(ea.headSet(70000L, false).descendingSet()).subList(0, 10), a.precedentes(70000, 10));
+        assertTrue(a.contient(65536) && !b.contient(400001));
+    }
+
+    private Long creer(TypeProspection type, String activiteChoisie, String produitsChoisis) {
+        Map<Long, String> reponses = new LinkedHashMap<>();
+        reponses.put(activite, activiteChoisie);
+        reponses.put(produits, produitsChoisis);
+        return prospectionService.creerProspection(type, reponses, null, agent).getId();
+    }
+
+    private static Critere reponse(Long questionId, String... valeurs) {
+        Critere critere = new Critere();
+        critere.setQuestionId(questionId);
+        critere.setValeurs(List.of(valeurs));
+        return critere;
+    }
+
+    private static Critere et(Critere... termes) {
+        Critere critere = new Critere();
+        critere.setEt(List.of(termes));
+        return critere;
+    }
+
+    private static List<Long> ids(FacettesService.ResultatFacettes resultat) {
+        return resultat.getProspections().stream().map(p -> p.id()).toList();
+    }
+}
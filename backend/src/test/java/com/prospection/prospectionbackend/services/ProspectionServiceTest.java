@@ -0,0 +1,231 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.FiltreProspections;
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.entities.Branche;
+import com.prospection.prospectionbackend.entities.Question;
+import com.prospection.prospectionbackend.entities.QuestionOption;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.repositories.QuestionOptionRepository;
+import com.prospection.prospectionbackend.repositories.ReponseRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Contexte à part : les statistiques Hibernate comptent les instructions du chemin de création
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ProspectionServiceTest extends BaseJeuDeDonnees {
+
+    @Autowired private ProspectionService prospectionService;
+    @Autowired private SchemaFormulaireService schemaFormulaireService;
+    @Autowired private QuestionOptionRepository questionOptionRepository;
+    @Autowired private ReponseRepository reponseRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private CompteursAgentService compteursAgentService;
+    @Autowired private RepartitionOptionsService repartitionOptionsService;
+    @Autowired private JdbcTemplate jdbc;
+
+    private Utilisateur agent;
+    private Map<Long, String> reponses;
+
+    @BeforeEach
+    void preparer() {
+        agent = creerAgent("Sara", "Alami");
+
+        reponses = new LinkedHashMap<>();
+        reponses.put(creerQuestion("Nom du prospect", QuestionType.TEXT).getId(), "Bennani");
+        reponses.put(creerQuestion("Téléphone", QuestionType.PHONE).getId(), "0661234567");
+        reponses.put(creerQuestion("Activité", QuestionType.CHOICE, "Commerçant", "Artisan").getId(), "Artisan");
+        schemaFormulaireService.invalider();
+    }
+
+    @Test
+    void creerProspectionEcritUneInstructionParLigneSansRelecture() {
+        // Première soumission : chauffe la séquence des réponses
+        prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, "Premier passage", agent);
+
+        Statistics statistiques = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistiques.clear();
+
+        prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, "Visite marché", agent);
+
+        assertEquals(1 + reponses.size(), statistiques.getEntityInsertCount(), "une insertion par ligne");
+        assertEquals(0, statistiques.getEntityUpdateCount(), "aucune mise à jour de la prospection");
+        assertEquals(0, statistiques.getEntityLoadCount(), "aucune entité relue");
+        assertEquals(0, statistiques.getQueryExecutionCount(), "aucune requête de lecture");
+        // INSERT de la prospection, un seul batch pour les réponses ; les comptes par option sont écrits après le commit
+        assertEquals(2, statistiques.getPrepareStatementCount());
+    }
+
+    @Test
+    void lesStatistiquesDeLAgentSuiventSesCreationsSansRequete() {
+        prospectionService.creerProspection(TypeProspection.CAMPAGNE_PROSPECTION, reponses, null, agent);
+        assertEquals(1L, prospectionService.getStatistiquesAgent(agent.getId()).get("totalProspections"));
+
+        Statistics statistiques = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Long assignee = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, null, agent).getId();
+        statistiques.clear();
+
+        Map<String, Object> stats = prospectionService.getStatistiquesAgent(agent.getId());
+        assertEquals(0, statistiques.getQueryExecutionCount(), "servies par les compteurs");
+        assertEquals(Map.of(StatutProspection.NOUVEAU.getDisplayName(), 1L, StatutProspection.ASSIGNE.getDisplayName(), 1L),
+                stats.get("repartitionStatuts"));
+        assertEquals(2L, stats.get("totalProspections"));
+        assertEquals(2L, stats.get("prospectionsAujourdhui"));
+
+        // Écriture hors service : visible après la réconciliation
+        jdbc.update("UPDATE prospections SET statut = 'CONVERTI' WHERE id = ?", assignee);
+        compteursAgentService.reconcilier();
+        assertEquals(Map.of(StatutProspection.NOUVEAU.getDisplayName(), 1L, StatutProspection.CONVERTI.getDisplayName(), 1L),
+                prospectionService.getStatistiquesAgent(agent.getId()).get("repartitionStatuts"));
+    }
+
+    @Test
+    void mesProspectionsSeParcourentParCurseurSansDoublon() {
+        List<Long> creees = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            creees.add(prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, "Visite " + i, agent).getId());
+        }
+
+        List<Long> lues = new ArrayList<>();
+        String curseur = null;
+        int pages = 0;
+        do {
+            ProspectionService.PageProspections page = prospectionService.getProspectionsAgent(agent, curseur, 2);
+            page.getProspections().forEach(p -> lues.add(p.id()));
+            curseur = page.getNextCursor();
+            pages++;
+        } while (curseur != null);
+
+        assertEquals(3, pages);
+        Collections.reverse(creees);
+        assertEquals(creees, lues, "ordre (dateCreation, id) décroissant, chaque ligne une seule fois");
+    }
+
+    @Test
+    void rechercheAppliqueLesCriteresEtLePerimetreDeLAgent() {
+        for (int i = 0; i < 3; i++) {
+            prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, "Visite " + i, agent);
+        }
+
+        FiltreProspections filtre = new FiltreProspections();
+        filtre.setType(TypeProspection.PLANNING_AGENT);
+        filtre.setStatut(StatutProspection.ASSIGNE);
+        ProspectionService.PageProspections page = prospectionService.rechercherProspections(agent, filtre, null, 2);
+        assertEquals(2, page.getProspections().size());
+        assertNotNull(page.getNextCursor());
+
+        page = prospectionService.rechercherProspections(agent, filtre, page.getNextCursor(), 2);
+        assertEquals(1, page.getProspections().size());
+        assertNull(page.getNextCursor());
+
+        FiltreProspections autreAgent = new FiltreProspections();
+        autreAgent.setAgentId(agent.getId() + 1);
+        assertThrows(AccessDeniedException.class,
+                () -> prospectionService.rechercherProspections(agent, autreAgent, null, 20));
+    }
+
+    @Test
+    void lesResponsablesNeLisentQueLeurPerimetre() {
+        Long premiere = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, "Visite 1", agent).getId();
+        prospectionService.creerProspection(TypeProspection.CAMPAGNE_PROSPECTION, reponses, "Visite 2", agent);
+
+        Utilisateur chef = responsable(Role.CHEF_BRANCHE, null);
+        chef.setBranche(agent.getBranche());
+        ProspectionService.PageProspections page = prospectionService.getProspectionsStructure(
+                chef, Perimetre.Niveau.BRANCHE, new FiltreProspections(), null, 20);
+        assertEquals(2, page.getProspections().size());
+        assertEquals(premiere, prospectionService.getProspectionAvecReponses(premiere, chef).getProspection().id());
+
+        FiltreProspections assignees = new FiltreProspections();
+        assignees.setAgentId(agent.getId());
+        assignees.setStatut(StatutProspection.ASSIGNE);
+        assertEquals(1, prospectionService.getProspectionsStructure(
+                chef, Perimetre.Niveau.BRANCHE, assignees, null, 20).getProspections().size());
+
+        Branche autreBranche = new Branche();
+        autreBranche.setId(-1L);
+        Utilisateur autreChef = responsable(Role.CHEF_BRANCHE, null);
+        autreChef.setBranche(autreBranche);
+        assertTrue(prospectionService.getProspectionsStructure(
+                autreChef, Perimetre.Niveau.BRANCHE, new FiltreProspections(), null, 20).getProspections().isEmpty());
+        assertThrows(AccessDeniedException.class, () -> prospectionService.getProspectionAvecReponses(premiere, autreChef));
+        assertThrows(IllegalArgumentException.class, () -> prospectionService.getProspectionAvecReponses(-1L, chef));
+
+        Utilisateur superviseur = responsable(Role.SUPERVISEUR, null);
+        superviseur.setSupervision(agent.getSupervision());
+        assertThrows(AccessDeniedException.class, () -> prospectionService.getProspectionsStructure(
+                superviseur, Perimetre.Niveau.BRANCHE, new FiltreProspections(), null, 20));
+        FiltreProspections brancheDeLaSupervision = new FiltreProspections();
+        brancheDeLaSupervision.setBrancheId(agent.getBranche().getId());
+        assertEquals(2, prospectionService.getProspectionsStructure(
+                superviseur, Perimetre.Niveau.SUPERVISION, brancheDeLaSupervision, null, 20).getProspections().size());
+    }
+
+    @Test
+    void lesChoixSontEnregistresParOptionEtAffichesAvecLeurLibelleActuel() {
+        Question produits = creerQuestion("Produits", QuestionType.MULTIPLE_CHOICE, "Crédit, immobilier", "Épargne", "Assurance");
+        Long creditImmobilier = produits.getOptions().get(0).getId();
+        Long epargne = produits.getOptions().get(1).getId();
+        schemaFormulaireService.invalider();
+        // Libellé contenant une virgule, ordre de saisie différent de celui des options, doublon
+        reponses.put(produits.getId(), "Épargne, Crédit, immobilier,Épargne");
+
+        Long id = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, null, agent).getId();
+
+        Object[] ligne = reponseRepository.findLignesByProspectionId(id).stream()
+                .filter(colonnes -> produits.getId().equals(colonnes[1]))
+                .findFirst().orElseThrow();
+        assertArrayEquals(new Long[]{creditImmobilier, epargne}, (Long[]) ligne[3]);
+
+        QuestionOption option = produits.getOptions().get(1);
+        option.setValeur("Épargne logement");
+        questionOptionRepository.save(option);
+        schemaFormulaireService.invalider();
+        assertEquals("Crédit, immobilier,Épargne logement",
+                prospectionService.getProspectionAvecReponses(id, agent).getReponse(produits.getId()));
+
+        reponses.put(produits.getId(), "Crédit,Épargne");
+        assertThrows(IllegalArgumentException.class,
+                () -> prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, null, agent));
+
+        Long assurance = produits.getOptions().get(2).getId();
+        Map<Long, Long> comptes = repartitionOptionsService.getComptes();
+        assertEquals(List.of(1L, 1L), List.of(comptes.get(creditImmobilier), comptes.get(epargne)));
+        repartitionOptionsService.ecrire();
+        comptes = repartitionOptionsService.getComptes();
+        assertEquals(List.of(1L, 1L, 0L), List.of(comptes.get(creditImmobilier), comptes.get(epargne), comptes.get(assurance)));
+        // Écart introduit hors application : corrigé par le recomptage
+        jdbc.update("UPDATE comptes_options SET nombre = 5 WHERE option_id = ?", epargne);
+        assertThrows(AccessDeniedException.class, () -> repartitionOptionsService.recompter(agent));
+        repartitionOptionsService.recompter(responsable(Role.SIEGE, null));
+        assertEquals(1L, repartitionOptionsService.getComptes().get(epargne));
+    }
+
+    @Test
+    void laRequeteTexteNeGardeQueDesPrefixesDeMots() {
+        assertEquals("client:* | zanzibar:* | 123:*",
+                ProspectionService.requeteTexte("  Client, ZANZIBAR & 12 ! 123 x client:*"));
+        assertEquals("épicerie:* | moulay:*", ProspectionService.requeteTexte("Épicerie (Moulay)"));
+        assertThrows(IllegalArgumentException.class, () -> ProspectionService.requeteTexte(" a & | ! ab "));
+        assertThrows(IllegalArgumentException.class, () -> ProspectionService.requeteTexte(null));
+    }
+}
@@ -0,0 +1,48 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaFormulaireServiceTest extends BaseJeuDeDonnees {
+
+    @Autowired private SchemaFormulaireService schemaFormulaireService;
+    @Autowired private QuestionService questionService;
+
+    private Utilisateur siege;
+    private Long premiere;
+    private Long seconde;
+
+    @BeforeEach
+    void preparer() {
+        siege = responsable(Role.SIEGE, null);
+        premiere = creerQuestion("Quartier", QuestionType.TEXT).getId();
+        seconde = creerQuestion("Profession", QuestionType.TEXT).getId();
+        schemaFormulaireService.invalider();
+    }
+
+    @AfterEach
+    void nettoyer() {
+        questionService.desactiverQuestion(premiere, siege);
+        questionService.desactiverQuestion(seconde, siege);
+    }
+
+    @Test
+    void laReorganisationRecompileLesNouveauxOrdres() {
+        // Les deux questions sont chargées dans la transaction avant la mise à jour en masse de leur ordre
+        questionService.reorgnaiserQuestion(List.of(seconde, premiere), siege);
+
+        SchemaFormulaireService.SchemaFormulaire schema = schemaFormulaireService.getSchema();
+        assertEquals(1, schema.getQuestion(seconde).getOrdre());
+        assertEquals(2, schema.getQuestion(premiere).getOrdre());
+        assertEquals(questionRepository.findById(premiere).orElseThrow().getOrdre(), schema.getQuestion(premiere).getOrdre());
+    }
+}
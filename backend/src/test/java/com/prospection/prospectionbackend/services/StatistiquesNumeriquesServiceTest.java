@@ -0,0 +1,135 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.entities.Supervision;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.utils.CroquisQuantiles;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatistiquesNumeriquesServiceTest extends BaseJeuDeDonnees {
+
+    @Autowired private StatistiquesNumeriquesService statistiquesNumeriquesService;
+    @Autowired private ProspectionService prospectionService;
+    @Autowired private SchemaFormulaireService schemaFormulaireService;
+    @Autowired private JdbcTemplate jdbc;
+
+    private Utilisateur agentNord;
+    private Utilisateur agentSud;
+    private Long questionId;
+
+    @BeforeEach
+    void preparer() {
+        // Deux branches d'une même supervision
+        Supervision supervision = creerSupervision("Oujda", creerRegion("Oriental"));
+        agentNord = creerAgent("Karim", "Benali", creerBranche("Oujda Nord", supervision));
+        agentSud = creerAgent("Karim", "Benali", creerBranche("Oujda Sud", supervision));
+        questionId = creerQuestion("Nombre d'employés", QuestionType.NUMBER).getId();
+        schemaFormulaireService.invalider();
+
+        // Base recréée par un autre contexte de test : pas de valeurs en attente sur des ids réattribués
+        statistiquesNumeriquesService.recompter(responsable(Role.SIEGE, agentNord));
+    }
+
+    @Test
+    void chaqueNiveauFusionneLesCroquisDeSesBranches() {
+        for (int valeur = 1; valeur <= 10; valeur++) {
+            prospectionService.creerProspection(TypeProspection.PLANNING_AGENT,
+                    Map.of(questionId, Integer.toString(valeur)), null, valeur <= 4 ? agentNord : agentSud);
+        }
+        statistiquesNumeriquesService.ecrire();
+
+        Map<String, Object> nord = statistiquesNumeriquesService.getStatistiques(responsable(Role.CHEF_BRANCHE, agentNord), questionId);
+        assertEquals(4L, nord.get("nombre"));
+        assertEquals(10.0, nord.get("somme"));
+        assertEquals(1.0, nord.get("min"));
+        assertEquals(4.0, nord.get("max"));
+
+        Map<String, Object> supervision = statistiquesNumeriquesService.getStatistiques(responsable(Role.SUPERVISEUR, agentNord), questionId);
+        assertEquals(10L, supervision.get("nombre"));
+        assertEquals(5.5, supervision.get("moyenne"));
+        assertEquals(1.0, supervision.get("min"));
+        assertEquals(10.0, supervision.get("max"));
+        double mediane = (Double) ((Map<?, ?>) supervision.get("quantiles")).get("p50");
+        assertTrue(mediane >= 5 && mediane <= 6, "médiane " + mediane);
+
+        assertEquals(10L, statistiquesNumeriquesService.getStatistiques(
+                responsable(Role.CHEF_ANIMATION_REGIONAL, agentSud), questionId).get("nombre"));
+    }
+
+    @Test
+    void leRecomptageRelitLesReponsesEnregistrees() {
+        Long id = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT,
+                Map.of(questionId, "12"), null, agentNord).getId();
+        jdbc.update("UPDATE reponses SET valeur = '30' WHERE prospection_id = ? AND question_id = ?", id, questionId);
+
+        assertThrows(AccessDeniedException.class,
+                () -> statistiquesNumeriquesService.recompter(responsable(Role.CHEF_BRANCHE, agentNord)));
+        statistiquesNumeriquesService.recompter(responsable(Role.SIEGE, agentNord));
+        // Déjà relue par le recomptage : rien de plus à écrire
+        statistiquesNumeriquesService.ecrire();
+
+        Map<String, Object> siege = statistiquesNumeriquesService.getStatistiques(responsable(Role.SIEGE, agentNord), questionId);
+        assertEquals(1L, siege.get("nombre"));
+        assertEquals(30.0, siege.get("max"));
+    }
+
+    @Test
+    void refuseLesAgentsEtLesQuestionsNonNumeriques() {
+        assertThrows(AccessDeniedException.class, () -> statistiquesNumeriquesService.getStatistiques(agentNord, questionId));
+        assertThrows(IllegalArgumentException.class,
+                () -> statistiquesNumeriquesService.getStatistiques(responsable(Role.SIEGE, agentNord), -1L));
+    }
+
+    @Test
+    void leCroquisFusionneResteProcheDesQuantilesExacts() {
+        Random aleatoire = new Random(42);
+        double[] valeurs = new double[100_000];
+        CroquisQuantiles[] parties = {new CroquisQuantiles(), new CroquisQuantiles(), new CroquisQuantiles()};
+        for (int i = 0; i < valeurs.length; i++) {
+            // Distribution asymétrique, comme des effectifs ou des chiffres d'affaires
+            valeurs[i] = Math.floor(Math.exp(aleatoire.nextGaussian() * 1.5 + 3));
+            parties[i % 3].ajouter(valeurs[i]);
+        }
+        // Aller-retour par la forme persistée, comme entre deux passages d'écriture
+        CroquisQuantiles fusion = CroquisQuantiles.depuisOctets(parties[0].versOctets());
+        fusion.fusionner(CroquisQuantiles.depuisOctets(parties[1].versOctets()));
+        fusion.fusionner(parties[2]);
+
+        Arrays.sort(valeurs);
+        assertEquals(valeurs.length, fusion.nombre());
+        assertEquals(valeurs[0], fusion.min());
+        assertEquals(valeurs[valeurs.length - 1], fusion.max());
+        for (double q : new double[]{0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99}) {
+            double estime = fusion.quantile(q);
+            // Erreur mesurée en rang : position de l'estimation parmi les valeurs triées
+            int bas = premierIndexAuMoins(valeurs, estime);
+            int haut = premierIndexAuMoins(valeurs, Math.nextUp(estime));
+            double ecart = Math.max(0, Math.max(bas - q * valeurs.length, q * valeurs.length - haut)) / valeurs.length;
+            assertTrue(ecart < 0.01, "q=" + q + " estimé " + estime + " écart de rang " + ecart);
+        }
+        assertTrue(fusion.versOctets().length < 16384);
+    }
+
+    private static int premierIndexAuMoins(double[] tries, double valeur) {
+        int i = Arrays.binarySearch(tries, valeur);
+        if (i < 0) {
+            return -i - 1;
+        }
+        while (i > 0 && tries[i - 1] == valeur) {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,112 @@
+package com.prospection.prospectionbackend.services;
+
+import com.prospection.prospectionbackend.dto.Perimetre;
+import com.prospection.prospectionbackend.entities.CleCumul;
+import com.prospection.prospectionbackend.entities.CumulProspections;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.QuestionType;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.enums.StatutProspection;
+import com.prospection.prospectionbackend.enums.TypeProspection;
+import com.prospection.prospectionbackend.repositories.CumulProspectionsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TableauBordServiceTest extends BaseJeuDeDonnees {
+
+    @Autowired private TableauBordService tableauBordService;
+    @Autowired private ProspectionService prospectionService;
+    @Autowired private SchemaFormulaireService schemaFormulaireService;
+    @Autowired private CumulProspectionsRepository cumulProspectionsRepository;
+    @Autowired private JdbcTemplate jdbc;
+
+    private Utilisateur agent;
+    private Map<Long, String> reponses;
+
+    @BeforeEach
+    void preparer() {
+        agent = creerAgent("Youssef", "Idrissi");
+        reponses = Map.of(creerQuestion("Nom du prospect", QuestionType.TEXT).getId(), "Amrani");
+        schemaFormulaireService.invalider();
+
+        // Base recréée par un autre contexte de test : les créations en attente des tests
+        // précédents porteraient des ids de structures réattribués depuis
+        tableauBordService.reconstruire(responsable(Role.SIEGE, agent));
+    }
+
+    @Test
+    void chaqueNiveauLitSaStructureDansLeCube() {
+        prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, null, agent);
+        prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, null, agent);
+        prospectionService.creerProspection(TypeProspection.CAMPAGNE_PROSPECTION, reponses, null, agent);
+        tableauBordService.ecrire();
+
+        Map<String, Object> region = tableauBordService.getTableauBord(
+                responsable(Role.CHEF_ANIMATION_REGIONAL, agent), Perimetre.Niveau.REGION, null, null);
+        assertEquals(3L, region.get("total"));
+        assertEquals(Map.of(StatutProspection.ASSIGNE, 2L, StatutProspection.NOUVEAU, 1L), region.get("parStatut"));
+        assertEquals(Map.of(TypeProspection.PLANNING_AGENT, 2L, TypeProspection.CAMPAGNE_PROSPECTION, 1L), region.get("parType"));
+        assertEquals(Map.of(LocalDate.now(), 3L), region.get("parJour"));
+        assertEquals(Map.of(agent.getSupervision().getId(), Map.of(StatutProspection.ASSIGNE, 2L, StatutProspection.NOUVEAU, 1L)),
+                region.get("parStructure"));
+
+        Map<String, Object> branche = tableauBordService.getTableauBord(
+                responsable(Role.CHEF_BRANCHE, agent), Perimetre.Niveau.BRANCHE, LocalDate.now(), LocalDate.now());
+        assertEquals(3L, branche.get("total"));
+        assertFalse(branche.containsKey("parStructure"));
+
+        // Hier seulement : rien
+        LocalDate hier = LocalDate.now().minusDays(1);
+        assertEquals(0L, tableauBordService.getTableauBord(
+                responsable(Role.SUPERVISEUR, agent), Perimetre.Niveau.SUPERVISION, hier, hier).get("total"));
+    }
+
+    @Test
+    void laReconstructionReprendLesEcrituresFaitesHorsApplication() {
+        Long id = prospectionService.creerProspection(TypeProspection.PLANNING_AGENT, reponses, null, agent).getId();
+        jdbc.update("UPDATE prospections SET statut = 'CONVERTI' WHERE id = ?", id);
+
+        assertThrows(AccessDeniedException.class, () -> tableauBordService.reconstruire(responsable(Role.CHEF_BRANCHE, agent)));
+        tableauBordService.reconstruire(responsable(Role.SIEGE, agent));
+        // Déjà comptée par la reconstruction : rien de plus à écrire
+        tableauBordService.ecrire();
+
+        Map<String, Object> branche = tableauBordService.getTableauBord(
+                responsable(Role.CHEF_BRANCHE, agent), Perimetre.Niveau.BRANCHE, null, null);
+        assertEquals(Map.of(StatutProspection.CONVERTI, 1L), branche.get("parStatut"));
+    }
+
+    @Test
+    void uneCelluleCreeeAuMemeMomentNEstPasEcrasee() {
+        CleCumul cle = new CleCumul(LocalDate.now(), agent.getRegion().getId(), agent.getSupervision().getId(),
+                agent.getBranche().getId(), StatutProspection.NOUVEAU, TypeProspection.PLANNING_AGENT);
+        cumulProspectionsRepository.save(new CumulProspections(cle, 5));
+
+        // Insertion d'une autre instance qui n'a pas vu la cellule : refusée, pas fusionnée
+        assertThrows(DataIntegrityViolationException.class,
+                () -> cumulProspectionsRepository.save(new CumulProspections(cle, 3)));
+        assertEquals(5, cumulProspectionsRepository.findById(cle).orElseThrow().getNombre());
+    }
+
+    @Test
+    void refuseLesAutresNiveauxEtLesPeriodesInvalides() {
+        assertThrows(AccessDeniedException.class,
+                () -> tableauBordService.getTableauBord(agent, Perimetre.Niveau.BRANCHE, null, null));
+        assertThrows(AccessDeniedException.class,
+                () -> tableauBordService.getTableauBord(responsable(Role.CHEF_BRANCHE, agent), Perimetre.Niveau.REGION, null, null));
+        LocalDate aujourdhui = LocalDate.now();
+        assertThrows(IllegalArgumentException.class, () -> tableauBordService.getTableauBord(
+                responsable(Role.SIEGE, agent), Perimetre.Niveau.TOUT, aujourdhui, aujourdhui.minusDays(1)));
+        assertThrows(IllegalArgumentException.class, () -> tableauBordService.getTableauBord(
+                responsable(Role.SIEGE, agent), Perimetre.Niveau.TOUT, aujourdhui.minusYears(2), aujourdhui));
+    }
+}
@@ -0,0 +1,107 @@
+package com.prospection.prospectionbackend.services;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.prospection.prospectionbackend.entities.JetonRevoque;
+import com.prospection.prospectionbackend.entities.Utilisateur;
+import com.prospection.prospectionbackend.enums.Role;
+import com.prospection.prospectionbackend.repositories.JetonRevoqueRepository;
+import com.prospection.prospectionbackend.utils.JwtUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "jwt.revocation-poll-interval=3600000",
+        "jwt.blacklist-purge-interval=3600000",
+        "jwt.revocation-bloom-capacity=20"
+})
+class TokenBlacklistServiceTest {
+
+    @Autowired private TokenBlacklistService tokenBlacklistService;
+    @Autowired private JetonRevoqueRepository jetonRevoqueRepository;
+    @Autowired private JwtUtil jwtUtil;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    @Test
+    void revocationLocaleEstVueImmediatement() {
+        String revoque = jeton();
+        String valide = jeton();
+
+        tokenBlacklistService.blacklistToken(revoque);
+
+        assertTrue(tokenBlacklistService.isTokenBlacklisted(revoque));
+        assertFalse(tokenBlacklistService.isTokenBlacklisted(valide));
+    }
+
+    @Test
+    void revocationDUneAutreInstanceEstRecupereeParLeCurseur() {
+        DecodedJWT jwt = JWT.decode(jeton());
+        tokenBlacklistService.synchroniser();
+        // Absent du filtre : réponse locale
+        assertFalse(tokenBlacklistService.isTokenBlacklisted(jwt));
+
+        // Autre instance : seule la ligne partagée est écrite
+        jetonRevoqueRepository.save(new JetonRevoque(jwt.getId(),
+                LocalDateTime.ofInstant(jwt.getExpiresAt().toInstant(), ZoneId.systemDefault())));
+
+        tokenBlacklistService.synchroniser();
+        assertTrue(tokenBlacklistService.isTokenBlacklisted(jwt));
+    }
+
+    @Test
+    void revocationsSurviventALaPurge() {
+        String revoque = jeton();
+        tokenBlacklistService.blacklistToken(revoque);
+
+        tokenBlacklistService.purger();
+
+        assertTrue(tokenBlacklistService.isTokenBlacklisted(revoque));
+    }
+
+    @Test
+    void laPurgeReconstruitLeFiltreSature() {
+        tokenBlacklistService.synchroniser();
+        for (int i = 0; i < 100; i++) {
+            tokenBlacklistService.blacklistToken(jeton());
+        }
+        double sature = (double) tokenBlacklistService.getStatistiques().get("tauxFauxPositifs");
+        assertTrue(sature > 0.02);
+
+        tokenBlacklistService.purger();
+
+        assertTrue((double) tokenBlacklistService.getStatistiques().get("tauxFauxPositifs") < sature);
+    }
+
+    @Test
+    void uneDoubleRevocationNAnnulePasLaTransactionAppelante() {
+        String revoque = jeton();
+
+        // Déconnexion : deux révocations du même jeton dans une seule transaction qui doit valider
+        transactionTemplate.executeWithoutResult(statut -> {
+            tokenBlacklistService.blacklistToken(revoque);
+            tokenBlacklistService.blacklistToken(revoque);
+        });
+
+        assertEquals(1, jetonRevoqueRepository.findExpirationByCle(JWT.decode(revoque).getId()).size());
+        assertTrue(tokenBlacklistService.isTokenBlacklisted(revoque));
+    }
+
+    private String jeton() {
+        Utilisateur utilisateur = new Utilisateur();
+        utilisateur.setId(1L);
+        utilisateur.setEmail("agent@test.ma");
+        utilisateur.setNom("Alami");
+        utilisateur.setPrenom("Sara");
+        utilisateur.setRole(Role.AGENT);
+        return jwtUtil.generateToken(utilisateur);
+    }
+}
@@ -40,6 +40,9 @@ const MesProspections: React.FC = () => {
     const [prospections, setProspections] = useState<Prospection[]>([]);
     const [statistiques, setStatistiques] = useState<Statistiques | null>(null);
     const [loading, setLoading] = useState(true);
+    // Curseur de la page suivante (null : toutes les prospections sont chargées)
+    const [nextCursor, setNextCursor] = useState<string | null>(null);
+    const [chargementSuite, setChargementSuite] = useState(false);
     const [searchTerm, setSearchTerm] = useState('');
     const [filterStatut, setFilterStatut] = useState('');
     const [filterType, setFilterType] = useState('');
@@ -62,10 +65,12 @@ const MesProspections: React.FC = () => {
         }
     };
 
-    const chargerProspections = async () => {
+    // Pages de 20, les plus récentes d'abord ; sans curseur, la liste repart de la première page
+    const chargerProspections = async (cursor?: string) => {
         try {
             const token = localStorage.getItem('access_token');
-            const response = await fetch('http://localhost:8090/api/prospections/mes-prospections', {
+            const params = cursor ? `?cursor=${encodeURIComponent(cursor)}` : '';
+            const response = await fetch(`http://localhost:8090/api/prospections/mes-prospections${params}`, {
                 headers: {
                     'Authorization': `Bearer ${token}`,
                     'Content-Type': 'application/json'
@@ -75,7 +80,8 @@ const MesProspections: React.FC = () => {
             if (response.ok) {
                 const data = await response.json();
                 if (data.success) {
-                    setProspections(data.prospections);
+                    setProspections(precedentes => cursor ? [...precedentes, ...data.prospections] : data.prospections);
+                    setNextCursor(data.nextCursor ?? null);
                 }
             }
         } catch (error) {
@@ -83,6 +89,16 @@ const MesProspections: React.FC = () => {
         }
     };
 
+    const chargerSuite = async () => {
+        if (!nextCursor) return;
+        setChargementSuite(true);
+        try {
+            await chargerProspections(nextCursor);
+        } finally {
+            setChargementSuite(false);
+        }
+    };
+
     const chargerStatistiques = async () => {
         try {
             const token = localStorage.getItem('access_token');
@@ -232,7 +248,7 @@ const MesProspections: React.FC = () => {
 
                     <div className="flex items-center text-sm text-gray-600">
                         <Filter className="w-4 h-4 mr-1" />
-                        {prospectionsFiltrees.length} sur {prospections.length} prospections
+                        {prospectionsFiltrees.length} sur {prospections.length} prospections chargées
                     </div>
                 </div>
             </div>
@@ -346,12 +362,26 @@ const MesProspections: React.FC = () => {
                 )}
             </div>
 
+            {/* Page suivante */}
+            {nextCursor && (
+                <div className="mt-4 text-center">
+                    <button
+                        onClick={chargerSuite}
+                        disabled={chargementSuite}
+                        className="px-4 py-2 bg-white border border-gray-300 text-gray-700 rounded-md hover:bg-gray-50 disabled:opacity-50 transition-colors"
+                    >
+                        {chargementSuite ? 'Chargement...' : 'Charger plus de prospections'}
+                    </button>
+                </div>
+            )}
+
             {/* Résumé en bas de page */}
             {prospectionsFiltrees.length > 0 && (
                 <div className="mt-6 bg-gray-50 rounded-lg p-4 border">
                     <div className="text-sm text-gray-600 text-center">
                         Affichage de {prospectionsFiltrees.length} prospection{prospectionsFiltrees.length > 1 ? 's' : ''}
-                        {prospectionsFiltrees.length !== prospections.length && ` sur ${prospections.length} au total`}
+                        {prospectionsFiltrees.length !== prospections.length && ` sur ${prospections.length} chargées`}
+                        {statistiques && ` (${statistiques.totalProspections} au total)`}
                     </div>
                 </div>
             )}
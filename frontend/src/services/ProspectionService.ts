@@ -210,15 +210,20 @@ class ProspectionService {
         }
     }
 
-    // Récupérer les prospections de l'agent
-    async getMesProspections(): Promise<ApiResponse<{ prospections: Prospection[]; total: number }>> {
+    // Récupérer une page des prospections de l'agent (les plus récentes d'abord).
+    // total : nombre de prospections de cette page ; nextCursor : à renvoyer pour la page suivante, null en fin de liste
+    async getMesProspections(cursor?: string, size?: number): Promise<ApiResponse<{ prospections: Prospection[]; total: number; nextCursor: string | null }>> {
         try {
-            const response = await this.fetchWithRetry(`${API_BASE_URL}/prospections/mes-prospections`, {
+            const params = new URLSearchParams();
+            if (cursor) params.set('cursor', cursor);
+            if (size) params.set('size', String(size));
+            const query = params.toString() ? `?${params.toString()}` : '';
+            const response = await this.fetchWithRetry(`${API_BASE_URL}/prospections/mes-prospections${query}`, {
                 method: 'GET',
                 headers: this.getAuthHeaders()
             });
 
-            return await this.handleResponse<{ prospections: Prospection[]; total: number }>(response);
+            return await this.handleResponse<{ prospections: Prospection[]; total: number; nextCursor: string | null }>(response);
         } catch (error) {
             console.log(error);
             return {